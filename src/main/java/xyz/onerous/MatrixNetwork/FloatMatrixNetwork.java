@@ -0,0 +1,697 @@
+package xyz.onerous.MatrixNetwork;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.Precision;
+import xyz.onerous.MatrixNetwork.component.datapackage.FloatNetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.FloatWeightBiasDeltaPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
+import xyz.onerous.MatrixNetwork.inference.BatchPredictor;
+import xyz.onerous.MatrixNetwork.inference.InferenceModel;
+import xyz.onerous.MatrixNetwork.inference.ParallelEvaluator;
+import xyz.onerous.MatrixNetwork.pipeline.FloatArraySampleSource;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
+
+/**
+ * A single-precision (float) version of the MatrixNetwork. Weights, biases, activations, errors and deltas
+ * are all floats, which halves the memory traffic of the layer products that bound training and inference
+ * speed. Float precision is plenty for networks of this size.
+ * 
+ * The training and inference methods mirror the MatrixNetwork's and take float data sets (double data is
+ * also accepted and converted per sample). Weights go in and out as FloatNetworkWeightBiasPackages, which
+ * FileUtil saves in single precision, or as the usual (double) weight-bias packages, so double-precision
+ * models and save files load into a FloatMatrixNetwork and vice versa; see
+ * `FloatMatrixNetwork(MatrixNetwork)` and `toMatrixNetwork()`.
+ * 
+ * The layer products and activations are the float kernels of the selected KernelBackend, and the buffers
+ * are a single-precision NetworkWorkspace. Training always takes the batch path (a single sample is a batch
+ * of one), through the network's own workspace, whose delta package is reused from batch to batch. The
+ * network is also a BatchPredictor, predicting through workspaces borrowed from a pool, so testing runs on a
+ * ParallelEvaluator like any other model. It must not be trained while it is predicting or being tested.
+ * 
+ * @author Gabriel Wong
+ */
+public class FloatMatrixNetwork implements NeuralNetwork, BatchPredictor {
+	protected int[] nPerLayer; //Number of neurons in each layer
+	protected int numL; //Number of layers (including input, output) in network
+	
+	protected float learningRate; //Learning rate of the network
+	
+	protected boolean usingSoftmax;
+	protected ActivationType activationType; //Activation Type (Sigmoid, TanH, etc.)
+	protected LossType lossType; //Loss Type (Cross Entropy, MSE, etc.)
+	
+	protected float[][] w; //Connection Weights, one contiguous row-major buffer per layer (w[l][n * nPerLayer[l-1] + p_n])
+	protected float[][] b; //Neuron Biases
+	protected float[][] z; //Neuron Weighted Inputs
+	protected float[][] a; //Neuron Activations
+	
+	protected NetworkWorkspace workspace; //Buffers and delta package of the network's own training. z and a above are its buffers.
+	
+	private ArrayBlockingQueue<NetworkWorkspace> predictionWorkspaces; //Batch buffers of predictBatch calls not in progress
+	private ParallelEvaluator evaluator; //Runs performTest, created on the first test
+	
+	public FloatMatrixNetwork(int nInput, int nOutput, int[] nHidden, int lHidden, double learningRate, boolean usingSoftmax, ActivationType activationType, LossType lossType) {
+		this.numL = lHidden + 2;
+		this.learningRate = (float) learningRate;
+		this.usingSoftmax = usingSoftmax;
+		this.activationType = activationType;
+		this.lossType = lossType;
+		this.nPerLayer = new int[numL];
+		this.nPerLayer[0] = nInput;
+		this.nPerLayer[numL - 1] = nOutput;
+		
+		for (int l = 1; l < numL - 1; l++) {
+			this.nPerLayer[l] = nHidden[l-1];
+		}
+		
+		initialize();
+		randomizeWeights();
+	}
+	
+	/**
+	 * Create a single-precision copy of a (double precision) MatrixNetwork, with the same shape, parameters,
+	 * weights and biases.
+	 * 
+	 * @param matrixNetwork
+	 */
+	public FloatMatrixNetwork(MatrixNetwork matrixNetwork) {
+		this.numL = matrixNetwork.getNumL();
+		this.nPerLayer = matrixNetwork.getNPerLayer().clone();
+		this.learningRate = (float) matrixNetwork.getLearningRate();
+		this.usingSoftmax = matrixNetwork.isUsingSoftmax();
+		this.activationType = matrixNetwork.getActivationType();
+		this.lossType = matrixNetwork.getLossType();
+		
+		initialize();
+		applyNetworkWeightBiasPackage(matrixNetwork.generateNetworkWeightBiasPackage());
+	}
+	
+	/**
+	 * @return a double precision MatrixNetwork with the same shape, parameters, weights and biases
+	 */
+	public MatrixNetwork toMatrixNetwork() {
+		int[] nHidden = new int[numL - 2];
+		
+		for (int l = 1; l < numL - 1; l++) {
+			nHidden[l-1] = nPerLayer[l];
+		}
+		
+		MatrixNetwork matrixNetwork = new MatrixNetwork(nPerLayer[0], nPerLayer[numL - 1], nHidden, numL - 2, learningRate, usingSoftmax, activationType, lossType);
+		matrixNetwork.applyNetworkWeightBiasPackage(generateNetworkWeightBiasPackage());
+		
+		return matrixNetwork;
+	}
+	
+	private void initialize() {
+		w = new float[numL][];
+		b = new float[numL][];
+		
+		for (int l = 0; l < numL; l++) {
+			w[l] = (l == 0) ? new float[0] : new float[ nPerLayer[l] * nPerLayer[l-1] ];
+			b[l] = new float[ nPerLayer[l] ];
+		}
+		
+		workspace = new NetworkWorkspace(nPerLayer, true, Precision.Single);
+		z = workspace.floatZ;
+		a = workspace.floatA;
+		
+		predictionWorkspaces = new ArrayBlockingQueue<NetworkWorkspace>(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Same initialization scheme as the MatrixNetwork. Biases start at zero.
+	 */
+	private void randomizeWeights() {
+		Random random = new Random();
+		
+		for (int l = 1; l < numL; l++) {
+			double nPrev = (double) nPerLayer[l-1];
+			
+			for (int i = 0; i < w[l].length; i++) {
+				switch (activationType) {
+				case Sigmoid:
+					w[l][i] = (float) (2.0 * (random.nextDouble() - 0.5) * 4.0 * Math.sqrt(6.0 / nPrev));
+					break;
+				case ReLU:
+					w[l][i] = (float) (random.nextGaussian() * Math.sqrt(2.0 / nPrev));
+					break;
+				default:
+					w[l][i] = (float) (random.nextGaussian() * Math.sqrt(1.0 / nPrev)); //Xavier initialization
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Take an array of floats and spread that across the input layer of the network, then propagate and
+	 * return the output of the network.
+	 * 
+	 * @param data Array of length number of input neurons in the network
+	 * @return Network response (index of 'brightest' output neuron)
+	 */
+	public int inputDataAndPropagate(float[] data) {
+		try {
+			if (data.length != nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+			
+			System.arraycopy(data, 0, z[0], 0, data.length);
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		}
+		
+		propagate();
+		
+		return getDominantOutputIndex();
+	}
+	
+	/**
+	 * @param data Array of length number of input neurons in the network, converted to floats on the way in
+	 * @return Network response (index of 'brightest' output neuron)
+	 */
+	public int inputDataAndPropagate(double[] data) {
+		try {
+			if (data.length != nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+			
+			for (int i = 0; i < data.length; i++) {
+				z[0][i] = (float) data[i];
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		}
+		
+		propagate();
+		
+		return getDominantOutputIndex();
+	}
+	
+	/**
+	 * Feed forward the input layer all the way to the output layer, one dense layer kernel per layer.
+	 */
+	public void propagate() {
+		Kernels.get().activateInto(activationType, z[0], a[0], 0, nPerLayer[0]);
+		
+		for (int l = 1; l < numL; l++) {
+			ActivationType layerActivationType = (l == numL - 1 && usingSoftmax) ? ActivationType.Linear : activationType;
+			
+			Kernels.get().denseForwardInto(layerActivationType, w[l], b[l], nPerLayer[l], nPerLayer[l-1], a[l-1], z[l], a[l]);
+		}
+		
+		if (usingSoftmax) {
+			Kernels.get().softmaxInto(z[numL-1], a[numL-1], 0, nPerLayer[numL-1]);
+		}
+	}
+	
+	/**
+	 * Find the 'brightest' output neuron in the network. This is what amounts to the network's output.
+	 * 
+	 * @return the index of the network output neuron
+	 */
+	public int getDominantOutputIndex() {
+		float[] output = a[numL - 1];
+		int maxValueAtIndex = 0;
+		
+		for (int n = 1; n < output.length; n++) {
+			if (output[n] > output[maxValueAtIndex]) {
+				maxValueAtIndex = n;
+			}
+		}
+		
+		return maxValueAtIndex;
+	}
+	
+	public int getNumL() {
+		return numL;
+	}
+	
+	public int[] getNPerLayer() {
+		return nPerLayer;
+	}
+	
+	public double getOutputNeuronValue(int index) {
+		return a[numL-1][index];
+	}
+	
+	/**
+	 * @param expectedIndex The expected output of the network
+	 * @return the total output layer error specified by the selected loss function.
+	 */
+	public double getOutputError(int expectedIndex) {
+		float[] output = a[numL - 1];
+		double error = 0.0;
+		
+		switch (lossType) {
+		case MeanSquaredError:
+			for (int i = 0; i < output.length; i++) {
+				error += Math.pow(output[i] - ((i == expectedIndex) ? 1.0 : 0.0), 2.0);
+			}
+			return error / (double) output.length;
+		case MeanAbsoluteError:
+			for (int i = 0; i < output.length; i++) {
+				error += Math.abs(output[i] - ((i == expectedIndex) ? 1.0 : 0.0));
+			}
+			return error / (double) output.length;
+		case CrossEntropy:
+			return -Math.log(output[expectedIndex]);
+		default:
+			return 0.0;
+		}
+	}
+	
+	/**
+	 * Perform one training iteration (a batch of one) and return its deltas.
+	 * 
+	 * @param trainData Data to be inputted
+	 * @param expectedOutput The expected result of the network
+	 * @return The weight-bias deltas generated by the gradient descent process, valid until the next batch
+	 */
+	public FloatWeightBiasDeltaPackage performTrainAndGetDelta(float[] trainData, int expectedOutput) {
+		return performBatchAndGetDelta(new float[][] { trainData }, new int[] { expectedOutput });
+	}
+	
+	/**
+	 * Perform one training batch with matrix-matrix products, like MatrixNetwork.performBatchAndGetDelta.
+	 * 
+	 * @param batchData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the batch data
+	 * @return The combined weight-bias deltas, held in the workspace's delta package until the next batch
+	 */
+	public FloatWeightBiasDeltaPackage performBatchAndGetDelta(float[][] batchData, int[] expectedOutputs) {
+		return performBatchAndGetDelta(batchData, expectedOutputs, 0, batchData.length);
+	}
+	
+	/**
+	 * `performBatchAndGetDelta` for samples [from, to) of the data, without copying them out first.
+	 * 
+	 * @param data Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the data
+	 * @param from First sample of the batch (inclusive)
+	 * @param to Last sample of the batch (exclusive)
+	 * @return The combined weight-bias deltas, held in the workspace's delta package until the next batch
+	 */
+	public FloatWeightBiasDeltaPackage performBatchAndGetDelta(float[][] data, int[] expectedOutputs, int from, int to) {
+		NetworkWorkspace ws = workspace;
+		int batchSize = to - from;
+		
+		try {
+			inputBatchData(data, (double[][]) null, from, batchSize, ws);
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		}
+		
+		propagateBatch(batchSize, ws);
+		backPropagateBatch(expectedOutputs, from, batchSize, ws);
+		
+		return gradientDescentBatch(batchSize, ws);
+	}
+	
+	/**
+	 * Stack samples [from, from + batchSize) of either float or double data (the other being null) into the
+	 * input rows of a workspace's batch buffers, growing them if needed.
+	 */
+	private void inputBatchData(float[][] floatData, double[][] doubleData, int from, int batchSize, NetworkWorkspace ws) throws InvalidInputLengthException {
+		int nInput = nPerLayer[0];
+		
+		ws.ensureBatchCapacity(batchSize);
+		
+		for (int s = 0; s < batchSize; s++) {
+			if (floatData != null) {
+				if (floatData[from + s].length != nInput) {
+					throw new InvalidInputLengthException();
+				}
+				
+				System.arraycopy(floatData[from + s], 0, ws.floatZBatch[0], s * nInput, nInput);
+			} else {
+				if (doubleData[from + s].length != nInput) {
+					throw new InvalidInputLengthException();
+				}
+				
+				for (int i = 0; i < nInput; i++) {
+					ws.floatZBatch[0][s * nInput + i] = (float) doubleData[from + s][i];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The batch version of `propagate`, as in MatrixNetwork: Z = A(prev) * transpose(W) + b for every layer,
+	 * one sample per row.
+	 */
+	private void propagateBatch(int batchSize, NetworkWorkspace ws) {
+		float[][] zBatch = ws.floatZBatch;
+		float[][] aBatch = ws.floatABatch;
+		
+		Kernels.get().activateInto(activationType, zBatch[0], aBatch[0], 0, batchSize * nPerLayer[0]);
+		
+		for (int l = 1; l < numL; l++) {
+			Kernels.get().multiplyWithSecondTransposeInto(aBatch[l-1], w[l], zBatch[l], batchSize, nPerLayer[l-1], nPerLayer[l], false);
+			
+			for (int s = 0; s < batchSize; s++) {
+				int offset = s * nPerLayer[l];
+				
+				for (int n = 0; n < nPerLayer[l]; n++) {
+					zBatch[l][offset + n] += b[l][n];
+				}
+			}
+			
+			if (l == numL - 1 && usingSoftmax) {
+				for (int s = 0; s < batchSize; s++) {
+					Kernels.get().softmaxInto(zBatch[l], aBatch[l], s * nPerLayer[l], nPerLayer[l]);
+				}
+			} else {
+				Kernels.get().activateInto(activationType, zBatch[l], aBatch[l], 0, batchSize * nPerLayer[l]);
+			}
+		}
+	}
+	
+	/**
+	 * The batch version of backpropagation, as in MatrixNetwork: δ = (δ(next) * W(next)) ⊙ f'(z) per layer.
+	 */
+	private void backPropagateBatch(int[] expectedIndeces, int from, int batchSize, NetworkWorkspace ws) {
+		float[][] zBatch = ws.floatZBatch;
+		float[][] aBatch = ws.floatABatch;
+		float[][] δBatch = ws.floatδBatch;
+		
+		int nOutput = nPerLayer[numL - 1];
+		float notExpectedOutput = (activationType == ActivationType.TanH) ? -1.0f : 0.0f;
+		float[] outputA = aBatch[numL-1];
+		float[] outputδ = δBatch[numL-1];
+		
+		for (int s = 0; s < batchSize; s++) {
+			for (int n = 0; n < nOutput; n++) {
+				int i = s * nOutput + n;
+				float expectedOutput = (n == expectedIndeces[from + s]) ? 1.0f : notExpectedOutput;
+				
+				switch (lossType) {
+				case MeanSquaredError:
+					outputδ[i] = 0.5f * (outputA[i] - expectedOutput);
+					break;
+				case MeanAbsoluteError:
+					outputδ[i] = Math.signum(outputA[i] - expectedOutput);
+					break;
+				case CrossEntropy:
+					outputδ[i] = (-expectedOutput/outputA[i]) + (1.0f - expectedOutput)/(1.0f - outputA[i]);
+					break;
+				default:
+					outputδ[i] = 0.0f;
+					break;
+				}
+			}
+		}
+		
+		if (usingSoftmax) {
+			for (int i = 0; i < batchSize * nOutput; i++) {
+				outputδ[i] *= outputA[i] * (1.0f - outputA[i]); //softmax' from the softmax values themselves
+			}
+		} else {
+			Kernels.get().multiplyByActivationPrimeInto(activationType, zBatch[numL-1], outputA, outputδ, 0, batchSize * nOutput);
+		}
+		
+		for (int l = numL - 2; l > 0; l--) {
+			Kernels.get().multiplyInto(δBatch[l+1], w[l+1], δBatch[l], batchSize, nPerLayer[l+1], nPerLayer[l], false);
+			Kernels.get().multiplyByActivationPrimeInto(activationType, zBatch[l], aBatch[l], δBatch[l], 0, batchSize * nPerLayer[l]);
+		}
+	}
+	
+	/**
+	 * Write the deltas of the batch in the workspace over its delta package. The batch errors are scaled by
+	 * -learningRate in place first, as in MatrixNetwork.gradientDescentBatch.
+	 */
+	private FloatWeightBiasDeltaPackage gradientDescentBatch(int batchSize, NetworkWorkspace ws) {
+		float[][] deltaW = ws.floatDeltaPackage.deltaW;
+		float[][] deltaB = ws.floatDeltaPackage.deltaB;
+		
+		for (int l = numL - 1; l > 0; l--) {
+			float[] layerδ = ws.floatδBatch[l];
+			
+			Kernels.get().scalarMultiplyInto(layerδ, -learningRate, layerδ, batchSize * nPerLayer[l]);
+			Kernels.get().multiplyWithFirstTransposeInto(layerδ, ws.floatABatch[l-1], deltaW[l], nPerLayer[l], batchSize, nPerLayer[l-1], false);
+			
+			Arrays.fill(deltaB[l], 0.0f);
+			
+			for (int s = 0; s < batchSize; s++) {
+				int offset = s * nPerLayer[l];
+				
+				for (int n = 0; n < nPerLayer[l]; n++) {
+					deltaB[l][n] += layerδ[offset + n];
+				}
+			}
+		}
+		
+		return ws.floatDeltaPackage;
+	}
+	
+	/**
+	 * Apply a given weight-bias delta package to the network.
+	 * 
+	 * @param deltaPackage The weight-bias delta package to be applied to the network
+	 */
+	public void applyDeltaPackage(FloatWeightBiasDeltaPackage deltaPackage) {
+		for (int l = numL - 1; l > 0; l--) {
+			Kernels.get().addInto(w[l], deltaPackage.deltaW[l], w[l], w[l].length);
+			Kernels.get().addInto(b[l], deltaPackage.deltaB[l], b[l], b[l].length);
+		}
+	}
+	
+	/**
+	 * Perform an entire epoch of training, see MatrixNetwork.performEpoch. Should the training data not
+	 * divide evenly by the batch size, the last batch is smaller.
+	 * 
+	 * @param trainingData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the training data
+	 * @param batchSize Size of the batches to be performed. 1 if batch training is not desired.
+	 * @throws IllegalArgumentException if batchSize is less than 1
+	 */
+	public void performEpoch(float[][] trainingData, int[] expectedOutputs, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		for (int start = 0; start < trainingData.length; start += batchSize) {
+			int end = Math.min(start + batchSize, trainingData.length);
+			
+			applyDeltaPackage(performBatchAndGetDelta(trainingData, expectedOutputs, start, end));
+		}
+	}
+	
+	/**
+	 * Perform an epoch on samples prepared as they are needed, in order, narrowing each one to floats
+	 * straight into the input rows of the workspace's batch buffers.
+	 * 
+	 * @param source The training data
+	 * @param batchSize Size of the batches to be performed (the last one may be smaller)
+	 * @throws IllegalArgumentException if batchSize is less than 1
+	 */
+	public void performEpoch(SampleSource source, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		try {
+			if (source.getSampleLength() != nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return;
+		}
+		
+		NetworkWorkspace ws = workspace;
+		int nInput = nPerLayer[0];
+		int numDataPoints = source.size();
+		double[] sample = new double[nInput];
+		int[] batchExpectedOutputs = new int[batchSize];
+		
+		ws.ensureBatchCapacity(batchSize);
+		
+		for (int from = 0; from < numDataPoints; from += batchSize) {
+			int size = Math.min(batchSize, numDataPoints - from);
+			
+			for (int s = 0; s < size; s++) {
+				source.prepareSample(from + s, sample, 0);
+				batchExpectedOutputs[s] = source.getExpectedOutput(from + s);
+				
+				for (int i = 0; i < nInput; i++) {
+					ws.floatZBatch[0][s * nInput + i] = (float) sample[i];
+				}
+			}
+			
+			propagateBatch(size, ws);
+			backPropagateBatch(batchExpectedOutputs, 0, size, ws);
+			applyDeltaPackage(gradientDescentBatch(size, ws));
+		}
+	}
+	
+	/**
+	 * Test the network on every core, through a ParallelEvaluator (see `predictBatch`).
+	 * 
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @return The test results, or null if the arrays differ in length or a sample is not the length of the
+	 * input layer
+	 */
+	public TestResultPackage performTest(float[][] testData, int[] expectedOutputs) {
+		if (testData.length != expectedOutputs.length) { return (TestResultPackage) null; }
+		
+		for (float[] sample : testData) {
+			if (sample.length != nPerLayer[0]) { return (TestResultPackage) null; }
+		}
+		
+		return getEvaluator().evaluate(this, new FloatArraySampleSource(testData, expectedOutputs));
+	}
+	
+	/**
+	 * `performTest` for double precision data, narrowed to floats batch by batch.
+	 * 
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @return The test results, or null if the arrays differ in length or a sample is not the length of the
+	 * input layer
+	 */
+	public TestResultPackage performTest(double[][] testData, int[] expectedOutputs) {
+		return getEvaluator().evaluate(this, testData, expectedOutputs);
+	}
+	
+	/**
+	 * `performTest` on samples prepared as they are needed.
+	 * 
+	 * @param source The test data
+	 * @return The test results, or null if the samples are not the length of the input layer
+	 */
+	public TestResultPackage performTest(SampleSource source) {
+		return getEvaluator().evaluate(this, source);
+	}
+	
+	private synchronized ParallelEvaluator getEvaluator() {
+		if (evaluator == null) {
+			evaluator = new ParallelEvaluator(); //Its threads are daemons, so it needs no shutting down
+		}
+		
+		return evaluator;
+	}
+	
+	/**
+	 * Predict a batch of inputs in single precision, in chunks of at most InferenceModel.MAX_BATCH_ROWS,
+	 * through a workspace borrowed from a pool for the length of the call. Several threads can predict at
+	 * once, but not while the network is being trained.
+	 */
+	public void predictBatch(double[][] inputs, int from, int count, double[] probabilitiesOut, int[] indicesOut) {
+		int nOutput = nPerLayer[numL - 1];
+		NetworkWorkspace ws = predictionWorkspaces.poll();
+		
+		if (ws == null) {
+			ws = new NetworkWorkspace(nPerLayer, false, Precision.Single);
+		}
+		
+		try {
+			if (indicesOut.length < count || (probabilitiesOut != null && probabilitiesOut.length < count * nOutput)) {
+				throw new InvalidInputLengthException();
+			}
+			
+			for (int done = 0; done < count; done += InferenceModel.MAX_BATCH_ROWS) {
+				int chunk = Math.min(InferenceModel.MAX_BATCH_ROWS, count - done);
+				
+				inputBatchData((float[][]) null, inputs, from + done, chunk, ws);
+				propagateBatch(chunk, ws);
+				
+				float[] outputA = ws.floatABatch[numL - 1];
+				
+				for (int s = 0; s < chunk; s++) {
+					int offset = s * nOutput;
+					int maxValueAtIndex = 0;
+					
+					for (int n = 1; n < nOutput; n++) {
+						if (outputA[offset + n] > outputA[offset + maxValueAtIndex]) {
+							maxValueAtIndex = n;
+						}
+					}
+					
+					indicesOut[done + s] = maxValueAtIndex;
+				}
+				
+				if (probabilitiesOut != null) {
+					for (int i = 0; i < chunk * nOutput; i++) {
+						probabilitiesOut[done * nOutput + i] = outputA[i];
+					}
+				}
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		} finally {
+			predictionWorkspaces.offer(ws);
+		}
+	}
+	
+	public int getNumInputs() {
+		return nPerLayer[0];
+	}
+	
+	public int getNumOutputs() {
+		return nPerLayer[numL - 1];
+	}
+	
+	/**
+	 * @return the network's own weights and biases (not a copy), for a single-precision save file
+	 */
+	public FloatNetworkWeightBiasPackage generateFloatNetworkWeightBiasPackage() {
+		return new FloatNetworkWeightBiasPackage(b, w);
+	}
+	
+	/**
+	 * Use the weights and biases of a single-precision package. The network adopts the package's arrays, as
+	 * MatrixNetwork does.
+	 * 
+	 * @param floatNetworkWeightBiasPackage
+	 */
+	public void applyFloatNetworkWeightBiasPackage(FloatNetworkWeightBiasPackage floatNetworkWeightBiasPackage) {
+		try {
+			float[][] packageW = floatNetworkWeightBiasPackage.getFlatConnectionWeights();
+			float[][] packageB = floatNetworkWeightBiasPackage.getNeuronBiases();
+			
+			if (packageW.length != numL || packageB.length != numL) {
+				throw new InvalidInputLengthException();
+			}
+			
+			for (int l = 1; l < numL; l++) {
+				if (packageW[l].length != w[l].length || packageB[l].length != b[l].length) {
+					throw new InvalidInputLengthException();
+				}
+			}
+			
+			for (int l = 1; l < numL; l++) {
+				w[l] = packageW[l];
+				b[l] = packageB[l];
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * @return a copy of the weights and biases widened to double precision, ready for a MatrixNetwork
+	 */
+	public NetworkWeightBiasPackage generateNetworkWeightBiasPackage() {
+		return generateFloatNetworkWeightBiasPackage().toNetworkWeightBiasPackage();
+	}
+	
+	/**
+	 * Load (double precision) weights and biases, narrowing them to floats.
+	 * 
+	 * @param networkWeightBiasPackage
+	 */
+	public void applyNetworkWeightBiasPackage(NetworkWeightBiasPackage networkWeightBiasPackage) {
+		applyFloatNetworkWeightBiasPackage(new FloatNetworkWeightBiasPackage(networkWeightBiasPackage));
+	}
+}
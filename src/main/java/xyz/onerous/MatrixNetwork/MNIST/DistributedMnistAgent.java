@@ -0,0 +1,113 @@
+package xyz.onerous.MatrixNetwork.MNIST;
+
+import java.io.IOException;
+
+import xyz.onerous.MatrixNetwork.component.TrainingMode;
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+import xyz.onerous.MatrixNetwork.distributed.ParameterServer;
+import xyz.onerous.MatrixNetwork.distributed.ParameterServerWorker;
+import xyz.onerous.MatrixNetwork.distributed.RingAllReduce;
+import xyz.onerous.MatrixNetwork.distributed.RingAllReduceTrainer;
+
+/**
+ * Trains MNIST across several JVMs: one runs the parameter server, the rest each train one shard of the
+ * training images against it. To try it on one machine, start the server and then every worker on
+ * localhost:
+ * 
+ * 	DistributedMnistAgent server 7070 2 0
+ * 	DistributedMnistAgent worker localhost 7070 0 2 100
+ * 	DistributedMnistAgent worker localhost 7070 1 2 100
+ * 
+ * The server's arguments are the port, the number of workers and the staleness bound (0 for synchronous);
+ * a worker's are the server's host and port, its worker number, the number of workers and the batch size.
+ * The server tests and saves the network once every worker is done.
+ * 
+ * Without a server, the workers can instead sum their deltas around a ring (see RingAllReduceTrainer).
+ * Every process trains its part of each batch of the whole training set; process r listens on
+ * basePort + r, and process 0 tests and saves the network at the end:
+ * 
+ * 	DistributedMnistAgent ring localhost 7100 0 2 100
+ * 	DistributedMnistAgent ring localhost 7100 1 2 100
+ */
+public class DistributedMnistAgent extends MnistAgent {
+	public void serve(int port, int numWorkers, int maxStaleness) throws IOException {
+		matrixNetwork.setTrainingMode(TrainingMode.Serial, 1); //The server only applies deltas
+		
+		ParameterServer server = new ParameterServer(matrixNetwork, port, numWorkers, maxStaleness);
+		
+		System.out.println("Parameter server waiting for " + numWorkers + " workers on port " + port);
+		
+		server.serve();
+		
+		System.out.println("Training done after " + server.getVersion() + " updates");
+	}
+	
+	/**
+	 * Train this worker's shard of the training images for one epoch through the parameter server.
+	 */
+	public void performWorkerEpoch(String host, int port, int workerId, int numWorkers, int batchSize) throws IOException {
+		processImageData();
+		
+		int shardSize = (imageData.length + numWorkers - 1) / numWorkers;
+		int from = Math.min(imageData.length, workerId * shardSize);
+		int to = Math.min(imageData.length, from + shardSize);
+		
+		ParameterServerWorker worker = new ParameterServerWorker(matrixNetwork, host, port, workerId);
+		
+		matrixNetwork.setTrainingMode(TrainingMode.Serial, 1); //Shuts the local trainer down before replacing it
+		matrixNetwork.setTrainer(worker);
+		
+		matrixNetwork.performEpoch(ArrayUtil.clipArray(imageData, from, to), ArrayUtil.clipArray(labels, from, to), batchSize);
+		
+		worker.shutdown();
+		matrixNetwork.setTrainer(null);
+	}
+	
+	/**
+	 * Train one epoch as process `rank` of a ring of `numWorkers` processes.
+	 */
+	public void performRingEpoch(String host, int basePort, int rank, int numWorkers, int batchSize) throws IOException {
+		processImageData();
+		matrixNetwork.setTrainingMode(TrainingMode.Serial, 1);
+		
+		RingAllReduceTrainer trainer = new RingAllReduceTrainer(matrixNetwork, new RingAllReduce(rank, numWorkers, host, basePort));
+		
+		matrixNetwork.setTrainer(trainer);
+		matrixNetwork.performEpoch(imageData, labels, batchSize);
+		
+		trainer.shutdown();
+		matrixNetwork.setTrainer(null);
+	}
+	
+	public static void main(String[] args) {
+		DistributedMnistAgent agent = new DistributedMnistAgent();
+		
+		agent.generateNetwork();
+		
+		try {
+			if (args.length >= 4 && args[0].equals("server")) {
+				agent.serve(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+				
+				agent.saveNetwork("Distributed");
+				
+				System.out.println(agent.performTest(0, 10000));
+			} else if (args.length >= 6 && args[0].equals("worker")) {
+				agent.performWorkerEpoch(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+			} else if (args.length >= 6 && args[0].equals("ring")) {
+				int rank = Integer.parseInt(args[3]);
+				
+				agent.performRingEpoch(args[1], Integer.parseInt(args[2]), rank, Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+				
+				if (rank == 0) {
+					agent.saveNetwork("Distributed");
+					
+					System.out.println(agent.performTest(0, 10000));
+				}
+			} else {
+				System.out.println("Usage: server <port> <workers> <staleness> | worker <host> <port> <id> <workers> <batchSize> | ring <host> <basePort> <rank> <workers> <batchSize>");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package xyz.onerous.MatrixNetwork.MNIST;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only view of an IDX file (the format of the MNIST files), memory-mapped rather than read in. The
+ * operating system pages the file in as samples are touched and nothing is copied onto the heap, so opening
+ * even the 47 MB training images costs next to nothing, and a sample is only decoded when it is asked for.
+ * 
+ * The header gives the element type and the rank; the first dimension counts the samples and the rest make
+ * up one sample (a 28 x 28 image, or a single label for a rank 1 file). Every element type IDX defines can
+ * be read, one element at a time (`get`) or a sample or run of samples at a time into a caller's buffer
+ * (`copySampleInto`, `copySamplesInto`). `getSampleBuffer` hands out a sample's bytes themselves.
+ * 
+ * Reads never move the position of the mapped buffer, so any number of threads can read one file at once.
+ * A single mapping holds at most 2 GB. Offsets into it are worked out in long arithmetic and sample and
+ * element indices are range-checked (IndexOutOfBoundsException), so a bad index can never wrap around into
+ * another sample's bytes.
+ */
+public class IdxFile {
+	public enum DataType {
+		UnsignedByte(0x08, 1),
+		SignedByte(0x09, 1),
+		Short(0x0B, 2),
+		Int(0x0C, 4),
+		Float(0x0D, 4),
+		Double(0x0E, 8);
+		
+		public final int code; //Third byte of the magic number
+		public final int size; //Bytes per element
+		
+		DataType(int code, int size) {
+			this.code = code;
+			this.size = size;
+		}
+		
+		static DataType fromCode(int code) throws IOException {
+			for (DataType dataType : values()) {
+				if (dataType.code == code) { return dataType; }
+			}
+			
+			throw new IOException(String.format("Unknown IDX element type 0x%02X", code));
+		}
+	}
+	
+	private final ByteBuffer buffer; //The whole file, big-endian
+	private final DataType dataType;
+	private final int[] dimensions;
+	private final int dataOffset; //Index of the first element
+	private final int sampleLength; //Elements per sample
+	private final int sampleBytes;
+	
+	/**
+	 * Memory-map an IDX file. The file is closed again straight away; the mapping stays valid without it.
+	 * 
+	 * @param path Path of the file
+	 * @return The mapped file
+	 * @throws IOException If the file cannot be mapped or its header is not IDX
+	 */
+	public static IdxFile open(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		
+		try {
+			FileChannel channel = file.getChannel();
+			
+			return new IdxFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * View IDX data that is already in memory, from the buffer's position to its limit.
+	 * 
+	 * @param data The IDX data
+	 * @throws IOException If the header is not IDX or the data is shorter than it says
+	 */
+	public IdxFile(ByteBuffer data) throws IOException {
+		this.buffer = data.slice().order(ByteOrder.BIG_ENDIAN);
+		
+		if (buffer.limit() < 4 || buffer.get(0) != 0 || buffer.get(1) != 0) {
+			throw new IOException("This is not an IDX file.");
+		}
+		
+		this.dataType = DataType.fromCode(buffer.get(2) & 0xFF);
+		
+		int rank = buffer.get(3) & 0xFF;
+		
+		this.dimensions = new int[rank];
+		this.dataOffset = 4 + 4 * rank;
+		
+		if (rank == 0 || buffer.limit() < dataOffset) {
+			throw new IOException("The IDX header is incomplete.");
+		}
+		
+		long length = 1;
+		
+		for (int d = 0; d < rank; d++) {
+			dimensions[d] = buffer.getInt(4 + 4 * d);
+			
+			if (dimensions[d] < 0) {
+				throw new IOException("The IDX header gives a negative dimension.");
+			}
+			
+			if (d > 0) { length *= dimensions[d]; }
+			
+			if (length * dataType.size > Integer.MAX_VALUE) {
+				throw new IOException("An IDX sample larger than 2 GB cannot be mapped.");
+			}
+		}
+		
+		this.sampleLength = (int)length;
+		this.sampleBytes = sampleLength * dataType.size;
+		
+		if ((long)dataOffset + (long)dimensions[0] * sampleBytes > buffer.limit()) {
+			throw new IOException("The IDX file is shorter than its header says.");
+		}
+	}
+	
+	/**
+	 * @param sample Index of the sample
+	 * @param index Index of the element within the sample (row-major over the dimensions after the first)
+	 * @return The element, whatever its type, as a double
+	 */
+	public double get(int sample, int index) {
+		return read(elementPosition(sample, index));
+	}
+	
+	/**
+	 * @param sample Index of the sample
+	 * @param index Index of the element within the sample
+	 * @return The element as an int (unsigned for UnsignedByte, truncated for Float and Double)
+	 */
+	public int getInt(int sample, int index) {
+		int position = elementPosition(sample, index);
+		
+		switch (dataType) {
+		case UnsignedByte: return buffer.get(position) & 0xFF;
+		case SignedByte:   return buffer.get(position);
+		case Short:        return buffer.getShort(position);
+		case Int:          return buffer.getInt(position);
+		default:           return (int)read(position);
+		}
+	}
+	
+	/**
+	 * Decode one sample into a caller's buffer.
+	 * 
+	 * @param sample Index of the sample
+	 * @param out Receives the sample's elements
+	 * @param outOffset Index in out of the first element
+	 */
+	public void copySampleInto(int sample, double[] out, int outOffset) {
+		copySamplesInto(sample, 1, out, outOffset);
+	}
+	
+	/**
+	 * Decode a run of consecutive samples into a caller's buffer, one after another.
+	 * 
+	 * @param fromSample Index of the first sample
+	 * @param count Number of samples
+	 * @param out Receives the elements, sample by sample
+	 * @param outOffset Index in out of the first element
+	 */
+	public void copySamplesInto(int fromSample, int count, double[] out, int outOffset) {
+		int position = samplesPosition(fromSample, count);
+		int length = count * sampleLength; //No more than the file holds, so no overflow
+		
+		if (dataType == DataType.UnsignedByte) {
+			for (int i = 0; i < length; i++) {
+				out[outOffset + i] = buffer.get(position + i) & 0xFF;
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				out[outOffset + i] = read(position + i * dataType.size);
+			}
+		}
+	}
+	
+	/**
+	 * Copy the raw bytes of a run of consecutive samples into a caller's buffer, with no decoding (for
+	 * UnsignedByte data, the pixel values themselves).
+	 * 
+	 * @param fromSample Index of the first sample
+	 * @param count Number of samples
+	 * @param out Receives count * getSampleBytes() bytes
+	 * @param outOffset Index in out of the first byte
+	 */
+	public void copySamplesInto(int fromSample, int count, byte[] out, int outOffset) {
+		ByteBuffer view = buffer.duplicate(); //Its own position, so other threads' reads are undisturbed
+		
+		view.position(samplesPosition(fromSample, count));
+		view.get(out, outOffset, count * sampleBytes);
+	}
+	
+	/**
+	 * @param sample Index of the sample
+	 * @return A read-only, big-endian view of the sample's bytes in the mapping (no copy)
+	 */
+	public ByteBuffer getSampleBuffer(int sample) {
+		ByteBuffer view = buffer.asReadOnlyBuffer();
+		int position = samplesPosition(sample, 1);
+		
+		view.position(position);
+		view.limit(position + sampleBytes);
+		
+		return view.slice().order(ByteOrder.BIG_ENDIAN);
+	}
+	
+	/**
+	 * @return Every element of the file as ints, in order (for a label file, the labels)
+	 */
+	public int[] readAllInts() {
+		int[] values = new int[dimensions[0] * sampleLength]; //No more than the file holds, so no overflow
+		
+		for (int sample = 0, i = 0; sample < dimensions[0]; sample++) {
+			for (int index = 0; index < sampleLength; index++) {
+				values[i++] = getInt(sample, index);
+			}
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * @return The position of an element in the buffer
+	 * @throws IndexOutOfBoundsException If there is no such sample or element
+	 */
+	private int elementPosition(int sample, int index) {
+		if (sample < 0 || sample >= dimensions[0] || index < 0 || index >= sampleLength) {
+			throw new IndexOutOfBoundsException("Element " + index + " of sample " + sample + " of " + dimensions[0] + " samples of " + sampleLength);
+		}
+		
+		return (int)(dataOffset + (long)sample * sampleBytes + (long)index * dataType.size); //Checked against the buffer's length when opened
+	}
+	
+	/**
+	 * @return The position of the first of `count` samples in the buffer
+	 * @throws IndexOutOfBoundsException If the samples run past the end of the file
+	 */
+	private int samplesPosition(int fromSample, int count) {
+		if (fromSample < 0 || count < 0 || (long)fromSample + count > dimensions[0]) {
+			throw new IndexOutOfBoundsException("Samples " + fromSample + " to " + ((long)fromSample + count) + " of " + dimensions[0]);
+		}
+		
+		return (int)(dataOffset + (long)fromSample * sampleBytes);
+	}
+	
+	private double read(int position) {
+		switch (dataType) {
+		case UnsignedByte: return buffer.get(position) & 0xFF;
+		case SignedByte:   return buffer.get(position);
+		case Short:        return buffer.getShort(position);
+		case Int:          return buffer.getInt(position);
+		case Float:        return buffer.getFloat(position);
+		case Double:       return buffer.getDouble(position);
+		default:           return 0.0;
+		}
+	}
+	
+	public DataType getDataType() {
+		return dataType;
+	}
+	
+	public int getRank() {
+		return dimensions.length;
+	}
+	
+	public int[] getDimensions() {
+		return dimensions.clone();
+	}
+	
+	public int getNumSamples() {
+		return dimensions[0];
+	}
+	
+	/**
+	 * @return Elements per sample (the product of every dimension after the first)
+	 */
+	public int getSampleLength() {
+		return sampleLength;
+	}
+	
+	public int getSampleBytes() {
+		return sampleBytes;
+	}
+}
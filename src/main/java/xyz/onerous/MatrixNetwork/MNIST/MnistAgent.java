@@ -1,25 +1,41 @@
 package xyz.onerous.MatrixNetwork.MNIST;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.concurrent.Future;
 
+import xyz.onerous.MatrixNetwork.FloatMatrixNetwork;
 import xyz.onerous.MatrixNetwork.MatrixNetwork;
-import xyz.onerous.MatrixNetwork.MNIST.MnistReader;
+import xyz.onerous.MatrixNetwork.NeuralNetwork;
 import xyz.onerous.MatrixNetwork.component.ActivationType;
 import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.TrainingMode;
+import xyz.onerous.MatrixNetwork.component.datapackage.RobustnessResultPackage;
 import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
 import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
 import xyz.onerous.MatrixNetwork.component.util.FileUtil;
+import xyz.onerous.MatrixNetwork.inference.InferenceModel;
+import xyz.onerous.MatrixNetwork.inference.InferenceServer;
+import xyz.onerous.MatrixNetwork.inference.ParallelEvaluator;
+import xyz.onerous.MatrixNetwork.inference.RobustnessEvaluator;
+import xyz.onerous.MatrixNetwork.pipeline.BatchPipeline;
+import xyz.onerous.MatrixNetwork.pipeline.PackedByteDataset;
+import xyz.onerous.MatrixNetwork.pipeline.SampleRange;
+import xyz.onerous.MatrixNetwork.sweep.NetworkConfiguration;
+import xyz.onerous.MatrixNetwork.sweep.SharedDataset;
 
 public class MnistAgent {
-	private List<int[][]> images;
+	protected PackedByteDataset trainingSet; //The images as bytes, standardized as they are used
 	protected int[] labels;
-	private List<int[][]> testImages;
+	protected PackedByteDataset testSet;
 	protected int[] testLabels;
 	
-	protected double[][] imageData;
+	protected double[][] imageData; //Only built for the agents whose paths need every image as an array
 	protected double[][] testImageData;
 	
 	public MatrixNetwork matrixNetwork;
+	public FloatMatrixNetwork floatMatrixNetwork; //Used instead of matrixNetwork when usingSinglePrecision
+	
+	protected ParallelEvaluator evaluator = new ParallelEvaluator();
 	
 	protected static final String IMAGES_FILE_PATH = "./src/main/resources/train-images.idx3-ubyte";
 	protected static final String LABELS_FILE_PATH = "./src/main/resources/train-labels.idx1-ubyte";
@@ -33,63 +49,239 @@ public class MnistAgent {
 	protected final boolean usingSoftmax = true;
 	protected final ActivationType activationType = ActivationType.Sigmoid;
 	protected final LossType lossType = LossType.CrossEntropy;
+	protected final boolean usingSinglePrecision = false;
+	protected final TrainingMode trainingMode = TrainingMode.Synchronous;
+	protected final int numTrainingThreads = Runtime.getRuntime().availableProcessors();
+	protected final boolean usingPipeline = true; //Prepare training batches in the background instead of all up front
+	protected final int numPipelineThreads = 2;
+	protected final int numPipelineBuffers = 4;
+	
+	protected BatchPipeline pipeline;
 	
 	public MnistAgent() {
-		this.images = MnistReader.getImages(IMAGES_FILE_PATH);
-		this.labels = MnistReader.getLabels(LABELS_FILE_PATH);
-		this.testImages = MnistReader.getImages(TEST_IMAGES_FILE_PATH);
-		this.testLabels = MnistReader.getLabels(TEST_LABELS_FILE_PATH);
+		try {
+			this.trainingSet = PackedByteDataset.fromIdx(IMAGES_FILE_PATH, LABELS_FILE_PATH);
+			this.testSet = PackedByteDataset.fromIdx(TEST_IMAGES_FILE_PATH, TEST_LABELS_FILE_PATH);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
 		
-		processImageData();
+		this.labels = trainingSet.getLabels();
+		this.testLabels = testSet.getLabels();
 		
-		if (images.size() == 0 || labels.length == 0 || lHidden != nHidden.length) { return; }
+		if (trainingSet.size() == 0 || labels.length == 0 || lHidden != nHidden.length) { return; }
 	}
 	
 	public void generateNetwork() {
-		int nInput = imageData[0].length;
+		int nInput = getNumInputs();
 		int nOutput = 10;
 		
-		this.matrixNetwork = new MatrixNetwork(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
+		if (usingSinglePrecision) {
+			this.floatMatrixNetwork = new FloatMatrixNetwork(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
+		} else {
+			this.matrixNetwork = new MatrixNetwork(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
+			
+			matrixNetwork.setTrainingMode(trainingMode, numTrainingThreads);
+		}
+	}
+	
+	/**
+	 * @return Number of pixels per image
+	 */
+	protected int getNumInputs() {
+		return trainingSet.getSampleLength();
 	}
 	
+	/**
+	 * Standardize every training image up front, for the paths that need them all as arrays. Does nothing
+	 * if that has already been done.
+	 */
 	protected void processImageData() {
-		imageData = new double[images.size()][];
-		testImageData = new double[testImages.size()][];
+		if (imageData != null) { return; }
 		
-		for (int i = 0; i < imageData.length; i++) {
-			imageData[i] = ArrayUtil.standardize( ArrayUtil.flattenArray(images.get(i)) );
+		imageData = trainingSet.toStandardizedArrays(0, trainingSet.size());
+	}
+	
+	/**
+	 * `processImageData` for the test images.
+	 */
+	protected void processTestImageData() {
+		if (testImageData != null) { return; }
+		
+		testImageData = testSet.toStandardizedArrays(0, testSet.size());
+	}
+	
+	public void performEpoch(int batchSize) {
+		long epochStart = System.nanoTime();
+		
+		if (usingSinglePrecision) {
+			floatMatrixNetwork.performEpoch(trainingSet, batchSize);
+		} else if (usingPipeline) {
+			if (pipeline == null || pipeline.getBatchSize() != batchSize) {
+				if (pipeline != null) { pipeline.shutdown(); }
+				
+				pipeline = new BatchPipeline(trainingSet, batchSize, numPipelineBuffers, numPipelineThreads, true, 0);
+			}
+			
+			long waitedBefore = pipeline.getWaitNanos();
+			
+			matrixNetwork.performEpoch(pipeline);
+			
+			System.out.println("Waited " + String.format("%.3f", (pipeline.getWaitNanos() - waitedBefore) / 1e9) + " s for batches to be prepared");
+		} else {
+			matrixNetwork.performEpoch(trainingSet, batchSize);
 		}
 		
-		for (int i = 0; i < testImageData.length; i++) {
-			testImageData[i] = ArrayUtil.standardize( ArrayUtil.flattenArray(testImages.get(i)) );
+		reportThroughput(usingSinglePrecision ? "Single precision" : trainingMode.toString(), trainingSet.size(), System.nanoTime() - epochStart);
+	}
+	
+	/**
+	 * Train a fresh network for one epoch in every training mode and print the throughput and test accuracy
+	 * of each, so the modes can be compared on the same data.
+	 * 
+	 * @param batchSize Size of the batches to be performed
+	 * @param numThreads Number of threads for the multi-threaded modes
+	 */
+	public void compareTrainingModes(int batchSize, int numThreads) {
+		for (TrainingMode mode : TrainingMode.values()) {
+			MatrixNetwork network = new MatrixNetwork(getNumInputs(), 10, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
+			
+			network.setTrainingMode(mode, numThreads);
+			
+			long epochStart = System.nanoTime();
+			network.performEpoch(trainingSet, batchSize);
+			reportThroughput(mode.toString(), trainingSet.size(), System.nanoTime() - epochStart);
+			
+			System.out.println(mode + " accuracy: " + 100.0 * evaluator.evaluate(network, testSet).percentageCorrect + "%");
+			
+			network.setTrainingMode(TrainingMode.Serial, 1); //Shuts the trainer's threads down
 		}
 	}
 	
-	public void performEpoch(int batchSize) {		
-		matrixNetwork.performEpoch(imageData, labels, batchSize);
+	private static void reportThroughput(String label, int numSamples, long nanoseconds) {
+		double seconds = nanoseconds / 1e9;
+		
+		System.out.println(label + " epoch: " + numSamples + " samples in " + String.format("%.1f", seconds) + " s (" + Math.round(numSamples / seconds) + " samples/s)");
 	}
 	
 	public TestResultPackage performTest(int startIndex, int endIndex) {
-		if (startIndex < 0 || endIndex > testImages.size() || startIndex >= endIndex) { return (TestResultPackage) null; }
+		if (startIndex < 0 || endIndex > testSet.size() || startIndex >= endIndex) { return (TestResultPackage) null; }
+		
+		TestResultPackage testResults;
 		
-		TestResultPackage testResults = matrixNetwork.performTest(ArrayUtil.clipArray(testImageData, startIndex, endIndex), ArrayUtil.clipArray(testLabels, startIndex, endIndex));
+		if (usingSinglePrecision) {
+			testResults = evaluator.evaluate(floatMatrixNetwork, testSet.toStandardizedArrays(startIndex, endIndex), ArrayUtil.clipArray(testLabels, startIndex, endIndex));
+		} else {
+			testResults = evaluator.evaluate(matrixNetwork, testSet.toStandardizedArrays(startIndex, endIndex), ArrayUtil.clipArray(testLabels, startIndex, endIndex));
+		}
 		
 		return testResults;
 	}
 	
+	/**
+	 * Test how the network holds up against adversarial perturbations of the test images (see
+	 * RobustnessEvaluator).
+	 * 
+	 * @param epsilons The perturbation budgets to test
+	 * @param numSteps Gradient steps per perturbation: 1 for FGSM, more for PGD
+	 * @return The accuracy per budget, or null for a single-precision network
+	 */
+	public RobustnessResultPackage performRobustnessTest(double[] epsilons, int numSteps) {
+		if (usingSinglePrecision) { return (RobustnessResultPackage) null; }
+		
+		RobustnessEvaluator robustnessEvaluator = new RobustnessEvaluator();
+		
+		RobustnessResultPackage robustnessResults = robustnessEvaluator.evaluate(matrixNetwork, testSet, epsilons, numSteps);
+		
+		robustnessEvaluator.shutdown();
+		
+		return robustnessResults;
+	}
+	
+	/**
+	 * Start testing a snapshot of the network in the background, so training can continue meanwhile.
+	 * 
+	 * @param startIndex First test image (inclusive)
+	 * @param endIndex Last test image (exclusive)
+	 * @return The pending test results, or null if the range is invalid
+	 */
+	public Future<TestResultPackage> performTestAsync(int startIndex, int endIndex) {
+		if (usingSinglePrecision || startIndex < 0 || endIndex > testSet.size() || startIndex >= endIndex) { return (Future<TestResultPackage>) null; }
+		
+		return evaluator.evaluateAsync(matrixNetwork, testSet.toStandardizedArrays(startIndex, endIndex), ArrayUtil.clipArray(testLabels, startIndex, endIndex));
+	}
+	
+	/**
+	 * @return The hyperparameters this agent's network is built with
+	 */
+	public NetworkConfiguration getConfiguration() {
+		return new NetworkConfiguration(nHidden, learningRate, usingSoftmax, activationType, lossType, 1);
+	}
+	
+	/**
+	 * Share the training images with a sweep, holding the last `numValidation` of them out for ranking the
+	 * configurations (so the test images stay unseen). The images stay packed; each network standardizes
+	 * the ones it trains on as it goes.
+	 * 
+	 * @param numValidation Number of training images to validate on instead of training
+	 * @return The dataset
+	 */
+	public SharedDataset createSweepDataset(int numValidation) {
+		int numTraining = trainingSet.size() - numValidation;
+		
+		return new SharedDataset(new SampleRange(trainingSet, 0, numTraining), new SampleRange(trainingSet, numTraining, trainingSet.size()), 10);
+	}
+	
+	/**
+	 * Serve predictions from a snapshot of the network over HTTP (see InferenceServer).
+	 * 
+	 * @param port Port to listen on
+	 * @return The running server, or null for a single-precision network
+	 */
+	public InferenceServer startInferenceServer(int port) throws IOException {
+		if (usingSinglePrecision) { return (InferenceServer) null; }
+		
+		InferenceServer server = new InferenceServer(new InferenceModel(matrixNetwork), 64, 2000);
+		
+		server.startHttp(port);
+		
+		return server;
+	}
+	
+	/**
+	 * @return The network in use, whichever its precision
+	 */
+	public NeuralNetwork getNetwork() {
+		return usingSinglePrecision ? floatMatrixNetwork : matrixNetwork;
+	}
+	
+	/**
+	 * Save the network in its own precision. Either kind of save file loads into either kind of network.
+	 * 
+	 * @param identifier
+	 */
 	public void saveNetwork(String identifier) {
-		FileUtil.writeNetworkWeightBiasPackage(matrixNetwork.generateNetworkWeightBiasPackage(), "network" + identifier);
+		if (usingSinglePrecision) {
+			FileUtil.writeFloatNetworkWeightBiasPackage(floatMatrixNetwork.generateFloatNetworkWeightBiasPackage(), "network" + identifier);
+		} else {
+			FileUtil.writeNetworkWeightBiasPackage(matrixNetwork.generateNetworkWeightBiasPackage(), "network" + identifier);
+		}
 	}
 	
 	public void loadNetwork(String identifier) {
-		matrixNetwork.applyNetworkWeightBiasPackage(FileUtil.loadNetworkWeightBiasPackage("network" + identifier));
+		if (usingSinglePrecision) {
+			floatMatrixNetwork.applyFloatNetworkWeightBiasPackage(FileUtil.loadFloatNetworkWeightBiasPackage("network" + identifier));
+		} else {
+			matrixNetwork.applyNetworkWeightBiasPackage(FileUtil.loadNetworkWeightBiasPackage("network" + identifier));
+		}
 	}
 	
 	public static void main(String[] args) {
 		MnistAgent mnistAgent = new MnistAgent();
 		
 		mnistAgent.generateNetwork();
-
+		
 		mnistAgent.performEpoch(2);
 		
 		mnistAgent.saveNetwork("2");
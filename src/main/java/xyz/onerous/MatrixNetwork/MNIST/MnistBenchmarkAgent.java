@@ -0,0 +1,66 @@
+package xyz.onerous.MatrixNetwork.MNIST;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.NeuralNetwork;
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+import xyz.onerous.MatrixNetwork.inference.ParallelGemv;
+import xyz.onerous.MatrixNetwork.trainer.ParallelTrainer;
+
+/**
+ * Times the parallel trainer against the single-threaded path on MNIST, and split single-sample layers
+ * against serial ones. Runs apart from MnistAgent's training: the timed batches train a throwaway copy of
+ * the network, and only the images they use are standardized.
+ */
+public class MnistBenchmarkAgent extends MnistAgent {
+	/**
+	 * Time a few batches on the single-threaded path and on the parallel trainer and print the speedup. Both
+	 * runs train a copy of the agent's network (or a fresh network if none was generated), which is thrown
+	 * away afterwards.
+	 * 
+	 * @param batchSize Size of the batches to time
+	 * @param numBatches Number of batches to time for each path
+	 * @return Serial time divided by parallel time
+	 */
+	public double reportTrainingSpeedup(int batchSize, int numBatches) {
+		MatrixNetwork benchmarkNetwork = new MatrixNetwork(getNumInputs(), 10, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
+		NeuralNetwork network = getNetwork();
+		
+		if (network != null) {
+			benchmarkNetwork.applyNetworkWeightBiasPackage(network.generateNetworkWeightBiasPackage().copy()); //Not the network's own arrays, which it would then share
+		}
+		
+		int numSamples = Math.min(trainingSet.size(), batchSize * numBatches);
+		ParallelTrainer trainer = new ParallelTrainer(benchmarkNetwork, numTrainingThreads);
+		
+		double speedup = trainer.measureSpeedup(trainingSet.toStandardizedArrays(0, numSamples), ArrayUtil.clipArray(labels, 0, numSamples), batchSize, numBatches);
+		
+		trainer.shutdown();
+		
+		return speedup;
+	}
+	
+	/**
+	 * Time a single prediction's layers, as wide as the input layer, serially and split by a ParallelGemv
+	 * across every core, and print where splitting starts to pay off. The weights are random; only the
+	 * layer shapes matter.
+	 * 
+	 * @param repetitions Times each layer is computed per measurement
+	 * @return The smallest output neuron count at which splitting was faster, or -1 if it never was
+	 */
+	public int reportGemvCrossover(int repetitions) {
+		ParallelGemv gemv = new ParallelGemv(numTrainingThreads);
+		
+		int crossover = gemv.measureCrossover(getNumInputs(), new int[] { 16, 32, 64, 128, 250, 500, 1000, 2000 }, repetitions);
+		
+		gemv.shutdown();
+		
+		return crossover;
+	}
+	
+	public static void main(String[] args) {
+		MnistBenchmarkAgent agent = new MnistBenchmarkAgent();
+		
+		agent.reportTrainingSpeedup(1000, 3);
+		agent.reportGemvCrossover(1000);
+	}
+}
@@ -0,0 +1,37 @@
+package xyz.onerous.MatrixNetwork.MNIST;
+
+import java.util.List;
+
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.sweep.HyperparameterSweep;
+import xyz.onerous.MatrixNetwork.sweep.NetworkConfiguration;
+
+/**
+ * Searches for good MNIST hyperparameters in one JVM: the images are loaded and standardized once, and
+ * every configuration trains on them concurrently (see HyperparameterSweep).
+ */
+public class MnistSweepAgent extends MnistAgent {
+	protected final int numValidationImages = 10000;
+	protected final int numSweepThreads = Runtime.getRuntime().availableProcessors();
+	
+	public static void main(String[] args) {
+		MnistSweepAgent agent = new MnistSweepAgent();
+		
+		List<NetworkConfiguration> configurations = NetworkConfiguration.grid(
+				new int[][] { agent.nHidden, { 500, 500 }, { 300 } },
+				new double[] { 0.0003, 0.001, 0.003 },
+				new ActivationType[] { ActivationType.Sigmoid, ActivationType.ReLU },
+				new LossType[] { LossType.CrossEntropy },
+				new int[] { 10, 100 },
+				agent.usingSoftmax);
+		
+		HyperparameterSweep sweep = new HyperparameterSweep(agent.createSweepDataset(agent.numValidationImages), agent.numSweepThreads);
+		
+		sweep.run(configurations, 1, 3, 9);
+		
+		System.out.println(sweep.leaderboardToString());
+		
+		sweep.shutdown();
+	}
+}
@@ -0,0 +1,156 @@
+package xyz.onerous.MatrixNetwork.MNIST.deepvisualization;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.DeepVisualPackage;
+import xyz.onerous.MatrixNetwork.component.exception.ArrayNotSquareException;
+
+/**
+ * Generates the deep visuals of every output neuron of a trained DeepVisualMatrixNetwork at once, several
+ * per neuron from different starting points, on a fixed number of threads.
+ * 
+ * Each visual is one task: gradient ascent on the input layer of a workspace of its own thread, so tasks
+ * never touch the network's buffers or each other's, and the input gradient buffers are reused from step
+ * to step and task to task. Progress is printed every `logInterval` steps instead of every step.
+ * 
+ * Restart 0 of every neuron starts from the network's fixed starting input (generateRandomInputData); the
+ * others start from random inputs seeded by neuron and restart, so a run gives the same visuals however
+ * the tasks are scheduled.
+ */
+public class DeepVisualGenerator {
+	private final DeepVisualMatrixNetwork network;
+	private final ExecutorService pool;
+	private final int numThreads;
+	
+	private int logInterval = 2500; //Steps between progress lines of one visual (0 for none)
+	
+	private final ThreadLocal<NetworkWorkspace> workspaces = new ThreadLocal<NetworkWorkspace>() {
+		@Override protected NetworkWorkspace initialValue() {
+			return new NetworkWorkspace(network.getNPerLayer(), false);
+		}
+	};
+	
+	/**
+	 * @param network The trained network to generate visuals from
+	 * @param numThreads Most visuals generated at once
+	 */
+	public DeepVisualGenerator(DeepVisualMatrixNetwork network, int numThreads) {
+		this.network = network;
+		this.numThreads = Math.max(1, numThreads);
+		this.pool = Executors.newFixedThreadPool(this.numThreads);
+	}
+	
+	/**
+	 * Generate numRestarts visuals for every output neuron.
+	 * 
+	 * @param numberOfTrains Gradient ascent steps per visual
+	 * @param numRestarts Visuals per output neuron
+	 * @param seed Seed of the random starting points
+	 * @return The visuals, indexed [output neuron][restart]
+	 */
+	public DeepVisualPackage[][] generate(int numberOfTrains, int numRestarts, long seed) {
+		int nOutput = network.getNPerLayer()[network.getNumL() - 1];
+		numRestarts = Math.max(1, numRestarts);
+		
+		long start = System.nanoTime();
+		List<Future<DeepVisualPackage>> futures = new ArrayList<Future<DeepVisualPackage>>();
+		
+		for (int o = 0; o < nOutput; o++) {
+			for (int r = 0; r < numRestarts; r++) {
+				futures.add(pool.submit(createTask(o, r, numberOfTrains, seed + (long)o * numRestarts + r)));
+			}
+		}
+		
+		DeepVisualPackage[][] visuals = new DeepVisualPackage[nOutput][numRestarts];
+		
+		try {
+			for (Future<DeepVisualPackage> future : futures) {
+				DeepVisualPackage visual = future.get();
+				
+				visuals[visual.outputIndex][visual.restart] = visual;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println("Generated " + futures.size() + " visuals (" + numberOfTrains + " steps each) in " + String.format("%.2f", seconds) + " s on " + numThreads + " threads");
+		
+		return visuals;
+	}
+	
+	/**
+	 * Generate numRestarts visuals for every output neuron and keep the one that drove its neuron furthest.
+	 * 
+	 * @param numberOfTrains Gradient ascent steps per visual
+	 * @param numRestarts Visuals tried per output neuron
+	 * @param seed Seed of the random starting points
+	 * @return The lowest-error visual of every output neuron
+	 */
+	public DeepVisualPackage[] generateBest(int numberOfTrains, int numRestarts, long seed) {
+		DeepVisualPackage[][] visuals = generate(numberOfTrains, numRestarts, seed);
+		DeepVisualPackage[] best = new DeepVisualPackage[visuals.length];
+		
+		for (int o = 0; o < visuals.length; o++) {
+			for (int r = 0; r < visuals[o].length; r++) {
+				if (visuals[o][r] != null && (best[o] == null || visuals[o][r].outputError < best[o].outputError)) {
+					best[o] = visuals[o][r];
+				}
+			}
+		}
+		
+		return best;
+	}
+	
+	private Callable<DeepVisualPackage> createTask(final int outputIndex, final int restart, final int numberOfTrains, final long taskSeed) {
+		return new Callable<DeepVisualPackage>() {
+			public DeepVisualPackage call() {
+				NetworkWorkspace ws = workspaces.get();
+				
+				if (restart == 0) {
+					System.arraycopy(network.generateRandomInputData(), 0, ws.z[0], 0, ws.z[0].length);
+				} else {
+					network.fillRandomInputData(ws.z[0], new Random(taskSeed));
+				}
+				
+				double outputError = network.ascendInput(outputIndex, numberOfTrains, ws, logInterval, "Visual " + outputIndex + " (restart " + restart + ") ");
+				
+				BufferedImage image;
+				
+				try {
+					image = network.generateImageFromInputNeurons(ws.z[0]);
+				} catch (ArrayNotSquareException e) {
+					e.printStackTrace();
+					image = (BufferedImage) null;
+				}
+				
+				return new DeepVisualPackage(outputIndex, restart, outputError, image);
+			}
+		};
+	}
+	
+	public void setLogInterval(int logInterval) {
+		this.logInterval = Math.max(0, logInterval);
+	}
+	
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
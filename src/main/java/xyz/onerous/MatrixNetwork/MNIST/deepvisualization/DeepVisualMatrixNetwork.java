@@ -7,130 +7,175 @@ import java.util.Random;
 import xyz.onerous.MatrixNetwork.MatrixNetwork;
 import xyz.onerous.MatrixNetwork.component.ActivationType;
 import xyz.onerous.MatrixNetwork.component.LossType;
-import xyz.onerous.MatrixNetwork.component.datapackage.NeuronInputDeltaPackage;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
 import xyz.onerous.MatrixNetwork.component.exception.ArrayNotSquareException;
-import xyz.onerous.MatrixNetwork.component.util.MatrixUtil;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
 
 public class DeepVisualMatrixNetwork extends MatrixNetwork {
 	private final double NEURON_INPUT_DELTA_RATE = 1.0; //Rate at which the input neuron Z changes
+	private final int LOG_INTERVAL = 1000; //Steps between output error prints
 	
 	public DeepVisualMatrixNetwork(int nInput, int nOutput, int[] nHidden, int lHidden, double learningRate, boolean usingSoftmax, ActivationType activationType, LossType lossType) {
 		super(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
 	}
 
 	public BufferedImage generateImageFromInputNeurons() throws ArrayNotSquareException {
+		return generateImageFromInputNeurons(z[0]);
+	}
+	
+	/**
+	 * @param inputZ Input layer weighted inputs, such as those of a workspace a visual was generated in
+	 * @return The input layer as a square grayscale image
+	 * @throws ArrayNotSquareException
+	 */
+	public BufferedImage generateImageFromInputNeurons(double[] inputZ) throws ArrayNotSquareException {
 		//Check if the input vector can be represented as a square raster
-		if (Math.sqrt(z[0].length) - (int)Math.sqrt(z[0].length) != 0) {
+		if (Math.sqrt(inputZ.length) - (int)Math.sqrt(inputZ.length) != 0) {
 			throw new ArrayNotSquareException();
 		}
 		
-		int imageWidth = (int)Math.sqrt(z[0].length);
+		int imageWidth = (int)Math.sqrt(inputZ.length);
 		
 		BufferedImage outputImage = new BufferedImage(imageWidth, imageWidth, BufferedImage.TYPE_BYTE_GRAY);
 		WritableRaster raster = outputImage.getRaster();
 		
 		//We need to take the neuron array from [-1,1] -> [0, 255]
-		double[] dataArray = MatrixUtil.scalarMultiply(  MatrixUtil.scalarAdd(z[0], 1)  , 127.5);
+		double[] dataArray = new double[inputZ.length];
+		
+		for (int i = 0; i < inputZ.length; i++) {
+			dataArray[i] = (inputZ[i] + 1.0) * 127.5;
+		}
 		
 		raster.setSamples(0, 0, imageWidth, imageWidth, 0, dataArray);
         
         return outputImage;
 	}
 	
-	public double[] generateRandomInputData() {
-		Random random = new Random();
+	/**
+	 * Render one sample's input gradients (see computeInputGradients) as a saliency map: each pixel is the
+	 * gradient's magnitude, scaled so the largest in the sample is white.
+	 * 
+	 * @param gradients Input gradients, one row of number of input neurons per sample
+	 * @param offset Index in gradients of the sample's first gradient
+	 * @return The saliency map as a square grayscale image
+	 * @throws ArrayNotSquareException
+	 */
+	public BufferedImage generateImageFromInputGradients(double[] gradients, int offset) throws ArrayNotSquareException {
+		int nInput = nPerLayer[0];
 		
-		double[] data = new double[z[0].length];
+		if (Math.sqrt(nInput) - (int)Math.sqrt(nInput) != 0) {
+			throw new ArrayNotSquareException();
+		}
 		
-		for (int i = 0; i < data.length; i++) {
-			data[i] = -0.5;//random.nextDouble() * 2.0 - 1.0;
+		int imageWidth = (int)Math.sqrt(nInput);
+		
+		BufferedImage outputImage = new BufferedImage(imageWidth, imageWidth, BufferedImage.TYPE_BYTE_GRAY);
+		WritableRaster raster = outputImage.getRaster();
+		
+		double maxMagnitude = 0.0;
+		
+		for (int i = 0; i < nInput; i++) {
+			maxMagnitude = Math.max(maxMagnitude, Math.abs(gradients[offset + i]));
 		}
 		
-		return data;
-	}
-
-	private NeuronInputDeltaPackage gradientAscent(int expectedIndex) { //Batch size needed to limit weight/bias changing over an entire batch
-		propagate();
+		//Take the magnitudes from [0, max] -> [0, 255]
+		double[] dataArray = new double[nInput];
+		double scale = (maxMagnitude > 0.0) ? 255.0 / maxMagnitude : 0.0;
+		
+		for (int i = 0; i < nInput; i++) {
+			dataArray[i] = Math.abs(gradients[offset + i]) * scale;
+		}
 		
-		backPropagate(expectedIndex);
+		raster.setSamples(0, 0, imageWidth, imageWidth, 0, dataArray);
 		
-		double[][] deltaZ = a.clone();
+		return outputImage;
+	}
+	
+	public double[] generateRandomInputData() {
+		Random random = new Random();
 		
-		deltaZ[0] = MatrixUtil.scalarMultiply(δ[0], Math.pow(this.getOutputError(expectedIndex), -1) * -NEURON_INPUT_DELTA_RATE);
+		double[] data = new double[z[0].length];
 		
-		/*
-		for (int l = numL - 1; l > 0; l--) {
-			deltaW[l] = MatrixUtil.scalarMultiply(MatrixUtil.multiplyWithSecondTranspose(δ[l], a[l-1]), -learningRate);
-			deltaB[l] = MatrixUtil.scalarMultiply(δ[l], -learningRate);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = -0.5;//random.nextDouble() * 2.0 - 1.0;
 		}
-		*/
 		
-		return new NeuronInputDeltaPackage(deltaZ); 
+		return data;
 	}
 	
-	private void applyInputDataDelta(NeuronInputDeltaPackage neuronInputDeltaPackage) {
-		z[0] = MatrixUtil.add(z[0], neuronInputDeltaPackage.deltaZ[0]);
+	/**
+	 * Fill an input layer with values drawn uniformly from [-1, 1), a random starting point for gradient
+	 * ascent.
+	 * 
+	 * @param data Array of length number of input neurons in the network
+	 * @param random Source of the values
+	 */
+	public void fillRandomInputData(double[] data, Random random) {
+		for (int i = 0; i < data.length; i++) {
+			data[i] = random.nextDouble() * 2.0 - 1.0;
+		}
 	}
 	
-	@Override protected void backPropagate(int expectedIndex) {
-		double[] expectedOutput = new double[nPerLayer[numL - 1]];
+	/**
+	 * One step of gradient ascent on the input: propagate, backpropagate into the input layer, then move the
+	 * input weighted inputs against their error, scaled by the output error. Works in place in the
+	 * workspace, so a step allocates nothing and several threads can each ascend in their own workspace.
+	 * 
+	 * @param expectedIndex The output neuron the input is being driven towards
+	 * @param ws The workspace whose input layer is being changed
+	 * @return The output error before the step
+	 */
+	public double gradientAscentStep(int expectedIndex, NetworkWorkspace ws) {
+		propagate(ws);
 		
-		expectedOutput[expectedIndex] = 1.0;
+		backPropagate(expectedIndex, ws);
 		
-		if (activationType == ActivationType.TanH) {
-			for (int i = 0; i < expectedOutput.length; i++) {
-				if (i != expectedIndex) {
-					expectedOutput[i] = -1.0;
-				}
-			}
-		}
+		double outputError = getOutputError(expectedIndex, ws);
+		
+		Kernels.get().scaledAddInto(ws.δ[0], -NEURON_INPUT_DELTA_RATE / outputError, ws.z[0], nPerLayer[0]);
+		
+		return outputError;
+	}
 	
-		switch (lossType) {
-		case MeanSquaredError: //  (actual - predicted)^2 / n    so the deriv is    (2/n)(actual-predicted)
-			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				δ[numL-1][i] = 0.5 * (a[numL - 1][i] - expectedOutput[i]);
-			}
-			break;
-		case MeanAbsoluteError:
-			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				if (a[numL - 1][i] > expectedOutput[i]) {
-					δ[numL-1][i] = +1.0;
-				} else if (a[numL - 1][i] < expectedOutput[i]) {
-					δ[numL-1][i] = -1.0;
-				} else {
-					δ[numL-1][i] = +0.0;
-				}
-			}
-			break;
-		case CrossEntropy:
-			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				δ[numL-1][i] = (-expectedOutput[i]/a[numL - 1][i]) + (1.0 - expectedOutput[i])/(1.0 - a[numL - 1][i]);
-			}
-			break;
-		case BinaryCrossEntropy:
+	/**
+	 * Run `numberOfTrains` gradient ascent steps on the input layer of a workspace, printing the output
+	 * error every `logInterval` steps and after the last one.
+	 * 
+	 * @param expectedIndex The output neuron the input is being driven towards
+	 * @param numberOfTrains Number of steps
+	 * @param ws The workspace whose input layer holds the starting point
+	 * @param logInterval Steps between progress lines (0 for none)
+	 * @param logPrefix Start of every progress line
+	 * @return The output error after the last step
+	 */
+	public double ascendInput(int expectedIndex, int numberOfTrains, NetworkWorkspace ws, int logInterval, String logPrefix) {
+		for (int i = 0; i < numberOfTrains; i++) {
+			double outputError = gradientAscentStep(expectedIndex, ws);
 			
-			break;
-		default: 
-			System.out.println("Default switch thrown at δ calculation"); 
-			break;
+			if (logInterval > 0 && i % logInterval == 0) {
+				System.out.println(logPrefix + "step " + i + ": " + outputError);
+			}
 		}
 		
+		propagate(ws);
 		
-		//Up until now, only part of δ has been stored inside.
-		//We still have to hadamard the delCdelA with the derivative of the activation function for z.
-		if (usingSoftmax) {
-			δ[numL-1] = MatrixUtil.hadamard(δ[numL-1], softmaxLayerPrime(z[numL - 1]));
-		} else {
-			δ[numL-1] = MatrixUtil.hadamard(δ[numL-1], activateLayerPrime(z[numL - 1]));
+		double outputError = getOutputError(expectedIndex, ws);
+		
+		if (logInterval > 0) {
+			System.out.println(logPrefix + "done after " + numberOfTrains + " steps: " + outputError);
 		}
 		
+		return outputError;
+	}
+	
+	/**
+	 * Backpropagate as usual, then carry the error one layer further, into the input layer, since that is
+	 * what gradient ascent on the input changes.
+	 */
+	@Override protected void backPropagate(int expectedIndex, NetworkWorkspace ws) {
+		super.backPropagate(expectedIndex, ws);
 		
-		//
-		//Calculate rest of network
-		//
-		for (int l = numL - 2; l >= 0; l--) { //THIS IS THE OVERRIDDEN LINE to INCLUDE FIRST LAYER
-			δ[l] = MatrixUtil.hadamard(MatrixUtil.multiplyWithFirstTranspose(w[l+1], δ[l+1]), activateLayerPrime(z[l]));
-		}
+		Kernels.get().denseBackwardInto(activationType, w[1], nPerLayer[1], nPerLayer[0], ws.δ[1], ws.z[0], ws.a[0], ws.δ[0]);
 	}
 	
 	/**
@@ -142,13 +187,7 @@ public class DeepVisualMatrixNetwork extends MatrixNetwork {
 	public BufferedImage generateDeepNetworkVisual(int expectedOutput, int numberOfTrains) {
 		inputDataAndPropagate(generateRandomInputData());
 		
-		for (int i = 0; i < numberOfTrains; i++) {
-			NeuronInputDeltaPackage neuronInputDeltaPackage = gradientAscent(expectedOutput);
-			
-			System.out.println(this.getOutputError(expectedOutput));
-			
-			applyInputDataDelta(neuronInputDeltaPackage);
-		}
+		ascendInput(expectedOutput, numberOfTrains, workspace, LOG_INTERVAL, "");
 		
 		try {
 			return generateImageFromInputNeurons();
@@ -10,6 +10,8 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 
 import xyz.onerous.MatrixNetwork.MNIST.MnistAgent;
+import xyz.onerous.MatrixNetwork.component.datapackage.DeepVisualPackage;
+import xyz.onerous.MatrixNetwork.component.exception.ArrayNotSquareException;
 
 public class DeepVisualMnistAgent extends MnistAgent {
 	protected DeepVisualMatrixNetwork matrixNetwork;
@@ -19,7 +21,7 @@ public class DeepVisualMnistAgent extends MnistAgent {
 	}
 	
 	@Override public void generateNetwork() {
-		int nInput = imageData[0].length;
+		int nInput = getNumInputs();
 		int nOutput = 10;
 		
 		this.matrixNetwork = new DeepVisualMatrixNetwork(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
@@ -31,6 +33,55 @@ public class DeepVisualMnistAgent extends MnistAgent {
 		return matrixNetwork.generateDeepNetworkVisual(expectedOutput, numberOfTrains);
 	}
 	
+	/**
+	 * Generate the visual of every digit at once (see DeepVisualGenerator), keeping the best of several
+	 * starting points per digit.
+	 * 
+	 * @param numberOfTrains Gradient ascent steps per visual
+	 * @param numRestarts Starting points tried per digit
+	 * @return The best visual of every digit, indexed by digit
+	 */
+	private BufferedImage[] generateDeepNetworkVisuals(int numberOfTrains, int numRestarts) {
+		DeepVisualGenerator generator = new DeepVisualGenerator(matrixNetwork, Runtime.getRuntime().availableProcessors());
+		DeepVisualPackage[] best = generator.generateBest(numberOfTrains, numRestarts, 0L);
+		
+		generator.shutdown();
+		
+		BufferedImage[] visuals = new BufferedImage[best.length];
+		
+		for (int o = 0; o < best.length; o++) {
+			visuals[o] = best[o].image;
+		}
+		
+		return visuals;
+	}
+	
+	/**
+	 * Find the saliency map of every test image for its label, the whole test set in batched passes.
+	 * 
+	 * @return The saliency maps, indexed like the test images
+	 */
+	private BufferedImage[] generateSaliencyMaps() {
+		processTestImageData();
+		
+		int nInput = getNumInputs();
+		double[] gradients = new double[testImageData.length * nInput];
+		
+		matrixNetwork.computeInputGradients(testImageData, testLabels, gradients);
+		
+		BufferedImage[] saliencyMaps = new BufferedImage[testImageData.length];
+		
+		try {
+			for (int t = 0; t < saliencyMaps.length; t++) {
+				saliencyMaps[t] = matrixNetwork.generateImageFromInputGradients(gradients, t * nInput);
+			}
+		} catch (ArrayNotSquareException e) {
+			e.printStackTrace();
+		}
+		
+		return saliencyMaps;
+	}
+	
 	private void displayDeepNetworkVisual(BufferedImage deepNetworkVisual) {
 		DataFrame dataFrame = new DataFrame();
 		dataFrame.setSize(new Dimension(300, 350));
@@ -50,10 +101,13 @@ public class DeepVisualMnistAgent extends MnistAgent {
 		agent.displayDeepNetworkVisual(initVisual);
 		
 		System.out.println("Generating...");
-		BufferedImage visual = agent.generateDeepNetworkVisual(1, 10000);
+		BufferedImage[] visuals = agent.generateDeepNetworkVisuals(10000, 4);
 		
 		System.out.println("Displaying...");
-		agent.displayDeepNetworkVisual(visual);
+		agent.displayDeepNetworkVisual(visuals[1]);
+		
+		BufferedImage[] saliencyMaps = agent.generateSaliencyMaps();
+		agent.displayDeepNetworkVisual(saliencyMaps[0]);
 	}
 	
 	
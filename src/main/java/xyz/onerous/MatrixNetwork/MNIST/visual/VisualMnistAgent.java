@@ -27,7 +27,7 @@ public class VisualMnistAgent extends MnistAgent {
 	}
 	
 	@Override public void generateNetwork() {
-		int nInput = imageData[0].length;
+		int nInput = getNumInputs();
 		int nOutput = 10;
 		
 		this.matrixNetwork = new VisualMatrixNetwork(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
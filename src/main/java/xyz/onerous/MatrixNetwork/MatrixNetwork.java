@@ -7,14 +7,25 @@ import java.util.Random;
 
 import xyz.onerous.MatrixNetwork.component.ActivationType;
 import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.TrainingMode;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
 import xyz.onerous.MatrixNetwork.component.datapackage.NetworkDataPackage;
 import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
 import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
 import xyz.onerous.MatrixNetwork.component.datapackage.WeightBiasDeltaPackage;
 import xyz.onerous.MatrixNetwork.component.exception.ArrayNotSquareException;
 import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
 import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
 import xyz.onerous.MatrixNetwork.component.util.MatrixUtil;
+import xyz.onerous.MatrixNetwork.pipeline.BatchPipeline;
+import xyz.onerous.MatrixNetwork.pipeline.PreparedBatch;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
+import xyz.onerous.MatrixNetwork.trainer.HogwildTrainer;
+import xyz.onerous.MatrixNetwork.trainer.ParallelTrainer;
+import xyz.onerous.MatrixNetwork.trainer.PipelineTrainer;
+import xyz.onerous.MatrixNetwork.trainer.Trainer;
 import xyz.onerous.MatrixNetwork.visualizer.Visualizer;
 
 /**
@@ -32,7 +43,7 @@ import xyz.onerous.MatrixNetwork.visualizer.Visualizer;
  * @author wongg19
  * @version 0.2.0
  */
-public class MatrixNetwork {
+public class MatrixNetwork implements NeuralNetwork {
 	protected int[] nPerLayer; //Number of neurons in each layer
 	protected int numL; //Number of layers (including input, output) in network
 	
@@ -42,14 +53,19 @@ public class MatrixNetwork {
 	protected ActivationType activationType; //Activation Type (Sigmoid, TanH, etc.)
 	protected LossType lossType; //Loss Type (Cross Entropy, MSE, etc.)
 	
-	protected double[][][] w; //Connection Weights
+	protected double[][] w; //Connection Weights, one contiguous row-major buffer per layer (w[l][n * nPerLayer[l-1] + p_n])
 	protected double[][] b; //Neuron Biases
 	protected double[][] z; //Neuron Weighted Inputs
 	protected double[][] a; //Neuron Activations
 	
 	protected double[][] δ; //Network error per neuron used for gradient descent
 	
+	protected NetworkWorkspace workspace; //Scratch buffers of the network's own training and inference. z, a and δ above are its buffers.
+	
+	protected Trainer trainer; //Runs the batches of an epoch. Null for the network's own single-threaded path.
+	
 	private final double BIAS_INIT_CONSTANT = 0.0; //What biases should be initialized to
+	private final int INPUT_GRADIENT_BATCH_SIZE = 256; //Samples per pass when finding the input gradients of a whole data set
 	
 	public MatrixNetwork(int nInput, int nOutput, int[] nHidden, int lHidden, double learningRate, boolean usingSoftmax, ActivationType activationType, LossType lossType) {
 		//Global all parameters
@@ -76,27 +92,21 @@ public class MatrixNetwork {
 	 * setting values.
 	 */
 	private void initialize() {		
-		w = new double[numL][][]; //Every layer will have weights but the first. weights[0] will be left empty. We will not initialize weights[0].
+		w = new double[numL][]; //Every layer will have weights but the first. weights[0] will be left empty.
 		b = new double[numL][];
-		δ = new double[numL][];
-		a = new double[numL][];
-		z = new double[numL][];
+		
+		workspace = new NetworkWorkspace(nPerLayer);
+		δ = workspace.δ;
+		a = workspace.a;
+		z = workspace.z;
 
 		for (int l = 0; l < numL; l++) {
-			w[l] = new double[ nPerLayer[l] ][];
 			b[l] = new double[ nPerLayer[l] ];
-			δ[l] = new double[ nPerLayer[l] ];
-			a[l] = new double[ nPerLayer[l] ];
-			z[l] = new double[ nPerLayer[l] ];
 			
 			if (l != 0) {
-				for (int n = 0; n < nPerLayer[l]; n++) {
-					w[l][n] = new double[ nPerLayer[l-1] ];
-				}
+				w[l] = new double[ nPerLayer[l] * nPerLayer[l-1] ];
 			} else {
-				for (int n = 0; n < nPerLayer[l]; n++) {
-					w[l][n] = new double[0];
-				}
+				w[l] = new double[0];
 			}
 		}
 
@@ -108,7 +118,7 @@ public class MatrixNetwork {
 				for (int n = 0; n < nPerLayer[l]; n++) {
 					b[l][n] = this.BIAS_INIT_CONSTANT;
 					for (int p_n = 0; p_n < nPerLayer[l-1]; p_n++) {
-						w[l][n][p_n] = 2.0 * (random.nextDouble() - 0.5) * 4.0 * Math.sqrt(6.0 / ((double)nPerLayer[l-1]));
+						w[l][n * nPerLayer[l-1] + p_n] = 2.0 * (random.nextDouble() - 0.5) * 4.0 * Math.sqrt(6.0 / ((double)nPerLayer[l-1]));
 					}
 				}
 			}
@@ -118,7 +128,7 @@ public class MatrixNetwork {
 				for (int n = 0; n < nPerLayer[l]; n++) {
 					b[l][n] = this.BIAS_INIT_CONSTANT;
 					for (int p_n = 0; p_n < nPerLayer[l-1]; p_n++) {
-						w[l][n][p_n] = random.nextGaussian() * Math.sqrt(2.0/(double)nPerLayer[l-1]);
+						w[l][n * nPerLayer[l-1] + p_n] = random.nextGaussian() * Math.sqrt(2.0/(double)nPerLayer[l-1]);
 					}
 				}
 			}
@@ -128,7 +138,7 @@ public class MatrixNetwork {
 				for (int n = 0; n < nPerLayer[l]; n++) {
 					b[l][n] = this.BIAS_INIT_CONSTANT;
 					for (int p_n = 0; p_n < nPerLayer[l-1]; p_n++) {
-						w[l][n][p_n] = random.nextGaussian() * Math.sqrt(1.0/(double)nPerLayer[l-1]); //Xavier initialization
+						w[l][n * nPerLayer[l-1] + p_n] = random.nextGaussian() * Math.sqrt(1.0/(double)nPerLayer[l-1]); //Xavier initialization
 					}
 				}
 			}
@@ -138,7 +148,7 @@ public class MatrixNetwork {
 				for (int n = 0; n < nPerLayer[l]; n++) {
 					b[l][n] = this.BIAS_INIT_CONSTANT;
 					for (int p_n = 0; p_n < nPerLayer[l-1]; p_n++) {
-						w[l][n][p_n] = random.nextGaussian() * Math.sqrt(1.0/(double)nPerLayer[l-1]); //Xavier initialization
+						w[l][n * nPerLayer[l-1] + p_n] = random.nextGaussian() * Math.sqrt(1.0/(double)nPerLayer[l-1]); //Xavier initialization
 					}
 				}
 			}
@@ -147,17 +157,19 @@ public class MatrixNetwork {
 	}
 	
 	/**
-	 * Take an array of doubles and spread that across the input layer of the network
+	 * Take an array of doubles and spread that across the input layer of a workspace. The data is copied,
+	 * so the caller is free to reuse its array.
 	 * 
 	 * @param data Array of length number of input neurons in the network
+	 * @param ws The workspace to input the data into
 	 * @throws InvalidInputLengthException 
 	 */
-	private void inputData(double[] data) throws InvalidInputLengthException {
+	private void inputData(double[] data, NetworkWorkspace ws) throws InvalidInputLengthException {
 		if (data.length != nPerLayer[0]) {
 			throw new InvalidInputLengthException();
 		}
 		
-		z[0] = data;
+		System.arraycopy(data, 0, ws.z[0], 0, nPerLayer[0]);
 	}
 	
 	/**
@@ -168,15 +180,34 @@ public class MatrixNetwork {
 	 * @return Network response (index of 'brightest' output neuron)
 	 */
 	public int inputDataAndPropagate(double[] data) {
+		return inputDataAndPropagate(data, workspace);
+	}
+	
+	/**
+	 * `inputDataAndPropagate` through a workspace other than the network's own. Nothing but the workspace
+	 * is written, so threads that each have their own workspace can run this at the same time.
+	 * 
+	 * @param data Array of length number of input neurons in the network
+	 * @param ws The workspace to propagate through
+	 * @return Network response (index of 'brightest' output neuron)
+	 */
+	public int inputDataAndPropagate(double[] data, NetworkWorkspace ws) {
 		try {
-			inputData(data);
+			inputData(data, ws);
 		} catch (InvalidInputLengthException e) {
 			e.printStackTrace();
 		}
 		
-		propagate();
+		propagate(ws);
 		
-		return getDominantOutputIndex();
+		return getDominantOutputIndex(ws);
+	}
+	
+	/**
+	 * @return A new workspace sized for this network
+	 */
+	public NetworkWorkspace createWorkspace() {
+		return new NetworkWorkspace(nPerLayer);
 	}
 	
 	/**
@@ -217,38 +248,8 @@ public class MatrixNetwork {
 	 */
 	public double[] activateLayer(double[] layerZ) {
 		double[] layerA = new double[layerZ.length];
-	
-		switch (activationType) {
-		case Sigmoid:
-			for (int i = 0; i < layerA.length; i++) {
-				layerA[i] = 1.0 / (1.0 + Math.exp(-layerZ[i]));
-			}
-			break;
-		case ReLU:
-			for (int i = 0; i < layerA.length; i++) {
-				if (layerZ[i] >= 0) {
-					layerA[i] = layerZ[i];
-				} else {
-					layerA[i] = 0;
-				}
-			}
-			break;
-		case Linear:
-			for (int i = 0; i < layerA.length; i++) {
-				layerA[i] = layerZ[i];
-			}
-			break;
-		case TanH:
-			for (int i = 0; i < layerA.length; i++) {
-				layerA[i] = Math.tanh(layerZ[i]);
-			}
-			break;
-		default:
-			for (int i = 0; i < layerA.length; i++) {
-				layerA[i] = 1.0 / (1.0 + Math.exp(-layerZ[i]));
-			}
-			break;
-		}
+		
+		Kernels.get().activateInto(activationType, layerZ, layerA, 0, layerZ.length);
 		
 		return layerA;
 	}
@@ -328,17 +329,10 @@ public class MatrixNetwork {
 	}
 	
 	public double[] softmaxLayer(double[] layerZ) {
-		double layerSum = 0.0;
 		double[] softmaxValues = new double[layerZ.length];
 		
-		for (double neuronZ : layerZ) {
-			layerSum += Math.exp(neuronZ);
-		}
+		Kernels.get().softmaxInto(layerZ, softmaxValues, 0, layerZ.length);
 		
-		for (int i = 0; i < layerZ.length; i++) {
-			softmaxValues[i] = Math.exp(layerZ[i]) / layerSum;
-		}
-
 		return softmaxValues;
 	}
 	
@@ -353,19 +347,52 @@ public class MatrixNetwork {
 		return softmaxPrimeValues;
 	}
 	
+	/**
+	 * Apply the activation function to layerZ[from, to) and write the result into the same range of layerA.
+	 * 
+	 * @param layerZ Neuron weighted inputs
+	 * @param layerA Where the activations are written
+	 * @param from First index (inclusive)
+	 * @param to Last index (exclusive)
+	 */
+	protected void activateLayerInto(double[] layerZ, double[] layerA, int from, int to) {
+		Kernels.get().activateInto(activationType, layerZ, layerA, from, to);
+	}
+	
+	/**
+	 * Softmax of the `length` values starting at `offset`, written into the same range of layerA.
+	 * 
+	 * @param layerZ Neuron weighted inputs
+	 * @param layerA Where the softmax values are written
+	 * @param offset First index
+	 * @param length Number of neurons in the layer
+	 */
+	protected void softmaxLayerInto(double[] layerZ, double[] layerA, int offset, int length) {
+		Kernels.get().softmaxInto(layerZ, layerA, offset, length);
+	}
+	
 	/**
 	 * Find the 'brightest' output neuron in the network. This is what amounts to the network's output.
 	 * 
 	 * @return the index of the network output neuron
 	 */
 	public int getDominantOutputIndex() {
-		double maxValue = a[numL - 1][0];
+		return getDominantOutputIndex(workspace);
+	}
+	
+	/**
+	 * @param ws The workspace that was last propagated through
+	 * @return the index of the network output neuron
+	 */
+	public int getDominantOutputIndex(NetworkWorkspace ws) {
+		double[] outputA = ws.a[numL - 1];
+		double maxValue = outputA[0];
 		int maxValueAtIndex = 0;
 		
 		for (int n = 1; n < nPerLayer[numL - 1]; n++) {
-			if (a[numL - 1][n] > maxValue) {
+			if (outputA[n] > maxValue) {
 				maxValueAtIndex = n;
-				maxValue = a[numL - 1][n];
+				maxValue = outputA[n];
 			}
 		}
 		
@@ -380,6 +407,22 @@ public class MatrixNetwork {
 		return nPerLayer;
 	}
 	
+	public double getLearningRate() {
+		return learningRate;
+	}
+	
+	public boolean isUsingSoftmax() {
+		return usingSoftmax;
+	}
+	
+	public ActivationType getActivationType() {
+		return activationType;
+	}
+	
+	public LossType getLossType() {
+		return lossType;
+	}
+	
 	public double getOutputNeuronValue(int index) {
 		return a[numL-1][index];
 	}
@@ -387,77 +430,73 @@ public class MatrixNetwork {
 	/**
 	 * Feed forward the input given by the input data all the way to the output layer through the weights and
 	 * hidden layer neurons (if any).
+	 * 
+	 * Each layer is a single fused pass, a = f(W * a(prev) + b), that reads every weight once and writes z
+	 * and a into the network's own buffers, so propagating allocates nothing.
 	 */
 	public void propagate() {
+		propagate(workspace);
+	}
+	
+	/**
+	 * `propagate` through the buffers of the given workspace.
+	 * 
+	 * @param ws The workspace whose input layer holds the data
+	 */
+	public void propagate(NetworkWorkspace ws) {
 		//z will already be inside of the first layer array index
-		a[0] = activateLayer(z[0]);
+		activateLayerInto(ws.z[0], ws.a[0], 0, nPerLayer[0]);
 		
 		for (int l = 1; l < numL - 1; l++) {
-			z[l] = MatrixUtil.add(MatrixUtil.multiply(w[l], a[l-1]), b[l]);
-			a[l] = activateLayer(z[l]);
+			Kernels.get().denseForwardInto(activationType, w[l], b[l], nPerLayer[l], nPerLayer[l-1], ws.a[l-1], ws.z[l], ws.a[l]);
 		}
 		
-		z[numL-1] = MatrixUtil.add(MatrixUtil.multiply(w[numL-1], a[numL-2]), b[numL-1]);
-		
 		if (usingSoftmax) {
-			a[numL-1] = softmaxLayer(z[numL-1]);
+			Kernels.get().denseForwardInto(ActivationType.Linear, w[numL-1], b[numL-1], nPerLayer[numL-1], nPerLayer[numL-2], ws.a[numL-2], ws.z[numL-1], ws.a[numL-1]);
+			softmaxLayerInto(ws.z[numL-1], ws.a[numL-1], 0, nPerLayer[numL-1]);
 		} else {
-			a[numL-1] = activateLayer(z[numL-1]);
+			Kernels.get().denseForwardInto(activationType, w[numL-1], b[numL-1], nPerLayer[numL-1], nPerLayer[numL-2], ws.a[numL-2], ws.z[numL-1], ws.a[numL-1]);
 		}
 	}
 	
 	/**
-	 * Using an expected output versus the actual network output, calculate the error in the output layer
-	 * (the error is calculated using the desired loss function specified during network initialization).
-	 * Then, 'backpropagate' that error through the network to approximate the individual error for every
-	 * single network neuron. Finding the error for each neuron will allow the gradient descent function to find the weight and bias
-	 * changes necessary to make the network perform better.
-	 * 
-	 * For the output layer, error is defined as the hadamard product of the derivative of the loss function
-	 * and the activation of the previous layer's neurons.
-	 * 
-	 * For the non-output layers (also not the input layer, it does not have error), the error is given by
-	 * multiplying the matrix of the weights (between the current layer and the layer closer to the output)
-	 * by the matrix of the next layer's error and then taking the hadamard of that product and the current
-	 * layer activations. This algorithm starts at the second to last layer and then backwards, therefore
-	 * 'backpropagating'. 
+	 * Write the derivative of the loss function with respect to the output activations into `layerδ`, for
+	 * one sample whose output layer starts at `offset`. Batch buffers hold one sample per row, so the same
+	 * code serves both the single-sample and the batch path.
 	 * 
+	 * @param layerA Output layer activations
+	 * @param offset Index of the sample's first output neuron in layerA and layerδ
 	 * @param expectedIndex The expected output of the network
+	 * @param layerδ Where the derivative is written
 	 */
-	protected void backPropagate(int expectedIndex) {
-		//CALCULATE OUTPUT LAYER FIRST
-		double[] expectedOutput = new double[nPerLayer[numL - 1]];
+	protected void calculateOutputLossDerivative(double[] layerA, int offset, int expectedIndex, double[] layerδ) {
+		int nOutput = nPerLayer[numL - 1];
+		double notExpectedOutput = (activationType == ActivationType.TanH) ? -1.0 : 0.0;
 		
-		expectedOutput[expectedIndex] = 1.0;
-		
-		if (activationType == ActivationType.TanH) {
-			for (int i = 0; i < expectedOutput.length; i++) {
-				if (i != expectedIndex) {
-					expectedOutput[i] = -1.0;
-				}
-			}
-		}
-	
 		switch (lossType) {
 		case MeanSquaredError: //  (actual - predicted)^2 / n    so the deriv is    (2/n)(actual-predicted)
-			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				δ[numL-1][i] = 0.5 * (a[numL - 1][i] - expectedOutput[i]);
+			for (int i = 0; i < nOutput; i++) {
+				double expectedOutput = (i == expectedIndex) ? 1.0 : notExpectedOutput;
+				layerδ[offset + i] = 0.5 * (layerA[offset + i] - expectedOutput);
 			}
 			break;
 		case MeanAbsoluteError:
-			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				if (a[numL - 1][i] > expectedOutput[i]) {
-					δ[numL-1][i] = +1.0;
-				} else if (a[numL - 1][i] < expectedOutput[i]) {
-					δ[numL-1][i] = -1.0;
+			for (int i = 0; i < nOutput; i++) {
+				double expectedOutput = (i == expectedIndex) ? 1.0 : notExpectedOutput;
+				
+				if (layerA[offset + i] > expectedOutput) {
+					layerδ[offset + i] = +1.0;
+				} else if (layerA[offset + i] < expectedOutput) {
+					layerδ[offset + i] = -1.0;
 				} else {
-					δ[numL-1][i] = +0.0;
+					layerδ[offset + i] = +0.0;
 				}
 			}
 			break;
 		case CrossEntropy:
-			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				δ[numL-1][i] = (-expectedOutput[i]/a[numL - 1][i]) + (1.0 - expectedOutput[i])/(1.0 - a[numL - 1][i]);
+			for (int i = 0; i < nOutput; i++) {
+				double expectedOutput = (i == expectedIndex) ? 1.0 : notExpectedOutput;
+				layerδ[offset + i] = (-expectedOutput/layerA[offset + i]) + (1.0 - expectedOutput)/(1.0 - layerA[offset + i]);
 			}
 			break;
 		case BinaryCrossEntropy:
@@ -467,14 +506,50 @@ public class MatrixNetwork {
 			System.out.println("Default switch thrown at δ calculation"); 
 			break;
 		}
+	}
+	
+	/**
+	 * Using an expected output versus the actual network output, calculate the error in the output layer
+	 * (the error is calculated using the desired loss function specified during network initialization).
+	 * Then, 'backpropagate' that error through the network to approximate the individual error for every
+	 * single network neuron. Finding the error for each neuron will allow the gradient descent function to find the weight and bias
+	 * changes necessary to make the network perform better.
+	 * 
+	 * For the output layer, error is defined as the hadamard product of the derivative of the loss function
+	 * and the activation of the previous layer's neurons.
+	 * 
+	 * For the non-output layers (also not the input layer, it does not have error), the error is given by
+	 * multiplying the matrix of the weights (between the current layer and the layer closer to the output)
+	 * by the matrix of the next layer's error and then taking the hadamard of that product and the current
+	 * layer activations. This algorithm starts at the second to last layer and then backwards, therefore
+	 * 'backpropagating'. Each layer is one fused pass over the weights (see KernelBackend.denseBackwardInto)
+	 * that writes straight into δ.
+	 * 
+	 * @param expectedIndex The expected output of the network
+	 */
+	protected void backPropagate(int expectedIndex) {
+		backPropagate(expectedIndex, workspace);
+	}
+	
+	/**
+	 * `backPropagate` through the buffers of the given workspace.
+	 * 
+	 * @param expectedIndex The expected output of the network
+	 * @param ws The workspace that was last propagated through
+	 */
+	protected void backPropagate(int expectedIndex, NetworkWorkspace ws) {
+		//CALCULATE OUTPUT LAYER FIRST
+		calculateOutputLossDerivative(ws.a[numL-1], 0, expectedIndex, ws.δ[numL-1]);
 		
 		
 		//Up until now, only part of δ has been stored inside.
 		//We still have to hadamard the delCdelA with the derivative of the activation function for z.
 		if (usingSoftmax) {
-			δ[numL-1] = MatrixUtil.hadamard(δ[numL-1], softmaxLayerPrime(z[numL - 1]));
+			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
+				ws.δ[numL-1][i] *= ws.a[numL-1][i] * (1.0 - ws.a[numL-1][i]); //softmax' from the softmax values themselves
+			}
 		} else {
-			δ[numL-1] = MatrixUtil.hadamard(δ[numL-1], activateLayerPrime(z[numL - 1]));
+			Kernels.get().multiplyByActivationPrimeInto(activationType, ws.z[numL-1], ws.a[numL-1], ws.δ[numL-1], 0, nPerLayer[numL - 1]);
 		}
 		
 		
@@ -482,7 +557,7 @@ public class MatrixNetwork {
 		//Calculate rest of network
 		//
 		for (int l = numL - 2; l > 0; l--) {
-			δ[l] = MatrixUtil.hadamard(MatrixUtil.multiplyWithFirstTranspose(w[l+1], δ[l+1]), activateLayerPrime(z[l]));
+			Kernels.get().denseBackwardInto(activationType, w[l+1], nPerLayer[l+1], nPerLayer[l], ws.δ[l+1], ws.z[l], ws.a[l], ws.δ[l]);
 		}
 	}
 	
@@ -497,20 +572,61 @@ public class MatrixNetwork {
 	 * Deltas are not directly applied in case the network is being used in a batch context.
 	 * 
 	 * @param expectedIndex The expected network output
-	 * @return the bias and weight deltas
+	 * @return the bias and weight deltas, held in the workspace's accumulator until its next batch
 	 */
 	public WeightBiasDeltaPackage gradientDescent(int expectedIndex) { //Batch size needed to limit weight/bias changing over an entire batch
-		backPropagate(expectedIndex);
+		workspace.gradientAccumulator.clear();
 		
-		double[][][] deltaW = w.clone(); //Cloned so the dimensions are the same without having to re-init.
-		double[][] deltaB = b.clone();
+		accumulateGradient(expectedIndex, workspace.gradientAccumulator);
+		
+		return workspace.gradientAccumulator;
+	}
+	
+	/**
+	 * Like `gradientDescent`, but the deltas are added straight into an accumulator, one rank-1 update per
+	 * layer, instead of into a new package.
+	 * 
+	 * @param expectedIndex The expected network output
+	 * @param accumulator The accumulator to add the bias and weight deltas into
+	 */
+	public void accumulateGradient(int expectedIndex, GradientAccumulator accumulator) {
+		accumulateGradient(expectedIndex, workspace, accumulator);
+	}
+	
+	/**
+	 * `accumulateGradient` for the sample last propagated through the given workspace.
+	 * 
+	 * @param expectedIndex The expected network output
+	 * @param ws The workspace that was last propagated through
+	 * @param accumulator The accumulator to add the bias and weight deltas into
+	 */
+	public void accumulateGradient(int expectedIndex, NetworkWorkspace ws, GradientAccumulator accumulator) {
+		backPropagate(expectedIndex, ws);
 		
 		for (int l = numL - 1; l > 0; l--) {
-			deltaW[l] = MatrixUtil.scalarMultiply(MatrixUtil.multiplyWithSecondTranspose(δ[l], a[l-1]), -learningRate);
-			deltaB[l] = MatrixUtil.scalarMultiply(δ[l], -learningRate);
+			accumulator.addOuterProduct(l, ws.δ[l], ws.a[l-1], -learningRate);
 		}
 		
-		return new WeightBiasDeltaPackage(deltaW, deltaB);
+		accumulator.countSamples(1);
+	}
+	
+	/**
+	 * Backpropagate the sample last propagated through the given workspace and apply its deltas straight to
+	 * the weights and biases, one rank-1 update per layer, without building a delta package.
+	 * 
+	 * Nothing is locked. If other threads are doing the same, updates can interleave and occasionally
+	 * overwrite each other; asynchronous (Hogwild) training accepts that in exchange for never waiting.
+	 * 
+	 * @param expectedIndex The expected network output
+	 * @param ws The workspace that was last propagated through
+	 */
+	public void applyGradient(int expectedIndex, NetworkWorkspace ws) {
+		backPropagate(expectedIndex, ws);
+		
+		for (int l = numL - 1; l > 0; l--) {
+			MatrixUtil.outerProductAddInto(ws.δ[l], ws.a[l-1], -learningRate, w[l]);
+			MatrixUtil.scaledAddInto(ws.δ[l], -learningRate, b[l]);
+		}
 	}
 	
 	/**
@@ -520,24 +636,28 @@ public class MatrixNetwork {
 	 */
 	public void applyDeltaPackage(WeightBiasDeltaPackage deltaPackage) {
 		for (int l = numL - 1; l > 0; l--) {
-			w[l] = MatrixUtil.add(w[l], deltaPackage.deltaW[l]);
-			b[l] = MatrixUtil.add(b[l], deltaPackage.deltaB[l]);
+			MatrixUtil.addInto(w[l], deltaPackage.deltaW[l], w[l]);
+			MatrixUtil.addInto(b[l], deltaPackage.deltaB[l], b[l]);
 		}
 	}
 	
 	public void applyNetworkWeightBiasPackage(NetworkWeightBiasPackage networkWeightBiasPackage) {
 		try {
-			if (w.length != networkWeightBiasPackage.getConnectionWeights().length 
-					|| w[1].length != networkWeightBiasPackage.getConnectionWeights()[1].length
-					|| w[1][0].length != networkWeightBiasPackage.getConnectionWeights()[1][0].length
-					|| b.length != networkWeightBiasPackage.getNeuronBiases().length
-					|| b[0].length != networkWeightBiasPackage.getNeuronBiases()[0].length) {
-				
+			double[][] packageW = networkWeightBiasPackage.getFlatConnectionWeights();
+			double[][] packageB = networkWeightBiasPackage.getNeuronBiases();
+			
+			if (packageW.length != numL || packageB.length != numL) {
 				throw new InvalidInputLengthException();
 			}
 			
-			w = networkWeightBiasPackage.getConnectionWeights();
-			b = networkWeightBiasPackage.getNeuronBiases();
+			for (int l = 1; l < numL; l++) {
+				if (packageW[l].length != w[l].length || packageB[l].length != b[l].length) {
+					throw new InvalidInputLengthException();
+				}
+			}
+			
+			w = packageW;
+			b = packageB;
 		} catch (InvalidInputLengthException e) {
 			e.printStackTrace();
 		}
@@ -548,29 +668,34 @@ public class MatrixNetwork {
 	 * @return the total output layer error specified by the selected loss function.
 	 */
 	public double getOutputError(int expectedIndex) {
-		double[] expectedOutput = new double[nPerLayer[numL - 1]];
-		
-		expectedOutput[expectedIndex] = 1.0;
-		
+		return getOutputError(expectedIndex, workspace);
+	}
+	
+	/**
+	 * `getOutputError` of the output layer of the given workspace.
+	 * 
+	 * @param expectedIndex The expected output of the network
+	 * @param ws The workspace that was last propagated through
+	 * @return the total output layer error specified by the selected loss function.
+	 */
+	public double getOutputError(int expectedIndex, NetworkWorkspace ws) {
 		switch (lossType) {
 		case MeanSquaredError: //  (actual - predicted)^2 / n
 			double sumSquaredError = 0.0;
 			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				sumSquaredError += Math.pow(a[numL - 1][i] - expectedOutput[i], 2.0);
+				double expectedOutput = (i == expectedIndex) ? 1.0 : 0.0;
+				sumSquaredError += Math.pow(ws.a[numL - 1][i] - expectedOutput, 2.0);
 			}
 			return sumSquaredError / (double)(nPerLayer[numL - 1]);
 		case MeanAbsoluteError:
 			double sumAbsoluteError = 0.0;
 			for (int i = 0; i < nPerLayer[numL - 1]; i++) {
-				sumAbsoluteError += Math.abs(a[numL - 1][i] - expectedOutput[i]);
+				double expectedOutput = (i == expectedIndex) ? 1.0 : 0.0;
+				sumAbsoluteError += Math.abs(ws.a[numL - 1][i] - expectedOutput);
 			}
 			return sumAbsoluteError / (double)(nPerLayer[numL - 1]);
 		case CrossEntropy:
-			double totalCrossEntropyError = 0.0;
-			for (int i = 0; i < nPerLayer[numL -1]; i++) {
-				totalCrossEntropyError += expectedOutput[i]*Math.log(a[numL - 1][i]);
-			}
-			return -totalCrossEntropyError;
+			return -Math.log(ws.a[numL - 1][expectedIndex]); //Only the expected output has a non-zero target
 		case BinaryCrossEntropy:
 			return 0.0;
 		default: 
@@ -587,35 +712,338 @@ public class MatrixNetwork {
 	 * 
 	 * @param trainData Data to be inputted
 	 * @param expectedOutput The expected result of the network
-	 * @return The weight-bias deltas generated by the gradient descent process
+	 * @return The weight-bias deltas generated by the gradient descent process, held in the workspace's
+	 * accumulator until its next batch
 	 */
 	public WeightBiasDeltaPackage performTrainAndGetDelta(double[] trainData, int expectedOutput) {
+		workspace.gradientAccumulator.clear();
+		
+		performTrainAndAccumulate(trainData, expectedOutput, workspace.gradientAccumulator);
+		
+		return workspace.gradientAccumulator;
+	}
+	
+	/**
+	 * Perform one training iteration and add its weight-bias deltas into an accumulator. Every sample
+	 * trained one at a time goes through here.
+	 * 
+	 * @param trainData Data to be inputted
+	 * @param expectedOutput The expected result of the network
+	 * @param accumulator The accumulator to add the deltas into
+	 */
+	protected void performTrainAndAccumulate(double[] trainData, int expectedOutput, GradientAccumulator accumulator) {
 		inputDataAndPropagate(trainData);
-		return gradientDescent(expectedOutput);
+		accumulateGradient(expectedOutput, accumulator);
 	}
 	
 	/**
-	 * Perform one training batch consisting of many single training iterations whose weight-bias deltas are
-	 * summed and applied in one go. This is different than running many single training iterations by
-	 * themselves because deltas are not applied after every iteration.
+	 * Perform one training batch and return the summed weight-bias deltas of every sample in it, applied in
+	 * one go. This is different than running many single training iterations by themselves because deltas
+	 * are not applied after every iteration.
 	 * 
-	 * Batch training is sometimes more efficient than 'online' training (applying deltas after each
-	 * iteration) operation-wise.
+	 * The batch is stacked into one matrix (one sample per row) and pushed through the network as a whole:
+	 * every layer is a single matrix-matrix product, so each weight matrix is streamed from memory once per
+	 * batch instead of once per sample.
 	 * 
 	 * @param batchData Data to be inputted
 	 * @param expectedOutputs The expected results of the network per the batch data
 	 * @return The combined weight-bias deltas generated by the training iterations
 	 */
 	public WeightBiasDeltaPackage performBatchAndGetDelta(double[][] batchData, int[] expectedOutputs) {
-		int batchSize = batchData.length;
+		return performBatchAndGetDelta(batchData, expectedOutputs, workspace);
+	}
+	
+	/**
+	 * `performBatchAndGetDelta` through the batch buffers of the given workspace. Nothing but the workspace
+	 * is written, so each thread with its own workspace can run a batch at the same time.
+	 * 
+	 * @param batchData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the batch data
+	 * @param ws The workspace to run the batch through
+	 * @return The combined weight-bias deltas, held in the workspace's accumulator until its next batch
+	 */
+	public WeightBiasDeltaPackage performBatchAndGetDelta(double[][] batchData, int[] expectedOutputs, NetworkWorkspace ws) {
+		ws.gradientAccumulator.clear();
+		
+		accumulateBatch(batchData, expectedOutputs, 0, batchData.length, ws, ws.gradientAccumulator);
+		
+		return ws.gradientAccumulator;
+	}
+	
+	/**
+	 * Run samples [from, to) of the data through a workspace as one batch and add their summed weight-bias
+	 * deltas into an accumulator. Only the workspace and the accumulator are written, so threads that each
+	 * have their own can work on different parts of a batch at the same time.
+	 * 
+	 * @param data Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the data
+	 * @param from First sample of the batch (inclusive)
+	 * @param to Last sample of the batch (exclusive)
+	 * @param ws The workspace to run the batch through
+	 * @param accumulator The accumulator to add the deltas into
+	 */
+	public void accumulateBatch(double[][] data, int[] expectedOutputs, int from, int to, NetworkWorkspace ws, GradientAccumulator accumulator) {
+		int batchSize = to - from;
+		
+		try {
+			inputBatchData(data, from, batchSize, ws);
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		}
+		
+		propagateBatch(batchSize, ws);
+		backPropagateBatch(expectedOutputs, from, batchSize, ws);
+		gradientDescentBatch(batchSize, ws, accumulator);
+	}
+	
+	/**
+	 * The sample-at-a-time version of `performBatchAndGetDelta`. Each sample goes through
+	 * `performTrainAndAccumulate`, so subclasses that hook that method (the visualizer, for example) still
+	 * see every sample. The deltas are summed in place in the network's accumulator, so the memory used
+	 * does not grow with the batch size.
+	 * 
+	 * @param batchData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the batch data
+	 * @return The combined weight-bias deltas generated by the training iterations, valid until the next batch
+	 */
+	protected WeightBiasDeltaPackage performSerialBatchAndGetDelta(double[][] batchData, int[] expectedOutputs) {
+		GradientAccumulator accumulator = workspace.gradientAccumulator;
 		
-		WeightBiasDeltaPackage[] deltaPackages = new WeightBiasDeltaPackage[batchSize];
+		accumulator.clear();
 		
-		for (int i = 0; i < batchSize; i++) {
-			deltaPackages[i] = performTrainAndGetDelta(batchData[i], expectedOutputs[i]);
+		for (int i = 0; i < batchData.length; i++) {
+			performTrainAndAccumulate(batchData[i], expectedOutputs[i], accumulator);
 		}
 		
-		return WeightBiasDeltaPackage.concatPackages(deltaPackages);
+		return accumulator;
+	}
+	
+	/**
+	 * Stack a batch of samples into the input rows of a workspace's batch buffers, growing them if needed.
+	 * 
+	 * @param batchData Array of samples, each of length number of input neurons in the network
+	 * @param from Index of the first sample to take from batchData
+	 * @param batchSize Number of samples to take from batchData
+	 * @param ws The workspace to input the batch into
+	 * @throws InvalidInputLengthException
+	 */
+	public void inputBatchData(double[][] batchData, int from, int batchSize, NetworkWorkspace ws) throws InvalidInputLengthException {
+		ws.ensureBatchCapacity(batchSize);
+		
+		for (int s = 0; s < batchSize; s++) {
+			if (batchData[from + s].length != nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+			
+			System.arraycopy(batchData[from + s], 0, ws.zBatch[0], s * nPerLayer[0], nPerLayer[0]);
+		}
+	}
+	
+	/**
+	 * The batch version of `propagate`. For every layer, Z = A(prev) * transpose(W) + b with one sample per
+	 * row of Z and A.
+	 * 
+	 * @param batchSize Number of samples currently in the batch buffers
+	 * @param ws The workspace holding the batch
+	 */
+	protected void propagateBatch(int batchSize, NetworkWorkspace ws) {
+		propagateBatch(0, numL, batchSize, ws);
+	}
+	
+	/**
+	 * `propagateBatch` for layers [fromLayer, toLayer) only, so a batch can be fed forward a group of layers
+	 * at a time (see PipelineTrainer). Layer 0 is the activation of the input.
+	 * 
+	 * @param fromLayer First layer to propagate (inclusive)
+	 * @param toLayer Last layer to propagate (exclusive)
+	 * @param batchSize Number of samples currently in the batch buffers
+	 * @param ws The workspace holding the batch, already propagated up to fromLayer
+	 */
+	public void propagateBatch(int fromLayer, int toLayer, int batchSize, NetworkWorkspace ws) {
+		double[][] zBatch = ws.zBatch;
+		double[][] aBatch = ws.aBatch;
+		
+		if (fromLayer == 0) {
+			activateLayerInto(zBatch[0], aBatch[0], 0, batchSize * nPerLayer[0]);
+		}
+		
+		for (int l = Math.max(1, fromLayer); l < toLayer; l++) {
+			MatrixUtil.multiplyWithSecondTransposeInto(aBatch[l-1], w[l], zBatch[l], batchSize, nPerLayer[l-1], nPerLayer[l], false);
+			
+			for (int s = 0; s < batchSize; s++) {
+				int offset = s * nPerLayer[l];
+				
+				for (int n = 0; n < nPerLayer[l]; n++) {
+					zBatch[l][offset + n] += b[l][n];
+				}
+			}
+			
+			if (l == numL - 1 && usingSoftmax) {
+				for (int s = 0; s < batchSize; s++) {
+					softmaxLayerInto(zBatch[l], aBatch[l], s * nPerLayer[l], nPerLayer[l]);
+				}
+			} else {
+				activateLayerInto(zBatch[l], aBatch[l], 0, batchSize * nPerLayer[l]);
+			}
+		}
+	}
+	
+	/**
+	 * The batch version of `backPropagate`. The hidden layer errors of the whole batch are found with one
+	 * matrix-matrix product per layer: δ = (δ(next) * W(next)) ⊙ f'(z).
+	 * 
+	 * @param expectedIndeces The expected output of the network per sample
+	 * @param from Index in expectedIndeces of the first sample in the batch buffers
+	 * @param batchSize Number of samples currently in the batch buffers
+	 * @param ws The workspace holding the batch
+	 */
+	protected void backPropagateBatch(int[] expectedIndeces, int from, int batchSize, NetworkWorkspace ws) {
+		backPropagateBatch(expectedIndeces, from, 1, numL, batchSize, ws);
+	}
+	
+	/**
+	 * `backPropagateBatch` for layers [fromLayer, toLayer) only, from the top down.
+	 * 
+	 * @param expectedIndeces The expected output of the network per sample
+	 * @param from Index in expectedIndeces of the first sample in the batch buffers
+	 * @param fromLayer Lowest layer to find the error of (inclusive, 1 or more)
+	 * @param toLayer Layer above the highest layer to find the error of (exclusive)
+	 * @param batchSize Number of samples currently in the batch buffers
+	 * @param ws The workspace holding the batch, with the errors of layer toLayer already found
+	 */
+	public void backPropagateBatch(int[] expectedIndeces, int from, int fromLayer, int toLayer, int batchSize, NetworkWorkspace ws) {
+		double[][] zBatch = ws.zBatch;
+		double[][] aBatch = ws.aBatch;
+		double[][] δBatch = ws.δBatch;
+		int nOutput = nPerLayer[numL - 1];
+		
+		if (toLayer == numL) {
+			for (int s = 0; s < batchSize; s++) {
+				calculateOutputLossDerivative(aBatch[numL-1], s * nOutput, expectedIndeces[from + s], δBatch[numL-1]);
+			}
+			
+			if (usingSoftmax) {
+				for (int i = 0; i < batchSize * nOutput; i++) {
+					δBatch[numL-1][i] *= aBatch[numL-1][i] * (1.0 - aBatch[numL-1][i]); //softmax' from the softmax values themselves
+				}
+			} else {
+				Kernels.get().multiplyByActivationPrimeInto(activationType, zBatch[numL-1], aBatch[numL-1], δBatch[numL-1], 0, batchSize * nOutput);
+			}
+			
+			toLayer = numL - 1;
+		}
+		
+		for (int l = toLayer - 1; l >= Math.max(1, fromLayer); l--) {
+			MatrixUtil.multiplyInto(δBatch[l+1], w[l+1], δBatch[l], batchSize, nPerLayer[l+1], nPerLayer[l], false);
+			Kernels.get().multiplyByActivationPrimeInto(activationType, zBatch[l], aBatch[l], δBatch[l], 0, batchSize * nPerLayer[l]);
+		}
+	}
+	
+	/**
+	 * The batch version of `gradientDescent`: the summed deltas of the whole batch, with
+	 * deltaW = -learningRate * transpose(δ) * A(prev) taken as one matrix-matrix product per layer. The
+	 * deltas are added to whatever the accumulator already holds.
+	 * 
+	 * The batch errors are scaled by the learning rate in place, so they are not usable afterwards.
+	 * 
+	 * @param batchSize Number of samples currently in the batch buffers
+	 * @param ws The workspace holding the batch
+	 * @param accumulator The accumulator to add the bias and weight deltas into
+	 */
+	protected void gradientDescentBatch(int batchSize, NetworkWorkspace ws, GradientAccumulator accumulator) {
+		gradientDescentBatch(1, numL, batchSize, ws, accumulator, true);
+		
+		accumulator.countSamples(batchSize);
+	}
+	
+	/**
+	 * `gradientDescentBatch` for layers [fromLayer, toLayer) only. The sample count is left to the caller.
+	 * 
+	 * If scalingErrors is false, the errors are left untouched (another group of layers may still need them)
+	 * and the unscaled gradients, transpose(δ) * A(prev), are added instead; the caller then has to scale the
+	 * summed deltas by -learningRate itself (see GradientAccumulator.scale).
+	 * 
+	 * @param fromLayer Lowest layer to find the deltas of (inclusive, 1 or more)
+	 * @param toLayer Layer above the highest layer to find the deltas of (exclusive)
+	 * @param batchSize Number of samples currently in the batch buffers
+	 * @param ws The workspace holding the batch
+	 * @param accumulator The accumulator to add the bias and weight deltas into
+	 * @param scalingErrors Whether to scale the errors by -learningRate in place first
+	 */
+	public void gradientDescentBatch(int fromLayer, int toLayer, int batchSize, NetworkWorkspace ws, GradientAccumulator accumulator, boolean scalingErrors) {
+		for (int l = toLayer - 1; l >= Math.max(1, fromLayer); l--) {
+			double[] deltaW = accumulator.deltaW[l];
+			double[] deltaB = accumulator.deltaB[l];
+			double[] layerδ = ws.δBatch[l];
+			
+			if (scalingErrors) {
+				Kernels.get().scalarMultiplyInto(layerδ, -learningRate, layerδ, batchSize * nPerLayer[l]); //Batch sized, so usually cheaper to scale than deltaW
+			}
+			
+			MatrixUtil.multiplyWithFirstTransposeInto(layerδ, ws.aBatch[l-1], deltaW, nPerLayer[l], batchSize, nPerLayer[l-1], true);
+			
+			for (int s = 0; s < batchSize; s++) {
+				int offset = s * nPerLayer[l];
+				
+				for (int n = 0; n < nPerLayer[l]; n++) {
+					deltaB[n] += layerδ[offset + n];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The input gradients (saliency maps) of a batch: for every sample, the derivative of the loss for its
+	 * target class with respect to each input neuron's weighted input. The whole batch takes one batched
+	 * forward and backward pass, the backward pass carried one layer further than in training, into the
+	 * input layer: δ(0) = (δ(1) * W(1)) ⊙ f'(z(0)).
+	 * 
+	 * Nothing but the workspace and `out` is written, so threads with their own workspaces can run this at
+	 * the same time.
+	 * 
+	 * @param inputs Holds the inputs, each of length number of input neurons in the network
+	 * @param targets Holds the class whose loss is differentiated, per input
+	 * @param from Index in inputs and targets of the first sample of the batch
+	 * @param count Number of samples in the batch
+	 * @param out Receives the gradients, one row of number of input neurons per sample
+	 * @param outOffset Index in out of the first sample's first gradient
+	 * @param ws The workspace to run the batch in
+	 */
+	public void computeInputGradients(double[][] inputs, int[] targets, int from, int count, double[] out, int outOffset, NetworkWorkspace ws) {
+		try {
+			if (out.length < outOffset + count * nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+			
+			inputBatchData(inputs, from, count, ws);
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return;
+		}
+		
+		propagateBatch(count, ws);
+		backPropagateBatch(targets, from, count, ws);
+		
+		MatrixUtil.multiplyInto(ws.δBatch[1], w[1], ws.δBatch[0], count, nPerLayer[1], nPerLayer[0], false);
+		Kernels.get().multiplyByActivationPrimeInto(activationType, ws.zBatch[0], ws.aBatch[0], ws.δBatch[0], 0, count * nPerLayer[0]);
+		
+		System.arraycopy(ws.δBatch[0], 0, out, outOffset, count * nPerLayer[0]);
+	}
+	
+	/**
+	 * `computeInputGradients` for every input, in batches of INPUT_GRADIENT_BATCH_SIZE through the network's
+	 * own workspace.
+	 * 
+	 * @param inputs Holds the inputs, each of length number of input neurons in the network
+	 * @param targets Holds the class whose loss is differentiated, per input
+	 * @param out Receives the gradients, one row of number of input neurons per input
+	 */
+	public void computeInputGradients(double[][] inputs, int[] targets, double[] out) {
+		for (int from = 0; from < inputs.length; from += INPUT_GRADIENT_BATCH_SIZE) {
+			int count = Math.min(INPUT_GRADIENT_BATCH_SIZE, inputs.length - from);
+			
+			computeInputGradients(inputs, targets, from, count, out, from * nPerLayer[0], workspace);
+		}
 	}
 	
 	/**
@@ -624,11 +1052,23 @@ public class MatrixNetwork {
 	 * is desired, the epoch trainer will split the training data into batches. Should the training data not 
 	 * divide evenly by the batch size, the last batch will have less training data than the previous ones.
 	 * 
+	 * If a trainer has been set (see `setTrainer`), the epoch is handed to it instead.
+	 * 
 	 * @param trainingData Data to be inputted
 	 * @param expectedOutputs The expected results of the network per the training data
 	 * @param batchSize Size of the batches to be performed. 1 if batch training is not desired.
+	 * @throws IllegalArgumentException if batchSize is less than 1
 	 */
 	public void performEpoch(double[][] trainingData, int[] expectedOutputs, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		if (trainer != null) {
+			trainer.trainEpoch(trainingData, expectedOutputs, batchSize);
+			return;
+		}
+		
 		//Translate numbers into readable variables for code readability
 		int numDataPoints = trainingData.length;
 		int numBatches = (int)Math.ceil(numDataPoints / batchSize);
@@ -669,6 +1109,103 @@ public class MatrixNetwork {
 		}
 	}
 	
+	/**
+	 * Perform an epoch on samples prepared as they are needed, in order, without the whole data set ever
+	 * being held as arrays. On the network's own path each sample is prepared straight into the input rows
+	 * of the workspace's batch buffers; if a trainer has been set, each batch is prepared into one reused
+	 * set of rows and handed to it.
+	 * 
+	 * @param source The training data
+	 * @param batchSize Size of the batches to be performed (the last one may be smaller)
+	 * @throws IllegalArgumentException if batchSize is less than 1
+	 */
+	public void performEpoch(SampleSource source, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		try {
+			if (source.getSampleLength() != nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return;
+		}
+		
+		int numDataPoints = source.size();
+		double[][] batchData = (trainer != null) ? new double[batchSize][ nPerLayer[0] ] : (double[][]) null;
+		int[] batchExpectedOutputs = new int[batchSize];
+		
+		for (int from = 0; from < numDataPoints; from += batchSize) {
+			int size = Math.min(batchSize, numDataPoints - from);
+			
+			for (int s = 0; s < size; s++) {
+				batchExpectedOutputs[s] = source.getExpectedOutput(from + s);
+			}
+			
+			if (trainer != null) {
+				for (int s = 0; s < size; s++) {
+					source.prepareSample(from + s, batchData[s], 0);
+				}
+				
+				trainer.trainBatch(batchData, batchExpectedOutputs, 0, size);
+			} else {
+				applyDeltaPackage(performBatchAndGetDelta(source, from, size, batchExpectedOutputs));
+			}
+		}
+	}
+	
+	/**
+	 * `performBatchAndGetDelta` for samples [from, from + batchSize) of a sample source, prepared straight
+	 * into the input rows of the network's own batch buffers.
+	 * 
+	 * @param source The training data
+	 * @param from Index of the first sample of the batch
+	 * @param batchSize Number of samples in the batch
+	 * @param expectedOutputs The expected results of the network, one per sample of the batch
+	 * @return The combined weight-bias deltas, held in the workspace's accumulator until its next batch
+	 */
+	protected WeightBiasDeltaPackage performBatchAndGetDelta(SampleSource source, int from, int batchSize, int[] expectedOutputs) {
+		NetworkWorkspace ws = workspace;
+		
+		ws.ensureBatchCapacity(batchSize);
+		
+		for (int s = 0; s < batchSize; s++) {
+			source.prepareSample(from + s, ws.zBatch[0], s * nPerLayer[0]);
+		}
+		
+		ws.gradientAccumulator.clear();
+		
+		propagateBatch(batchSize, ws);
+		backPropagateBatch(expectedOutputs, 0, batchSize, ws);
+		gradientDescentBatch(batchSize, ws, ws.gradientAccumulator);
+		
+		return ws.gradientAccumulator;
+	}
+	
+	/**
+	 * Perform an epoch on batches prepared by a pipeline, training each batch as soon as it is ready while
+	 * the pipeline prepares the next ones. If a trainer has been set, each batch is handed to it.
+	 * 
+	 * @param pipeline The pipeline preparing the training data
+	 */
+	public void performEpoch(BatchPipeline pipeline) {
+		pipeline.startEpoch();
+		
+		for (PreparedBatch batch = pipeline.nextBatch(); batch != null; batch = pipeline.nextBatch()) {
+			if (trainer != null) {
+				trainer.trainBatch(batch.data, batch.expectedOutputs, 0, batch.size);
+			} else if (batch.size == batch.data.length) {
+				applyDeltaPackage(performBatchAndGetDelta(batch.data, batch.expectedOutputs));
+			} else { //The short last batch of the epoch
+				applyDeltaPackage(performBatchAndGetDelta(ArrayUtil.clipArray(batch.data, 0, batch.size), ArrayUtil.clipArray(batch.expectedOutputs, 0, batch.size)));
+			}
+			
+			pipeline.release(batch);
+		}
+	}
+	
 	public TestResultPackage performTest(double[][] testData, int[] expectedOutputs) {
 		if (testData.length != expectedOutputs.length) { return (TestResultPackage) null; }
 		
@@ -697,6 +1234,95 @@ public class MatrixNetwork {
 		return new TestResultPackage(numTests, percentageCorrect, outputNeuronValues, outputNeuronIndeces, ifCorrect);
 	}
 	
+	/**
+	 * `performTest` on samples prepared one at a time into a single reused input array.
+	 * 
+	 * @param source The test data
+	 * @param ws The workspace to propagate through
+	 * @return The test results, or null if the samples are not the length of the input layer
+	 */
+	public TestResultPackage performTest(SampleSource source, NetworkWorkspace ws) {
+		try {
+			if (source.getSampleLength() != nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return (TestResultPackage) null;
+		}
+		
+		int numTests = source.size();
+		int correctCount = 0;
+		
+		double[]  input = new double[ nPerLayer[0] ];
+		double[]  outputNeuronValues = new double[numTests];
+		int[]     outputNeuronIndeces = new int[numTests];
+		boolean[] ifCorrect = new boolean[numTests];
+		
+		for (int t = 0; t < numTests; t++) {
+			source.prepareSample(t, input, 0);
+			
+			int outputIndex = inputDataAndPropagate(input, ws);
+			
+			ifCorrect[t] = (outputIndex == source.getExpectedOutput(t));
+			
+			if (ifCorrect[t]) {
+				correctCount++;
+			}
+			
+			outputNeuronValues[t] = ws.a[numL - 1][outputIndex];
+			outputNeuronIndeces[t] = outputIndex;
+		}
+		
+		double percentageCorrect = (double)correctCount / (double)numTests;
+		
+		return new TestResultPackage(numTests, percentageCorrect, outputNeuronValues, outputNeuronIndeces, ifCorrect);
+	}
+	
+	/**
+	 * Hand every following epoch to a trainer instead of running it on this thread.
+	 * 
+	 * @param trainer The trainer to use, or null to go back to the network's own path
+	 */
+	public void setTrainer(Trainer trainer) {
+		this.trainer = trainer;
+	}
+	
+	public Trainer getTrainer() {
+		return trainer;
+	}
+	
+	/**
+	 * Select how following epochs are trained: on this thread (Serial), with the batches split across
+	 * threads (Synchronous, see ParallelTrainer), asynchronously without locks (Hogwild, see
+	 * HogwildTrainer) or with the layers split into stages that work on micro-batches at the same time
+	 * (Pipeline, see PipelineTrainer). Any trainer set before is shut down.
+	 * 
+	 * @param trainingMode How the network should be trained
+	 * @param numThreads Number of threads for the multi-threaded modes
+	 */
+	public void setTrainingMode(TrainingMode trainingMode, int numThreads) {
+		if (trainer != null) {
+			trainer.shutdown();
+		}
+		
+		switch (trainingMode) {
+		case Synchronous:
+			trainer = (numThreads > 1) ? new ParallelTrainer(this, numThreads) : (Trainer) null;
+			break;
+		case Hogwild:
+			trainer = new HogwildTrainer(this, numThreads);
+			break;
+		case Pipeline:
+			trainer = new PipelineTrainer(this, numThreads, 4 * numThreads); //About four micro-batches per stage keeps the stages mostly busy
+			break;
+		case Serial:
+		default:
+			trainer = (Trainer) null;
+			break;
+		}
+	}
+	
 	public NetworkWeightBiasPackage generateNetworkWeightBiasPackage() {
 		return new NetworkWeightBiasPackage(b, w);
 	}
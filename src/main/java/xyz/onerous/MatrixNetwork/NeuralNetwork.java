@@ -0,0 +1,57 @@
+package xyz.onerous.MatrixNetwork;
+
+import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
+
+/**
+ * What every network can do, whatever its precision: predict, train an epoch from a sample source, test,
+ * and hand its weights and biases in and out as a (double precision) weight-bias package. Code that only
+ * needs these works with a MatrixNetwork and a FloatMatrixNetwork alike.
+ * 
+ * @author Gabriel Wong
+ */
+public interface NeuralNetwork {
+	/**
+	 * @param data Array of length number of input neurons in the network
+	 * @return Network response (index of 'brightest' output neuron)
+	 */
+	int inputDataAndPropagate(double[] data);
+	
+	/**
+	 * @return the index of the 'brightest' output neuron after the last propagation
+	 */
+	int getDominantOutputIndex();
+	
+	double getOutputNeuronValue(int index);
+	
+	/**
+	 * @param expectedIndex The expected output of the network
+	 * @return the total output layer error of the last propagation
+	 */
+	double getOutputError(int expectedIndex);
+	
+	int getNumL();
+	
+	int[] getNPerLayer();
+	
+	/**
+	 * Train the network through every sample of a source once, in order.
+	 * 
+	 * @param source The training data
+	 * @param batchSize Size of the batches to be performed (the last one may be smaller)
+	 * @throws IllegalArgumentException if batchSize is less than 1
+	 */
+	void performEpoch(SampleSource source, int batchSize);
+	
+	/**
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @return The test results, or null if the arrays differ in length
+	 */
+	TestResultPackage performTest(double[][] testData, int[] expectedOutputs);
+	
+	NetworkWeightBiasPackage generateNetworkWeightBiasPackage();
+	
+	void applyNetworkWeightBiasPackage(NetworkWeightBiasPackage networkWeightBiasPackage);
+}
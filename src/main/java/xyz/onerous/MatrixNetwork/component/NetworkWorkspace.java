@@ -0,0 +1,149 @@
+package xyz.onerous.MatrixNetwork.component;
+
+import xyz.onerous.MatrixNetwork.component.datapackage.FloatWeightBiasDeltaPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+
+/**
+ * Every scratch buffer a network needs to propagate, backpropagate and find its deltas, sized once from
+ * the number of neurons per layer. Once a workspace exists (and its batch buffers have grown to the batch
+ * size in use), a training step or an inference call through it allocates nothing.
+ * 
+ * The weights and biases are not part of the workspace, so several workspaces can run against one network
+ * at the same time, one per thread.
+ * 
+ * A workspace is either double or single precision (see Precision); the buffers of the other precision are
+ * left null. A single-precision workspace has no single-sample error buffer, since a FloatMatrixNetwork
+ * trains a single sample as a batch of one.
+ */
+public class NetworkWorkspace {
+	public final Precision precision;
+	
+	public final double[][] z; //Neuron Weighted Inputs
+	public final double[][] a; //Neuron Activations
+	public final double[][] δ; //Network error per neuron
+	
+	public final GradientAccumulator gradientAccumulator; //Summed deltas of the batch being trained
+	
+	public int batchCapacity; //Number of samples the batch buffers below can hold
+	public double[][] zBatch; //Batch weighted inputs, one sample per row (zBatch[l][s * nPerLayer[l] + n])
+	public double[][] aBatch; //Batch activations, laid out like zBatch
+	public double[][] δBatch; //Batch error, laid out like zBatch
+	
+	public final float[][] floatZ; //Single precision counterparts of the buffers above
+	public final float[][] floatA;
+	
+	public final FloatWeightBiasDeltaPackage floatDeltaPackage; //Deltas of the single precision batch last trained
+	
+	public float[][] floatZBatch;
+	public float[][] floatABatch;
+	public float[][] floatδBatch;
+	
+	private final int[] nPerLayer;
+	
+	/**
+	 * @param nPerLayer Number of neurons per layer of the network
+	 */
+	public NetworkWorkspace(int[] nPerLayer) {
+		this(nPerLayer, true);
+	}
+	
+	/**
+	 * @param nPerLayer Number of neurons per layer of the network
+	 * @param withAccumulator Whether to give the workspace its own gradient accumulator (a model's worth of
+	 * memory), or leave it null for callers that accumulate elsewhere
+	 */
+	public NetworkWorkspace(int[] nPerLayer, boolean withAccumulator) {
+		this(nPerLayer, withAccumulator, Precision.Double);
+	}
+	
+	/**
+	 * @param nPerLayer Number of neurons per layer of the network
+	 * @param withAccumulator Whether to give the workspace its own gradient accumulator, or for a single
+	 * precision workspace its own delta package (either a model's worth of memory)
+	 * @param precision Which set of buffers to allocate
+	 */
+	public NetworkWorkspace(int[] nPerLayer, boolean withAccumulator, Precision precision) {
+		int numL = nPerLayer.length;
+		
+		this.precision = precision;
+		this.nPerLayer = nPerLayer.clone();
+		
+		if (precision == Precision.Single) {
+			this.z = (double[][]) null;
+			this.a = (double[][]) null;
+			this.δ = (double[][]) null;
+			this.gradientAccumulator = (GradientAccumulator) null;
+			this.floatZ = new float[numL][];
+			this.floatA = new float[numL][];
+			
+			for (int l = 0; l < numL; l++) {
+				floatZ[l] = new float[ nPerLayer[l] ];
+				floatA[l] = new float[ nPerLayer[l] ];
+			}
+			
+			if (withAccumulator) {
+				float[][] deltaW = new float[numL][];
+				float[][] deltaB = new float[numL][];
+				
+				for (int l = 0; l < numL; l++) {
+					deltaW[l] = (l == 0) ? new float[0] : new float[ nPerLayer[l] * nPerLayer[l-1] ];
+					deltaB[l] = new float[ nPerLayer[l] ];
+				}
+				
+				this.floatDeltaPackage = new FloatWeightBiasDeltaPackage(deltaW, deltaB);
+			} else {
+				this.floatDeltaPackage = (FloatWeightBiasDeltaPackage) null;
+			}
+		} else {
+			this.z = new double[numL][];
+			this.a = new double[numL][];
+			this.δ = new double[numL][];
+			
+			for (int l = 0; l < numL; l++) {
+				z[l] = new double[ nPerLayer[l] ];
+				a[l] = new double[ nPerLayer[l] ];
+				δ[l] = new double[ nPerLayer[l] ];
+			}
+			
+			this.gradientAccumulator = withAccumulator ? new GradientAccumulator(nPerLayer) : (GradientAccumulator) null;
+			this.floatZ = (float[][]) null;
+			this.floatA = (float[][]) null;
+			this.floatDeltaPackage = (FloatWeightBiasDeltaPackage) null;
+		}
+	}
+	
+	/**
+	 * Make sure the batch buffers can hold `batchSize` samples, growing them if they cannot.
+	 * 
+	 * @param batchSize
+	 */
+	public void ensureBatchCapacity(int batchSize) {
+		if (batchSize <= batchCapacity) { return; }
+		
+		int numL = nPerLayer.length;
+		
+		if (precision == Precision.Single) {
+			floatZBatch = new float[numL][];
+			floatABatch = new float[numL][];
+			floatδBatch = new float[numL][];
+			
+			for (int l = 0; l < numL; l++) {
+				floatZBatch[l] = new float[batchSize * nPerLayer[l]];
+				floatABatch[l] = new float[batchSize * nPerLayer[l]];
+				floatδBatch[l] = new float[batchSize * nPerLayer[l]];
+			}
+		} else {
+			zBatch = new double[numL][];
+			aBatch = new double[numL][];
+			δBatch = new double[numL][];
+			
+			for (int l = 0; l < numL; l++) {
+				zBatch[l] = new double[batchSize * nPerLayer[l]];
+				aBatch[l] = new double[batchSize * nPerLayer[l]];
+				δBatch[l] = new double[batchSize * nPerLayer[l]];
+			}
+		}
+		
+		batchCapacity = batchSize;
+	}
+}
@@ -0,0 +1,9 @@
+package xyz.onerous.MatrixNetwork.component;
+
+/**
+ * The number format of a network's weights, activations and deltas: Double for a MatrixNetwork, Single for
+ * a FloatMatrixNetwork. A NetworkWorkspace only allocates the buffers of its precision.
+ */
+public enum Precision {
+	Double, Single;
+}
@@ -0,0 +1,5 @@
+package xyz.onerous.MatrixNetwork.component;
+
+public enum TrainingMode {
+	Serial, Synchronous, Hogwild, Pipeline;
+}
@@ -0,0 +1,21 @@
+package xyz.onerous.MatrixNetwork.component.datapackage;
+
+import java.awt.image.BufferedImage;
+
+public class DeepVisualPackage {
+	public int           outputIndex; //Output neuron the visual was generated for
+	public int           restart; //Which of that neuron's starting points it came from (0 being the fixed one)
+	public double        outputError; //Output error of the visual's input after the last step
+	public BufferedImage image; //The input layer as an image (null if it is not square)
+	
+	public DeepVisualPackage(int outputIndex, int restart, double outputError, BufferedImage image) {
+		this.outputIndex = outputIndex;
+		this.restart = restart;
+		this.outputError = outputError;
+		this.image = image;
+	}
+	
+	public String toString() {
+		return outputIndex + " (restart " + restart + "): " + outputError;
+	}
+}
@@ -0,0 +1,42 @@
+package xyz.onerous.MatrixNetwork.component.datapackage;
+
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+
+/**
+ * The single-precision counterpart of NetworkWeightBiasPackage: the weights and biases of a
+ * FloatMatrixNetwork, laid out the same way (one contiguous row-major weight buffer per layer). Widening a
+ * package to double precision is exact; narrowing one rounds every value to the nearest float.
+ */
+public class FloatNetworkWeightBiasPackage {
+	protected float[][] b;
+	protected float[][] w;
+	
+	public float[][] getNeuronBiases() {
+		return b;
+	}
+	public float[][] getFlatConnectionWeights() {
+		return w;
+	}
+	
+	/**
+	 * @return A double precision package with a widened copy of every weight and bias
+	 */
+	public NetworkWeightBiasPackage toNetworkWeightBiasPackage() {
+		return new NetworkWeightBiasPackage(ArrayUtil.floatToDouble(b), ArrayUtil.floatToDouble(w));
+	}
+	
+	public FloatNetworkWeightBiasPackage(float[][] b, float[][] w) {
+		this.b = b;
+		this.w = w;
+	}
+	
+	/**
+	 * Create a package from a double precision one, narrowing a copy of every weight and bias.
+	 * 
+	 * @param networkWeightBiasPackage
+	 */
+	public FloatNetworkWeightBiasPackage(NetworkWeightBiasPackage networkWeightBiasPackage) {
+		this.b = ArrayUtil.doubleToFloat(networkWeightBiasPackage.getNeuronBiases());
+		this.w = ArrayUtil.doubleToFloat(networkWeightBiasPackage.getFlatConnectionWeights());
+	}
+}
@@ -0,0 +1,14 @@
+package xyz.onerous.MatrixNetwork.component.datapackage;
+
+/**
+ * The single-precision counterpart of WeightBiasDeltaPackage, produced and consumed by FloatMatrixNetwork.
+ */
+public class FloatWeightBiasDeltaPackage {
+	public float[][] deltaW; //One row-major buffer per layer, laid out like the network weights
+	public float[][] deltaB;
+	
+	public FloatWeightBiasDeltaPackage(float[][] deltaW, float[][] deltaB) {
+		this.deltaW = deltaW;
+		this.deltaB = deltaB;
+	}
+}
@@ -0,0 +1,104 @@
+package xyz.onerous.MatrixNetwork.component.datapackage;
+
+import java.util.Arrays;
+
+import xyz.onerous.MatrixNetwork.component.util.MatrixUtil;
+
+/**
+ * A weight-bias delta package whose buffers are allocated once, sized from the network, and summed into
+ * in place. The gradient of each sample is added as a rank-1 update (δ * transpose(a(prev))) instead of
+ * being built as its own matrix, so the memory held stays one model's worth whatever the batch size.
+ * 
+ * One accumulator is owned by each trainer. Since it is reused, a package handed out by a trainer is only
+ * valid until that trainer runs its next batch.
+ */
+public class GradientAccumulator extends WeightBiasDeltaPackage {
+	private int sampleCount;
+	
+	/**
+	 * @param nPerLayer Number of neurons per layer of the network the deltas are for
+	 */
+	public GradientAccumulator(int[] nPerLayer) {
+		super(new double[nPerLayer.length][], new double[nPerLayer.length][]);
+		
+		for (int l = 0; l < nPerLayer.length; l++) {
+			deltaB[l] = new double[ nPerLayer[l] ];
+			
+			if (l != 0) {
+				deltaW[l] = new double[ nPerLayer[l] * nPerLayer[l-1] ];
+			} else {
+				deltaW[l] = new double[0];
+			}
+		}
+	}
+	
+	/**
+	 * Zero every delta so a new batch can be accumulated.
+	 */
+	public void clear() {
+		for (int l = 0; l < deltaW.length; l++) {
+			Arrays.fill(deltaW[l], 0.0);
+			Arrays.fill(deltaB[l], 0.0);
+		}
+		
+		sampleCount = 0;
+	}
+	
+	/**
+	 * Add one layer's deltas for one sample: deltaW[l] += scale * layerδ * transpose(prevLayerA) and
+	 * deltaB[l] += scale * layerδ.
+	 * 
+	 * @param l The layer the deltas are for (1 or more)
+	 * @param layerδ The error of layer l
+	 * @param prevLayerA The activations of layer l - 1
+	 * @param scale Usually the negative learning rate
+	 */
+	public void addOuterProduct(int l, double[] layerδ, double[] prevLayerA, double scale) {
+		MatrixUtil.outerProductAddInto(layerδ, prevLayerA, scale, deltaW[l]);
+		MatrixUtil.scaledAddInto(layerδ, scale, deltaB[l]);
+	}
+	
+	/**
+	 * Add another package's deltas into this one.
+	 * 
+	 * @param deltaPackage A package with the same layer sizes
+	 */
+	public void add(WeightBiasDeltaPackage deltaPackage) {
+		for (int l = 0; l < deltaW.length; l++) {
+			MatrixUtil.addInto(deltaW[l], deltaPackage.deltaW[l], deltaW[l]);
+			MatrixUtil.addInto(deltaB[l], deltaPackage.deltaB[l], deltaB[l]);
+		}
+		
+		if (deltaPackage instanceof GradientAccumulator) {
+			sampleCount += ((GradientAccumulator)deltaPackage).sampleCount;
+		}
+	}
+	
+	/**
+	 * Multiply the deltas of layers [fromLayer, toLayer) by a factor.
+	 * 
+	 * @param fromLayer First layer to scale (inclusive)
+	 * @param toLayer Last layer to scale (exclusive)
+	 * @param factor Usually the negative learning rate
+	 */
+	public void scale(int fromLayer, int toLayer, double factor) {
+		for (int l = fromLayer; l < toLayer; l++) {
+			MatrixUtil.scalarMultiplyInto(deltaW[l], factor, deltaW[l]);
+			MatrixUtil.scalarMultiplyInto(deltaB[l], factor, deltaB[l]);
+		}
+	}
+	
+	/**
+	 * @param numSamples Number of samples just accumulated
+	 */
+	public void countSamples(int numSamples) {
+		sampleCount += numSamples;
+	}
+	
+	/**
+	 * @return Number of samples accumulated since the last clear
+	 */
+	public int getSampleCount() {
+		return sampleCount;
+	}
+}
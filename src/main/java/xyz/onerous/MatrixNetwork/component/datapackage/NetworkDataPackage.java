@@ -16,6 +16,8 @@ public class NetworkDataPackage extends NetworkWeightBiasPackage {
 	private double[][] a;
 	private double[][] z;
 	
+	private double[][][] connectionValues; //Built on first request
+	
 	//Getters for all variables.
 	public int getNetworkResult() {
 		return networkResult;
@@ -37,7 +39,7 @@ public class NetworkDataPackage extends NetworkWeightBiasPackage {
 	 * @param connectionWeights
 	 * @param connectionValues
 	 */
-	public NetworkDataPackage(int networkResult, double[][] neuronActivations, double[][] neuronZs, double[][] neuronBiases, double[][][] connectionWeights) {
+	public NetworkDataPackage(int networkResult, double[][] neuronActivations, double[][] neuronZs, double[][] neuronBiases, double[][] connectionWeights) {
 		super(neuronBiases, connectionWeights);
 		
 		this.networkResult = networkResult;
@@ -45,13 +47,34 @@ public class NetworkDataPackage extends NetworkWeightBiasPackage {
 		this.z = neuronZs;
 	}
 	
+	/**
+	 * @param l Layer of the neuron
+	 * @param n Index of the neuron within its layer
+	 * @param pn Index of the neuron in the previous layer
+	 * @return The value carried by the connection (weight times previous activation), with no copy made
+	 */
+	public double getConnectionValue(int l, int n, int pn) {
+		return a[l-1][pn] * getConnectionWeight(l, n, pn);
+	}
+	
+	/**
+	 * @return the value carried by every connection (weight times previous activation) in nested [l][n][p_n]
+	 * form
+	 */
 	public double[][][] getConnectionValues() {
-		double[][][] connectionValues = w.clone();
-		
-		for (int l = 1; l < connectionValues.length; l++) {
-			for (int n = 0; n < connectionValues[l].length; n++) {
-				for (int c = 0; c < connectionValues[l][n].length; c++) {
-					connectionValues[l][n][c] = a[l-1][c] * w[l][n][c];
+		if (connectionValues == null) {
+			connectionValues = new double[w.length][][];
+			connectionValues[0] = new double[b[0].length][0];
+			
+			for (int l = 1; l < connectionValues.length; l++) {
+				int nPrev = a[l-1].length;
+				
+				connectionValues[l] = new double[b[l].length][nPrev];
+				
+				for (int n = 0; n < connectionValues[l].length; n++) {
+					for (int c = 0; c < nPrev; c++) {
+						connectionValues[l][n][c] = a[l-1][c] * w[l][n * nPrev + c];
+					}
 				}
 			}
 		}
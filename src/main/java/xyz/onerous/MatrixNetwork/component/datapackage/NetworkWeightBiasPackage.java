@@ -1,18 +1,92 @@
 package xyz.onerous.MatrixNetwork.component.datapackage;
 
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+
+/**
+ * The weights and biases of a network. Weights are kept the way the network keeps them, as one contiguous
+ * row-major buffer per layer (w[l][n * nPerLayer[l-1] + p_n]). The nested [l][n][p_n] form used by the
+ * save file is still available through getConnectionWeights(), which builds (once) a copy in that shape;
+ * code that reads single weights (the visualizers) should use getConnectionWeight instead.
+ */
 public class NetworkWeightBiasPackage {
 	protected double[][] b;
-	protected double[][][] w;
+	protected double[][] w;
+	
+	private double[][][] nestedW; //Compatibility view of w, built on first request
 	
 	public double[][] getNeuronBiases() {
 		return b;
 	}
-	public double[][][] getConnectionWeights() {
+	public double[][] getFlatConnectionWeights() {
 		return w;
 	}
 	
-	public NetworkWeightBiasPackage(double[][] b, double[][][] w) {
+	/**
+	 * @param l Layer of the neuron
+	 * @param n Index of the neuron within its layer
+	 * @param pn Index of the neuron in the previous layer
+	 * @return The weight of the connection, read straight from the flat buffer (no copy)
+	 */
+	public double getConnectionWeight(int l, int n, int pn) {
+		return w[l][n * (w[l].length / b[l].length) + pn];
+	}
+	
+	/**
+	 * @return the connection weights in nested [l][n][p_n] form. This is a copy; changing it does not change
+	 * the package or the network.
+	 */
+	public double[][][] getConnectionWeights() {
+		if (nestedW == null) {
+			nestedW = new double[w.length][][];
+			
+			for (int l = 0; l < w.length; l++) {
+				int rows = b[l].length;
+				int cols = (rows == 0) ? 0 : w[l].length / rows;
+				
+				nestedW[l] = ArrayUtil.nestArray(w[l], rows, cols);
+			}
+		}
+		
+		return nestedW;
+	}
+	
+	/**
+	 * A network's package holds the network's own arrays, and applying a package to a network makes it use
+	 * the package's arrays, so two networks only get separate weights through a copy.
+	 * 
+	 * @return A package with its own copy of every weight and bias
+	 */
+	public NetworkWeightBiasPackage copy() {
+		double[][] bCopy = new double[b.length][];
+		double[][] wCopy = new double[w.length][];
+		
+		for (int l = 0; l < b.length; l++) {
+			bCopy[l] = b[l].clone();
+			wCopy[l] = w[l].clone();
+		}
+		
+		return new NetworkWeightBiasPackage(bCopy, wCopy);
+	}
+	
+	public NetworkWeightBiasPackage(double[][] b, double[][] w) {
 		this.b = b;
 		this.w = w;
 	}
+	
+	/**
+	 * Create a package from weights in nested [l][n][p_n] form (as stored in older save files).
+	 * 
+	 * @param b
+	 * @param w
+	 */
+	public NetworkWeightBiasPackage(double[][] b, double[][][] w) {
+		this.b = b;
+		this.w = new double[w.length][];
+		
+		this.w[0] = new double[0]; //The input layer has no weights
+		
+		for (int l = 1; l < w.length; l++) {
+			this.w[l] = ArrayUtil.flattenArray(w[l]);
+		}
+	}
 }
@@ -0,0 +1,17 @@
+package xyz.onerous.MatrixNetwork.component.datapackage;
+
+import java.util.Arrays;
+
+public class PredictionPackage {
+	public int      outputIndex; //Index of the 'brightest' output neuron
+	public double[] outputNeuronValues; //Output layer activations (class probabilities for a softmax network)
+	
+	public PredictionPackage(int outputIndex, double[] outputNeuronValues) {
+		this.outputIndex = outputIndex;
+		this.outputNeuronValues = outputNeuronValues;
+	}
+	
+	public String toString() {
+		return outputIndex + " " + Arrays.toString(outputNeuronValues);
+	}
+}
@@ -0,0 +1,35 @@
+package xyz.onerous.MatrixNetwork.component.datapackage;
+
+public class RobustnessResultPackage {
+	public int      numTests;
+	public int      numSteps; //Gradient steps per perturbation (1 for FGSM, more for PGD)
+	
+	public double[] epsilons; //Perturbation budgets, the largest change allowed to any one input
+	public double[] percentageCorrect; //Accuracy on the perturbed inputs, per budget
+	
+	public TestResultPackage[] testResults; //The full results, per budget
+	
+	public RobustnessResultPackage(int numTests, int numSteps, double[] epsilons, TestResultPackage[] testResults) {
+		this.numTests = numTests;
+		this.numSteps = numSteps;
+		this.epsilons = epsilons;
+		this.testResults = testResults;
+		this.percentageCorrect = new double[epsilons.length];
+		
+		for (int e = 0; e < epsilons.length; e++) {
+			percentageCorrect[e] = testResults[e].percentageCorrect;
+		}
+	}
+	
+	public String toString() {
+		String result = "|  Epsilon  ||  %Correct\n";
+		
+		for (int e = 0; e < epsilons.length; e++) {
+			result += String.format("|  %7.4f  ||  %6.2f%%\n", epsilons[e], 100.0 * percentageCorrect[e]);
+		}
+		
+		return result + "\n\nRobustness Results for ID (" + this.hashCode() + ")\n"
+				+ "  #Tests:   " + numTests + "\n"
+				+ "  Attack:   " + ((numSteps == 1) ? "FGSM" : "PGD, " + numSteps + " steps");
+	}
+}
@@ -3,10 +3,10 @@ package xyz.onerous.MatrixNetwork.component.datapackage;
 import xyz.onerous.MatrixNetwork.component.util.MatrixUtil;
 
 public class WeightBiasDeltaPackage {
-	public double[][][] deltaW;
+	public double[][]   deltaW; //One row-major buffer per layer, laid out like the network weights
 	public double[][]   deltaB;
 	
-	public WeightBiasDeltaPackage(double[][][] deltaW, double[][] deltaB) {
+	public WeightBiasDeltaPackage(double[][] deltaW, double[][] deltaB) {
 		this.deltaW = deltaW;
 		this.deltaB = deltaB;
 	}
@@ -0,0 +1,167 @@
+package xyz.onerous.MatrixNetwork.component.kernel;
+
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+
+/**
+ * The numeric kernels the network spends its time in: element-wise operations, dot products, matrix-vector
+ * and matrix-matrix products and the activation functions. MatrixUtil and the MatrixNetwork call whichever
+ * backend Kernels has selected, so a faster implementation can be swapped in at runtime without touching
+ * the callers.
+ * 
+ * All methods write into caller-supplied outputs and never allocate. Matrices are row-major in one
+ * contiguous array and lengths are not checked. Unless stated otherwise, the output must not alias an
+ * input of a matrix product (element-wise outputs may alias their inputs).
+ * 
+ * The float overloads at the end are the single-precision kernels of the FloatMatrixNetwork, with the same
+ * contracts as their double counterparts. ScalarKernelBackend implements them once; a backend only needs to
+ * override the ones it can do faster.
+ * 
+ * @author Gabriel Wong
+ */
+public interface KernelBackend {
+	/**
+	 * @return input1 . input2 over the first `length` entries
+	 */
+	double dot(double[] input1, double[] input2, int length);
+	
+	/**
+	 * out = input1 ⊙ input2 over the first `length` entries
+	 */
+	void hadamardInto(double[] input1, double[] input2, double[] out, int length);
+	
+	/**
+	 * out = input1 + input2 over the first `length` entries
+	 */
+	void addInto(double[] input1, double[] input2, double[] out, int length);
+	
+	/**
+	 * out = matrix * scale over the first `length` entries
+	 */
+	void scalarMultiplyInto(double[] matrix, double scale, double[] out, int length);
+	
+	/**
+	 * out = matrix + addend over the first `length` entries
+	 */
+	void scalarAddInto(double[] matrix, double addend, double[] out, int length);
+	
+	/**
+	 * out += input * scale over the first `length` entries
+	 */
+	void scaledAddInto(double[] input, double scale, double[] out, int length);
+	
+	/**
+	 * out = matrix * vector, matrix being rows x cols
+	 */
+	void multiplyInto(double[] matrix, int rows, int cols, double[] vector, double[] out);
+	
+	/**
+	 * out = transpose(matrix) * vector, matrix being rows x cols, without building the transpose
+	 */
+	void multiplyWithFirstTransposeInto(double[] matrix, int rows, int cols, double[] vector, double[] out);
+	
+	/**
+	 * out = input1 * transpose(input2) for two vectors
+	 */
+	void outerProductInto(double[] input1, double[] input2, double[] out);
+	
+	/**
+	 * out += scale * input1 * transpose(input2) for two vectors, updating out in place
+	 */
+	void outerProductAddInto(double[] input1, double[] input2, double scale, double[] out);
+	
+	/**
+	 * out (+)= input1 * input2 with input1 m x k and input2 k x n
+	 */
+	void multiplyInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate);
+	
+	/**
+	 * out (+)= transpose(input1) * input2 with input1 k x m and input2 k x n
+	 */
+	void multiplyWithFirstTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate);
+	
+	/**
+	 * out (+)= input1 * transpose(input2) with input1 m x k and input2 n x k
+	 */
+	void multiplyWithSecondTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate);
+	
+	/**
+	 * A whole dense layer in one pass: layerZ = weights * input + biases and layerA = f(layerZ), each output
+	 * neuron's activation computed while its weighted input is still in a register or L1. weights is
+	 * rows x cols.
+	 */
+	void denseForwardInto(ActivationType activationType, double[] weights, double[] biases, int rows, int cols, double[] input, double[] layerZ, double[] layerA);
+	
+	/**
+	 * denseForwardInto for output neurons [fromRow, toRow) only, leaving the rest of layerZ and layerA
+	 * untouched, so that several threads can each compute a disjoint slice of one layer.
+	 */
+	void denseForwardRowsInto(ActivationType activationType, double[] weights, double[] biases, int fromRow, int toRow, int cols, double[] input, double[] layerZ, double[] layerA);
+	
+	/**
+	 * The backward pass of a dense layer in one pass: layerδ = (transpose(weights) * nextδ) ⊙ f'(layerZ),
+	 * walking weights (rows x cols) in its natural row order. The derivative comes from the cached
+	 * activations where the activation function allows it, see multiplyByActivationPrimeInto.
+	 */
+	void denseBackwardInto(ActivationType activationType, double[] weights, int rows, int cols, double[] nextδ, double[] layerZ, double[] layerA, double[] layerδ);
+	
+	/**
+	 * layerδ[from, to) *= f'(layerZ[from, to)). Sigmoid and TanH take their derivative from the activations
+	 * (a(1 - a) and 1 - a^2), which saves evaluating the activation function again.
+	 */
+	void multiplyByActivationPrimeInto(ActivationType activationType, double[] layerZ, double[] layerA, double[] layerδ, int from, int to);
+	
+	/**
+	 * layerA[from, to) = f(layerZ[from, to)) for the given activation function. layerA may be layerZ.
+	 */
+	void activateInto(ActivationType activationType, double[] layerZ, double[] layerA, int from, int to);
+	
+	/**
+	 * layerA[offset, offset + length) = softmax(layerZ[offset, offset + length)). layerA may be layerZ.
+	 */
+	void softmaxInto(double[] layerZ, double[] layerA, int offset, int length);
+	
+	/**
+	 * out = input1 + input2 over the first `length` entries
+	 */
+	void addInto(float[] input1, float[] input2, float[] out, int length);
+	
+	/**
+	 * out = matrix * scale over the first `length` entries
+	 */
+	void scalarMultiplyInto(float[] matrix, float scale, float[] out, int length);
+	
+	/**
+	 * out (+)= input1 * input2 with input1 m x k and input2 k x n
+	 */
+	void multiplyInto(float[] input1, float[] input2, float[] out, int m, int k, int n, boolean accumulate);
+	
+	/**
+	 * out (+)= transpose(input1) * input2 with input1 k x m and input2 k x n
+	 */
+	void multiplyWithFirstTransposeInto(float[] input1, float[] input2, float[] out, int m, int k, int n, boolean accumulate);
+	
+	/**
+	 * out (+)= input1 * transpose(input2) with input1 m x k and input2 n x k
+	 */
+	void multiplyWithSecondTransposeInto(float[] input1, float[] input2, float[] out, int m, int k, int n, boolean accumulate);
+	
+	/**
+	 * A whole dense layer in one pass: layerZ = weights * input + biases and layerA = f(layerZ)
+	 */
+	void denseForwardInto(ActivationType activationType, float[] weights, float[] biases, int rows, int cols, float[] input, float[] layerZ, float[] layerA);
+	
+	/**
+	 * layerδ[from, to) *= f'(layerZ[from, to))
+	 */
+	void multiplyByActivationPrimeInto(ActivationType activationType, float[] layerZ, float[] layerA, float[] layerδ, int from, int to);
+	
+	/**
+	 * layerA[from, to) = f(layerZ[from, to)). layerA may be layerZ.
+	 */
+	void activateInto(ActivationType activationType, float[] layerZ, float[] layerA, int from, int to);
+	
+	/**
+	 * layerA[offset, offset + length) = softmax(layerZ[offset, offset + length)). layerA may be layerZ.
+	 */
+	void softmaxInto(float[] layerZ, float[] layerA, int offset, int length);
+}
@@ -0,0 +1,74 @@
+package xyz.onerous.MatrixNetwork.component.kernel;
+
+/**
+ * Holds the kernel backend every MatrixUtil kernel and MatrixNetwork activation goes through. The backend is
+ * picked at startup from the `matrixnetwork.kernels` system property (`scalar`, `unrolled`, `vector` or
+ * `auto`, default `auto`) and can be changed at runtime with `setBackend`. `auto` takes the vector backend
+ * when it can be loaded and the unrolled one otherwise. The scalar backend is the fallback when the
+ * property names something unknown.
+ * 
+ * The vector backend (VectorKernelBackend) is built from src/main/java16 on JDK 16 and later only, and
+ * needs the JVM to be started with `--add-modules jdk.incubator.vector`. It is loaded by name, so nothing
+ * else depends on it being there.
+ * 
+ * @author Gabriel Wong
+ */
+public class Kernels {
+	public static final String BACKEND_PROPERTY = "matrixnetwork.kernels";
+	
+	private static final String VECTOR_BACKEND_CLASS = "xyz.onerous.MatrixNetwork.component.kernel.VectorKernelBackend";
+	
+	private static volatile KernelBackend backend = forName(System.getProperty(BACKEND_PROPERTY, "auto"));
+	
+	public static KernelBackend get() {
+		return backend;
+	}
+	
+	public static void setBackend(KernelBackend kernelBackend) {
+		backend = kernelBackend;
+	}
+	
+	/**
+	 * @param name `scalar`, `unrolled`, `vector` or `auto`
+	 * @return the named backend (unrolled in place of a vector backend that cannot be loaded), or the scalar
+	 * backend if the name is unknown
+	 */
+	public static KernelBackend forName(String name) {
+		if ("vector".equalsIgnoreCase(name) || "auto".equalsIgnoreCase(name)) {
+			KernelBackend vectorBackend = loadVectorBackend();
+			
+			if (vectorBackend != null) {
+				return vectorBackend;
+			}
+			
+			if ("vector".equalsIgnoreCase(name)) {
+				System.out.println("The vector kernel backend needs JDK 16+ and --add-modules jdk.incubator.vector, using unrolled.");
+			}
+			
+			return new UnrolledKernelBackend();
+		}
+		
+		if ("unrolled".equalsIgnoreCase(name)) {
+			return new UnrolledKernelBackend();
+		}
+		
+		if (!"scalar".equalsIgnoreCase(name)) {
+			System.out.println("Unknown kernel backend '" + name + "', using scalar.");
+		}
+		
+		return new ScalarKernelBackend();
+	}
+	
+	/**
+	 * @return a new VectorKernelBackend, or null if it was not built or the Vector API is not available
+	 */
+	public static KernelBackend loadVectorBackend() {
+		try {
+			return (KernelBackend) Class.forName(VECTOR_BACKEND_CLASS).getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			return null;
+		} catch (LinkageError e) { //The class is there but jdk.incubator.vector is not
+			return null;
+		}
+	}
+}
@@ -0,0 +1,701 @@
+package xyz.onerous.MatrixNetwork.component.kernel;
+
+import java.util.Arrays;
+
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+
+/**
+ * The reference backend: plain loops whose dot products and sums accumulate strictly in index order and
+ * whose activations use Math.exp/Math.tanh, as the original MatrixUtil and MatrixNetwork code did. Blocked
+ * loops share loads between several rows or columns but still add each one's terms in index order, so the
+ * blocking never changes a result. Every other backend is checked against this one.
+ * 
+ * The single-precision kernels are the same loops over floats. The other backends inherit them unchanged.
+ * 
+ * @author Gabriel Wong
+ */
+public class ScalarKernelBackend implements KernelBackend {
+	protected static final int ROW_BLOCK = 4; //Rows handled together so every vector load is shared
+	protected static final int COL_BLOCK = 1024; //Output columns kept hot in L1 by the transposed kernels
+	protected static final int TILE_I = 64; //Matrix-matrix tile sizes, chosen so one tile of each operand fits in L2
+	protected static final int TILE_J = 256;
+	protected static final int TILE_K = 128;
+	
+	public double dot(double[] input1, double[] input2, int length) {
+		double weightedSum = 0;
+		
+		for (int i = 0; i < length; i++) {
+			weightedSum += input1[i] * input2[i];
+		}
+		
+		return weightedSum;
+	}
+	
+	public void hadamardInto(double[] input1, double[] input2, double[] out, int length) {
+		for (int i = 0; i < length; i++) {
+			out[i] = input1[i] * input2[i];
+		}
+	}
+	
+	public void addInto(double[] input1, double[] input2, double[] out, int length) {
+		for (int i = 0; i < length; i++) {
+			out[i] = input1[i] + input2[i];
+		}
+	}
+	
+	public void scalarMultiplyInto(double[] matrix, double scale, double[] out, int length) {
+		for (int i = 0; i < length; i++) {
+			out[i] = matrix[i] * scale;
+		}
+	}
+	
+	public void scalarAddInto(double[] matrix, double addend, double[] out, int length) {
+		for (int i = 0; i < length; i++) {
+			out[i] = matrix[i] + addend;
+		}
+	}
+	
+	public void scaledAddInto(double[] input, double scale, double[] out, int length) {
+		for (int i = 0; i < length; i++) {
+			out[i] += input[i] * scale;
+		}
+	}
+	
+	/**
+	 * out = matrix * vector
+	 * 
+	 * @param matrix A rows x cols matrix
+	 * @param rows
+	 * @param cols
+	 * @param vector A vector of length cols
+	 * @param out A vector of length rows
+	 */
+	public void multiplyInto(double[] matrix, int rows, int cols, double[] vector, double[] out) {
+		int i = 0;
+		
+		for (; i + ROW_BLOCK <= rows; i += ROW_BLOCK) {
+			int r0 = i * cols, r1 = r0 + cols, r2 = r1 + cols, r3 = r2 + cols;
+			double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+			
+			for (int j = 0; j < cols; j++) {
+				double v = vector[j];
+				s0 += matrix[r0 + j] * v;
+				s1 += matrix[r1 + j] * v;
+				s2 += matrix[r2 + j] * v;
+				s3 += matrix[r3 + j] * v;
+			}
+			
+			out[i] = s0;
+			out[i + 1] = s1;
+			out[i + 2] = s2;
+			out[i + 3] = s3;
+		}
+		
+		for (; i < rows; i++) {
+			int r = i * cols;
+			double s = 0.0;
+			
+			for (int j = 0; j < cols; j++) {
+				s += matrix[r + j] * vector[j];
+			}
+			
+			out[i] = s;
+		}
+	}
+	
+	/**
+	 * out = transpose(matrix) * vector, walking the matrix in its natural row order.
+	 * 
+	 * @param matrix A rows x cols matrix
+	 * @param rows
+	 * @param cols
+	 * @param vector A vector of length rows
+	 * @param out A vector of length cols
+	 */
+	public void multiplyWithFirstTransposeInto(double[] matrix, int rows, int cols, double[] vector, double[] out) {
+		for (int jj = 0; jj < cols; jj += COL_BLOCK) {
+			int jEnd = Math.min(jj + COL_BLOCK, cols);
+			
+			for (int j = jj; j < jEnd; j++) {
+				out[j] = 0.0;
+			}
+			
+			int i = 0;
+			
+			for (; i + ROW_BLOCK <= rows; i += ROW_BLOCK) {
+				int r0 = i * cols, r1 = r0 + cols, r2 = r1 + cols, r3 = r2 + cols;
+				double v0 = vector[i], v1 = vector[i + 1], v2 = vector[i + 2], v3 = vector[i + 3];
+				
+				for (int j = jj; j < jEnd; j++) {
+					double s = out[j]; //Added one row at a time, keeping index order
+					s += matrix[r0 + j] * v0;
+					s += matrix[r1 + j] * v1;
+					s += matrix[r2 + j] * v2;
+					s += matrix[r3 + j] * v3;
+					out[j] = s;
+				}
+			}
+			
+			for (; i < rows; i++) {
+				int r = i * cols;
+				double v = vector[i];
+				
+				for (int j = jj; j < jEnd; j++) {
+					out[j] += matrix[r + j] * v;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * out = input1 * transpose(input2)
+	 * 
+	 * @param input1 A vector of length m
+	 * @param input2 A vector of length n
+	 * @param out A m x n matrix
+	 */
+	public void outerProductInto(double[] input1, double[] input2, double[] out) {
+		int n = input2.length;
+		
+		for (int i = 0; i < input1.length; i++) {
+			double scale = input1[i];
+			int r = i * n;
+			
+			for (int j = 0; j < n; j++) {
+				out[r + j] = scale * input2[j];
+			}
+		}
+	}
+	
+	/**
+	 * out += scale * input1 * transpose(input2), a rank-1 update of out in place
+	 * 
+	 * @param input1 A vector of length m
+	 * @param input2 A vector of length n
+	 * @param scale
+	 * @param out A m x n matrix
+	 */
+	public void outerProductAddInto(double[] input1, double[] input2, double scale, double[] out) {
+		int n = input2.length;
+		
+		for (int i = 0; i < input1.length; i++) {
+			double rowScale = input1[i] * scale;
+			int r = i * n;
+			
+			if (rowScale == 0.0) { continue; } //ReLU leaves many rows of the error at exactly zero
+			
+			for (int j = 0; j < n; j++) {
+				out[r + j] += rowScale * input2[j];
+			}
+		}
+	}
+	
+	/**
+	 * out (+)= input1 * input2
+	 * 
+	 * @param input1 A m x k matrix
+	 * @param input2 A k x n matrix
+	 * @param out A m x n matrix
+	 * @param m
+	 * @param k
+	 * @param n
+	 * @param accumulate Add into out instead of overwriting it
+	 */
+	public void multiplyInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		if (!accumulate) { Arrays.fill(out, 0, m * n, 0.0); }
+		
+		for (int kk = 0; kk < k; kk += TILE_K) {
+			int kEnd = Math.min(kk + TILE_K, k);
+			
+			for (int jj = 0; jj < n; jj += TILE_J) {
+				int jEnd = Math.min(jj + TILE_J, n);
+				
+				for (int i = 0; i < m; i++) {
+					int outRow = i * n;
+					int inRow = i * k;
+					
+					for (int p = kk; p < kEnd; p++) {
+						double scale = input1[inRow + p];
+						int bRow = p * n;
+						
+						for (int j = jj; j < jEnd; j++) {
+							out[outRow + j] += scale * input2[bRow + j];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * out (+)= transpose(input1) * input2, without building the transpose.
+	 * 
+	 * @param input1 A k x m matrix
+	 * @param input2 A k x n matrix
+	 * @param out A m x n matrix
+	 * @param m
+	 * @param k
+	 * @param n
+	 * @param accumulate Add into out instead of overwriting it
+	 */
+	public void multiplyWithFirstTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		if (!accumulate) { Arrays.fill(out, 0, m * n, 0.0); }
+		
+		for (int ii = 0; ii < m; ii += TILE_I) {
+			int iEnd = Math.min(ii + TILE_I, m);
+			
+			for (int jj = 0; jj < n; jj += TILE_J) {
+				int jEnd = Math.min(jj + TILE_J, n);
+				
+				for (int p = 0; p < k; p++) {
+					int aRow = p * m;
+					int bRow = p * n;
+					
+					for (int i = ii; i < iEnd; i++) {
+						double scale = input1[aRow + i];
+						
+						if (scale == 0.0) { continue; } //Common after ReLU
+						
+						int outRow = i * n;
+						
+						for (int j = jj; j < jEnd; j++) {
+							out[outRow + j] += scale * input2[bRow + j];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * out (+)= input1 * transpose(input2), without building the transpose. Every entry is a dot product of
+	 * two contiguous rows.
+	 * 
+	 * @param input1 A m x k matrix
+	 * @param input2 A n x k matrix
+	 * @param out A m x n matrix
+	 * @param m
+	 * @param k
+	 * @param n
+	 * @param accumulate Add into out instead of overwriting it
+	 */
+	public void multiplyWithSecondTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		int jTile = Math.max(ROW_BLOCK, (TILE_J * TILE_K) / Math.max(k, 1)); //Rows of input2 that fit in one tile
+		
+		for (int jj = 0; jj < n; jj += jTile) {
+			int jEnd = Math.min(jj + jTile, n);
+			
+			for (int i = 0; i < m; i++) {
+				int aRow = i * k;
+				int outRow = i * n;
+				int j = jj;
+				
+				for (; j + ROW_BLOCK <= jEnd; j += ROW_BLOCK) {
+					int b0 = j * k, b1 = b0 + k, b2 = b1 + k, b3 = b2 + k;
+					double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+					
+					for (int p = 0; p < k; p++) {
+						double v = input1[aRow + p];
+						s0 += input2[b0 + p] * v;
+						s1 += input2[b1 + p] * v;
+						s2 += input2[b2 + p] * v;
+						s3 += input2[b3 + p] * v;
+					}
+					
+					if (accumulate) {
+						out[outRow + j] += s0;
+						out[outRow + j + 1] += s1;
+						out[outRow + j + 2] += s2;
+						out[outRow + j + 3] += s3;
+					} else {
+						out[outRow + j] = s0;
+						out[outRow + j + 1] = s1;
+						out[outRow + j + 2] = s2;
+						out[outRow + j + 3] = s3;
+					}
+				}
+				
+				for (; j < jEnd; j++) {
+					int bRow = j * k;
+					double s = 0.0;
+					
+					for (int p = 0; p < k; p++) {
+						s += input1[aRow + p] * input2[bRow + p];
+					}
+					
+					out[outRow + j] = accumulate ? out[outRow + j] + s : s;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Rows are done four at a time (sharing every input load, as in multiplyInto); the bias and activation
+	 * are applied to each block of four as soon as its dot products are done. The activation switch is taken
+	 * once per block, not per neuron.
+	 */
+	public void denseForwardInto(ActivationType activationType, double[] weights, double[] biases, int rows, int cols, double[] input, double[] layerZ, double[] layerA) {
+		denseForwardRowsInto(activationType, weights, biases, 0, rows, cols, input, layerZ, layerA);
+	}
+	
+	public void denseForwardRowsInto(ActivationType activationType, double[] weights, double[] biases, int fromRow, int toRow, int cols, double[] input, double[] layerZ, double[] layerA) {
+		int i = fromRow;
+		
+		for (; i + ROW_BLOCK <= toRow; i += ROW_BLOCK) {
+			int r0 = i * cols, r1 = r0 + cols, r2 = r1 + cols, r3 = r2 + cols;
+			double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+			
+			for (int j = 0; j < cols; j++) {
+				double v = input[j];
+				s0 += weights[r0 + j] * v;
+				s1 += weights[r1 + j] * v;
+				s2 += weights[r2 + j] * v;
+				s3 += weights[r3 + j] * v;
+			}
+			
+			layerZ[i] = s0 + biases[i];
+			layerZ[i + 1] = s1 + biases[i + 1];
+			layerZ[i + 2] = s2 + biases[i + 2];
+			layerZ[i + 3] = s3 + biases[i + 3];
+			
+			activateInto(activationType, layerZ, layerA, i, i + ROW_BLOCK);
+		}
+		
+		int remainderFrom = i;
+		
+		for (; i < toRow; i++) {
+			int r = i * cols;
+			double s = 0.0;
+			
+			for (int j = 0; j < cols; j++) {
+				s += weights[r + j] * input[j];
+			}
+			
+			layerZ[i] = s + biases[i];
+		}
+		
+		activateInto(activationType, layerZ, layerA, remainderFrom, toRow);
+	}
+	
+	/**
+	 * Column blocks of layerδ are accumulated over every row of the weights (four rows at a time, as in
+	 * multiplyWithFirstTransposeInto); each block is multiplied by the activation derivative as soon as it
+	 * is complete, while it is still in L1.
+	 */
+	public void denseBackwardInto(ActivationType activationType, double[] weights, int rows, int cols, double[] nextδ, double[] layerZ, double[] layerA, double[] layerδ) {
+		for (int jj = 0; jj < cols; jj += COL_BLOCK) {
+			int jEnd = Math.min(jj + COL_BLOCK, cols);
+			
+			for (int j = jj; j < jEnd; j++) {
+				layerδ[j] = 0.0;
+			}
+			
+			int i = 0;
+			
+			for (; i + ROW_BLOCK <= rows; i += ROW_BLOCK) {
+				int r0 = i * cols, r1 = r0 + cols, r2 = r1 + cols, r3 = r2 + cols;
+				double v0 = nextδ[i], v1 = nextδ[i + 1], v2 = nextδ[i + 2], v3 = nextδ[i + 3];
+				
+				for (int j = jj; j < jEnd; j++) {
+					double s = layerδ[j]; //Added one row at a time, keeping index order
+					s += weights[r0 + j] * v0;
+					s += weights[r1 + j] * v1;
+					s += weights[r2 + j] * v2;
+					s += weights[r3 + j] * v3;
+					layerδ[j] = s;
+				}
+			}
+			
+			for (; i < rows; i++) {
+				int r = i * cols;
+				double v = nextδ[i];
+				
+				for (int j = jj; j < jEnd; j++) {
+					layerδ[j] += weights[r + j] * v;
+				}
+			}
+			
+			multiplyByActivationPrimeInto(activationType, layerZ, layerA, layerδ, jj, jEnd);
+		}
+	}
+	
+	public void multiplyByActivationPrimeInto(ActivationType activationType, double[] layerZ, double[] layerA, double[] layerδ, int from, int to) {
+		switch (activationType) {
+		case ReLU:
+			for (int i = from; i < to; i++) {
+				if (layerZ[i] < 0) {
+					layerδ[i] = 0.0;
+				}
+			}
+			break;
+		case Linear:
+			break;
+		case TanH:
+			for (int i = from; i < to; i++) {
+				layerδ[i] *= 1.0 - layerA[i] * layerA[i]; //sech^2(x) = 1 - tanh^2(x)
+			}
+			break;
+		case Sigmoid:
+		default:
+			for (int i = from; i < to; i++) {
+				layerδ[i] *= layerA[i] * (1.0 - layerA[i]);
+			}
+			break;
+		}
+	}
+	
+	public void activateInto(ActivationType activationType, double[] layerZ, double[] layerA, int from, int to) {
+		switch (activationType) {
+		case ReLU:
+			for (int i = from; i < to; i++) {
+				layerA[i] = (layerZ[i] >= 0) ? layerZ[i] : 0;
+			}
+			break;
+		case Linear:
+			System.arraycopy(layerZ, from, layerA, from, to - from);
+			break;
+		case TanH:
+			for (int i = from; i < to; i++) {
+				layerA[i] = Math.tanh(layerZ[i]);
+			}
+			break;
+		case Sigmoid:
+		default:
+			for (int i = from; i < to; i++) {
+				layerA[i] = 1.0 / (1.0 + Math.exp(-layerZ[i]));
+			}
+			break;
+		}
+	}
+	
+	public void softmaxInto(double[] layerZ, double[] layerA, int offset, int length) {
+		double layerSum = 0.0;
+		
+		for (int i = offset; i < offset + length; i++) {
+			layerA[i] = Math.exp(layerZ[i]);
+			layerSum += layerA[i];
+		}
+		
+		for (int i = offset; i < offset + length; i++) {
+			layerA[i] /= layerSum;
+		}
+	}
+	
+	public void addInto(float[] input1, float[] input2, float[] out, int length) {
+		for (int i = 0; i < length; i++) {
+			out[i] = input1[i] + input2[i];
+		}
+	}
+	
+	public void scalarMultiplyInto(float[] matrix, float scale, float[] out, int length) {
+		for (int i = 0; i < length; i++) {
+			out[i] = matrix[i] * scale;
+		}
+	}
+	
+	public void multiplyInto(float[] input1, float[] input2, float[] out, int m, int k, int n, boolean accumulate) {
+		if (!accumulate) { Arrays.fill(out, 0, m * n, 0.0f); }
+		
+		for (int kk = 0; kk < k; kk += TILE_K) {
+			int kEnd = Math.min(kk + TILE_K, k);
+			
+			for (int jj = 0; jj < n; jj += TILE_J) {
+				int jEnd = Math.min(jj + TILE_J, n);
+				
+				for (int i = 0; i < m; i++) {
+					int outRow = i * n;
+					int inRow = i * k;
+					
+					for (int p = kk; p < kEnd; p++) {
+						float scale = input1[inRow + p];
+						int bRow = p * n;
+						
+						for (int j = jj; j < jEnd; j++) {
+							out[outRow + j] += scale * input2[bRow + j];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	public void multiplyWithFirstTransposeInto(float[] input1, float[] input2, float[] out, int m, int k, int n, boolean accumulate) {
+		if (!accumulate) { Arrays.fill(out, 0, m * n, 0.0f); }
+		
+		for (int ii = 0; ii < m; ii += TILE_I) {
+			int iEnd = Math.min(ii + TILE_I, m);
+			
+			for (int jj = 0; jj < n; jj += TILE_J) {
+				int jEnd = Math.min(jj + TILE_J, n);
+				
+				for (int p = 0; p < k; p++) {
+					int aRow = p * m;
+					int bRow = p * n;
+					
+					for (int i = ii; i < iEnd; i++) {
+						float scale = input1[aRow + i];
+						
+						if (scale == 0.0f) { continue; } //Common after ReLU
+						
+						int outRow = i * n;
+						
+						for (int j = jj; j < jEnd; j++) {
+							out[outRow + j] += scale * input2[bRow + j];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	public void multiplyWithSecondTransposeInto(float[] input1, float[] input2, float[] out, int m, int k, int n, boolean accumulate) {
+		int jTile = Math.max(ROW_BLOCK, (2 * TILE_J * TILE_K) / Math.max(k, 1)); //Twice the double tile, floats being half the size
+		
+		for (int jj = 0; jj < n; jj += jTile) {
+			int jEnd = Math.min(jj + jTile, n);
+			
+			for (int i = 0; i < m; i++) {
+				int aRow = i * k;
+				int outRow = i * n;
+				int j = jj;
+				
+				for (; j + ROW_BLOCK <= jEnd; j += ROW_BLOCK) {
+					int b0 = j * k, b1 = b0 + k, b2 = b1 + k, b3 = b2 + k;
+					float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+					
+					for (int p = 0; p < k; p++) {
+						float v = input1[aRow + p];
+						s0 += input2[b0 + p] * v;
+						s1 += input2[b1 + p] * v;
+						s2 += input2[b2 + p] * v;
+						s3 += input2[b3 + p] * v;
+					}
+					
+					if (accumulate) {
+						out[outRow + j] += s0;
+						out[outRow + j + 1] += s1;
+						out[outRow + j + 2] += s2;
+						out[outRow + j + 3] += s3;
+					} else {
+						out[outRow + j] = s0;
+						out[outRow + j + 1] = s1;
+						out[outRow + j + 2] = s2;
+						out[outRow + j + 3] = s3;
+					}
+				}
+				
+				for (; j < jEnd; j++) {
+					int bRow = j * k;
+					float s = 0.0f;
+					
+					for (int p = 0; p < k; p++) {
+						s += input1[aRow + p] * input2[bRow + p];
+					}
+					
+					out[outRow + j] = accumulate ? out[outRow + j] + s : s;
+				}
+			}
+		}
+	}
+	
+	public void denseForwardInto(ActivationType activationType, float[] weights, float[] biases, int rows, int cols, float[] input, float[] layerZ, float[] layerA) {
+		int i = 0;
+		
+		for (; i + ROW_BLOCK <= rows; i += ROW_BLOCK) {
+			int r0 = i * cols, r1 = r0 + cols, r2 = r1 + cols, r3 = r2 + cols;
+			float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+			
+			for (int j = 0; j < cols; j++) {
+				float v = input[j];
+				s0 += weights[r0 + j] * v;
+				s1 += weights[r1 + j] * v;
+				s2 += weights[r2 + j] * v;
+				s3 += weights[r3 + j] * v;
+			}
+			
+			layerZ[i] = s0 + biases[i];
+			layerZ[i + 1] = s1 + biases[i + 1];
+			layerZ[i + 2] = s2 + biases[i + 2];
+			layerZ[i + 3] = s3 + biases[i + 3];
+			
+			activateInto(activationType, layerZ, layerA, i, i + ROW_BLOCK);
+		}
+		
+		int remainderFrom = i;
+		
+		for (; i < rows; i++) {
+			int r = i * cols;
+			float s = 0.0f;
+			
+			for (int j = 0; j < cols; j++) {
+				s += weights[r + j] * input[j];
+			}
+			
+			layerZ[i] = s + biases[i];
+		}
+		
+		activateInto(activationType, layerZ, layerA, remainderFrom, rows);
+	}
+	
+	public void multiplyByActivationPrimeInto(ActivationType activationType, float[] layerZ, float[] layerA, float[] layerδ, int from, int to) {
+		switch (activationType) {
+		case ReLU:
+			for (int i = from; i < to; i++) {
+				if (layerZ[i] < 0) {
+					layerδ[i] = 0.0f;
+				}
+			}
+			break;
+		case Linear:
+			break;
+		case TanH:
+			for (int i = from; i < to; i++) {
+				layerδ[i] *= 1.0f - layerA[i] * layerA[i];
+			}
+			break;
+		case Sigmoid:
+		default:
+			for (int i = from; i < to; i++) {
+				layerδ[i] *= layerA[i] * (1.0f - layerA[i]);
+			}
+			break;
+		}
+	}
+	
+	public void activateInto(ActivationType activationType, float[] layerZ, float[] layerA, int from, int to) {
+		switch (activationType) {
+		case ReLU:
+			for (int i = from; i < to; i++) {
+				layerA[i] = (layerZ[i] >= 0) ? layerZ[i] : 0;
+			}
+			break;
+		case Linear:
+			System.arraycopy(layerZ, from, layerA, from, to - from);
+			break;
+		case TanH:
+			for (int i = from; i < to; i++) {
+				layerA[i] = (float) Math.tanh(layerZ[i]);
+			}
+			break;
+		case Sigmoid:
+		default:
+			for (int i = from; i < to; i++) {
+				layerA[i] = (float) (1.0 / (1.0 + Math.exp(-layerZ[i])));
+			}
+			break;
+		}
+	}
+	
+	public void softmaxInto(float[] layerZ, float[] layerA, int offset, int length) {
+		float layerSum = 0.0f;
+		
+		for (int i = offset; i < offset + length; i++) {
+			layerA[i] = (float) Math.exp(layerZ[i]);
+			layerSum += layerA[i];
+		}
+		
+		for (int i = offset; i < offset + length; i++) {
+			layerA[i] /= layerSum;
+		}
+	}
+}
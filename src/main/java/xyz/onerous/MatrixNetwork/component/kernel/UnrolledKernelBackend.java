@@ -0,0 +1,246 @@
+package xyz.onerous.MatrixNetwork.component.kernel;
+
+import java.util.Arrays;
+
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+
+/**
+ * A backend written for the JIT's auto-vectorizer and for register reuse:
+ * 
+ * 	- Dot products keep four independent partial sums ('lanes') and add them at the end, the way a SIMD unit
+ * 	  would. The JIT will not do this itself because it may not reorder floating point additions.
+ * 	- Matrix-matrix products use register-blocked micro-kernels. A * transpose(B) computes a 2 x 4 block of
+ * 	  the output at once, so each loaded value feeds several multiply-adds. The axpy-style products fold four
+ * 	  rank-1 updates into every pass over an output row, which cuts the output loads and stores by four.
+ * 	- The transposed matrix-vector product and the dense backward pass add four rows' terms together
+ * 	  before adding them to the output, instead of one row at a time.
+ * 	- ReLU is branch-free.
+ * 
+ * The plain matrix-vector product is memory bound, so it is inherited from the ScalarKernelBackend, along
+ * with the element-wise operations (already vectorized by the JIT). Sigmoid and TanH keep Math.exp and
+ * Math.tanh, which the JIT compiles to one intrinsic call per value; a pure Java polynomial exp measured
+ * slower than that, so those paths are only vectorized by the VectorKernelBackend (JDK 16+, see Kernels).
+ * Because the additions happen in a different order, results differ from the scalar backend in the last
+ * few bits.
+ * 
+ * @author Gabriel Wong
+ */
+public class UnrolledKernelBackend extends ScalarKernelBackend {
+	@Override public double dot(double[] input1, double[] input2, int length) {
+		return dotAt(input1, 0, input2, 0, length);
+	}
+	
+	@Override public void multiplyInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		if (!accumulate) { Arrays.fill(out, 0, m * n, 0.0); }
+		
+		for (int kk = 0; kk < k; kk += TILE_K) {
+			int kEnd = Math.min(kk + TILE_K, k);
+			
+			for (int jj = 0; jj < n; jj += TILE_J) {
+				int jEnd = Math.min(jj + TILE_J, n);
+				
+				for (int i = 0; i < m; i++) {
+					int outRow = i * n;
+					int inRow = i * k;
+					int p = kk;
+					
+					for (; p + 4 <= kEnd; p += 4) {
+						axpy4(input1[inRow + p], input1[inRow + p + 1], input1[inRow + p + 2], input1[inRow + p + 3], input2, p * n, n, out, outRow, jj, jEnd);
+					}
+					
+					for (; p < kEnd; p++) {
+						double scale = input1[inRow + p];
+						int bRow = p * n;
+						
+						for (int j = jj; j < jEnd; j++) {
+							out[outRow + j] += scale * input2[bRow + j];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	@Override public void multiplyWithFirstTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		if (!accumulate) { Arrays.fill(out, 0, m * n, 0.0); }
+		
+		for (int ii = 0; ii < m; ii += TILE_I) {
+			int iEnd = Math.min(ii + TILE_I, m);
+			
+			for (int jj = 0; jj < n; jj += TILE_J) {
+				int jEnd = Math.min(jj + TILE_J, n);
+				int p = 0;
+				
+				for (; p + 4 <= k; p += 4) {
+					for (int i = ii; i < iEnd; i++) {
+						axpy4(input1[p * m + i], input1[(p + 1) * m + i], input1[(p + 2) * m + i], input1[(p + 3) * m + i], input2, p * n, n, out, i * n, jj, jEnd);
+					}
+				}
+				
+				for (; p < k; p++) {
+					int bRow = p * n;
+					
+					for (int i = ii; i < iEnd; i++) {
+						double scale = input1[p * m + i];
+						int outRow = i * n;
+						
+						for (int j = jj; j < jEnd; j++) {
+							out[outRow + j] += scale * input2[bRow + j];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	@Override public void multiplyWithSecondTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		int jTile = Math.max(ROW_BLOCK, (TILE_J * TILE_K) / Math.max(k, 1));
+		
+		for (int jj = 0; jj < n; jj += jTile) {
+			int jEnd = Math.min(jj + jTile, n);
+			int i = 0;
+			
+			for (; i + 2 <= m; i += 2) {
+				int a0 = i * k, a1 = a0 + k;
+				int j = jj;
+				
+				for (; j + 4 <= jEnd; j += 4) {
+					int b0 = j * k, b1 = b0 + k, b2 = b1 + k, b3 = b2 + k;
+					double s00 = 0.0, s01 = 0.0, s02 = 0.0, s03 = 0.0;
+					double s10 = 0.0, s11 = 0.0, s12 = 0.0, s13 = 0.0;
+					
+					for (int p = 0; p < k; p++) {
+						double x0 = input1[a0 + p];
+						double x1 = input1[a1 + p];
+						double y0 = input2[b0 + p];
+						double y1 = input2[b1 + p];
+						double y2 = input2[b2 + p];
+						double y3 = input2[b3 + p];
+						s00 += x0 * y0;
+						s01 += x0 * y1;
+						s02 += x0 * y2;
+						s03 += x0 * y3;
+						s10 += x1 * y0;
+						s11 += x1 * y1;
+						s12 += x1 * y2;
+						s13 += x1 * y3;
+					}
+					
+					store(out, i * n + j, s00, s01, s02, s03, accumulate);
+					store(out, (i + 1) * n + j, s10, s11, s12, s13, accumulate);
+				}
+				
+				for (; j < jEnd; j++) {
+					double r0 = dotAt(input1, a0, input2, j * k, k);
+					double r1 = dotAt(input1, a1, input2, j * k, k);
+					
+					out[i * n + j] = accumulate ? out[i * n + j] + r0 : r0;
+					out[(i + 1) * n + j] = accumulate ? out[(i + 1) * n + j] + r1 : r1;
+				}
+			}
+			
+			for (; i < m; i++) {
+				for (int j = jj; j < jEnd; j++) {
+					double r = dotAt(input1, i * k, input2, j * k, k);
+					
+					out[i * n + j] = accumulate ? out[i * n + j] + r : r;
+				}
+			}
+		}
+	}
+	
+	@Override public void multiplyWithFirstTransposeInto(double[] matrix, int rows, int cols, double[] vector, double[] out) {
+		for (int jj = 0; jj < cols; jj += COL_BLOCK) {
+			int jEnd = Math.min(jj + COL_BLOCK, cols);
+			
+			transposedRowsInto(matrix, rows, cols, vector, out, jj, jEnd);
+		}
+	}
+	
+	@Override public void denseBackwardInto(ActivationType activationType, double[] weights, int rows, int cols, double[] nextδ, double[] layerZ, double[] layerA, double[] layerδ) {
+		for (int jj = 0; jj < cols; jj += COL_BLOCK) {
+			int jEnd = Math.min(jj + COL_BLOCK, cols);
+			
+			transposedRowsInto(weights, rows, cols, nextδ, layerδ, jj, jEnd);
+			multiplyByActivationPrimeInto(activationType, layerZ, layerA, layerδ, jj, jEnd);
+		}
+	}
+	
+	@Override public void activateInto(ActivationType activationType, double[] layerZ, double[] layerA, int from, int to) {
+		if (activationType == ActivationType.ReLU) {
+			for (int i = from; i < to; i++) {
+				layerA[i] = Math.max(layerZ[i], 0.0);
+			}
+		} else {
+			super.activateInto(activationType, layerZ, layerA, from, to);
+		}
+	}
+	
+	/**
+	 * out[j] = (transpose(matrix) * vector)[j] for j in [from, to), four rows of the matrix per pass.
+	 */
+	private static void transposedRowsInto(double[] matrix, int rows, int cols, double[] vector, double[] out, int from, int to) {
+		for (int j = from; j < to; j++) {
+			out[j] = 0.0;
+		}
+		
+		int i = 0;
+		
+		for (; i + 4 <= rows; i += 4) {
+			axpy4(vector[i], vector[i + 1], vector[i + 2], vector[i + 3], matrix, i * cols, cols, out, 0, from, to);
+		}
+		
+		for (; i < rows; i++) {
+			int r = i * cols;
+			double v = vector[i];
+			
+			for (int j = from; j < to; j++) {
+				out[j] += matrix[r + j] * v;
+			}
+		}
+	}
+	
+	/**
+	 * out[outRow + j] += a0 * b[p][j] + a1 * b[p+1][j] + a2 * b[p+2][j] + a3 * b[p+3][j] for j in [from, to),
+	 * with b[p] starting at bRow and rows n apart.
+	 */
+	private static void axpy4(double a0, double a1, double a2, double a3, double[] b, int bRow, int n, double[] out, int outRow, int from, int to) {
+		int b0 = bRow, b1 = b0 + n, b2 = b1 + n, b3 = b2 + n;
+		
+		for (int j = from; j < to; j++) {
+			out[outRow + j] += a0 * b[b0 + j] + a1 * b[b1 + j] + a2 * b[b2 + j] + a3 * b[b3 + j];
+		}
+	}
+	
+	private static void store(double[] out, int offset, double s0, double s1, double s2, double s3, boolean accumulate) {
+		if (accumulate) {
+			out[offset] += s0;
+			out[offset + 1] += s1;
+			out[offset + 2] += s2;
+			out[offset + 3] += s3;
+		} else {
+			out[offset] = s0;
+			out[offset + 1] = s1;
+			out[offset + 2] = s2;
+			out[offset + 3] = s3;
+		}
+	}
+	
+	private static double dotAt(double[] input1, int offset1, double[] input2, int offset2, int length) {
+		double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+		int p = 0;
+		
+		for (; p + 4 <= length; p += 4) {
+			s0 += input1[offset1 + p] * input2[offset2 + p];
+			s1 += input1[offset1 + p + 1] * input2[offset2 + p + 1];
+			s2 += input1[offset1 + p + 2] * input2[offset2 + p + 2];
+			s3 += input1[offset1 + p + 3] * input2[offset2 + p + 3];
+		}
+		
+		for (; p < length; p++) {
+			s0 += input1[offset1 + p] * input2[offset2 + p];
+		}
+		
+		return (s0 + s1) + (s2 + s3);
+	}
+}
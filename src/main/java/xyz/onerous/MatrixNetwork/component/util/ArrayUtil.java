@@ -24,6 +24,47 @@ public class ArrayUtil {
 		return returnArray;
 	}
 	
+	/**
+	 * Transfer a two-dimensional array [2D] into a one-dimensional row-major array [1D]. Unlike the int
+	 * version, rows may differ in length (they are simply concatenated).
+	 * 
+	 * @param arrayToFlatten A 2D Array
+	 * @return A 1D Array
+	 */
+	public static double[] flattenArray(double[][] arrayToFlatten) {
+		int length = 0;
+		
+		for (double[] row : arrayToFlatten) { length += row.length; }
+		
+		double[] returnArray = new double[length];
+		int offset = 0;
+		
+		for (double[] row : arrayToFlatten) {
+			System.arraycopy(row, 0, returnArray, offset, row.length);
+			offset += row.length;
+		}
+		
+		return returnArray;
+	}
+	
+	/**
+	 * The reverse of flattenArray: split a one-dimensional row-major array [1D] into rows of a 2D array.
+	 * 
+	 * @param arrayToNest A 1D Array of length rows * cols
+	 * @param rows Number of rows
+	 * @param cols Number of columns
+	 * @return A 2D Array
+	 */
+	public static double[][] nestArray(double[] arrayToNest, int rows, int cols) {
+		double[][] returnArray = new double[rows][cols];
+		
+		for (int i = 0; i < rows; i++) {
+			System.arraycopy(arrayToNest, i * cols, returnArray[i], 0, cols);
+		}
+		
+		return returnArray;
+	}
+	
 	/**
 	 * Find the mean of a given array.
 	 * 
@@ -106,6 +147,24 @@ public class ArrayUtil {
 		return returnArray;
 	}
 	
+	/**
+	 * Standardize an array the same way as `standardize`, writing into an existing array (which may be the
+	 * input itself) instead of allocating.
+	 * 
+	 * @param array The array to standardize
+	 * @param out Array of the same length to receive the standardized values
+	 */
+	public static void standardizeInto(double[] array, double[] out) {
+		if (array.length == 0) { return; }
+		
+		double mean = mean(array);
+		double standardDeviation = standardDeviation(array);
+		
+		for (int i = 0; i < array.length; i++) {
+			out[i] = (array[i] - mean) / standardDeviation;
+		}
+	}
+	
 	/**
 	 * Clips an array to the desired range, first inclusive and out range exclusive.
 	 * 
@@ -124,6 +183,22 @@ public class ArrayUtil {
 		return returnArray;
 	}
 	
+	/**
+	 * Clips an array to the desired range, first inclusive and out range exclusive.
+	 * 
+	 * @param array
+	 * @param startingIndex
+	 * @param endingIndex
+	 * @return
+	 */
+	public static float[][] clipArray(float[][] array, int startingIndex, int endingIndex) {
+		float[][] returnArray = new float[endingIndex - startingIndex][];
+		
+		System.arraycopy(array, startingIndex, returnArray, 0, returnArray.length);
+		
+		return returnArray;
+	}
+	
 	/**
 	 * Clips an array to the desired range, first inclusive and out range exclusive.
 	 * 
@@ -252,6 +327,46 @@ public class ArrayUtil {
 		return returnArray;
 	}
 	
+	public static float[] doubleToFloat(double[] array) {
+		float[] returnArray = new float[array.length];
+		
+		for (int i = 0; i < array.length; i++) {
+			returnArray[i] = (float) array[i];
+		}
+		
+		return returnArray;
+	}
+	
+	public static float[][] doubleToFloat(double[][] array) {
+		float[][] returnArray = new float[array.length][];
+		
+		for (int i = 0; i < array.length; i++) {
+			returnArray[i] = doubleToFloat(array[i]);
+		}
+		
+		return returnArray;
+	}
+	
+	public static double[] floatToDouble(float[] array) {
+		double[] returnArray = new double[array.length];
+		
+		for (int i = 0; i < array.length; i++) {
+			returnArray[i] = array[i];
+		}
+		
+		return returnArray;
+	}
+	
+	public static double[][] floatToDouble(float[][] array) {
+		double[][] returnArray = new double[array.length][];
+		
+		for (int i = 0; i < array.length; i++) {
+			returnArray[i] = floatToDouble(array[i]);
+		}
+		
+		return returnArray;
+	}
+	
 	public static double[] transposeColumnArray(double[][] array) {
 		if (array.length == 0 || array[0].length > 1) { return null; }
 		
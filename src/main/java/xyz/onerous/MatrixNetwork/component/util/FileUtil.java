@@ -1,16 +1,22 @@
 package xyz.onerous.MatrixNetwork.component.util;
 
+import java.io.DataInputStream;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 
+import xyz.onerous.MatrixNetwork.component.datapackage.FloatNetworkWeightBiasPackage;
 import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
 
 public class FileUtil {
+	private static final int FLOAT_NETWORK_MAGIC = 0x4D4E4631; //"MNF1", the first four bytes of a single-precision save file
+	
 	public static void writeNetworkWeightBiasPackage(NetworkWeightBiasPackage networkWeightBiasPackage, String fileName) {
 		try {
 			FileWriter fileWriter = new FileWriter(fileName);
@@ -24,7 +30,20 @@ public class FileUtil {
 		}
 	}
 	
+	/**
+	 * Load a package saved by writeNetworkWeightBiasPackage. A single-precision save file is loaded too,
+	 * widened to doubles.
+	 * 
+	 * @param fileName
+	 * @return The package, or null if the file could not be read
+	 */
 	public static NetworkWeightBiasPackage loadNetworkWeightBiasPackage(String fileName) {
+		if (isFloatNetworkFile(fileName)) {
+			FloatNetworkWeightBiasPackage floatNetworkWeightBiasPackage = loadFloatNetworkWeightBiasPackage(fileName);
+			
+			return (floatNetworkWeightBiasPackage == null) ? (NetworkWeightBiasPackage) null : floatNetworkWeightBiasPackage.toNetworkWeightBiasPackage();
+		}
+		
 		try {
 			List<String> lines = Files.readAllLines(Paths.get(fileName));
 			
@@ -39,6 +58,128 @@ public class FileUtil {
 		}
 	}
 	
+	/**
+	 * Save the weights and biases of a single-precision network in binary: the magic number, the number of
+	 * layers and the number of neurons per layer as ints, then each layer's biases followed by its
+	 * (row-major) weights as 4-byte floats. The file is a fraction of the size of the text format, and
+	 * loading it gives back exactly the floats that were saved.
+	 * 
+	 * @param floatNetworkWeightBiasPackage
+	 * @param fileName
+	 */
+	public static void writeFloatNetworkWeightBiasPackage(FloatNetworkWeightBiasPackage floatNetworkWeightBiasPackage, String fileName) {
+		float[][] b = floatNetworkWeightBiasPackage.getNeuronBiases();
+		float[][] w = floatNetworkWeightBiasPackage.getFlatConnectionWeights();
+		int numValues = 0;
+		
+		for (int l = 0; l < b.length; l++) {
+			numValues += b[l].length + w[l].length;
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(4 * (2 + b.length + numValues));
+		
+		buffer.putInt(FLOAT_NETWORK_MAGIC);
+		buffer.putInt(b.length);
+		
+		for (int l = 0; l < b.length; l++) {
+			buffer.putInt(b[l].length);
+		}
+		
+		for (int l = 0; l < b.length; l++) {
+			buffer.asFloatBuffer().put(b[l]);
+			buffer.position(buffer.position() + 4 * b[l].length);
+			buffer.asFloatBuffer().put(w[l]);
+			buffer.position(buffer.position() + 4 * w[l].length);
+		}
+		
+		try {
+			Files.write(Paths.get(fileName), buffer.array());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Load a package saved by writeFloatNetworkWeightBiasPackage. A double precision (text) save file is
+	 * loaded too, narrowed to floats.
+	 * 
+	 * @param fileName
+	 * @return The package, or null if the file could not be read or is not a complete save file
+	 */
+	public static FloatNetworkWeightBiasPackage loadFloatNetworkWeightBiasPackage(String fileName) {
+		if (!isFloatNetworkFile(fileName)) {
+			NetworkWeightBiasPackage networkWeightBiasPackage = loadNetworkWeightBiasPackage(fileName);
+			
+			return (networkWeightBiasPackage == null) ? (FloatNetworkWeightBiasPackage) null : new FloatNetworkWeightBiasPackage(networkWeightBiasPackage);
+		}
+		
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(fileName)));
+			
+			buffer.getInt(); //The magic number
+			
+			int numL = buffer.getInt();
+			
+			if (numL < 1 || numL > buffer.remaining() / 4) {
+				throw new IOException("Bad layer count " + numL + " in " + fileName);
+			}
+			
+			int[] nPerLayer = new int[numL];
+			long numValues = 0;
+			
+			for (int l = 0; l < numL; l++) {
+				nPerLayer[l] = buffer.getInt();
+				
+				if (nPerLayer[l] < 1) {
+					throw new IOException("Bad neuron count " + nPerLayer[l] + " in layer " + l + " of " + fileName);
+				}
+				
+				numValues += nPerLayer[l] + ((l == 0) ? 0L : (long) nPerLayer[l] * nPerLayer[l-1]);
+			}
+			
+			if (numValues * 4 != buffer.remaining()) {
+				throw new IOException(fileName + " holds " + buffer.remaining() + " bytes of weights and biases, expected " + (numValues * 4));
+			}
+			
+			float[][] b = new float[numL][];
+			float[][] w = new float[numL][];
+			
+			for (int l = 0; l < numL; l++) {
+				b[l] = new float[ nPerLayer[l] ];
+				w[l] = (l == 0) ? new float[0] : new float[ nPerLayer[l] * nPerLayer[l-1] ];
+				
+				buffer.asFloatBuffer().get(b[l]);
+				buffer.position(buffer.position() + 4 * b[l].length);
+				buffer.asFloatBuffer().get(w[l]);
+				buffer.position(buffer.position() + 4 * w[l].length);
+			}
+			
+			return new FloatNetworkWeightBiasPackage(b, w);
+		} catch (IOException e) {
+			e.printStackTrace();
+			
+			return (FloatNetworkWeightBiasPackage) null;
+		}
+	}
+	
+	/**
+	 * @param fileName
+	 * @return Whether the file starts like a single-precision save file
+	 */
+	private static boolean isFloatNetworkFile(String fileName) {
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+			
+			try {
+				return in.readInt() == FLOAT_NETWORK_MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false; //Too short (or missing), which the text loader will report
+		}
+	}
+	
 	public static double[][] loadStudentData(String fileName) {
 		try {
 			List<String> lines = Files.readAllLines(Paths.get(fileName));
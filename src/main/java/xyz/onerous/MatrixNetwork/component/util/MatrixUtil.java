@@ -1,6 +1,6 @@
 package xyz.onerous.MatrixNetwork.component.util;
 
-import org.apache.commons.math3.linear.*;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
 
 public class MatrixUtil {
 	public static double[] hadamard(double[] input1, double[] input2) {
@@ -13,9 +13,7 @@ public class MatrixUtil {
 		
 		double[] hadamardArray = new double[input1.length];
 		
-		for (int i = 0; i < input1.length; i++) {
-			hadamardArray[i] = input1[i] * input2[i];
-		}
+		Kernels.get().hadamardInto(input1, input2, hadamardArray, input1.length);
 		
 		return hadamardArray;
 	}
@@ -28,44 +26,244 @@ public class MatrixUtil {
 		}
 		
 		
-		double weightedSum = 0;
+		return Kernels.get().dot(input1, input2, input1.length);
+	}
+	
+	public static double[] multiply(double[][] input1, double[] input2) {
+		double[] returnArray = new double[input1.length];
 		
 		for (int i = 0; i < input1.length; i++) {
-			weightedSum += input1[i] * input2[i];
+			returnArray[i] = dot(input1[i], input2);
 		}
 		
-		return weightedSum;
+		return returnArray;
 	}
 	
-	public static double[] multiply(double[][] input1, double[] input2) {
-		Array2DRowRealMatrix input1Matrix = new Array2DRowRealMatrix(input1);
-		Array2DRowRealMatrix input2Matrix = new Array2DRowRealMatrix(input2);
+	public static double[] multiplyWithFirstTranspose (double[][] input1, double[] input2) {
+		double[] returnArray = new double[input1[0].length];
+		
+		for (int i = 0; i < input1.length; i++) {
+			for (int j = 0; j < returnArray.length; j++) {
+				returnArray[j] += input1[i][j] * input2[i];
+			}
+		}
 		
-		return input1Matrix.multiply(input2Matrix).transpose().getData()[0];
+		return returnArray;
 	}
 	
-	public static double[] multiplyWithFirstTranspose (double[][] input1, double[] input2) {
-		Array2DRowRealMatrix input1Matrix = new Array2DRowRealMatrix(input1);
-		Array2DRowRealMatrix input2Matrix = new Array2DRowRealMatrix(input2);
+	public static double[][] multiplyWithSecondTranspose (double[] input1, double[] input2) {
+		double[][] returnArray = new double[input1.length][input2.length];
 		
-		input1Matrix = (Array2DRowRealMatrix)input1Matrix.transpose();
+		for (int i = 0; i < input1.length; i++) {
+			for (int j = 0; j < input2.length; j++) {
+				returnArray[i][j] = input1[i] * input2[j];
+			}
+		}
 		
-		return input1Matrix.multiply(input2Matrix).transpose().getData()[0];
+		return returnArray;
 	}
 	
-	public static double[][] multiplyWithSecondTranspose (double[] input1, double[] input2) {
-		Array2DRowRealMatrix input1Matrix = new Array2DRowRealMatrix(input1);
-		Array2DRowRealMatrix input2Matrix = new Array2DRowRealMatrix(input2);
+	/**
+	 * @param matrix A row-major matrix stored in one contiguous array
+	 * @param rows Number of rows in the matrix
+	 * @param cols Number of columns in the matrix
+	 * @param vector A vector of length cols
+	 * @return matrix * vector
+	 */
+	public static double[] multiply(double[] matrix, int rows, int cols, double[] vector) {
+		double[] returnArray = new double[rows];
 		
-		input2Matrix = (Array2DRowRealMatrix)input2Matrix.transpose();
+		multiplyInto(matrix, rows, cols, vector, returnArray);
 		
-		return input1Matrix.multiply(input2Matrix).getData();
+		return returnArray;
 	}
 	
-	public static double[][] transpose(double[][] input) {
-		return (new Array2DRowRealMatrix(input)).transpose().getData();
+	/**
+	 * @param matrix A row-major matrix stored in one contiguous array
+	 * @param rows Number of rows in the matrix
+	 * @param cols Number of columns in the matrix
+	 * @param vector A vector of length rows
+	 * @return transpose(matrix) * vector, computed without building the transpose
+	 */
+	public static double[] multiplyWithFirstTranspose(double[] matrix, int rows, int cols, double[] vector) {
+		double[] returnArray = new double[cols];
+		
+		multiplyWithFirstTransposeInto(matrix, rows, cols, vector, returnArray);
+		
+		return returnArray;
+	}
+	
+	/**
+	 * @param input1 A column vector
+	 * @param input2 A column vector
+	 * @return input1 * transpose(input2) as a row-major matrix stored in one contiguous array
+	 */
+	public static double[] outerProduct(double[] input1, double[] input2) {
+		double[] returnArray = new double[input1.length * input2.length];
+		
+		outerProductInto(input1, input2, returnArray);
+		
+		return returnArray;
+	}
+	
+	
+	//
+	//Allocation-free kernels. These write into a caller-supplied output and never allocate, so the caller
+	//can keep its buffers for the life of the network. Matrices are row-major in one contiguous array and
+	//lengths are not checked. The output must not alias an input. The work is done by whichever backend
+	//Kernels has selected.
+	//
+	
+	/**
+	 * out = matrix * vector
+	 * 
+	 * @param matrix A rows x cols matrix
+	 * @param rows
+	 * @param cols
+	 * @param vector A vector of length cols
+	 * @param out A vector of length rows
+	 */
+	public static void multiplyInto(double[] matrix, int rows, int cols, double[] vector, double[] out) {
+		Kernels.get().multiplyInto(matrix, rows, cols, vector, out);
+	}
+	
+	/**
+	 * out = transpose(matrix) * vector, walking the matrix in its natural row order.
+	 * 
+	 * @param matrix A rows x cols matrix
+	 * @param rows
+	 * @param cols
+	 * @param vector A vector of length rows
+	 * @param out A vector of length cols
+	 */
+	public static void multiplyWithFirstTransposeInto(double[] matrix, int rows, int cols, double[] vector, double[] out) {
+		Kernels.get().multiplyWithFirstTransposeInto(matrix, rows, cols, vector, out);
+	}
+	
+	/**
+	 * out = input1 * transpose(input2)
+	 * 
+	 * @param input1 A vector of length m
+	 * @param input2 A vector of length n
+	 * @param out A m x n matrix
+	 */
+	public static void outerProductInto(double[] input1, double[] input2, double[] out) {
+		Kernels.get().outerProductInto(input1, input2, out);
 	}
 	
+	/**
+	 * out += scale * input1 * transpose(input2), without building the outer product
+	 * 
+	 * @param input1 A vector of length m
+	 * @param input2 A vector of length n
+	 * @param scale
+	 * @param out A m x n matrix
+	 */
+	public static void outerProductAddInto(double[] input1, double[] input2, double scale, double[] out) {
+		Kernels.get().outerProductAddInto(input1, input2, scale, out);
+	}
+	
+	/**
+	 * out (+)= input1 * input2
+	 * 
+	 * @param input1 A m x k matrix
+	 * @param input2 A k x n matrix
+	 * @param out A m x n matrix
+	 * @param m
+	 * @param k
+	 * @param n
+	 * @param accumulate Add into out instead of overwriting it
+	 */
+	public static void multiplyInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		Kernels.get().multiplyInto(input1, input2, out, m, k, n, accumulate);
+	}
+	
+	/**
+	 * out (+)= transpose(input1) * input2, without building the transpose.
+	 * 
+	 * @param input1 A k x m matrix
+	 * @param input2 A k x n matrix
+	 * @param out A m x n matrix
+	 * @param m
+	 * @param k
+	 * @param n
+	 * @param accumulate Add into out instead of overwriting it
+	 */
+	public static void multiplyWithFirstTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		Kernels.get().multiplyWithFirstTransposeInto(input1, input2, out, m, k, n, accumulate);
+	}
+	
+	/**
+	 * out (+)= input1 * transpose(input2), without building the transpose.
+	 * 
+	 * @param input1 A m x k matrix
+	 * @param input2 A n x k matrix
+	 * @param out A m x n matrix
+	 * @param m
+	 * @param k
+	 * @param n
+	 * @param accumulate Add into out instead of overwriting it
+	 */
+	public static void multiplyWithSecondTransposeInto(double[] input1, double[] input2, double[] out, int m, int k, int n, boolean accumulate) {
+		Kernels.get().multiplyWithSecondTransposeInto(input1, input2, out, m, k, n, accumulate);
+	}
+	
+	/**
+	 * out = input1 + input2 for each value position. out may be either input.
+	 * 
+	 * @param input1
+	 * @param input2
+	 * @param out
+	 */
+	public static void addInto(double[] input1, double[] input2, double[] out) {
+		Kernels.get().addInto(input1, input2, out, out.length);
+	}
+	
+	/**
+	 * out = input1 ⊙ input2 for each value position. out may be either input.
+	 * 
+	 * @param input1
+	 * @param input2
+	 * @param out
+	 */
+	public static void hadamardInto(double[] input1, double[] input2, double[] out) {
+		Kernels.get().hadamardInto(input1, input2, out, out.length);
+	}
+	
+	/**
+	 * out = matrix * scale for each value position. out may be matrix.
+	 * 
+	 * @param matrix
+	 * @param scale
+	 * @param out
+	 */
+	public static void scalarMultiplyInto(double[] matrix, double scale, double[] out) {
+		Kernels.get().scalarMultiplyInto(matrix, scale, out, out.length);
+	}
+	
+	/**
+	 * out += input * scale for each value position.
+	 * 
+	 * @param input
+	 * @param scale
+	 * @param out
+	 */
+	public static void scaledAddInto(double[] input, double scale, double[] out) {
+		Kernels.get().scaledAddInto(input, scale, out, out.length);
+	}
+	
+	public static double[][] transpose(double[][] input) {
+		double[][] returnArray = new double[input[0].length][input.length];
+		
+		for (int i = 0; i < input.length; i++) {
+			for (int j = 0; j < input[i].length; j++) {
+				returnArray[j][i] = input[i][j];
+			}
+		}
+		
+		return returnArray;
+	}
+
 	/**
 	 * @param input1
 	 * @param input2
@@ -103,9 +301,7 @@ public class MatrixUtil {
 		
 		double[] returnArray = new double[input1.length];
 		
-		for (int i = 0; i < input1.length; i++) {
-			returnArray[i] = input1[i] + input2[i];
-		}
+		Kernels.get().addInto(input1, input2, returnArray, input1.length);
 		
 		return returnArray;
 	}
@@ -153,9 +349,7 @@ public class MatrixUtil {
 	public static double[] scalarMultiply(double[] matrix, double scale) {		
 		double[] returnArray = new double[matrix.length];
 		
-		for (int i = 0; i < matrix.length; i++) {
-			returnArray[i] = matrix[i] * scale;
-		}
+		Kernels.get().scalarMultiplyInto(matrix, scale, returnArray, matrix.length);
 		
 		return returnArray;
 	}
@@ -173,11 +367,9 @@ public class MatrixUtil {
 	}
 	
 	public static double[] scalarAdd(double[] matrix, double addend) {
-		double[] returnArray = matrix.clone();
+		double[] returnArray = new double[matrix.length];
 		
-		for (int i = 0; i < matrix.length; i++) {
-			returnArray[i] = matrix[i] + addend;
-		}
+		Kernels.get().scalarAddInto(matrix, addend, returnArray, matrix.length);
 		
 		return returnArray;
 	}
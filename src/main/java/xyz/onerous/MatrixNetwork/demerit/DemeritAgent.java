@@ -1,15 +1,24 @@
 package xyz.onerous.MatrixNetwork.demerit;
 
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 import xyz.onerous.MatrixNetwork.MatrixNetwork;
 import xyz.onerous.MatrixNetwork.component.ActivationType;
 import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.TrainingMode;
 import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
 import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
 import xyz.onerous.MatrixNetwork.component.util.FileUtil;
 import xyz.onerous.MatrixNetwork.component.util.MatrixUtil;
+import xyz.onerous.MatrixNetwork.inference.InferenceModel;
+import xyz.onerous.MatrixNetwork.inference.InferenceServer;
+import xyz.onerous.MatrixNetwork.sweep.HyperparameterSweep;
+import xyz.onerous.MatrixNetwork.sweep.NetworkConfiguration;
+import xyz.onerous.MatrixNetwork.sweep.SharedDataset;
+import xyz.onerous.MatrixNetwork.sweep.SweepResult;
 import xyz.onerous.MatrixNetwork.weightvisualizer.WeightVisualizer;
 
 public class DemeritAgent {
@@ -31,8 +40,21 @@ public class DemeritAgent {
 	protected final boolean usingSoftmax = true;
 	protected final ActivationType activationType = ActivationType.ReLU;
 	protected final LossType lossType = LossType.CrossEntropy;
+	protected final TrainingMode trainingMode;
+	protected final int numTrainingThreads = Runtime.getRuntime().availableProcessors();
+	protected final int numValidationStudents = 10; //Held out of the student data to rank sweep configurations
 	
 	public DemeritAgent() {
+		this(TrainingMode.Synchronous);
+	}
+	
+	/**
+	 * @param trainingMode How the network is trained. Hogwild can pay off here, as the feature vectors are
+	 * tiny and batches are hardly worth synchronizing, but it gives up the reproducibility of the others.
+	 */
+	public DemeritAgent(TrainingMode trainingMode) {
+		this.trainingMode = trainingMode;
+		
 		processStudentData();
 		processTestData();
 
@@ -65,11 +87,19 @@ public class DemeritAgent {
 		int nOutput = 6;
 		
 		this.matrixNetwork = new MatrixNetwork(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
+		
+		matrixNetwork.setTrainingMode(trainingMode, numTrainingThreads);
 	}
 
 	
-	public void performEpoch(int batchSize) {		
+	public void performEpoch(int batchSize) {
+		long epochStart = System.nanoTime();
+		
 		matrixNetwork.performEpoch(studentData, studentContent, batchSize);
+		
+		double seconds = (System.nanoTime() - epochStart) / 1e9;
+		
+		System.out.println(trainingMode + " epoch: " + studentData.length + " samples in " + String.format("%.3f", seconds) + " s (" + Math.round(studentData.length / seconds) + " samples/s)");
 	}
 	
 	public TestResultPackage performTestWithStudentData(int startIndex, int endIndex) {
@@ -88,6 +118,75 @@ public class DemeritAgent {
 		return testResults;
 	}
 	
+	/**
+	 * Try several network configurations on the student data at once, ranking them on students held out of
+	 * the training data (see createSweepDataset), so the test data stays unseen.
+	 * 
+	 * @param configurations The configurations to try
+	 * @param numThreads Most networks trained at once
+	 * @param firstEpochs Epochs every configuration is trained before the first cut
+	 * @param maxEpochs Most epochs any configuration is trained
+	 * @return The leaderboard, best first
+	 */
+	public List<SweepResult> performSweep(List<NetworkConfiguration> configurations, int numThreads, int firstEpochs, int maxEpochs) {
+		HyperparameterSweep sweep = new HyperparameterSweep(createSweepDataset(numValidationStudents), numThreads);
+		
+		List<SweepResult> leaderboard = sweep.run(configurations, firstEpochs, 3, maxEpochs);
+		
+		System.out.println(sweep.leaderboardToString());
+		sweep.shutdown();
+		
+		return leaderboard;
+	}
+	
+	/**
+	 * Share the student data with a sweep, holding `numValidation` students out for ranking the
+	 * configurations. The data file is sorted by gender and then content, so the held out students are
+	 * spread evenly through it rather than taken from the end.
+	 * 
+	 * @param numValidation Number of students to validate on instead of training
+	 * @return The dataset
+	 */
+	public SharedDataset createSweepDataset(int numValidation) {
+		int numStudents = studentData.length;
+		
+		numValidation = Math.max(1, Math.min(numValidation, numStudents - 1));
+		
+		double[][] trainingData = new double[numStudents - numValidation][];
+		int[] trainingContent = new int[numStudents - numValidation];
+		double[][] validationData = new double[numValidation][];
+		int[] validationContent = new int[numValidation];
+		
+		int numTraining = 0;
+		int numHeldOut = 0;
+		
+		for (int i = 0; i < numStudents; i++) {
+			if (numHeldOut < numValidation && (long) (i + 1) * numValidation / numStudents > numHeldOut) { //Every (numStudents / numValidation)th student
+				validationData[numHeldOut] = studentData[i];
+				validationContent[numHeldOut++] = studentContent[i];
+			} else {
+				trainingData[numTraining] = studentData[i];
+				trainingContent[numTraining++] = studentContent[i];
+			}
+		}
+		
+		return new SharedDataset(trainingData, trainingContent, validationData, validationContent, 6);
+	}
+	
+	/**
+	 * Serve predictions from a snapshot of the network over HTTP (see InferenceServer).
+	 * 
+	 * @param port Port to listen on
+	 * @return The running server
+	 */
+	public InferenceServer startInferenceServer(int port) throws IOException {
+		InferenceServer server = new InferenceServer(new InferenceModel(matrixNetwork), 64, 2000);
+		
+		server.startHttp(port);
+		
+		return server;
+	}
+	
 	public void saveNetwork(String identifier) {
 		FileUtil.writeNetworkWeightBiasPackage(matrixNetwork.generateNetworkWeightBiasPackage(), "network" + identifier);
 	}
@@ -0,0 +1,267 @@
+package xyz.onerous.MatrixNetwork.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+
+/**
+ * Holds the authoritative weights and biases for a set of worker processes (see ParameterServerWorker)
+ * that each train on their own shard of the data. A worker pushes the deltas of each batch it trains;
+ * the server adds them to the network and answers with the current weights, which the worker trains its
+ * next batch on.
+ * 
+ * Every worker has a clock, the number of batches it has pushed. A worker whose clock is more than
+ * `maxStaleness` ahead of the slowest unfinished worker is made to wait before it gets its weights back, so
+ * no worker trains on weights missing more than `maxStaleness` batches of any other worker's updates.
+ * With a staleness of 0 training is synchronous: every worker trains batch c on the same weights, which
+ * hold the updates of every worker's first c - 1 batches, exactly as if each round's deltas were summed
+ * and applied once. For that, a push of batch c + 1 is also held back until every worker has taken the
+ * weights of round c; otherwise a fast worker's next batch could land in the weights a slower worker was
+ * still waiting to copy.
+ * 
+ * One thread serves each worker. Only the network is shared between them, and only while holding the
+ * server's lock.
+ */
+public class ParameterServer {
+	private final MatrixNetwork network;
+	private final int port;
+	private final int numWorkers;
+	private final int maxStaleness;
+	
+	private final int[] clocks; //Batches pushed, per worker
+	private final int[] taken; //Clock of the weights each worker last took, -1 before it has connected
+	private final boolean[] done;
+	private long version; //Number of pushes applied
+	
+	private ServerSocket serverSocket;
+	
+	/**
+	 * @param network The network holding the weights to be trained
+	 * @param port Port to listen on (on the loopback address)
+	 * @param numWorkers Number of workers that will connect
+	 * @param maxStaleness Number of batches a worker may run ahead of the slowest worker (0 for synchronous)
+	 */
+	public ParameterServer(MatrixNetwork network, int port, int numWorkers, int maxStaleness) {
+		this.network = network;
+		this.port = port;
+		this.numWorkers = numWorkers;
+		this.maxStaleness = Math.max(0, maxStaleness);
+		this.clocks = new int[numWorkers];
+		this.taken = new int[numWorkers];
+		this.done = new boolean[numWorkers];
+		
+		Arrays.fill(taken, -1);
+	}
+	
+	/**
+	 * Start listening, so workers can connect once this returns.
+	 */
+	public void open() throws IOException {
+		serverSocket = new ServerSocket(port, numWorkers, InetAddress.getLoopbackAddress());
+	}
+	
+	/**
+	 * Accept every worker and serve them until each has said it is done. Opens the server first if that
+	 * has not been done.
+	 */
+	public void serve() throws IOException {
+		if (serverSocket == null) { open(); }
+		
+		Thread[] handlers = new Thread[numWorkers];
+		
+		try {
+			for (int i = 0; i < numWorkers; i++) {
+				final Socket socket = serverSocket.accept();
+				
+				socket.setTcpNoDelay(true);
+				
+				handlers[i] = new Thread(new Runnable() {
+					public void run() {
+						handleWorker(socket);
+					}
+				}, "ParameterServer-worker-" + i);
+				handlers[i].start();
+			}
+			
+			for (Thread handler : handlers) {
+				handler.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			serverSocket.close();
+		}
+	}
+	
+	private void handleWorker(Socket socket) {
+		int workerId = -1;
+		
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+			
+			WireFormat.expect(in, WireFormat.HELLO);
+			workerId = in.readInt();
+			
+			if (workerId < 0 || workerId >= numWorkers) {
+				throw new IOException("Unknown worker " + workerId);
+			}
+			
+			//This worker's buffers: the deltas it pushes and a copy of the weights to send back, so the
+			//network is only locked while it is read or written, not while anything is on the wire.
+			GradientAccumulator delta = new GradientAccumulator(network.getNPerLayer());
+			double[][] wCopy = copyShape(delta.deltaW);
+			double[][] bCopy = copyShape(delta.deltaB);
+			WireFormat wireFormat = WireFormat.forLayers(wCopy);
+			
+			long sentVersion = snapshot(workerId, wCopy, bCopy);
+			wireFormat.writeParameters(out, sentVersion, wCopy, bCopy);
+			
+			while (true) {
+				byte type = in.readByte();
+				
+				if (type == WireFormat.DONE) {
+					break;
+				} else if (type != WireFormat.PUSH) {
+					throw new IOException("Unexpected message " + type);
+				}
+				
+				wireFormat.readPushBodyInto(in, delta.deltaW, delta.deltaB);
+				
+				sentVersion = pushAndSnapshot(workerId, delta, wCopy, bCopy);
+				wireFormat.writeParameters(out, sentVersion, wCopy, bCopy);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (workerId >= 0 && workerId < numWorkers) {
+				finish(workerId);
+			}
+			
+			try {
+				socket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Apply a worker's deltas, then wait until the worker is no more than maxStaleness batches ahead of the
+	 * slowest unfinished worker and copy out the weights it is to train on next. When synchronous, first
+	 * wait until every unfinished worker has taken the weights this worker's batch was trained on.
+	 */
+	private synchronized long pushAndSnapshot(int workerId, GradientAccumulator delta, double[][] wCopy, double[][] bCopy) throws InterruptedException {
+		while (maxStaleness == 0 && !everyoneHasTaken(clocks[workerId])) {
+			wait();
+		}
+		
+		network.applyDeltaPackage(delta);
+		clocks[workerId]++;
+		version++;
+		notifyAll();
+		
+		while (clocks[workerId] > slowestClock() + maxStaleness) {
+			wait();
+		}
+		
+		return snapshot(workerId, wCopy, bCopy);
+	}
+	
+	/**
+	 * Copy out the current weights for a worker and record that it has taken those of its clock.
+	 */
+	private synchronized long snapshot(int workerId, double[][] wCopy, double[][] bCopy) {
+		NetworkWeightBiasPackage weights = network.generateNetworkWeightBiasPackage();
+		
+		copyInto(weights.getFlatConnectionWeights(), wCopy);
+		copyInto(weights.getNeuronBiases(), bCopy);
+		
+		taken[workerId] = clocks[workerId];
+		notifyAll();
+		
+		return version;
+	}
+	
+	/**
+	 * A finished worker no longer holds the others back.
+	 */
+	private synchronized void finish(int workerId) {
+		done[workerId] = true;
+		notifyAll();
+	}
+	
+	/**
+	 * @return Whether every unfinished worker has taken the weights of round `clock` (or a later one)
+	 */
+	private boolean everyoneHasTaken(int clock) {
+		for (int i = 0; i < numWorkers; i++) {
+			if (!done[i] && taken[i] < clock) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private int slowestClock() {
+		int slowest = Integer.MAX_VALUE;
+		
+		for (int i = 0; i < numWorkers; i++) {
+			if (!done[i]) {
+				slowest = Math.min(slowest, clocks[i]);
+			}
+		}
+		
+		return (slowest == Integer.MAX_VALUE) ? Integer.MAX_VALUE - maxStaleness : slowest;
+	}
+	
+	/**
+	 * @return Number of pushes applied so far
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * @return Batches pushed by each worker so far
+	 */
+	public synchronized int[] getClocks() {
+		return Arrays.copyOf(clocks, numWorkers);
+	}
+	
+	public MatrixNetwork getNetwork() {
+		return network;
+	}
+	
+	private static double[][] copyShape(double[][] layers) {
+		double[][] copy = new double[layers.length][];
+		
+		for (int l = 0; l < layers.length; l++) {
+			copy[l] = new double[ layers[l].length ];
+		}
+		
+		return copy;
+	}
+	
+	private static void copyInto(double[][] source, double[][] destination) {
+		for (int l = 0; l < source.length; l++) {
+			System.arraycopy(source[l], 0, destination[l], 0, source[l].length);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package xyz.onerous.MatrixNetwork.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+import xyz.onerous.MatrixNetwork.trainer.Trainer;
+
+/**
+ * Trains a local copy of the network against a ParameterServer. Each batch is trained on the weights the
+ * server last sent; its deltas are pushed to the server instead of being applied locally, and the server's
+ * answer (the weights with everyone's updates so far) overwrites the local weights in place.
+ * 
+ * Set as the local network's trainer, so MatrixNetwork.performEpoch on this worker's shard of the data
+ * trains through the server.
+ */
+public class ParameterServerWorker implements Trainer {
+	private final MatrixNetwork network;
+	private final int workerId;
+	
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final WireFormat wireFormat;
+	
+	private final NetworkWorkspace workspace;
+	
+	private long version; //Version of the weights last received
+	private boolean closed;
+	
+	/**
+	 * Connect to the server and take its current weights. The network must have the server's layer sizes.
+	 * 
+	 * @param network The local network to train
+	 * @param host Host of the parameter server
+	 * @param port Port of the parameter server
+	 * @param workerId This worker's number, from 0 to the server's number of workers - 1
+	 */
+	public ParameterServerWorker(MatrixNetwork network, String host, int port, int workerId) throws IOException {
+		this.network = network;
+		this.workerId = workerId;
+		
+		this.socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+		
+		this.workspace = network.createWorkspace();
+		this.wireFormat = WireFormat.forLayers(workspace.gradientAccumulator.deltaW);
+		
+		WireFormat.writeHello(out, workerId);
+		receiveParameters();
+	}
+	
+	/**
+	 * Train this worker's data once through, in batches of `batchSize`, pushing each batch to the server.
+	 */
+	public void trainEpoch(double[][] data, int[] expectedOutputs, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		for (int start = 0; start < data.length && !closed; start += batchSize) {
+			trainBatch(data, expectedOutputs, start, Math.min(start + batchSize, data.length));
+		}
+	}
+	
+	/**
+	 * Train samples [from, to) as one batch and push it, waiting for the server's weights in return.
+	 */
+	public void trainBatch(double[][] data, int[] expectedOutputs, int from, int to) {
+		if (closed) { return; }
+		
+		GradientAccumulator accumulator = workspace.gradientAccumulator;
+		
+		accumulator.clear();
+		network.accumulateBatch(data, expectedOutputs, from, to, workspace, accumulator);
+		
+		try {
+			wireFormat.writePush(out, accumulator.getSampleCount(), accumulator.deltaW, accumulator.deltaB);
+			receiveParameters();
+		} catch (IOException e) {
+			e.printStackTrace();
+			closed = true;
+		}
+	}
+	
+	private void receiveParameters() throws IOException {
+		NetworkWeightBiasPackage weights = network.generateNetworkWeightBiasPackage();
+		
+		try {
+			version = wireFormat.readParametersInto(in, weights.getFlatConnectionWeights(), weights.getNeuronBiases());
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			throw new IOException("Server network has different layer sizes");
+		}
+	}
+	
+	/**
+	 * Tell the server this worker is done, so it no longer waits for it, and disconnect.
+	 */
+	public void shutdown() {
+		if (closed) { return; }
+		
+		closed = true;
+		
+		try {
+			WireFormat.writeDone(out);
+			socket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * @return Number of updates (from every worker) in the weights last received
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	public int getWorkerId() {
+		return workerId;
+	}
+}
@@ -0,0 +1,343 @@
+package xyz.onerous.MatrixNetwork.distributed;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import xyz.onerous.MatrixNetwork.component.datapackage.WeightBiasDeltaPackage;
+
+/**
+ * Sums arrays across a ring of processes, leaving every process with the total (an all-reduce), without
+ * a central server. Process `rank` receives from rank - 1 and sends to rank + 1 (wrapping around).
+ * 
+ * The layers being summed are treated as one long vector cut into one segment per process. In the
+ * reduce-scatter phase, each of N - 1 steps passes one segment to the right while adding the segment
+ * arriving from the left, after which every process holds one fully summed segment; in the all-gather
+ * phase, N - 1 more steps pass the summed segments around the ring. Each process sends and receives
+ * 2 * (N - 1) / N of the vector in total, so the traffic per process stays about the same however many
+ * processes are added.
+ * 
+ * Segments travel in chunks of CHUNK_LENGTH values. Both neighbours' channels are non-blocking and
+ * watched by one selector, so within a step the next chunk is being sent while the last one received is
+ * added in.
+ */
+public class RingAllReduce {
+	private static final int CHUNK_LENGTH = 8192; //Doubles per chunk (64 KB)
+	private static final int CONNECT_ATTEMPTS = 200;
+	private static final long CONNECT_RETRY_MILLIS = 50;
+	
+	private final int rank;
+	private final int worldSize;
+	private final String host;
+	private final int basePort;
+	
+	private ServerSocketChannel serverChannel;
+	private SocketChannel left; //Receives from rank - 1
+	private SocketChannel right; //Sends to rank + 1
+	private Selector selector;
+	private SelectionKey leftKey;
+	private SelectionKey rightKey;
+	
+	private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(CHUNK_LENGTH * 8);
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(CHUNK_LENGTH * 8);
+	private final DoubleBuffer sendValues = sendBuffer.asDoubleBuffer();
+	private final DoubleBuffer receiveValues = receiveBuffer.asDoubleBuffer();
+	
+	private long bytesSent;
+	
+	/**
+	 * @param rank This process's place in the ring, from 0 to worldSize - 1
+	 * @param worldSize Number of processes in the ring
+	 * @param host Host every process listens on (all of them on one machine)
+	 * @param basePort Process r listens on basePort + r
+	 */
+	public RingAllReduce(int rank, int worldSize, String host, int basePort) {
+		this.rank = rank;
+		this.worldSize = worldSize;
+		this.host = host;
+		this.basePort = basePort;
+	}
+	
+	/**
+	 * Join the ring: listen for the left neighbour, connect to the right one (retrying until it is
+	 * listening) and accept the left one. Every process must call this.
+	 */
+	public void connect() throws IOException {
+		if (worldSize < 2) { return; }
+		
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName(host), basePort + rank));
+		
+		right = connectWithRetry(new InetSocketAddress(host, basePort + (rank + 1) % worldSize));
+		
+		ByteBuffer rankBuffer = ByteBuffer.allocate(4);
+		rankBuffer.putInt(rank).flip();
+		
+		while (rankBuffer.hasRemaining()) {
+			right.write(rankBuffer);
+		}
+		
+		left = serverChannel.accept();
+		left.socket().setTcpNoDelay(true);
+		
+		rankBuffer.clear();
+		
+		while (rankBuffer.hasRemaining()) {
+			if (left.read(rankBuffer) < 0) { throw new IOException("Left neighbour closed the connection"); }
+		}
+		
+		int leftRank = rankBuffer.getInt(0);
+		
+		if (leftRank != (rank + worldSize - 1) % worldSize) {
+			throw new IOException("Expected rank " + ((rank + worldSize - 1) % worldSize) + " on the left but got " + leftRank);
+		}
+		
+		left.configureBlocking(false);
+		right.configureBlocking(false);
+		
+		selector = Selector.open();
+		leftKey = left.register(selector, 0);
+		rightKey = right.register(selector, 0);
+	}
+	
+	private static SocketChannel connectWithRetry(InetSocketAddress address) throws IOException {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				SocketChannel channel = SocketChannel.open(address);
+				
+				channel.socket().setTcpNoDelay(true);
+				
+				return channel;
+			} catch (ConnectException e) {
+				if (attempt == CONNECT_ATTEMPTS) { throw e; }
+				
+				try {
+					Thread.sleep(CONNECT_RETRY_MILLIS);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while connecting to " + address);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Replace every process's deltas with the sum of all of them. Every process must call this with
+	 * packages of the same layer sizes.
+	 */
+	public void allReduce(WeightBiasDeltaPackage deltaPackage) throws IOException {
+		allReduce(deltaPackage.deltaW, deltaPackage.deltaB);
+	}
+	
+	/**
+	 * Give every process rank 0's weights and biases (an all-reduce to which the other ranks contribute
+	 * zeroes).
+	 */
+	public void broadcastFromRoot(double[][] w, double[][] b) throws IOException {
+		if (rank != 0) {
+			for (int l = 0; l < w.length; l++) {
+				Arrays.fill(w[l], 0.0);
+				Arrays.fill(b[l], 0.0);
+			}
+		}
+		
+		allReduce(w, b);
+	}
+	
+	/**
+	 * Sum first and second (taken together as one vector) across every process.
+	 */
+	public void allReduce(double[][] first, double[][] second) throws IOException {
+		if (worldSize < 2) { return; }
+		
+		LayerVector vector = new LayerVector(first, second);
+		
+		for (int step = 0; step < worldSize - 1; step++) { //Reduce-scatter
+			exchange(vector, segment(rank - step), segment(rank - step - 1), true);
+		}
+		
+		for (int step = 0; step < worldSize - 1; step++) { //All-gather
+			exchange(vector, segment(rank + 1 - step), segment(rank - step), false);
+		}
+	}
+	
+	private int segment(int index) {
+		return ((index % worldSize) + worldSize) % worldSize;
+	}
+	
+	/**
+	 * Send one segment to the right while receiving another from the left, adding the received values in
+	 * (reduce) or overwriting with them.
+	 */
+	private void exchange(LayerVector vector, int sendSegment, int receiveSegment, boolean reduce) throws IOException {
+		long sendPosition = vector.segmentStart(sendSegment, worldSize);
+		long sendEnd = vector.segmentStart(sendSegment + 1, worldSize);
+		long receivePosition = vector.segmentStart(receiveSegment, worldSize);
+		long receiveEnd = vector.segmentStart(receiveSegment + 1, worldSize);
+		
+		sendPosition = fillSendBuffer(vector, sendPosition, sendEnd);
+		prepareReceiveBuffer(receivePosition, receiveEnd);
+		
+		while (sendBuffer.hasRemaining() || receivePosition < receiveEnd) {
+			rightKey.interestOps(sendBuffer.hasRemaining() ? SelectionKey.OP_WRITE : 0);
+			leftKey.interestOps(receivePosition < receiveEnd ? SelectionKey.OP_READ : 0);
+			
+			selector.select();
+			selector.selectedKeys().clear();
+			
+			if (sendBuffer.hasRemaining()) {
+				bytesSent += right.write(sendBuffer);
+				
+				if (!sendBuffer.hasRemaining() && sendPosition < sendEnd) {
+					sendPosition = fillSendBuffer(vector, sendPosition, sendEnd);
+				}
+			}
+			
+			if (receivePosition < receiveEnd) {
+				if (left.read(receiveBuffer) < 0) { throw new IOException("Left neighbour closed the connection"); }
+				
+				if (!receiveBuffer.hasRemaining()) {
+					int count = receiveBuffer.limit() / 8;
+					
+					receiveValues.clear();
+					vector.take(receiveValues, receivePosition, count, reduce);
+					receivePosition += count;
+					
+					prepareReceiveBuffer(receivePosition, receiveEnd);
+				}
+			}
+		}
+	}
+	
+	private long fillSendBuffer(LayerVector vector, long position, long end) {
+		int count = (int) Math.min(CHUNK_LENGTH, end - position);
+		
+		sendValues.clear();
+		vector.put(sendValues, position, count);
+		
+		sendBuffer.clear();
+		sendBuffer.limit(count * 8);
+		
+		return position + count;
+	}
+	
+	private void prepareReceiveBuffer(long position, long end) {
+		receiveBuffer.clear();
+		receiveBuffer.limit((int) Math.min(CHUNK_LENGTH, end - position) * 8);
+	}
+	
+	/**
+	 * @return Bytes this process has sent since joining the ring
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+	
+	public int getRank() {
+		return rank;
+	}
+	
+	public int getWorldSize() {
+		return worldSize;
+	}
+	
+	public void close() throws IOException {
+		if (selector != null) { selector.close(); }
+		if (left != null) { left.close(); }
+		if (right != null) { right.close(); }
+		if (serverChannel != null) { serverChannel.close(); }
+	}
+	
+	/**
+	 * Two sets of layers addressed as one vector, first's layers followed by second's.
+	 */
+	private static class LayerVector {
+		private final double[][] layers;
+		private final long[] offsets; //offsets[i] is the position of layers[i][0]; offsets[layers.length] is the length
+		
+		LayerVector(double[][] first, double[][] second) {
+			this.layers = new double[first.length + second.length][];
+			this.offsets = new long[layers.length + 1];
+			
+			System.arraycopy(first, 0, layers, 0, first.length);
+			System.arraycopy(second, 0, layers, first.length, second.length);
+			
+			for (int i = 0; i < layers.length; i++) {
+				offsets[i + 1] = offsets[i] + layers[i].length;
+			}
+		}
+		
+		long segmentStart(int segment, int numSegments) {
+			return offsets[layers.length] * segment / numSegments;
+		}
+		
+		/**
+		 * Copy `count` values from `position` on into the buffer.
+		 */
+		void put(DoubleBuffer buffer, long position, int count) {
+			if (count == 0) { return; }
+			
+			int i = layerAt(position);
+			
+			while (count > 0) {
+				int start = (int) (position - offsets[i]);
+				int length = Math.min(count, layers[i].length - start);
+				
+				buffer.put(layers[i], start, length);
+				
+				position += length;
+				count -= length;
+				i++;
+			}
+		}
+		
+		/**
+		 * Add (or copy) `count` values from the buffer into the vector from `position` on.
+		 */
+		void take(DoubleBuffer buffer, long position, int count, boolean add) {
+			if (count == 0) { return; }
+			
+			int i = layerAt(position);
+			
+			while (count > 0) {
+				double[] layer = layers[i];
+				int start = (int) (position - offsets[i]);
+				int length = Math.min(count, layer.length - start);
+				
+				if (add) {
+					for (int j = start; j < start + length; j++) {
+						layer[j] += buffer.get();
+					}
+				} else {
+					buffer.get(layer, start, length);
+				}
+				
+				position += length;
+				count -= length;
+				i++;
+			}
+		}
+		
+		/**
+		 * @return The layer holding `position`, skipping empty layers
+		 */
+		private int layerAt(long position) {
+			int i = 0;
+			
+			while (offsets[i + 1] <= position) {
+				i++;
+			}
+			
+			return i;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package xyz.onerous.MatrixNetwork.distributed;
+
+import java.io.IOException;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.trainer.Trainer;
+
+/**
+ * Data-parallel training across processes joined by a RingAllReduce, with no parameter server. Every
+ * process keeps a full copy of the network and is given the same data. Each batch is split between the
+ * processes by rank; each one finds the deltas of its part, the deltas are summed around the ring, and
+ * every process applies the same sum, so the copies stay identical and each batch has the same effect as
+ * it would on one process.
+ * 
+ * Every process must train the same number of batches, in the same order.
+ */
+public class RingAllReduceTrainer implements Trainer {
+	private final MatrixNetwork network;
+	private final RingAllReduce ring;
+	private final NetworkWorkspace workspace;
+	
+	private boolean failed;
+	
+	/**
+	 * Join the ring and take rank 0's weights, so every copy starts the same.
+	 * 
+	 * @param network This process's copy of the network
+	 * @param ring The ring, not yet connected
+	 */
+	public RingAllReduceTrainer(MatrixNetwork network, RingAllReduce ring) throws IOException {
+		this.network = network;
+		this.ring = ring;
+		this.workspace = network.createWorkspace();
+		
+		ring.connect();
+		
+		NetworkWeightBiasPackage weights = network.generateNetworkWeightBiasPackage();
+		ring.broadcastFromRoot(weights.getFlatConnectionWeights(), weights.getNeuronBiases());
+	}
+	
+	public void trainEpoch(double[][] data, int[] expectedOutputs, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		for (int start = 0; start < data.length && !failed; start += batchSize) {
+			trainBatch(data, expectedOutputs, start, Math.min(start + batchSize, data.length));
+		}
+	}
+	
+	/**
+	 * Train this process's part of samples [from, to) and apply the deltas summed over every process.
+	 */
+	public void trainBatch(double[][] data, int[] expectedOutputs, int from, int to) {
+		if (failed) { return; }
+		
+		int rank = ring.getRank();
+		int worldSize = ring.getWorldSize();
+		int partFrom = from + (int) ((long) (to - from) * rank / worldSize);
+		int partTo = from + (int) ((long) (to - from) * (rank + 1) / worldSize);
+		
+		GradientAccumulator accumulator = workspace.gradientAccumulator;
+		
+		accumulator.clear();
+		
+		if (partFrom < partTo) {
+			network.accumulateBatch(data, expectedOutputs, partFrom, partTo, workspace, accumulator);
+		}
+		
+		try {
+			ring.allReduce(accumulator);
+		} catch (IOException e) {
+			e.printStackTrace();
+			failed = true;
+			return;
+		}
+		
+		network.applyDeltaPackage(accumulator);
+	}
+	
+	public RingAllReduce getRing() {
+		return ring;
+	}
+	
+	public void shutdown() {
+		try {
+			ring.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
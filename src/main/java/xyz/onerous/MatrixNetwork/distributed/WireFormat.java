@@ -0,0 +1,151 @@
+package xyz.onerous.MatrixNetwork.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+
+/**
+ * The binary messages exchanged by the parameter server and its workers. Every message is one type byte
+ * followed by its fields; layers of weights or deltas are sent as an int layer count, then per layer an int
+ * length and that many big-endian IEEE 754 doubles. A 784-500-500-250-10 network is therefore about 5.4 MB
+ * per message (8 bytes a value), where the text save format takes several times that.
+ * 
+ * 	HELLO       int workerId
+ * 	PARAMETERS  long version, layers w, layers b
+ * 	PUSH        int sampleCount, layers deltaW, layers deltaB
+ * 	DONE        (nothing)
+ */
+public class WireFormat {
+	public static final byte HELLO = 1;
+	public static final byte PARAMETERS = 2;
+	public static final byte PUSH = 3;
+	public static final byte DONE = 4;
+	
+	private final ByteBuffer buffer; //Reused to convert a whole layer at a time instead of value by value
+	
+	/**
+	 * @param maxLayerLength Length of the longest layer that will be sent or received
+	 */
+	public WireFormat(int maxLayerLength) {
+		this.buffer = ByteBuffer.allocate(maxLayerLength * 8);
+	}
+	
+	/**
+	 * @param layers The layers to size the buffer for (a network's weights, for example)
+	 * @return A wire format able to send and receive layers of that size
+	 */
+	public static WireFormat forLayers(double[][] layers) {
+		int maxLayerLength = 0;
+		
+		for (double[] layer : layers) {
+			maxLayerLength = Math.max(maxLayerLength, layer.length);
+		}
+		
+		return new WireFormat(maxLayerLength);
+	}
+	
+	public void writeLayers(DataOutputStream out, double[][] layers) throws IOException {
+		out.writeInt(layers.length);
+		
+		for (double[] layer : layers) {
+			out.writeInt(layer.length);
+			
+			buffer.clear();
+			buffer.asDoubleBuffer().put(layer);
+			out.write(buffer.array(), 0, layer.length * 8);
+		}
+	}
+	
+	/**
+	 * Read layers into existing arrays, which must have the same shape as the layers sent.
+	 * 
+	 * @param in
+	 * @param layers Where the values are written
+	 * @throws IOException
+	 * @throws InvalidInputLengthException if the layers sent have a different shape
+	 */
+	public void readLayersInto(DataInputStream in, double[][] layers) throws IOException, InvalidInputLengthException {
+		if (in.readInt() != layers.length) {
+			throw new InvalidInputLengthException();
+		}
+		
+		for (double[] layer : layers) {
+			if (in.readInt() != layer.length) {
+				throw new InvalidInputLengthException();
+			}
+			
+			buffer.clear();
+			in.readFully(buffer.array(), 0, layer.length * 8);
+			buffer.asDoubleBuffer().get(layer);
+		}
+	}
+	
+	public void writeParameters(DataOutputStream out, long version, double[][] w, double[][] b) throws IOException {
+		out.writeByte(PARAMETERS);
+		out.writeLong(version);
+		writeLayers(out, w);
+		writeLayers(out, b);
+		out.flush();
+	}
+	
+	/**
+	 * @return The version of the parameters read
+	 */
+	public long readParametersInto(DataInputStream in, double[][] w, double[][] b) throws IOException, InvalidInputLengthException {
+		expect(in, PARAMETERS);
+		
+		long version = in.readLong();
+		
+		readLayersInto(in, w);
+		readLayersInto(in, b);
+		
+		return version;
+	}
+	
+	public void writePush(DataOutputStream out, int sampleCount, double[][] deltaW, double[][] deltaB) throws IOException {
+		out.writeByte(PUSH);
+		out.writeInt(sampleCount);
+		writeLayers(out, deltaW);
+		writeLayers(out, deltaB);
+		out.flush();
+	}
+	
+	/**
+	 * Read the body of a PUSH message, whose type byte has already been read.
+	 * 
+	 * @return The number of samples the deltas were summed over
+	 */
+	public int readPushBodyInto(DataInputStream in, double[][] deltaW, double[][] deltaB) throws IOException, InvalidInputLengthException {
+		int sampleCount = in.readInt();
+		
+		readLayersInto(in, deltaW);
+		readLayersInto(in, deltaB);
+		
+		return sampleCount;
+	}
+	
+	public static void writeHello(DataOutputStream out, int workerId) throws IOException {
+		out.writeByte(HELLO);
+		out.writeInt(workerId);
+		out.flush();
+	}
+	
+	public static void writeDone(DataOutputStream out) throws IOException {
+		out.writeByte(DONE);
+		out.flush();
+	}
+	
+	/**
+	 * Read a type byte and make sure it is the one expected.
+	 */
+	public static void expect(DataInputStream in, byte type) throws IOException {
+		byte actualType = in.readByte();
+		
+		if (actualType != type) {
+			throw new IOException("Expected message " + type + " but got " + actualType);
+		}
+	}
+}
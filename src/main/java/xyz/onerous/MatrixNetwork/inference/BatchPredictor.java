@@ -0,0 +1,30 @@
+package xyz.onerous.MatrixNetwork.inference;
+
+/**
+ * Anything that can predict a batch of inputs in one call, and so can be evaluated by a ParallelEvaluator:
+ * an InferenceModel, or a FloatMatrixNetwork predicting in single precision. Implementations must allow
+ * several threads to predict at once.
+ */
+public interface BatchPredictor {
+	/**
+	 * @return Number of input neurons
+	 */
+	int getNumInputs();
+	
+	/**
+	 * @return Number of output neurons
+	 */
+	int getNumOutputs();
+	
+	/**
+	 * Predict a batch of inputs.
+	 * 
+	 * @param inputs Holds the inputs, each of length number of input neurons in the network
+	 * @param from Index in inputs of the first input of the batch
+	 * @param count Number of inputs in the batch
+	 * @param probabilitiesOut Receives the output layer activations, one row of number of output neurons per
+	 * input (may be null if only the indices are wanted)
+	 * @param indicesOut Receives the network response for each input (index of 'brightest' output neuron)
+	 */
+	void predictBatch(double[][] inputs, int from, int count, double[] probabilitiesOut, int[] indicesOut);
+}
@@ -0,0 +1,344 @@
+package xyz.onerous.MatrixNetwork.inference;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
+
+/**
+ * A read-only copy of a trained network for making predictions. The weights and biases are copied when the
+ * model is built and never written afterwards, and the weighted input and activation buffers a prediction
+ * needs are borrowed from a pool for the length of one call. Any number of threads can therefore share one
+ * model (one copy of the weights) and predict at the same time, and training the source network further
+ * does not affect the model.
+ * 
+ * The pool keeps at most `maxPooledScratch` sets of buffers, however many threads predict (so a server
+ * running each request on its own, possibly virtual, thread does not hold one set per thread). While no
+ * more calls than that run at once, predictions allocate nothing once the buffers exist; calls beyond it
+ * allocate a set and drop it afterwards. `predictBatch` runs several inputs through at once, one sample per
+ * row, so each layer's weights are read once per batch instead of once per input. Batches larger than
+ * MAX_BATCH_ROWS go through in chunks of that size, which bounds the batch buffers. For a single latency-
+ * critical prediction the overloads taking a ParallelGemv split each wide layer across several cores instead.
+ */
+public class InferenceModel implements BatchPredictor {
+	private final int numL;
+	private final int[] nPerLayer;
+	private final boolean usingSoftmax;
+	private final ActivationType activationType;
+	
+	private final double[][] w; //Connection Weights, laid out as in MatrixNetwork
+	private final double[][] b; //Neuron Biases
+	
+	public static final int MAX_BATCH_ROWS = 256; //Most inputs propagated through one set of batch buffers at once
+	
+	private final ArrayBlockingQueue<Scratch> scratchPool; //Buffers not in use by a call
+	
+	/**
+	 * Build a model from the current weights and biases of a network.
+	 * 
+	 * @param network The network to copy
+	 */
+	public InferenceModel(MatrixNetwork network) {
+		this(network.generateNetworkWeightBiasPackage(), network.getActivationType(), network.isUsingSoftmax());
+	}
+	
+	/**
+	 * Build a model from a weight-bias package, pooling one set of buffers per available processor.
+	 * 
+	 * @param networkWeightBiasPackage The weights and biases of the network
+	 * @param activationType The activation function the network was trained with
+	 * @param usingSoftmax Whether the output layer is a softmax layer
+	 */
+	public InferenceModel(NetworkWeightBiasPackage networkWeightBiasPackage, ActivationType activationType, boolean usingSoftmax) {
+		this(networkWeightBiasPackage, activationType, usingSoftmax, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Build a model from a weight-bias package, such as one loaded from a save file. The package does not
+	 * record how the network was activated, so that has to be given.
+	 * 
+	 * @param networkWeightBiasPackage The weights and biases of the network
+	 * @param activationType The activation function the network was trained with
+	 * @param usingSoftmax Whether the output layer is a softmax layer
+	 * @param maxPooledScratch Most sets of prediction buffers kept between calls
+	 */
+	public InferenceModel(NetworkWeightBiasPackage networkWeightBiasPackage, ActivationType activationType, boolean usingSoftmax, int maxPooledScratch) {
+		double[][] packageW = networkWeightBiasPackage.getFlatConnectionWeights();
+		double[][] packageB = networkWeightBiasPackage.getNeuronBiases();
+		
+		this.numL = packageB.length;
+		this.nPerLayer = new int[numL];
+		this.usingSoftmax = usingSoftmax;
+		this.activationType = activationType;
+		this.w = new double[numL][];
+		this.b = new double[numL][];
+		
+		for (int l = 0; l < numL; l++) {
+			nPerLayer[l] = packageB[l].length;
+			w[l] = packageW[l].clone();
+			b[l] = packageB[l].clone();
+		}
+		
+		this.scratchPool = new ArrayBlockingQueue<Scratch>(Math.max(1, maxPooledScratch));
+	}
+	
+	/**
+	 * @param input Array of length number of input neurons in the network
+	 * @return Network response (index of 'brightest' output neuron), or -1 if the input is the wrong length
+	 */
+	public int predict(double[] input) {
+		return predict(input, null);
+	}
+	
+	/**
+	 * @param input Array of length number of input neurons in the network
+	 * @param gemv Splits each layer big enough to benefit across its threads (null to predict serially)
+	 * @return Network response (index of 'brightest' output neuron), or -1 if the input is the wrong length
+	 */
+	public int predict(double[] input, ParallelGemv gemv) {
+		Scratch scratch = borrowScratch();
+		
+		try {
+			double[] outputA = propagate(input, gemv, scratch);
+			int maxValueAtIndex = 0;
+			
+			for (int n = 1; n < outputA.length; n++) {
+				if (outputA[n] > outputA[maxValueAtIndex]) {
+					maxValueAtIndex = n;
+				}
+			}
+			
+			return maxValueAtIndex;
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return -1;
+		} finally {
+			scratchPool.offer(scratch);
+		}
+	}
+	
+	/**
+	 * Write the output layer activations for an input (the class probabilities, for a softmax network) into
+	 * a caller-supplied array.
+	 * 
+	 * @param input Array of length number of input neurons in the network
+	 * @param out Array of length number of output neurons in the network
+	 */
+	public void predictProbabilities(double[] input, double[] out) {
+		predictProbabilities(input, out, null);
+	}
+	
+	/**
+	 * predictProbabilities with each layer big enough to benefit split across the threads of gemv.
+	 * 
+	 * @param input Array of length number of input neurons in the network
+	 * @param out Array of length number of output neurons in the network
+	 * @param gemv Splits the layers (null to predict serially)
+	 */
+	public void predictProbabilities(double[] input, double[] out, ParallelGemv gemv) {
+		Scratch scratch = borrowScratch();
+		
+		try {
+			if (out.length != nPerLayer[numL - 1]) {
+				throw new InvalidInputLengthException();
+			}
+			
+			double[] outputA = propagate(input, gemv, scratch);
+			
+			System.arraycopy(outputA, 0, out, 0, outputA.length);
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		} finally {
+			scratchPool.offer(scratch);
+		}
+	}
+	
+	/**
+	 * Predict a batch of inputs with one matrix-matrix product per layer.
+	 * 
+	 * @param inputs Holds the inputs, each of length number of input neurons in the network
+	 * @param from Index in inputs of the first input of the batch
+	 * @param count Number of inputs in the batch
+	 * @param probabilitiesOut Receives the output layer activations, one row of number of output neurons per
+	 * input (may be null if only the indices are wanted)
+	 * @param indicesOut Receives the network response for each input (index of 'brightest' output neuron)
+	 */
+	public void predictBatch(double[][] inputs, int from, int count, double[] probabilitiesOut, int[] indicesOut) {
+		int nOutput = nPerLayer[numL - 1];
+		Scratch scratch = borrowScratch();
+		
+		try {
+			if (indicesOut.length < count || (probabilitiesOut != null && probabilitiesOut.length < count * nOutput)) {
+				throw new InvalidInputLengthException();
+			}
+			
+			for (int done = 0; done < count; done += MAX_BATCH_ROWS) {
+				int chunk = Math.min(MAX_BATCH_ROWS, count - done);
+				double[] outputA = propagateBatch(inputs, from + done, chunk, scratch);
+				
+				for (int s = 0; s < chunk; s++) {
+					int offset = s * nOutput;
+					int maxValueAtIndex = 0;
+					
+					for (int n = 1; n < nOutput; n++) {
+						if (outputA[offset + n] > outputA[offset + maxValueAtIndex]) {
+							maxValueAtIndex = n;
+						}
+					}
+					
+					indicesOut[done + s] = maxValueAtIndex;
+				}
+				
+				if (probabilitiesOut != null) {
+					System.arraycopy(outputA, 0, probabilitiesOut, done * nOutput, chunk * nOutput);
+				}
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+		} finally {
+			scratchPool.offer(scratch);
+		}
+	}
+	
+	/**
+	 * The batch version of `propagate`, the same way MatrixNetwork.propagateBatch works.
+	 * 
+	 * @param count Number of inputs, at most MAX_BATCH_ROWS
+	 * @return The scratch's output layer activations for the batch, one sample per row
+	 * @throws InvalidInputLengthException
+	 */
+	private double[] propagateBatch(double[][] inputs, int from, int count, Scratch scratch) throws InvalidInputLengthException {
+		scratch.ensureBatchCapacity(count);
+		
+		double[][] zBatch = scratch.zBatch;
+		double[][] aBatch = scratch.aBatch;
+		
+		for (int s = 0; s < count; s++) {
+			if (inputs[from + s].length != nPerLayer[0]) {
+				throw new InvalidInputLengthException();
+			}
+			
+			Kernels.get().activateInto(activationType, inputs[from + s], zBatch[0], 0, nPerLayer[0]);
+			System.arraycopy(zBatch[0], 0, aBatch[0], s * nPerLayer[0], nPerLayer[0]);
+		}
+		
+		for (int l = 1; l < numL; l++) {
+			Kernels.get().multiplyWithSecondTransposeInto(aBatch[l-1], w[l], zBatch[l], count, nPerLayer[l-1], nPerLayer[l], false);
+			
+			for (int s = 0; s < count; s++) {
+				int offset = s * nPerLayer[l];
+				
+				for (int n = 0; n < nPerLayer[l]; n++) {
+					zBatch[l][offset + n] += b[l][n];
+				}
+			}
+			
+			if (l == numL - 1 && usingSoftmax) {
+				for (int s = 0; s < count; s++) {
+					Kernels.get().softmaxInto(zBatch[l], aBatch[l], s * nPerLayer[l], nPerLayer[l]);
+				}
+			} else {
+				Kernels.get().activateInto(activationType, zBatch[l], aBatch[l], 0, count * nPerLayer[l]);
+			}
+		}
+		
+		return aBatch[numL - 1];
+	}
+	
+	/**
+	 * Feed an input forward through a scratch's buffers, the same way MatrixNetwork.propagate does.
+	 * 
+	 * @param input Array of length number of input neurons in the network
+	 * @param gemv Splits the layers across its threads, or null to compute them on this thread
+	 * @return The scratch's output layer activations
+	 * @throws InvalidInputLengthException
+	 */
+	private double[] propagate(double[] input, ParallelGemv gemv, Scratch scratch) throws InvalidInputLengthException {
+		if (input.length != nPerLayer[0]) {
+			throw new InvalidInputLengthException();
+		}
+		
+		double[][] z = scratch.z;
+		double[][] a = scratch.a;
+		
+		Kernels.get().activateInto(activationType, input, a[0], 0, nPerLayer[0]);
+		
+		for (int l = 1; l < numL; l++) {
+			ActivationType layerActivationType = (l == numL - 1 && usingSoftmax) ? ActivationType.Linear : activationType;
+			
+			if (gemv == null) {
+				Kernels.get().denseForwardInto(layerActivationType, w[l], b[l], nPerLayer[l], nPerLayer[l-1], a[l-1], z[l], a[l]);
+			} else {
+				gemv.denseForwardInto(layerActivationType, w[l], b[l], nPerLayer[l], nPerLayer[l-1], a[l-1], z[l], a[l]);
+			}
+		}
+		
+		if (usingSoftmax) {
+			Kernels.get().softmaxInto(z[numL-1], a[numL-1], 0, nPerLayer[numL-1]);
+		}
+		
+		return a[numL - 1];
+	}
+	
+	/**
+	 * @return A set of buffers from the pool, or a new one if the pool is empty. Offer it back when done.
+	 */
+	private Scratch borrowScratch() {
+		Scratch scratch = scratchPool.poll();
+		
+		return (scratch != null) ? scratch : new Scratch();
+	}
+	
+	/**
+	 * The buffers one prediction call works in: one input's weighted inputs and activations, and a batch's,
+	 * grown as needed up to MAX_BATCH_ROWS samples.
+	 */
+	private class Scratch {
+		final double[][] z = new double[numL][];
+		final double[][] a = new double[numL][];
+		
+		double[][] zBatch;
+		double[][] aBatch;
+		int batchCapacity;
+		
+		Scratch() {
+			for (int l = 0; l < numL; l++) {
+				z[l] = new double[ nPerLayer[l] ];
+				a[l] = new double[ nPerLayer[l] ];
+			}
+		}
+		
+		void ensureBatchCapacity(int count) {
+			if (count <= batchCapacity) { return; }
+			
+			zBatch = new double[numL][];
+			aBatch = new double[numL][];
+			
+			for (int l = 0; l < numL; l++) {
+				zBatch[l] = new double[ count * nPerLayer[l] ];
+				aBatch[l] = new double[ count * nPerLayer[l] ];
+			}
+			
+			batchCapacity = count;
+		}
+	}
+	
+	public int getNumInputs() {
+		return nPerLayer[0];
+	}
+	
+	public int getNumOutputs() {
+		return nPerLayer[numL - 1];
+	}
+	
+	public ActivationType getActivationType() {
+		return activationType;
+	}
+	
+	public boolean isUsingSoftmax() {
+		return usingSoftmax;
+	}
+}
@@ -0,0 +1,425 @@
+package xyz.onerous.MatrixNetwork.inference;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import xyz.onerous.MatrixNetwork.component.datapackage.PredictionPackage;
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+
+/**
+ * Serves predictions from an InferenceModel to many concurrent callers, gathering their requests into
+ * micro-batches so each batch goes through the network with one matrix-matrix product per layer instead
+ * of one matrix-vector product per request.
+ * 
+ * One batching thread takes the oldest waiting request, then keeps adding requests until the batch holds
+ * maxBatchSize of them or the oldest has waited maxWaitMicros, whichever comes first. A lone caller
+ * therefore waits at most maxWaitMicros longer than it would unbatched, and under load batches fill up
+ * at once.
+ * 
+ * Callers either submit directly (`submit`, which returns a future) or over HTTP (`startHttp`):
+ * 
+ * 	POST /predict   body: the input values separated by commas or whitespace
+ * 	                reply: the output index, then the output values separated by commas, one per line
+ * 	GET  /stats     reply: request count, mean batch size, p50/p99 latency and throughput
+ * 
+ * The HTTP server listens on the loopback address unless another one is given, so the model is not exposed
+ * to the network by accident. Request bodies longer than the text of numInputs values can be are refused
+ * with 413. HTTP requests are handled on virtual threads when the JVM has them (Java 21 and later; looked
+ * up by reflection so the code still runs on older JVMs), and on a cached thread pool otherwise.
+ * 
+ * A batch whose prediction throws fails the futures of its requests (500 over HTTP) and the server goes on
+ * with the next batch. Requests submitted after `shutdown` fail at once (503 over HTTP).
+ */
+public class InferenceServer {
+	private static final int LATENCY_SAMPLES = 1 << 16; //Latencies kept for the percentiles (the most recent ones)
+	private static final int MAX_VALUE_CHARS = 32; //Longest text of one input value and its separator (a double in full is at most 24 characters)
+	
+	private final InferenceModel model;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final int maxBodyBytes;
+	
+	private final BlockingQueue<PendingRequest> queue = new LinkedBlockingQueue<PendingRequest>();
+	private final Thread batcher;
+	private volatile boolean running = true;
+	
+	private HttpServer httpServer;
+	private ExecutorService httpExecutor;
+	
+	private final long[] latencyNanos = new long[LATENCY_SAMPLES];
+	private long completedCount;
+	private long batchCount;
+	private final long startNanos = System.nanoTime();
+	
+	/**
+	 * Start the batching thread.
+	 * 
+	 * @param model The model to serve
+	 * @param maxBatchSize Most requests put through the network at once
+	 * @param maxWaitMicros Longest the oldest request in a batch waits for the batch to fill up
+	 */
+	public InferenceServer(InferenceModel model, int maxBatchSize, long maxWaitMicros) {
+		this.model = model;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxWaitMicros));
+		this.maxBodyBytes = (int) Math.min(Integer.MAX_VALUE, (long) model.getNumInputs() * MAX_VALUE_CHARS + MAX_VALUE_CHARS);
+		
+		this.batcher = new Thread(new Runnable() {
+			public void run() {
+				runBatches();
+			}
+		}, "InferenceServer-batcher");
+		batcher.setDaemon(true);
+		batcher.start();
+	}
+	
+	/**
+	 * Queue an input for prediction.
+	 * 
+	 * @param input Array of length number of input neurons in the network
+	 * @return The pending prediction (already failed with an IllegalStateException if the server has been
+	 * shut down), or null if the input is the wrong length
+	 */
+	public Future<PredictionPackage> submit(double[] input) {
+		try {
+			if (input.length != model.getNumInputs()) {
+				throw new InvalidInputLengthException();
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return (Future<PredictionPackage>) null;
+		}
+		
+		PendingRequest request = new PendingRequest(input);
+		
+		if (!running) {
+			request.result.completeExceptionally(new IllegalStateException("The server has been shut down"));
+			return request.result;
+		}
+		
+		queue.add(request);
+		
+		//If the server shut down meanwhile, the batcher may already have emptied the queue for the last time
+		if (!running && queue.remove(request)) {
+			request.result.completeExceptionally(new IllegalStateException("The server has been shut down"));
+		}
+		
+		return request.result;
+	}
+	
+	private void runBatches() {
+		int nOutput = model.getNumOutputs();
+		
+		PendingRequest[] batch = new PendingRequest[maxBatchSize];
+		double[][] inputs = new double[maxBatchSize][];
+		double[] outputValues = new double[maxBatchSize * nOutput];
+		int[] outputIndices = new int[maxBatchSize];
+		
+		while (running) {
+			int count;
+			
+			try {
+				count = collectBatch(batch);
+			} catch (InterruptedException e) {
+				for (int s = 0; s < maxBatchSize && batch[s] != null; s++) {
+					batch[s].result.cancel(false);
+				}
+				
+				break;
+			}
+			
+			for (int s = 0; s < count; s++) {
+				inputs[s] = batch[s].input;
+			}
+			
+			try {
+				model.predictBatch(inputs, 0, count, outputValues, outputIndices);
+				
+				recordBatch(batch, count, System.nanoTime()); //Before completing, so a caller's own request is in the statistics it reads
+				
+				for (int s = 0; s < count; s++) {
+					batch[s].result.complete(new PredictionPackage(outputIndices[s], Arrays.copyOfRange(outputValues, s * nOutput, (s + 1) * nOutput)));
+				}
+			} catch (RuntimeException e) { //Fail this batch only; the batcher carries on
+				for (int s = 0; s < count; s++) {
+					batch[s].result.completeExceptionally(e);
+				}
+			}
+			
+			for (int s = 0; s < count; s++) {
+				batch[s] = null;
+				inputs[s] = null;
+			}
+		}
+		
+		for (PendingRequest request = queue.poll(); request != null; request = queue.poll()) {
+			request.result.cancel(false);
+		}
+	}
+	
+	/**
+	 * Wait for a request, then gather more until the batch is full or the first has waited maxWaitNanos.
+	 * 
+	 * @return Number of requests put in the batch
+	 */
+	private int collectBatch(PendingRequest[] batch) throws InterruptedException {
+		batch[0] = queue.take();
+		
+		int count = 1;
+		long deadline = batch[0].arrivalNanos + maxWaitNanos;
+		
+		while (count < maxBatchSize) {
+			PendingRequest next = queue.poll();
+			
+			if (next == null) {
+				long remaining = deadline - System.nanoTime();
+				
+				if (remaining <= 0) { break; }
+				
+				next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+				
+				if (next == null) { break; }
+			}
+			
+			batch[count++] = next;
+		}
+		
+		return count;
+	}
+	
+	private synchronized void recordBatch(PendingRequest[] batch, int count, long now) {
+		for (int s = 0; s < count; s++) {
+			latencyNanos[(int) (completedCount % LATENCY_SAMPLES)] = now - batch[s].arrivalNanos;
+			completedCount++;
+		}
+		
+		batchCount++;
+	}
+	
+	/**
+	 * @param percentile From 0 to 100
+	 * @return The latency (queueing plus prediction) under which that percentage of recent requests were
+	 * answered, in milliseconds
+	 */
+	public synchronized double getLatencyPercentile(double percentile) {
+		int numSamples = (int) Math.min(completedCount, LATENCY_SAMPLES);
+		
+		if (numSamples == 0) { return 0.0; }
+		
+		long[] sorted = Arrays.copyOf(latencyNanos, numSamples);
+		Arrays.sort(sorted);
+		
+		int index = (int) Math.min(numSamples - 1, Math.ceil(percentile / 100.0 * numSamples) - 1);
+		
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+	
+	/**
+	 * @return Requests answered per second since the server started
+	 */
+	public synchronized double getThroughput() {
+		return completedCount / ((System.nanoTime() - startNanos) / 1e9);
+	}
+	
+	public synchronized String getStatistics() {
+		return "Requests: " + completedCount + "\n"
+				+ "Batches: " + batchCount + " (mean size " + String.format("%.1f", batchCount == 0 ? 0.0 : (double) completedCount / batchCount) + ")\n"
+				+ "Latency p50: " + String.format("%.3f", getLatencyPercentile(50)) + " ms\n"
+				+ "Latency p99: " + String.format("%.3f", getLatencyPercentile(99)) + " ms\n"
+				+ "Throughput: " + Math.round(getThroughput()) + " requests/s";
+	}
+	
+	/**
+	 * Serve /predict and /stats over HTTP on the loopback address.
+	 * 
+	 * @param port Port to listen on
+	 */
+	public void startHttp(int port) throws IOException {
+		startHttp(InetAddress.getLoopbackAddress(), port);
+	}
+	
+	/**
+	 * Serve /predict and /stats over HTTP on the given address. Anything but the loopback address makes the
+	 * model reachable by other machines.
+	 * 
+	 * @param bindAddress Address to listen on
+	 * @param port Port to listen on
+	 */
+	public void startHttp(InetAddress bindAddress, int port) throws IOException {
+		httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+		httpExecutor = newRequestExecutor();
+		
+		httpServer.createContext("/predict", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handlePredict(exchange);
+			}
+		});
+		httpServer.createContext("/stats", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, getStatistics() + "\n");
+			}
+		});
+		
+		httpServer.setExecutor(httpExecutor);
+		httpServer.start();
+	}
+	
+	/**
+	 * @return Port the HTTP server is listening on, or -1 if it has not been started
+	 */
+	public int getHttpPort() {
+		return (httpServer == null) ? -1 : httpServer.getAddress().getPort();
+	}
+	
+	private void handlePredict(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			respond(exchange, 405, "POST the input values\n");
+			return;
+		}
+		
+		double[] input;
+		
+		try {
+			String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+			String body = (contentLength != null && Long.parseLong(contentLength.trim()) > maxBodyBytes) ? (String) null : readBody(exchange.getRequestBody(), maxBodyBytes);
+			
+			if (body == null) {
+				respond(exchange, 413, "The input values take at most " + maxBodyBytes + " bytes\n");
+				return;
+			}
+			
+			input = parseInput(body);
+		} catch (NumberFormatException e) {
+			respond(exchange, 400, "Could not read the input values\n");
+			return;
+		}
+		
+		Future<PredictionPackage> pending = submit(input);
+		
+		if (pending == null) {
+			respond(exchange, 400, "Expected " + model.getNumInputs() + " input values but got " + input.length + "\n");
+			return;
+		}
+		
+		try {
+			PredictionPackage prediction = pending.get();
+			StringBuilder reply = new StringBuilder();
+			
+			reply.append(prediction.outputIndex).append('\n');
+			
+			for (int n = 0; n < prediction.outputNeuronValues.length; n++) {
+				if (n != 0) { reply.append(','); }
+				
+				reply.append(prediction.outputNeuronValues[n]);
+			}
+			
+			respond(exchange, 200, reply.append('\n').toString());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "Interrupted\n");
+		} catch (CancellationException e) {
+			respond(exchange, 503, "The server is shutting down\n");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IllegalStateException) {
+				respond(exchange, 503, "The server is shutting down\n");
+			} else {
+				e.printStackTrace();
+				respond(exchange, 500, "Prediction failed\n");
+			}
+		}
+	}
+	
+	private static double[] parseInput(String body) {
+		String trimmed = body.trim();
+		
+		if (trimmed.isEmpty()) { return new double[0]; }
+		
+		String[] values = trimmed.split("[,\\s]+");
+		double[] input = new double[values.length];
+		
+		for (int i = 0; i < values.length; i++) {
+			input[i] = Double.parseDouble(values[i]);
+		}
+		
+		return input;
+	}
+	
+	/**
+	 * @return The body, or null if it is longer than maxBytes (in which case it is not read to the end)
+	 */
+	private static String readBody(InputStream in, int maxBytes) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		
+		for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+			if (body.size() + read > maxBytes) { return (String) null; }
+			
+			body.write(buffer, 0, read);
+		}
+		
+		return body.toString("UTF-8");
+	}
+	
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+	
+	/**
+	 * @return A virtual thread per request if this JVM has them, otherwise a cached thread pool
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	/**
+	 * Stop the HTTP server and the batching thread. Requests still queued are cancelled.
+	 */
+	public void shutdown() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+			httpExecutor.shutdown();
+		}
+		
+		running = false;
+		batcher.interrupt();
+	}
+	
+	private static class PendingRequest {
+		final double[] input;
+		final long arrivalNanos = System.nanoTime();
+		final CompletableFuture<PredictionPackage> result = new CompletableFuture<PredictionPackage>();
+		
+		PendingRequest(double[] input) {
+			this.input = input;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package xyz.onerous.MatrixNetwork.inference;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
+import xyz.onerous.MatrixNetwork.pipeline.ArraySampleSource;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
+
+/**
+ * Runs a test set through a network on every core, producing the same TestResultPackage as
+ * MatrixNetwork.performTest. The test set is split into shards that each write their own part of the result
+ * arrays and count their own correct answers, and the counts are added together at the end.
+ * 
+ * Evaluation runs against an InferenceModel, a snapshot of the network, so the network itself can keep
+ * training while a test runs (see `evaluateAsync`). Any other BatchPredictor can be evaluated the same way;
+ * a FloatMatrixNetwork tests itself through here, in single precision. Each shard prepares up to
+ * InferenceModel.MAX_BATCH_ROWS samples at a time into a batch buffer of its own and predicts them in one
+ * call to `predictBatch`, so the weights are streamed once per batch rather than once per sample.
+ */
+public class ParallelEvaluator {
+	private static final int MIN_SAMPLES_PER_SHARD = 64;
+	
+	private final ForkJoinPool pool;
+	
+	/**
+	 * @param numThreads Number of threads to evaluate with
+	 */
+	public ParallelEvaluator(int numThreads) {
+		this.pool = new ForkJoinPool(Math.max(1, numThreads));
+	}
+	
+	/**
+	 * An evaluator with one thread per available processor.
+	 */
+	public ParallelEvaluator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Evaluate the network as it is now. This waits for the result; the network must not be trained while
+	 * the snapshot is being taken, but can be as soon as this returns.
+	 * 
+	 * @param network The network to evaluate
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @return The test results, or null if the arrays differ in length or a sample is not the length of the
+	 * input layer
+	 */
+	public TestResultPackage evaluate(MatrixNetwork network, double[][] testData, int[] expectedOutputs) {
+		return evaluate(new InferenceModel(network), testData, expectedOutputs);
+	}
+	
+	/**
+	 * @param model The model to evaluate, such as an InferenceModel or a FloatMatrixNetwork
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @return The test results, or null if the arrays differ in length or a sample is not the length of the
+	 * input layer
+	 */
+	public TestResultPackage evaluate(BatchPredictor model, double[][] testData, int[] expectedOutputs) {
+		if (testData.length != expectedOutputs.length) { return (TestResultPackage) null; }
+		
+		for (double[] sample : testData) {
+			if (sample.length != model.getNumInputs()) { return (TestResultPackage) null; }
+		}
+		
+		return evaluate(model, new ArraySampleSource(testData, expectedOutputs));
+	}
+	
+	/**
+	 * `evaluate` on the network as it is now, on samples prepared as they are needed.
+	 * 
+	 * @param network The network to evaluate
+	 * @param source The test data
+	 * @return The test results, or null if the samples are not the length of the input layer
+	 */
+	public TestResultPackage evaluate(MatrixNetwork network, SampleSource source) {
+		return evaluate(new InferenceModel(network), source);
+	}
+	
+	/**
+	 * @param model The model to evaluate, such as an InferenceModel or a FloatMatrixNetwork
+	 * @param source The test data
+	 * @return The test results, or null if the samples are not the length of the input layer
+	 */
+	public TestResultPackage evaluate(BatchPredictor model, SampleSource source) {
+		if (source.size() > 0 && source.getSampleLength() != model.getNumInputs()) { return (TestResultPackage) null; }
+		
+		int numTests = source.size();
+		
+		double[]  outputNeuronValues = new double[numTests];
+		int[]     outputNeuronIndeces = new int[numTests];
+		boolean[] ifCorrect = new boolean[numTests];
+		
+		int shardSize = Math.max(MIN_SAMPLES_PER_SHARD, numTests / (pool.getParallelism() * 4) + 1);
+		
+		EvaluateShardTask task = new EvaluateShardTask(model, source, 0, numTests, shardSize, outputNeuronValues, outputNeuronIndeces, ifCorrect);
+		int correctCount = pool.invoke(task);
+		
+		double percentageCorrect = (double)correctCount / (double)numTests;
+		
+		return new TestResultPackage(numTests, percentageCorrect, outputNeuronValues, outputNeuronIndeces, ifCorrect);
+	}
+	
+	/**
+	 * Take a snapshot of the network now and evaluate it in the background. The network can be trained
+	 * further as soon as this returns; the result describes the network as it was when this was called.
+	 * 
+	 * @param network The network to evaluate
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @return The pending test results
+	 */
+	public Future<TestResultPackage> evaluateAsync(MatrixNetwork network, final double[][] testData, final int[] expectedOutputs) {
+		final InferenceModel snapshot = new InferenceModel(network);
+		
+		return pool.submit(new Callable<TestResultPackage>() {
+			public TestResultPackage call() {
+				return evaluate(snapshot, testData, expectedOutputs);
+			}
+		});
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * Evaluate samples [from, to), splitting the range in half until it is no longer than one shard.
+	 * Returns the number of correct answers in the range.
+	 */
+	private static class EvaluateShardTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+		
+		private final BatchPredictor model;
+		private final SampleSource source;
+		private final int from;
+		private final int to;
+		private final int shardSize;
+		
+		private final double[]  outputNeuronValues;
+		private final int[]     outputNeuronIndeces;
+		private final boolean[] ifCorrect;
+		
+		EvaluateShardTask(BatchPredictor model, SampleSource source, int from, int to, int shardSize, double[] outputNeuronValues, int[] outputNeuronIndeces, boolean[] ifCorrect) {
+			this.model = model;
+			this.source = source;
+			this.from = from;
+			this.to = to;
+			this.shardSize = shardSize;
+			this.outputNeuronValues = outputNeuronValues;
+			this.outputNeuronIndeces = outputNeuronIndeces;
+			this.ifCorrect = ifCorrect;
+		}
+		
+		@Override protected Integer compute() {
+			if (to - from > shardSize) {
+				int mid = (from + to) >>> 1;
+				
+				EvaluateShardTask lower = new EvaluateShardTask(model, source, from, mid, shardSize, outputNeuronValues, outputNeuronIndeces, ifCorrect);
+				EvaluateShardTask upper = new EvaluateShardTask(model, source, mid, to, shardSize, outputNeuronValues, outputNeuronIndeces, ifCorrect);
+				
+				lower.fork();
+				int upperCount = upper.compute();
+				
+				return lower.join() + upperCount;
+			}
+			
+			int numInputs = model.getNumInputs();
+			int numOutputs = model.getNumOutputs();
+			int rows = Math.min(InferenceModel.MAX_BATCH_ROWS, to - from);
+			
+			double[][] batch = new double[rows][numInputs];
+			double[] outputA = new double[rows * numOutputs];
+			int[] outputIndeces = new int[rows];
+			int correctCount = 0;
+			
+			for (int batchStart = from; batchStart < to; batchStart += rows) {
+				int count = Math.min(rows, to - batchStart);
+				
+				for (int s = 0; s < count; s++) {
+					source.prepareSample(batchStart + s, batch[s], 0);
+				}
+				
+				model.predictBatch(batch, 0, count, outputA, outputIndeces);
+				
+				for (int s = 0; s < count; s++) {
+					int t = batchStart + s;
+					int outputIndex = outputIndeces[s];
+					
+					ifCorrect[t] = (outputIndex == source.getExpectedOutput(t));
+					
+					if (ifCorrect[t]) {
+						correctCount++;
+					}
+					
+					outputNeuronValues[t] = outputA[s * numOutputs + outputIndex];
+					outputNeuronIndeces[t] = outputIndex;
+				}
+			}
+			
+			return correctCount;
+		}
+	}
+}
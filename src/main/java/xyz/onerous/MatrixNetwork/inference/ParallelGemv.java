@@ -0,0 +1,290 @@
+package xyz.onerous.MatrixNetwork.inference;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
+
+/**
+ * Computes one dense layer for one input on several cores at once, for single predictions whose latency
+ * matters more than throughput. The layer's output neurons are split into contiguous slices of rows; the
+ * calling thread computes the first slice and a set of long-lived worker threads compute the others, each
+ * with KernelBackend.denseForwardRowsInto.
+ * 
+ * A whole wide layer (784 -> 500, say) takes only tens to hundreds of microseconds, far less than handing
+ * a task to a thread pool and waking a thread costs. So the workers are started once and hand work over
+ * through a volatile sequence number: a worker spins on it for a short while after finishing a slice, so
+ * back-to-back layers and predictions reach it with no system call, and only parks once it has been idle
+ * for longer than that. The caller spins on a countdown of unfinished slices in the same way.
+ * 
+ * Splitting only pays off once every slice has enough multiply-adds to outweigh the handoff, so a layer
+ * is split into at most (rows x cols) / minMultiplyAddsPerThread slices, and a layer too small for two
+ * slices runs serially on the calling thread. `measureCrossover` shows where that point lies on the
+ * current machine.
+ * 
+ * One instance serves one caller at a time (calls are serialized); give each latency-critical thread its
+ * own instance. Java cannot pin threads to cores, so keeping the threads alive and spinning is the
+ * nearest thing to a pinned pool: while work keeps coming they stay scheduled and their caches stay warm.
+ * 
+ * A worker that throws on its slice still counts the slice as finished, and the caller rethrows the
+ * failure once every slice is in, so a bad layer fails the call rather than leaving the caller spinning.
+ */
+public class ParallelGemv {
+	public static final long DEFAULT_MIN_MULTIPLY_ADDS_PER_THREAD = 32768;
+	
+	private static final long SPIN_NANOS = 50000; //How long an idle thread spins before it parks
+	private static final int ROW_ALIGNMENT = 4; //Slices start on a multiple of the kernel's row block
+	private static final int SLICE_BITS = 16; //The low bits of sequence hold the slice count of the current layer
+	
+	private final int numThreads; //Including the caller
+	private final long minMultiplyAddsPerThread;
+	private final Worker[] workers;
+	
+	private volatile long sequence; //Bumped once per split layer; workers wait for it to change
+	private volatile boolean running = true;
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile Throwable failure; //An exception a worker hit on the current layer
+	
+	//The layer being split, written before sequence is bumped and read after the workers see the bump
+	private ActivationType taskActivationType;
+	private double[] taskWeights, taskBiases, taskInput, taskLayerZ, taskLayerA;
+	private int taskRows, taskCols, taskNumSlices;
+	
+	/**
+	 * @param numThreads Threads a layer is split across, including the calling thread
+	 */
+	public ParallelGemv(int numThreads) {
+		this(numThreads, DEFAULT_MIN_MULTIPLY_ADDS_PER_THREAD);
+	}
+	
+	/**
+	 * Start the worker threads.
+	 * 
+	 * @param numThreads Threads a layer is split across, including the calling thread
+	 * @param minMultiplyAddsPerThread Fewest multiply-adds worth giving a thread; smaller layers are split
+	 * across fewer threads, or not at all
+	 */
+	public ParallelGemv(int numThreads, long minMultiplyAddsPerThread) {
+		this.numThreads = Math.max(1, numThreads);
+		this.minMultiplyAddsPerThread = Math.max(1, minMultiplyAddsPerThread);
+		this.workers = new Worker[this.numThreads - 1];
+		
+		for (int t = 0; t < workers.length; t++) {
+			workers[t] = new Worker(t + 1);
+			workers[t].setName("ParallelGemv-" + (t + 1));
+			workers[t].setDaemon(true);
+			workers[t].start();
+		}
+	}
+	
+	/**
+	 * layerZ = weights * input + biases and layerA = f(layerZ), as KernelBackend.denseForwardInto, with the
+	 * rows split across the threads when the layer is big enough.
+	 */
+	public synchronized void denseForwardInto(ActivationType activationType, double[] weights, double[] biases, int rows, int cols, double[] input, double[] layerZ, double[] layerA) {
+		int numSlices = numSlices(rows, cols);
+		
+		if (numSlices < 2 || !running) {
+			Kernels.get().denseForwardInto(activationType, weights, biases, rows, cols, input, layerZ, layerA);
+			return;
+		}
+		
+		split(activationType, weights, biases, rows, cols, input, layerZ, layerA, numSlices);
+	}
+	
+	/**
+	 * @return How many slices a rows x cols layer is split into (1 meaning it runs serially)
+	 */
+	public int numSlices(int rows, int cols) {
+		long bySize = (long)rows * (long)cols / minMultiplyAddsPerThread;
+		
+		return (int)Math.max(1, Math.min(Math.min(numThreads, bySize), rows / ROW_ALIGNMENT));
+	}
+	
+	private void split(ActivationType activationType, double[] weights, double[] biases, int rows, int cols, double[] input, double[] layerZ, double[] layerA, int numSlices) {
+		taskActivationType = activationType;
+		taskWeights = weights;
+		taskBiases = biases;
+		taskRows = rows;
+		taskCols = cols;
+		taskInput = input;
+		taskLayerZ = layerZ;
+		taskLayerA = layerA;
+		taskNumSlices = numSlices;
+		
+		failure = null;
+		pending.set(numSlices - 1);
+		sequence = (((sequence >>> SLICE_BITS) + 1) << SLICE_BITS) | numSlices; //Publishes the task fields above to the workers
+		
+		for (int t = 0; t < numSlices - 1; t++) {
+			if (workers[t].parked) {
+				LockSupport.unpark(workers[t]);
+			}
+		}
+		
+		try {
+			computeSlice(0);
+		} finally {
+			awaitSlices(); //Even if this slice failed, as the workers are still reading the task fields
+		}
+		
+		Throwable workerFailure = failure;
+		
+		if (workerFailure != null) {
+			throw new RuntimeException("A worker failed on its slice of a " + rows + " x " + cols + " layer", workerFailure);
+		}
+	}
+	
+	/**
+	 * Wait for every worker to finish its slice of the current layer.
+	 */
+	private void awaitSlices() {
+		long spinStart = System.nanoTime();
+		
+		while (pending.get() != 0) {
+			if (System.nanoTime() - spinStart > SPIN_NANOS) {
+				Thread.yield();
+			}
+		}
+	}
+	
+	private void computeSlice(int slice) {
+		int fromRow = sliceStart(slice);
+		int toRow = sliceStart(slice + 1);
+		
+		Kernels.get().denseForwardRowsInto(taskActivationType, taskWeights, taskBiases, fromRow, toRow, taskCols, taskInput, taskLayerZ, taskLayerA);
+	}
+	
+	private int sliceStart(int slice) {
+		if (slice >= taskNumSlices) { return taskRows; }
+		
+		int rowBlocks = taskRows / ROW_ALIGNMENT;
+		
+		return (int)((long)rowBlocks * slice / taskNumSlices) * ROW_ALIGNMENT;
+	}
+	
+	/**
+	 * Time one rows x cols layer serially and split, for each row count, and print the two latencies.
+	 * 
+	 * @param cols Inputs to the layer
+	 * @param rowCounts Output neuron counts to try, in increasing order
+	 * @param repetitions Times each layer is computed per measurement
+	 * @return The smallest row count at which splitting was faster, or -1 if it never was
+	 */
+	public int measureCrossover(int cols, int[] rowCounts, int repetitions) {
+		int crossover = -1;
+		
+		for (int r = 0; r < rowCounts.length; r++) {
+			int rows = rowCounts[r];
+			double[] weights = new double[rows * cols];
+			double[] biases = new double[rows];
+			double[] input = new double[cols];
+			double[] layerZ = new double[rows];
+			double[] layerA = new double[rows];
+			
+			for (int i = 0; i < weights.length; i++) { weights[i] = Math.random() - 0.5; }
+			for (int i = 0; i < input.length; i++) { input[i] = Math.random(); }
+			
+			int numSlices = Math.max(2, Math.min(numThreads, rows / ROW_ALIGNMENT));
+			
+			if (numThreads < 2 || rows < 2 * ROW_ALIGNMENT || !running) {
+				System.out.println(rows + " x " + cols + ": cannot be split");
+				continue;
+			}
+			
+			long serialNanos = Long.MAX_VALUE;
+			long splitNanos = Long.MAX_VALUE;
+			
+			for (int trial = 0; trial < 5; trial++) { //Best of five, the first ones warming up the JIT
+				long start = System.nanoTime();
+				
+				for (int i = 0; i < repetitions; i++) {
+					Kernels.get().denseForwardInto(ActivationType.Sigmoid, weights, biases, rows, cols, input, layerZ, layerA);
+				}
+				
+				serialNanos = Math.min(serialNanos, (System.nanoTime() - start) / repetitions);
+				start = System.nanoTime();
+				
+				synchronized (this) {
+					for (int i = 0; i < repetitions; i++) {
+						split(ActivationType.Sigmoid, weights, biases, rows, cols, input, layerZ, layerA, numSlices);
+					}
+				}
+				
+				splitNanos = Math.min(splitNanos, (System.nanoTime() - start) / repetitions);
+			}
+			
+			System.out.println(rows + " x " + cols + ": serial " + String.format("%.1f", serialNanos / 1000.0) + " us, split " + numSlices + " ways " + String.format("%.1f", splitNanos / 1000.0) + " us" + (numSlices(rows, cols) > 1 ? " (split)" : " (serial)"));
+			
+			if (crossover == -1 && splitNanos < serialNanos) {
+				crossover = rows;
+			}
+		}
+		
+		System.out.println("Splitting pays off from " + (crossover == -1 ? "never" : crossover + " x " + cols) + " on " + numThreads + " threads");
+		
+		return crossover;
+	}
+	
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	/**
+	 * Stop the worker threads. Layers computed afterwards run serially.
+	 */
+	public void shutdown() {
+		running = false;
+		
+		for (int t = 0; t < workers.length; t++) {
+			LockSupport.unpark(workers[t]);
+		}
+	}
+	
+	private class Worker extends Thread {
+		private final int slice;
+		volatile boolean parked;
+		
+		Worker(int slice) {
+			this.slice = slice;
+		}
+		
+		@Override public void run() {
+			long seen = 0;
+			
+			while (running) {
+				long current = sequence;
+				long idleStart = System.nanoTime();
+				
+				while (current == seen && running) {
+					if (System.nanoTime() - idleStart > SPIN_NANOS) {
+						parked = true;
+						
+						if (sequence == seen && running) { //Re-checked after announcing, so a bump is never missed
+							LockSupport.park(this);
+						}
+						
+						parked = false;
+					}
+					
+					current = sequence;
+				}
+				
+				if (!running) { return; }
+				
+				seen = current;
+				
+				if (slice < (int)(current & ((1 << SLICE_BITS) - 1))) { //Idle workers skip the layer without reading the task fields, which the next layer may already be overwriting
+					try {
+						computeSlice(slice);
+					} catch (Throwable e) {
+						failure = e; //If several slices fail, any one of them will do
+					} finally {
+						pending.decrementAndGet();
+					}
+				}
+			}
+		}
+	}
+}
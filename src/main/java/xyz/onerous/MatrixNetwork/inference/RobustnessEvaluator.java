@@ -0,0 +1,323 @@
+package xyz.onerous.MatrixNetwork.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.RobustnessResultPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+import xyz.onerous.MatrixNetwork.pipeline.ArraySampleSource;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
+
+/**
+ * Tests how well a network holds up against adversarial examples: every test input is perturbed to
+ * increase its loss as much as possible within a budget epsilon (the largest change allowed to any one
+ * input), then classified again.
+ * 
+ * The perturbation follows the sign of the input gradient (see MatrixNetwork.computeInputGradients). With
+ * one step of size epsilon that is FGSM; with several smaller steps, each followed by clipping back to
+ * within epsilon of the original input, it is PGD. Inputs are not clipped to any value range, as the
+ * network's inputs are standardized rather than bounded.
+ * 
+ * The test set is cut into batches that are perturbed and re-evaluated on a fixed number of threads, each
+ * batch with one batched forward and backward pass per step and one batched forward pass to classify it.
+ * Every thread has its own workspace and buffers, reused from batch to batch; a batch's samples are
+ * prepared from the test set into those buffers, so the test set can be a sample source that is never
+ * held as arrays. The network is only read, but must not be trained while an evaluation runs.
+ */
+public class RobustnessEvaluator {
+	private static final int BATCH_SIZE = 128;
+	
+	private final ExecutorService pool;
+	private final int numThreads;
+	
+	private final ThreadLocal<BatchBuffers> buffers = new ThreadLocal<BatchBuffers>();
+	
+	/**
+	 * @param numThreads Number of threads to evaluate with
+	 */
+	public RobustnessEvaluator(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+		this.pool = Executors.newFixedThreadPool(this.numThreads);
+	}
+	
+	/**
+	 * An evaluator with one thread per available processor.
+	 */
+	public RobustnessEvaluator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Accuracy on perturbed test inputs for each of several budgets.
+	 * 
+	 * @param network The network to evaluate
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @param epsilons The perturbation budgets to test (0 gives the accuracy on the unperturbed data)
+	 * @param numSteps Gradient steps per perturbation: 1 for FGSM, more for PGD with steps of
+	 * 2.5 * epsilon / numSteps
+	 * @return The results per budget, or null if the arrays differ in length or a sample is not the length
+	 * of the input layer
+	 */
+	public RobustnessResultPackage evaluate(MatrixNetwork network, double[][] testData, int[] expectedOutputs, double[] epsilons, int numSteps) {
+		if (!isValid(network, testData, expectedOutputs)) { return (RobustnessResultPackage) null; }
+		
+		return evaluate(network, new ArraySampleSource(testData, expectedOutputs), epsilons, numSteps);
+	}
+	
+	/**
+	 * Accuracy on perturbed test inputs for each of several budgets, on samples prepared as they are needed.
+	 * 
+	 * @param network The network to evaluate
+	 * @param source The test data
+	 * @param epsilons The perturbation budgets to test (0 gives the accuracy on the unperturbed data)
+	 * @param numSteps Gradient steps per perturbation: 1 for FGSM, more for PGD with steps of
+	 * 2.5 * epsilon / numSteps
+	 * @return The results per budget, or null if the samples are not the length of the input layer
+	 */
+	public RobustnessResultPackage evaluate(MatrixNetwork network, SampleSource source, double[] epsilons, int numSteps) {
+		if (!isValid(network, source)) { return (RobustnessResultPackage) null; }
+		
+		numSteps = Math.max(1, numSteps);
+		
+		TestResultPackage[] testResults = new TestResultPackage[epsilons.length];
+		
+		for (int e = 0; e < epsilons.length; e++) {
+			double stepSize = (numSteps == 1) ? epsilons[e] : 2.5 * epsilons[e] / numSteps;
+			
+			testResults[e] = evaluate(network, source, epsilons[e], numSteps, stepSize);
+		}
+		
+		return new RobustnessResultPackage(source.size(), numSteps, epsilons.clone(), testResults);
+	}
+	
+	/**
+	 * Accuracy on test inputs perturbed within one budget.
+	 * 
+	 * @param network The network to evaluate
+	 * @param testData Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the test data
+	 * @param epsilon The largest change allowed to any one input
+	 * @param numSteps Gradient steps per perturbation
+	 * @param stepSize How far each step moves every input
+	 * @return The test results on the perturbed inputs, or null if the arrays differ in length or a sample
+	 * is not the length of the input layer
+	 */
+	public TestResultPackage evaluate(MatrixNetwork network, double[][] testData, int[] expectedOutputs, double epsilon, int numSteps, double stepSize) {
+		if (!isValid(network, testData, expectedOutputs)) { return (TestResultPackage) null; }
+		
+		return evaluate(network, new ArraySampleSource(testData, expectedOutputs), epsilon, numSteps, stepSize);
+	}
+	
+	/**
+	 * Accuracy on test inputs perturbed within one budget, on samples prepared as they are needed.
+	 * 
+	 * @param network The network to evaluate
+	 * @param source The test data
+	 * @param epsilon The largest change allowed to any one input
+	 * @param numSteps Gradient steps per perturbation
+	 * @param stepSize How far each step moves every input
+	 * @return The test results on the perturbed inputs, or null if the samples are not the length of the
+	 * input layer
+	 */
+	public TestResultPackage evaluate(MatrixNetwork network, SampleSource source, double epsilon, int numSteps, double stepSize) {
+		if (!isValid(network, source)) { return (TestResultPackage) null; }
+		
+		int numTests = source.size();
+		
+		double[]  outputNeuronValues = new double[numTests];
+		int[]     outputNeuronIndeces = new int[numTests];
+		boolean[] ifCorrect = new boolean[numTests];
+		
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		
+		for (int from = 0; from < numTests; from += BATCH_SIZE) {
+			futures.add(pool.submit(createTask(network, source, from, Math.min(numTests, from + BATCH_SIZE), epsilon, numSteps, stepSize, outputNeuronValues, outputNeuronIndeces, ifCorrect)));
+		}
+		
+		int correctCount = 0;
+		
+		try {
+			for (Future<Integer> future : futures) {
+				correctCount += future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+		
+		double percentageCorrect = (double)correctCount / (double)numTests;
+		
+		return new TestResultPackage(numTests, percentageCorrect, outputNeuronValues, outputNeuronIndeces, ifCorrect);
+	}
+	
+	/**
+	 * @return Whether the arrays are of the same length and every sample is the length of the input layer
+	 * (printing why not if they are not)
+	 */
+	private static boolean isValid(MatrixNetwork network, double[][] testData, int[] expectedOutputs) {
+		if (testData.length != expectedOutputs.length) { return false; }
+		
+		try {
+			for (double[] sample : testData) {
+				if (sample.length != network.getNPerLayer()[0]) {
+					throw new InvalidInputLengthException();
+				}
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return Whether the source's samples are the length of the input layer (printing why not if they are
+	 * not)
+	 */
+	private static boolean isValid(MatrixNetwork network, SampleSource source) {
+		try {
+			if (source.size() > 0 && source.getSampleLength() != network.getNPerLayer()[0]) {
+				throw new InvalidInputLengthException();
+			}
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private Callable<Integer> createTask(final MatrixNetwork network, final SampleSource source, final int from, final int to, final double epsilon, final int numSteps, final double stepSize, final double[] outputNeuronValues, final int[] outputNeuronIndeces, final boolean[] ifCorrect) {
+		return new Callable<Integer>() {
+			public Integer call() {
+				return evaluateBatch(network, source, from, to, epsilon, numSteps, stepSize, outputNeuronValues, outputNeuronIndeces, ifCorrect);
+			}
+		};
+	}
+	
+	/**
+	 * Perturb samples [from, to), classify them and fill in their part of the result arrays.
+	 * 
+	 * @return The number of perturbed samples still classified correctly
+	 */
+	private int evaluateBatch(MatrixNetwork network, SampleSource source, int from, int to, double epsilon, int numSteps, double stepSize, double[] outputNeuronValues, int[] outputNeuronIndeces, boolean[] ifCorrect) {
+		int count = to - from;
+		int nInput = network.getNPerLayer()[0];
+		BatchBuffers batch = buffers.get();
+		
+		if (batch == null || !Arrays.equals(batch.nPerLayer, network.getNPerLayer())) {
+			batch = new BatchBuffers(network.getNPerLayer());
+			buffers.set(batch);
+		}
+		
+		double[][] originals = batch.originals;
+		double[][] perturbed = batch.perturbed;
+		double[] gradients = batch.gradients;
+		
+		for (int s = 0; s < count; s++) {
+			source.prepareSample(from + s, originals[s], 0);
+			System.arraycopy(originals[s], 0, perturbed[s], 0, nInput);
+			batch.targets[s] = source.getExpectedOutput(from + s);
+		}
+		
+		if (epsilon > 0.0) {
+			for (int step = 0; step < numSteps; step++) {
+				network.computeInputGradients(perturbed, batch.targets, 0, count, gradients, 0, batch.ws);
+				
+				for (int s = 0; s < count; s++) {
+					double[] original = originals[s];
+					double[] input = perturbed[s];
+					int offset = s * nInput;
+					
+					for (int i = 0; i < nInput; i++) {
+						double value = input[i] + stepSize * Math.signum(gradients[offset + i]);
+						
+						input[i] = Math.max(original[i] - epsilon, Math.min(original[i] + epsilon, value));
+					}
+				}
+			}
+		}
+		
+		try {
+			network.inputBatchData(perturbed, 0, count, batch.ws);
+		} catch (InvalidInputLengthException e) {
+			e.printStackTrace();
+			return 0;
+		}
+		
+		int numL = network.getNumL();
+		int nOutput = network.getNPerLayer()[numL - 1];
+		
+		network.propagateBatch(0, numL, count, batch.ws);
+		
+		double[] outputA = batch.ws.aBatch[numL - 1];
+		int correctCount = 0;
+		
+		for (int s = 0; s < count; s++) {
+			int offset = s * nOutput;
+			int outputIndex = 0;
+			
+			for (int n = 1; n < nOutput; n++) {
+				if (outputA[offset + n] > outputA[offset + outputIndex]) {
+					outputIndex = n;
+				}
+			}
+			
+			int t = from + s;
+			
+			ifCorrect[t] = (outputIndex == batch.targets[s]);
+			
+			if (ifCorrect[t]) {
+				correctCount++;
+			}
+			
+			outputNeuronValues[t] = outputA[offset + outputIndex];
+			outputNeuronIndeces[t] = outputIndex;
+		}
+		
+		return correctCount;
+	}
+	
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * One thread's original and perturbed inputs, their targets and input gradients, and the workspace they
+	 * are run through, sized for one batch.
+	 */
+	private static class BatchBuffers {
+		final int[] nPerLayer;
+		final double[][] originals;
+		final double[][] perturbed;
+		final int[] targets;
+		final double[] gradients;
+		final NetworkWorkspace ws;
+		
+		BatchBuffers(int[] nPerLayer) {
+			this.nPerLayer = nPerLayer.clone();
+			this.originals = new double[BATCH_SIZE][ nPerLayer[0] ];
+			this.perturbed = new double[BATCH_SIZE][ nPerLayer[0] ];
+			this.targets = new int[BATCH_SIZE];
+			this.gradients = new double[BATCH_SIZE * nPerLayer[0]];
+			this.ws = new NetworkWorkspace(nPerLayer, false);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package xyz.onerous.MatrixNetwork.pipeline;
+
+/**
+ * Samples that have already been prepared as arrays, for handing a double[][] to code that reads from a
+ * SampleSource. The arrays are not copied, and must not be written while the source is in use.
+ */
+public class ArraySampleSource implements SampleSource {
+	private final double[][] data;
+	private final int[] expectedOutputs;
+	
+	/**
+	 * @param data The prepared samples, all of the same length
+	 * @param expectedOutputs The expected output of the network per sample
+	 */
+	public ArraySampleSource(double[][] data, int[] expectedOutputs) {
+		this.data = data;
+		this.expectedOutputs = expectedOutputs;
+	}
+	
+	public int size() {
+		return data.length;
+	}
+	
+	public int getSampleLength() {
+		return (data.length == 0) ? 0 : data[0].length;
+	}
+	
+	public void prepareSample(int index, double[] out, int outOffset) {
+		System.arraycopy(data[index], 0, out, outOffset, data[index].length);
+	}
+	
+	public int getExpectedOutput(int index) {
+		return expectedOutputs[index];
+	}
+}
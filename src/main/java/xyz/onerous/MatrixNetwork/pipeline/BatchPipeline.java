@@ -0,0 +1,208 @@
+package xyz.onerous.MatrixNetwork.pipeline;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares training batches on background threads while the network trains on earlier ones, so training
+ * can start as soon as the first batch is ready instead of after the whole data set has been prepared.
+ * 
+ * Batches are prepared into a fixed ring of `numBuffers` reusable buffers: batch b of an epoch goes into
+ * buffer b % numBuffers once batch b - numBuffers has been released, and is handed out in order. The
+ * preparing threads are therefore never more than numBuffers batches ahead of training, and nothing is
+ * allocated per batch.
+ * 
+ * Usage, once per epoch:
+ * 
+ * 	pipeline.startEpoch();
+ * 	for (PreparedBatch batch = pipeline.nextBatch(); batch != null; batch = pipeline.nextBatch()) {
+ * 		...train on batch.data[0 .. batch.size)...
+ * 		pipeline.release(batch);
+ * 	}
+ * 
+ * Every batch of an epoch must be taken and released before the next epoch is started.
+ */
+public class BatchPipeline {
+	private final SampleSource source;
+	private final int batchSize;
+	private final int numThreads;
+	private final boolean shuffling;
+	private final Random random;
+	
+	private final PreparedBatch[] buffers;
+	private final int[] order; //Sample order of the current epoch
+	private final int numBatches;
+	private final ExecutorService preparers;
+	
+	private AtomicInteger nextBatchToPrepare;
+	private int nextBatchToTake;
+	private long waitNanos; //Time spent in nextBatch waiting for a batch to be prepared
+	
+	/**
+	 * @param source The samples to prepare
+	 * @param batchSize Number of samples per batch
+	 * @param numBuffers Number of batch buffers (at least 2, so one can be prepared while one is trained)
+	 * @param numThreads Number of threads preparing batches
+	 * @param shuffling Whether to visit the samples in a new random order each epoch
+	 * @param seed Seed of the shuffle
+	 */
+	public BatchPipeline(SampleSource source, int batchSize, int numBuffers, int numThreads, boolean shuffling, long seed) {
+		this.source = source;
+		this.batchSize = Math.max(1, batchSize);
+		this.numThreads = Math.max(1, numThreads);
+		this.shuffling = shuffling;
+		this.random = new Random(seed);
+		
+		this.numBatches = (source.size() + this.batchSize - 1) / this.batchSize;
+		this.order = new int[source.size()];
+		this.buffers = new PreparedBatch[Math.max(2, numBuffers)];
+		
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = new PreparedBatch(this.batchSize, source.getSampleLength(), i);
+		}
+		
+		this.preparers = Executors.newFixedThreadPool(this.numThreads, new ThreadFactory() {
+			private int count;
+			
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "BatchPipeline-" + (count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Shuffle (if shuffling) and start preparing the batches of a new epoch.
+	 */
+	public void startEpoch() {
+		if (shuffling) {
+			for (int i = order.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = order[i];
+				
+				order[i] = order[j];
+				order[j] = swap;
+			}
+		}
+		
+		for (int i = 0; i < buffers.length; i++) {
+			synchronized (buffers[i]) {
+				buffers[i].batchIndex = i;
+				buffers[i].ready = false;
+			}
+		}
+		
+		nextBatchToPrepare = new AtomicInteger(0);
+		nextBatchToTake = 0;
+		
+		final AtomicInteger epochCounter = nextBatchToPrepare;
+		
+		for (int t = 0; t < numThreads; t++) {
+			preparers.execute(new Runnable() {
+				public void run() {
+					try {
+						for (int b = epochCounter.getAndIncrement(); b < numBatches; b = epochCounter.getAndIncrement()) {
+							prepareBatch(b);
+						}
+					} catch (InterruptedException e) {
+						//Shut down mid-epoch
+					}
+				}
+			});
+		}
+	}
+	
+	private void prepareBatch(int b) throws InterruptedException {
+		PreparedBatch buffer = buffers[b % buffers.length];
+		
+		synchronized (buffer) {
+			while (buffer.batchIndex != b) { //Still holds batch b - numBuffers
+				buffer.wait();
+			}
+		}
+		
+		int from = b * batchSize;
+		int size = Math.min(batchSize, order.length - from);
+		
+		for (int s = 0; s < size; s++) {
+			source.prepareSample(order[from + s], buffer.data[s], 0);
+			buffer.expectedOutputs[s] = source.getExpectedOutput(order[from + s]);
+		}
+		
+		synchronized (buffer) {
+			buffer.size = size;
+			buffer.ready = true;
+			buffer.notifyAll();
+		}
+	}
+	
+	/**
+	 * Take the next batch of the epoch, waiting for it to be prepared if it is not yet.
+	 * 
+	 * @return The batch, or null once every batch of the epoch has been taken
+	 */
+	public PreparedBatch nextBatch() {
+		if (nextBatchToTake >= numBatches) { return (PreparedBatch) null; }
+		
+		PreparedBatch buffer = buffers[nextBatchToTake % buffers.length];
+		
+		synchronized (buffer) {
+			if (!buffer.ready) {
+				long waitStart = System.nanoTime();
+				
+				while (!buffer.ready) {
+					try {
+						buffer.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return (PreparedBatch) null;
+					}
+				}
+				
+				waitNanos += System.nanoTime() - waitStart;
+			}
+		}
+		
+		nextBatchToTake++;
+		
+		return buffer;
+	}
+	
+	/**
+	 * Hand a batch's buffer back so a later batch can be prepared into it.
+	 */
+	public void release(PreparedBatch batch) {
+		synchronized (batch) {
+			batch.ready = false;
+			batch.batchIndex += buffers.length;
+			batch.notifyAll();
+		}
+	}
+	
+	/**
+	 * @return Total time training has waited for batches to be prepared, in nanoseconds
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public int getNumBatches() {
+		return numBatches;
+	}
+	
+	public void shutdown() {
+		preparers.shutdownNow();
+	}
+}
@@ -0,0 +1,40 @@
+package xyz.onerous.MatrixNetwork.pipeline;
+
+/**
+ * `ArraySampleSource` for a single-precision data set, widening each sample as it is prepared (which is
+ * exact, so a FloatMatrixNetwork narrowing it again gets the original floats back). The arrays are not
+ * copied, and must not be written while the source is in use.
+ */
+public class FloatArraySampleSource implements SampleSource {
+	private final float[][] data;
+	private final int[] expectedOutputs;
+	
+	/**
+	 * @param data The prepared samples, all of the same length
+	 * @param expectedOutputs The expected output of the network per sample
+	 */
+	public FloatArraySampleSource(float[][] data, int[] expectedOutputs) {
+		this.data = data;
+		this.expectedOutputs = expectedOutputs;
+	}
+	
+	public int size() {
+		return data.length;
+	}
+	
+	public int getSampleLength() {
+		return (data.length == 0) ? 0 : data[0].length;
+	}
+	
+	public void prepareSample(int index, double[] out, int outOffset) {
+		float[] sample = data[index];
+		
+		for (int i = 0; i < sample.length; i++) {
+			out[outOffset + i] = sample[i];
+		}
+	}
+	
+	public int getExpectedOutput(int index) {
+		return expectedOutputs[index];
+	}
+}
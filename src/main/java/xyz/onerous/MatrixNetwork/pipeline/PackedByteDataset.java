@@ -0,0 +1,145 @@
+package xyz.onerous.MatrixNetwork.pipeline;
+
+import java.io.IOException;
+
+import xyz.onerous.MatrixNetwork.MNIST.IdxFile;
+
+/**
+ * A data set of unsigned byte samples (such as MNIST images) kept as the bytes themselves, one sample after
+ * another in a single array, with each sample's mean and standard deviation worked out once up front. A
+ * sample is standardized (as ArrayUtil.standardize does) only when it is prepared, straight into the
+ * buffer that needs it, so the data set takes one byte per value instead of the eight of a standardized
+ * double[][] plus a header per sample.
+ * 
+ * The data is never written after construction, so any number of threads can prepare samples at once.
+ */
+public class PackedByteDataset implements SampleSource {
+	private final byte[] data; //Sample i is data[i * sampleLength, (i + 1) * sampleLength)
+	private final int[] labels;
+	private final int numSamples;
+	private final int sampleLength;
+	
+	private final double[] means; //Per sample
+	private final double[] standardDeviations; //Per sample
+	
+	/**
+	 * @param data The samples, one after another, each sampleLength unsigned bytes
+	 * @param labels The expected output of the network per sample
+	 * @param sampleLength Number of values per sample
+	 */
+	public PackedByteDataset(byte[] data, int[] labels, int sampleLength) {
+		this.data = data;
+		this.labels = labels;
+		this.numSamples = labels.length;
+		this.sampleLength = sampleLength;
+		this.means = new double[numSamples];
+		this.standardDeviations = new double[numSamples];
+		
+		for (int i = 0; i < numSamples; i++) {
+			int offset = i * sampleLength;
+			int sum = 0;
+			
+			for (int j = 0; j < sampleLength; j++) {
+				sum += data[offset + j] & 0xFF;
+			}
+			
+			double mean = (double)sum / (double)sampleLength;
+			double variance = 0;
+			
+			for (int j = 0; j < sampleLength; j++) { //Summed as in ArrayUtil.standardDeviation, to match ArrayUtil.standardize exactly
+				variance += Math.pow((data[offset + j] & 0xFF) - mean, 2.0) / (double)sampleLength;
+			}
+			
+			means[i] = mean;
+			standardDeviations[i] = Math.sqrt(variance);
+		}
+	}
+	
+	/**
+	 * Read a data set from an IDX file of unsigned byte samples and an IDX file of their labels. The samples
+	 * are copied out of the mapped file in one bulk copy.
+	 * 
+	 * @param samplesPath Path of the sample file (for MNIST, an images file)
+	 * @param labelsPath Path of the label file
+	 * @return The data set
+	 * @throws IOException If either file cannot be read, the samples are not unsigned bytes or the counts differ
+	 */
+	public static PackedByteDataset fromIdx(String samplesPath, String labelsPath) throws IOException {
+		IdxFile samples = IdxFile.open(samplesPath);
+		IdxFile labels = IdxFile.open(labelsPath);
+		
+		if (samples.getDataType() != IdxFile.DataType.UnsignedByte) {
+			throw new IOException("Expected unsigned byte samples, found " + samples.getDataType());
+		}
+		
+		if (samples.getNumSamples() != labels.getNumSamples()) {
+			throw new IOException("Found " + samples.getNumSamples() + " samples but " + labels.getNumSamples() + " labels");
+		}
+		
+		byte[] data = new byte[samples.getNumSamples() * samples.getSampleBytes()];
+		
+		samples.copySamplesInto(0, samples.getNumSamples(), data, 0);
+		
+		return new PackedByteDataset(data, labels.readAllInts(), samples.getSampleLength());
+	}
+	
+	public int size() {
+		return numSamples;
+	}
+	
+	public int getSampleLength() {
+		return sampleLength;
+	}
+	
+	public void prepareSample(int index, double[] out, int outOffset) {
+		int offset = index * sampleLength;
+		double mean = means[index];
+		double standardDeviation = standardDeviations[index];
+		
+		for (int j = 0; j < sampleLength; j++) {
+			out[outOffset + j] = ((double)(data[offset + j] & 0xFF) - mean) / standardDeviation;
+		}
+	}
+	
+	public int getExpectedOutput(int index) {
+		return labels[index];
+	}
+	
+	/**
+	 * Standardize samples [from, to) into arrays of their own, for the code that needs a double[][].
+	 * 
+	 * @param from First sample (inclusive)
+	 * @param to Last sample (exclusive)
+	 * @return One standardized array per sample
+	 */
+	public double[][] toStandardizedArrays(int from, int to) {
+		double[][] arrays = new double[to - from][sampleLength];
+		
+		for (int i = from; i < to; i++) {
+			prepareSample(i, arrays[i - from], 0);
+		}
+		
+		return arrays;
+	}
+	
+	/**
+	 * @param index Index of the sample
+	 * @param j Index of the value within the sample
+	 * @return The raw value, unsigned
+	 */
+	public int getValue(int index, int j) {
+		return data[index * sampleLength + j] & 0xFF;
+	}
+	
+	public int[] getLabels() {
+		return labels;
+	}
+	
+	public double getMean(int index) {
+		return means[index];
+	}
+	
+	public double getStandardDeviation(int index) {
+		return standardDeviations[index];
+	}
+}
@@ -0,0 +1,20 @@
+package xyz.onerous.MatrixNetwork.pipeline;
+
+/**
+ * One of a BatchPipeline's reusable batch buffers. Only the first `size` rows hold the current batch (the
+ * last batch of an epoch can be short), and the contents are only valid until the batch is released.
+ */
+public class PreparedBatch {
+	public final double[][] data; //batchSize rows of prepared samples
+	public final int[]      expectedOutputs;
+	public int              size; //Number of samples in the batch
+	
+	int batchIndex; //Batch of the epoch these buffers will hold (or hold, once ready)
+	boolean ready;
+	
+	PreparedBatch(int batchSize, int sampleLength, int batchIndex) {
+		this.data = new double[batchSize][sampleLength];
+		this.expectedOutputs = new int[batchSize];
+		this.batchIndex = batchIndex;
+	}
+}
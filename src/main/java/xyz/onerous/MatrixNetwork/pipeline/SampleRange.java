@@ -0,0 +1,42 @@
+package xyz.onerous.MatrixNetwork.pipeline;
+
+/**
+ * Samples [from, to) of another source, as a source of their own, so a data set can be split (into
+ * training and validation samples, say) without preparing or copying any of it.
+ */
+public class SampleRange implements SampleSource {
+	private final SampleSource source;
+	private final int from;
+	private final int to;
+	
+	/**
+	 * @param source The source to take the samples from
+	 * @param from First sample (inclusive)
+	 * @param to Last sample (exclusive)
+	 */
+	public SampleRange(SampleSource source, int from, int to) {
+		if (from < 0 || to > source.size() || from > to) {
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") of " + source.size() + " samples");
+		}
+		
+		this.source = source;
+		this.from = from;
+		this.to = to;
+	}
+	
+	public int size() {
+		return to - from;
+	}
+	
+	public int getSampleLength() {
+		return source.getSampleLength();
+	}
+	
+	public void prepareSample(int index, double[] out, int outOffset) {
+		source.prepareSample(from + index, out, outOffset);
+	}
+	
+	public int getExpectedOutput(int index) {
+		return source.getExpectedOutput(from + index);
+	}
+}
@@ -0,0 +1,34 @@
+package xyz.onerous.MatrixNetwork.pipeline;
+
+/**
+ * Training samples that are prepared (decoded, flattened, standardized...) only when asked for, so a
+ * BatchPipeline can prepare them on background threads while the network trains. Implementations must
+ * allow several threads to prepare different samples at once.
+ */
+public interface SampleSource {
+	/**
+	 * @return Number of samples
+	 */
+	int size();
+	
+	/**
+	 * @return Length of a prepared sample (the number of input neurons of the network)
+	 */
+	int getSampleLength();
+	
+	/**
+	 * Prepare a sample as network input.
+	 * 
+	 * @param index Index of the sample
+	 * @param out Receives the prepared sample, getSampleLength() values
+	 * @param outOffset Index in out of the first value (so a sample can go straight into a row of a batch
+	 * buffer)
+	 */
+	void prepareSample(int index, double[] out, int outOffset);
+	
+	/**
+	 * @param index Index of the sample
+	 * @return The expected output of the network for the sample
+	 */
+	int getExpectedOutput(int index);
+}
@@ -0,0 +1,248 @@
+package xyz.onerous.MatrixNetwork.sweep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
+
+/**
+ * Trains many network configurations on one shared dataset at the same time, on a fixed number of
+ * threads (each network trains on one thread), and keeps a leaderboard of validation accuracy against
+ * time spent.
+ * 
+ * Configurations are weeded out by successive halving: every configuration trains for a first, small
+ * number of epochs; then only the best 1/eta of them go on, trained up to eta times as many epochs in
+ * total, and so on until one is left or the epoch limit is reached. Most of the time therefore goes to
+ * the configurations that look best, while each is still judged on equal training.
+ * 
+ * The sweep prints nothing itself. Every configuration's result is entered on the leaderboard at the end
+ * of each round, and `getLeaderboard` can be read from another thread while `run` is going.
+ */
+public class HyperparameterSweep {
+	private final SharedDataset dataset;
+	private final ExecutorService pool;
+	private final int numThreads;
+	
+	private final List<SweepResult> leaderboard = new ArrayList<SweepResult>();
+	private long sweepStart;
+	
+	/**
+	 * @param dataset The data every configuration is trained and validated on
+	 * @param numThreads Most networks trained at once
+	 */
+	public HyperparameterSweep(SharedDataset dataset, int numThreads) {
+		this.dataset = dataset;
+		this.numThreads = Math.max(1, numThreads);
+		this.pool = Executors.newFixedThreadPool(this.numThreads);
+	}
+	
+	/**
+	 * Run a sweep by successive halving.
+	 * 
+	 * @param configurations The configurations to try
+	 * @param firstEpochs Epochs every configuration is trained before the first cut
+	 * @param eta How much of the field is cut each round (the best 1/eta go on) and how much the epoch
+	 * budget grows
+	 * @param maxEpochs Most epochs any configuration is trained
+	 * @return The leaderboard, best first
+	 */
+	public List<SweepResult> run(List<NetworkConfiguration> configurations, int firstEpochs, int eta, int maxEpochs) {
+		sweepStart = System.nanoTime();
+		eta = Math.max(2, eta);
+		
+		synchronized (leaderboard) {
+			leaderboard.clear();
+		}
+		
+		List<Candidate> alive = new ArrayList<Candidate>();
+		
+		for (NetworkConfiguration configuration : configurations) {
+			alive.add(new Candidate(configuration));
+		}
+		
+		int epochs = Math.max(1, Math.min(firstEpochs, maxEpochs));
+		
+		while (!alive.isEmpty()) {
+			trainAll(alive, epochs);
+			
+			Collections.sort(alive, new Comparator<Candidate>() {
+				public int compare(Candidate c1, Candidate c2) {
+					return Double.compare(c2.percentageCorrect, c1.percentageCorrect);
+				}
+			});
+			
+			boolean lastRound = alive.size() == 1 || epochs >= maxEpochs;
+			int numSurvivors = lastRound ? alive.size() : (alive.size() + eta - 1) / eta;
+			
+			for (int i = 0; i < alive.size(); i++) {
+				record(alive.get(i), i >= numSurvivors);
+				
+				if (i >= numSurvivors) {
+					alive.get(i).network = (MatrixNetwork) null; //Cut, so its weights can go
+				}
+			}
+			
+			if (lastRound) { break; }
+			
+			alive = new ArrayList<Candidate>(alive.subList(0, numSurvivors));
+			epochs = Math.min(maxEpochs, epochs * eta);
+		}
+		
+		return getLeaderboard();
+	}
+	
+	/**
+	 * Train every candidate up to `epochs` epochs in total and validate it, numThreads candidates at a time.
+	 */
+	private void trainAll(List<Candidate> candidates, final int epochs) {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(candidates.size());
+		
+		for (final Candidate candidate : candidates) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					candidate.trainTo(epochs);
+					return null;
+				}
+			});
+		}
+		
+		try {
+			for (Future<Void> result : pool.invokeAll(tasks)) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void record(Candidate candidate, boolean stoppedEarly) {
+		SweepResult result = new SweepResult(candidate.configuration, candidate.percentageCorrect, candidate.epochsTrained, candidate.trainingNanos / 1e9, (System.nanoTime() - sweepStart) / 1e9, stoppedEarly);
+		
+		synchronized (leaderboard) {
+			for (int i = 0; i < leaderboard.size(); i++) {
+				if (leaderboard.get(i).configuration == candidate.configuration) {
+					leaderboard.remove(i);
+					break;
+				}
+			}
+			
+			leaderboard.add(result);
+		}
+	}
+	
+	/**
+	 * @return The latest result of every configuration, best validation accuracy first
+	 */
+	public List<SweepResult> getLeaderboard() {
+		List<SweepResult> sorted;
+		
+		synchronized (leaderboard) {
+			sorted = new ArrayList<SweepResult>(leaderboard);
+		}
+		
+		Collections.sort(sorted, new Comparator<SweepResult>() {
+			public int compare(SweepResult r1, SweepResult r2) {
+				if (r1.stoppedEarly != r2.stoppedEarly) {
+					return r1.stoppedEarly ? 1 : -1; //Configurations that went the distance first
+				}
+				
+				return Double.compare(r2.percentageCorrect, r1.percentageCorrect);
+			}
+		});
+		
+		return sorted;
+	}
+	
+	public String leaderboardToString() {
+		String result = "|  Accuracy  |  Epochs  |  Training  |  Wall time  |  Configuration\n";
+		
+		for (SweepResult sweepResult : getLeaderboard()) {
+			result += sweepResult + "\n";
+		}
+		
+		return result;
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * One configuration's network and how far it has got. Only ever trained by one thread at a time. The
+	 * network is created when the candidate is first trained, not up front, and dropped once it is cut.
+	 */
+	private class Candidate {
+		final NetworkConfiguration configuration;
+		MatrixNetwork network;
+		
+		int epochsTrained;
+		long trainingNanos;
+		double percentageCorrect;
+		
+		Candidate(NetworkConfiguration configuration) {
+			this.configuration = configuration;
+		}
+		
+		/**
+		 * Train on to `epochs` epochs in total, preparing each batch from the shared training samples into
+		 * this candidate's own batch rows, then validate.
+		 */
+		void trainTo(int epochs) {
+			SampleSource training = dataset.getTraining();
+			int numSamples = training.size();
+			int batchSize = Math.max(1, configuration.getBatchSize());
+			
+			if (network == null) {
+				network = configuration.createNetwork(dataset.getNumInputs(), dataset.getNumOutputs());
+			}
+			
+			NetworkWorkspace workspace = network.createWorkspace();
+			GradientAccumulator accumulator = workspace.gradientAccumulator;
+			
+			double[][] batchData = new double[batchSize][ dataset.getNumInputs() ];
+			int[] batchExpectedOutputs = new int[batchSize];
+			
+			long start = System.nanoTime();
+			
+			for (; epochsTrained < epochs; epochsTrained++) {
+				for (int from = 0; from < numSamples; from += batchSize) {
+					int size = Math.min(batchSize, numSamples - from);
+					
+					for (int s = 0; s < size; s++) {
+						training.prepareSample(from + s, batchData[s], 0);
+						batchExpectedOutputs[s] = training.getExpectedOutput(from + s);
+					}
+					
+					accumulator.clear();
+					network.accumulateBatch(batchData, batchExpectedOutputs, 0, size, workspace, accumulator);
+					network.applyDeltaPackage(accumulator);
+				}
+			}
+			
+			trainingNanos += System.nanoTime() - start;
+			
+			TestResultPackage validationResults = network.performTest(dataset.getValidation(), workspace);
+			
+			percentageCorrect = (validationResults == null) ? 0.0 : validationResults.percentageCorrect;
+			
+			if (Double.isNaN(percentageCorrect)) {
+				percentageCorrect = 0.0;
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package xyz.onerous.MatrixNetwork.sweep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+
+/**
+ * The hyperparameters of one network: everything the agents otherwise hardcode as final fields.
+ */
+public class NetworkConfiguration {
+	private final int[] nHidden;
+	private final double learningRate;
+	private final boolean usingSoftmax;
+	private final ActivationType activationType;
+	private final LossType lossType;
+	private final int batchSize;
+	
+	/**
+	 * @param nHidden Number of neurons per hidden layer (its length is the number of hidden layers)
+	 * @param learningRate
+	 * @param usingSoftmax
+	 * @param activationType
+	 * @param lossType
+	 * @param batchSize Number of samples whose deltas are summed before being applied
+	 */
+	public NetworkConfiguration(int[] nHidden, double learningRate, boolean usingSoftmax, ActivationType activationType, LossType lossType, int batchSize) {
+		this.nHidden = nHidden.clone();
+		this.learningRate = learningRate;
+		this.usingSoftmax = usingSoftmax;
+		this.activationType = activationType;
+		this.lossType = lossType;
+		this.batchSize = Math.max(1, batchSize);
+	}
+	
+	/**
+	 * Every combination of the given values, with the softmax setting fixed.
+	 */
+	public static List<NetworkConfiguration> grid(int[][] hiddenLayers, double[] learningRates, ActivationType[] activationTypes, LossType[] lossTypes, int[] batchSizes, boolean usingSoftmax) {
+		List<NetworkConfiguration> configurations = new ArrayList<NetworkConfiguration>();
+		
+		for (int[] nHidden : hiddenLayers) {
+			for (double learningRate : learningRates) {
+				for (ActivationType activationType : activationTypes) {
+					for (LossType lossType : lossTypes) {
+						for (int batchSize : batchSizes) {
+							configurations.add(new NetworkConfiguration(nHidden, learningRate, usingSoftmax, activationType, lossType, batchSize));
+						}
+					}
+				}
+			}
+		}
+		
+		return configurations;
+	}
+	
+	/**
+	 * @param nInput Number of input neurons
+	 * @param nOutput Number of output neurons
+	 * @return A new, untrained network with this configuration
+	 */
+	public MatrixNetwork createNetwork(int nInput, int nOutput) {
+		return new MatrixNetwork(nInput, nOutput, nHidden, nHidden.length, learningRate, usingSoftmax, activationType, lossType);
+	}
+	
+	public int[] getNHidden() {
+		return nHidden.clone();
+	}
+	
+	public int getLHidden() {
+		return nHidden.length;
+	}
+	
+	public double getLearningRate() {
+		return learningRate;
+	}
+	
+	public boolean isUsingSoftmax() {
+		return usingSoftmax;
+	}
+	
+	public ActivationType getActivationType() {
+		return activationType;
+	}
+	
+	public LossType getLossType() {
+		return lossType;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public String toString() {
+		return Arrays.toString(nHidden) + " lr=" + learningRate + " " + activationType + " " + lossType + (usingSoftmax ? " softmax" : "") + " batch=" + batchSize;
+	}
+}
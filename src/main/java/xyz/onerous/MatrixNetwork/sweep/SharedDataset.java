@@ -0,0 +1,60 @@
+package xyz.onerous.MatrixNetwork.sweep;
+
+import xyz.onerous.MatrixNetwork.pipeline.ArraySampleSource;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
+
+/**
+ * Training and validation data shared, read only, by every network of a sweep. The samples are read
+ * through sample sources, so each network prepares the samples it trains on as it needs them and a
+ * packed data set never has to be standardized into arrays as a whole. Nothing in a sweep writes to the
+ * data, and callers must not either once the dataset has been built.
+ */
+public class SharedDataset {
+	private final SampleSource training;
+	private final SampleSource validation;
+	private final int          nOutput;
+	
+	/**
+	 * @param training Samples to train on
+	 * @param validation Samples to rank the networks on (best kept apart from the final test data)
+	 * @param nOutput Number of output neurons (classes)
+	 */
+	public SharedDataset(SampleSource training, SampleSource validation, int nOutput) {
+		this.training = training;
+		this.validation = validation;
+		this.nOutput = nOutput;
+	}
+	
+	/**
+	 * A dataset of samples already prepared as arrays. The arrays are not copied.
+	 * 
+	 * @param trainingData Data to train on
+	 * @param trainingOutputs The expected results per the training data
+	 * @param validationData Data to rank the networks on (best kept apart from the final test data)
+	 * @param validationOutputs The expected results per the validation data
+	 * @param nOutput Number of output neurons (classes)
+	 */
+	public SharedDataset(double[][] trainingData, int[] trainingOutputs, double[][] validationData, int[] validationOutputs, int nOutput) {
+		this(new ArraySampleSource(trainingData, trainingOutputs), new ArraySampleSource(validationData, validationOutputs), nOutput);
+	}
+	
+	SampleSource getTraining() {
+		return training;
+	}
+	
+	SampleSource getValidation() {
+		return validation;
+	}
+	
+	public int getNumInputs() {
+		return training.getSampleLength();
+	}
+	
+	public int getNumOutputs() {
+		return nOutput;
+	}
+	
+	public int getNumTrainingSamples() {
+		return training.size();
+	}
+}
@@ -0,0 +1,27 @@
+package xyz.onerous.MatrixNetwork.sweep;
+
+/**
+ * Where one configuration of a sweep stands: its validation accuracy after the epochs it has trained, and
+ * what that cost.
+ */
+public class SweepResult {
+	public final NetworkConfiguration configuration;
+	public final double percentageCorrect; //On the validation data
+	public final int    epochsTrained;
+	public final double trainingSeconds; //Time spent training this configuration
+	public final double wallSeconds; //Time from the start of the sweep until this result
+	public final boolean stoppedEarly; //Dropped by successive halving
+	
+	public SweepResult(NetworkConfiguration configuration, double percentageCorrect, int epochsTrained, double trainingSeconds, double wallSeconds, boolean stoppedEarly) {
+		this.configuration = configuration;
+		this.percentageCorrect = percentageCorrect;
+		this.epochsTrained = epochsTrained;
+		this.trainingSeconds = trainingSeconds;
+		this.wallSeconds = wallSeconds;
+		this.stoppedEarly = stoppedEarly;
+	}
+	
+	public String toString() {
+		return String.format("%6.2f%%  %3d epochs  %8.1f s training  %8.1f s wall  %s%s", 100.0 * percentageCorrect, epochsTrained, trainingSeconds, wallSeconds, configuration, stoppedEarly ? "  (stopped)" : "");
+	}
+}
@@ -0,0 +1,117 @@
+package xyz.onerous.MatrixNetwork.trainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+
+/**
+ * Asynchronous, lock-free training (Hogwild). Every thread repeatedly claims the next few samples of the
+ * epoch, finds their deltas with its own workspace and adds them straight into the network's weights and
+ * biases, with no locks and no barrier until the epoch is over. Threads therefore sometimes train on
+ * weights another thread is halfway through updating, and an update can occasionally be lost; for sparse
+ * updates this costs little accuracy and removes all waiting.
+ * 
+ * With a batch size of one, each sample is applied on its own as a rank-1 update. Larger batch sizes sum
+ * that many samples per thread (with the batched path) before applying them. `trainBatch` (which is how
+ * pipelines and sample sources hand over their batches) splits the one batch into a shard per thread
+ * instead, so every sample of it still goes into a summed update rather than being applied by itself.
+ * 
+ * Weights are doubles written without synchronization, which the JVM only guarantees to be atomic on
+ * 64-bit platforms; on others a weight could be read half-updated.
+ */
+public class HogwildTrainer implements Trainer {
+	private final MatrixNetwork network;
+	private final int numThreads;
+	private final ForkJoinPool pool;
+	
+	private final NetworkWorkspace[] workspaces; //One per thread
+	
+	/**
+	 * @param network The network to train
+	 * @param numThreads Number of threads updating the network at the same time
+	 */
+	public HogwildTrainer(MatrixNetwork network, int numThreads) {
+		this.network = network;
+		this.numThreads = Math.max(1, numThreads);
+		this.pool = new ForkJoinPool(this.numThreads);
+		this.workspaces = new NetworkWorkspace[this.numThreads];
+		
+		for (int i = 0; i < this.numThreads; i++) {
+			workspaces[i] = network.createWorkspace();
+		}
+	}
+	
+	public void trainEpoch(double[][] data, int[] expectedOutputs, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		train(data, expectedOutputs, 0, data.length, batchSize);
+	}
+	
+	/**
+	 * Train samples [from, to) as one batch, split evenly across the threads. Each thread sums the deltas of
+	 * its shard and applies them without waiting for the others, so the batch's summed deltas all reach the
+	 * network (give or take a lost update), each shard's found against slightly different weights.
+	 */
+	public void trainBatch(double[][] data, int[] expectedOutputs, int from, int to) {
+		int shardSize = (to - from + numThreads - 1) / numThreads;
+		
+		train(data, expectedOutputs, from, to, Math.max(1, shardSize));
+	}
+	
+	private void train(final double[][] data, final int[] expectedOutputs, int from, final int to, final int batchSize) {
+		final AtomicInteger nextSample = new AtomicInteger(from);
+		List<Callable<Void>> threadTasks = new ArrayList<Callable<Void>>(numThreads);
+		
+		for (int i = 0; i < numThreads; i++) {
+			final NetworkWorkspace ws = workspaces[i];
+			
+			threadTasks.add(new Callable<Void>() {
+				public Void call() {
+					GradientAccumulator accumulator = ws.gradientAccumulator;
+					
+					for (int start = nextSample.getAndAdd(batchSize); start < to; start = nextSample.getAndAdd(batchSize)) {
+						if (batchSize == 1) {
+							network.inputDataAndPropagate(data[start], ws);
+							network.applyGradient(expectedOutputs[start], ws);
+						} else {
+							accumulator.clear();
+							network.accumulateBatch(data, expectedOutputs, start, Math.min(start + batchSize, to), ws, accumulator);
+							network.applyDeltaPackage(accumulator);
+						}
+					}
+					
+					return null;
+				}
+			});
+		}
+		
+		for (Future<Void> threadResult : pool.invokeAll(threadTasks)) {
+			try {
+				threadResult.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
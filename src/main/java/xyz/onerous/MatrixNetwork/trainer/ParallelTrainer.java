@@ -0,0 +1,178 @@
+package xyz.onerous.MatrixNetwork.trainer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+
+/**
+ * A data-parallel trainer. Each batch is split into contiguous shards, one per worker, and every worker
+ * runs its shard through the batched path with its own workspace and gradient accumulator. The shard
+ * deltas are then summed pairwise up a tree (so the reduction takes log2(workers) steps instead of one
+ * step per worker) and applied to the network once.
+ * 
+ * The result is the same as training the batch on one thread, apart from the order floating point sums are
+ * taken in.
+ */
+public class ParallelTrainer implements Trainer {
+	private static final int MIN_SAMPLES_PER_WORKER = 8; //Below this, the fork is slower than the work
+	
+	private final MatrixNetwork network;
+	private final int numWorkers;
+	private final ForkJoinPool pool;
+	
+	private final NetworkWorkspace[] workspaces; //One per worker, so workers never share scratch buffers
+	private final GradientAccumulator[] accumulators;
+	
+	private double[][] data;
+	private int[] expectedOutputs;
+	private int batchFrom;
+	private int batchTo;
+	private int numShards;
+	
+	/**
+	 * @param network The network to train
+	 * @param numWorkers Number of threads to split each batch across
+	 */
+	public ParallelTrainer(MatrixNetwork network, int numWorkers) {
+		this.network = network;
+		this.numWorkers = Math.max(1, numWorkers);
+		this.pool = new ForkJoinPool(this.numWorkers);
+		this.workspaces = new NetworkWorkspace[this.numWorkers];
+		this.accumulators = new GradientAccumulator[this.numWorkers];
+		
+		for (int i = 0; i < this.numWorkers; i++) {
+			workspaces[i] = network.createWorkspace();
+			accumulators[i] = workspaces[i].gradientAccumulator;
+		}
+	}
+	
+	/**
+	 * A trainer with one worker per available processor.
+	 * 
+	 * @param network The network to train
+	 */
+	public ParallelTrainer(MatrixNetwork network) {
+		this(network, Runtime.getRuntime().availableProcessors());
+	}
+	
+	public void trainEpoch(double[][] data, int[] expectedOutputs, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		for (int from = 0; from < data.length; from += batchSize) {
+			trainBatch(data, expectedOutputs, from, Math.min(from + batchSize, data.length));
+		}
+	}
+	
+	public void trainBatch(double[][] data, int[] expectedOutputs, int from, int to) {
+		this.data = data;
+		this.expectedOutputs = expectedOutputs;
+		this.batchFrom = from;
+		this.batchTo = to;
+		this.numShards = Math.max(1, Math.min(numWorkers, (to - from) / MIN_SAMPLES_PER_WORKER));
+		
+		if (numShards == 1) {
+			trainShard(0);
+		} else {
+			pool.invoke(new ShardAction(0, numShards));
+		}
+		
+		network.applyDeltaPackage(accumulators[0]);
+		
+		this.data = null;
+		this.expectedOutputs = null;
+	}
+	
+	/**
+	 * Find the summed deltas of one shard of the current batch in that shard's accumulator.
+	 * 
+	 * @param shard
+	 */
+	private void trainShard(int shard) {
+		int batchSize = batchTo - batchFrom;
+		int shardFrom = batchFrom + (int)((long)batchSize * shard / numShards);
+		int shardTo = batchFrom + (int)((long)batchSize * (shard + 1) / numShards);
+		
+		accumulators[shard].clear();
+		network.accumulateBatch(data, expectedOutputs, shardFrom, shardTo, workspaces[shard], accumulators[shard]);
+	}
+	
+	/**
+	 * Train shards [from, to) by splitting the range in half until one shard is left, then add the upper
+	 * half's deltas into the lower half's on the way back up. Shard `from` ends up holding the sum of the
+	 * whole range.
+	 */
+	private class ShardAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		
+		ShardAction(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override protected void compute() {
+			if (to - from == 1) {
+				trainShard(from);
+				return;
+			}
+			
+			int mid = (from + to) >>> 1;
+			
+			invokeAll(new ShardAction(from, mid), new ShardAction(mid, to));
+			
+			accumulators[from].add(accumulators[mid]);
+		}
+	}
+	
+	/**
+	 * Time `numBatches` batches on the network's serial path and then on this trainer, print both and return
+	 * the speedup. The network is trained by both runs.
+	 * 
+	 * @param data Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the data
+	 * @param batchSize Size of the batches
+	 * @param numBatches Number of batches to time for each path
+	 * @return Serial time divided by parallel time
+	 */
+	public double measureSpeedup(double[][] data, int[] expectedOutputs, int batchSize, int numBatches) {
+		numBatches = Math.min(numBatches, data.length / batchSize);
+		
+		long serialStart = System.nanoTime();
+		
+		for (int b = 0; b < numBatches; b++) {
+			int from = b * batchSize;
+			
+			network.applyDeltaPackage(network.performBatchAndGetDelta(ArrayUtil.clipArray(data, from, from + batchSize), ArrayUtil.clipArray(expectedOutputs, from, from + batchSize)));
+		}
+		
+		long serialTime = System.nanoTime() - serialStart;
+		long parallelStart = System.nanoTime();
+		
+		for (int b = 0; b < numBatches; b++) {
+			trainBatch(data, expectedOutputs, b * batchSize, (b + 1) * batchSize);
+		}
+		
+		long parallelTime = System.nanoTime() - parallelStart;
+		double speedup = (double)serialTime / (double)parallelTime;
+		
+		System.out.println("Serial: " + (serialTime / 1000000 / Math.max(1, numBatches)) + " ms/batch, parallel (" + numWorkers + " workers): " + (parallelTime / 1000000 / Math.max(1, numBatches)) + " ms/batch, speedup " + String.format("%.2f", speedup) + "x");
+		
+		return speedup;
+	}
+	
+	public int getNumWorkers() {
+		return numWorkers;
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,257 @@
+package xyz.onerous.MatrixNetwork.trainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
+import xyz.onerous.MatrixNetwork.component.exception.InvalidInputLengthException;
+
+/**
+ * A model-parallel trainer (pipeline parallelism, as in GPipe). The layers are split into contiguous
+ * stages of about equal weight count, one thread per stage, and each batch into micro-batches that flow
+ * through the stages: while stage k feeds micro-batch i + 1 forward, stage k + 1 works on micro-batch i.
+ * Once a stage has fed every micro-batch forward it works through them backward in reverse order, each as
+ * soon as the stage above has found that micro-batch's errors, adding the gradients of its own layers.
+ * 
+ * With M micro-batches and S stages, each stage is busy for M of the M + S - 1 steps of a batch, so more
+ * micro-batches per batch keep the stages busier. This helps when one layer's product is too small to
+ * split across threads itself; for large batches, ParallelTrainer usually does better.
+ * 
+ * The weights are only updated once a whole batch has gone through, with the summed deltas of every
+ * micro-batch, so the result is the same as training the batch on one thread, apart from rounding.
+ */
+public class PipelineTrainer implements Trainer {
+	private final MatrixNetwork network;
+	private final int numStages;
+	private final int numMicroBatches;
+	private final int[] stageStart; //Stage s holds layers [stageStart[s], stageStart[s+1])
+	private final ExecutorService pool;
+	
+	private final NetworkWorkspace[] workspaces; //One per micro-batch
+	private final GradientAccumulator accumulator; //Each stage adds into its own layers only
+	
+	private final int[] forwardStages; //Per micro-batch, number of stages that have fed it forward
+	private final int[] backwardStages; //Per micro-batch, number of stages (from the top) that have fed it backward
+	private boolean failed;
+	
+	private double[][] data;
+	private int[] expectedOutputs;
+	private int batchFrom;
+	private int batchTo;
+	private int microBatchSize;
+	private int numActiveMicroBatches;
+	
+	/**
+	 * @param network The network to train
+	 * @param numStages Number of stages (threads); at most one per weighted layer
+	 * @param numMicroBatches Number of micro-batches each batch is split into
+	 */
+	public PipelineTrainer(MatrixNetwork network, int numStages, int numMicroBatches) {
+		this.network = network;
+		this.numStages = Math.max(1, Math.min(numStages, network.getNumL() - 1));
+		this.numMicroBatches = Math.max(1, numMicroBatches);
+		this.stageStart = balanceStages(network.getNPerLayer(), this.numStages);
+		this.pool = Executors.newFixedThreadPool(this.numStages);
+		
+		this.workspaces = new NetworkWorkspace[this.numMicroBatches];
+		this.accumulator = new GradientAccumulator(network.getNPerLayer());
+		this.forwardStages = new int[this.numMicroBatches];
+		this.backwardStages = new int[this.numMicroBatches];
+		
+		for (int m = 0; m < this.numMicroBatches; m++) {
+			workspaces[m] = new NetworkWorkspace(network.getNPerLayer(), false);
+		}
+	}
+	
+	/**
+	 * Split the weighted layers into contiguous stages with about the same number of weights each.
+	 * 
+	 * @return The first layer of each stage, followed by the number of layers
+	 */
+	private static int[] balanceStages(int[] nPerLayer, int numStages) {
+		int numL = nPerLayer.length;
+		long totalWeights = 0;
+		
+		for (int l = 1; l < numL; l++) {
+			totalWeights += (long) nPerLayer[l] * nPerLayer[l-1];
+		}
+		
+		int[] stageStart = new int[numStages + 1];
+		long weightsSoFar = 0;
+		int stage = 1;
+		
+		for (int l = 1; l < numL && stage < numStages; l++) {
+			weightsSoFar += (long) nPerLayer[l] * nPerLayer[l-1];
+			
+			//Close the stage once it has its share, or when every remaining layer is needed for a stage of its own
+			if (weightsSoFar * numStages >= totalWeights * stage || numL - 1 - l == numStages - stage) {
+				stageStart[stage++] = l + 1;
+			}
+		}
+		
+		stageStart[numStages] = numL;
+		
+		return stageStart;
+	}
+	
+	public void trainEpoch(double[][] data, int[] expectedOutputs, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+		}
+		
+		for (int from = 0; from < data.length; from += batchSize) {
+			trainBatch(data, expectedOutputs, from, Math.min(from + batchSize, data.length));
+		}
+	}
+	
+	public void trainBatch(double[][] data, int[] expectedOutputs, int from, int to) {
+		if (to <= from) { return; } //Nothing to train on, and no micro-batch size to split it by
+		
+		this.data = data;
+		this.expectedOutputs = expectedOutputs;
+		this.batchFrom = from;
+		this.batchTo = to;
+		this.microBatchSize = (to - from + numMicroBatches - 1) / numMicroBatches;
+		this.numActiveMicroBatches = (to - from + microBatchSize - 1) / microBatchSize;
+		
+		for (int m = 0; m < numMicroBatches; m++) {
+			forwardStages[m] = 0;
+			backwardStages[m] = 0;
+		}
+		
+		failed = false;
+		accumulator.clear();
+		
+		List<Callable<Void>> stageTasks = new ArrayList<Callable<Void>>(numStages);
+		
+		for (int s = 0; s < numStages; s++) {
+			final int stage = s;
+			
+			stageTasks.add(new Callable<Void>() {
+				public Void call() throws InterruptedException {
+					try {
+						runStage(stage);
+					} catch (RuntimeException e) {
+						fail();
+						throw e;
+					}
+					
+					return null;
+				}
+			});
+		}
+		
+		try {
+			for (Future<Void> stageResult : pool.invokeAll(stageTasks)) {
+				stageResult.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			return;
+		}
+		
+		if (failed) { return; }
+		
+		//The stages added unscaled gradients, so their errors stayed usable by the stage below
+		accumulator.scale(1, network.getNumL(), -network.getLearningRate());
+		accumulator.countSamples(to - from);
+		
+		network.applyDeltaPackage(accumulator);
+	}
+	
+	private void runStage(int stage) throws InterruptedException {
+		int fromLayer = stageStart[stage];
+		int toLayer = stageStart[stage + 1];
+		
+		for (int m = 0; m < numActiveMicroBatches; m++) {
+			if (!awaitForward(m, stage)) { return; }
+			
+			int microFrom = batchFrom + m * microBatchSize;
+			int size = Math.min(microBatchSize, batchTo - microFrom);
+			
+			if (stage == 0) {
+				try {
+					network.inputBatchData(data, microFrom, size, workspaces[m]);
+				} catch (InvalidInputLengthException e) {
+					e.printStackTrace();
+					fail();
+					return;
+				}
+			}
+			
+			network.propagateBatch(fromLayer, toLayer, size, workspaces[m]);
+			
+			synchronized (this) {
+				forwardStages[m]++;
+				notifyAll();
+			}
+		}
+		
+		for (int m = numActiveMicroBatches - 1; m >= 0; m--) {
+			if (!awaitBackward(m, stage)) { return; }
+			
+			int microFrom = batchFrom + m * microBatchSize;
+			int size = Math.min(microBatchSize, batchTo - microFrom);
+			
+			network.backPropagateBatch(expectedOutputs, microFrom, fromLayer, toLayer, size, workspaces[m]);
+			network.gradientDescentBatch(fromLayer, toLayer, size, workspaces[m], accumulator, false);
+			
+			synchronized (this) {
+				backwardStages[m]++;
+				notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Wait until every stage below this one has fed micro-batch m forward.
+	 * 
+	 * @return false if another stage failed
+	 */
+	private synchronized boolean awaitForward(int m, int stage) throws InterruptedException {
+		while (forwardStages[m] < stage && !failed) {
+			wait();
+		}
+		
+		return !failed;
+	}
+	
+	/**
+	 * Wait until micro-batch m has gone all the way forward and every stage above this one has fed it back.
+	 * 
+	 * @return false if another stage failed
+	 */
+	private synchronized boolean awaitBackward(int m, int stage) throws InterruptedException {
+		while ((forwardStages[m] < numStages || backwardStages[m] < numStages - 1 - stage) && !failed) {
+			wait();
+		}
+		
+		return !failed;
+	}
+	
+	private synchronized void fail() {
+		failed = true;
+		notifyAll();
+	}
+	
+	/**
+	 * @return The first layer of each stage, followed by the number of layers
+	 */
+	public int[] getStageBoundaries() {
+		return stageStart.clone();
+	}
+	
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
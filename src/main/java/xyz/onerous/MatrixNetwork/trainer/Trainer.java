@@ -0,0 +1,33 @@
+package xyz.onerous.MatrixNetwork.trainer;
+
+/**
+ * A strategy for training a network. The network hands each epoch to its trainer (see
+ * MatrixNetwork.setTrainer), which finds the weight-bias changes however it likes and applies them to the
+ * network before returning.
+ */
+public interface Trainer {
+	/**
+	 * Train the network once through the whole data set.
+	 * 
+	 * @param data Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the data
+	 * @param batchSize Number of samples whose deltas are summed before being applied
+	 * @throws IllegalArgumentException if batchSize is less than 1
+	 */
+	void trainEpoch(double[][] data, int[] expectedOutputs, int batchSize);
+	
+	/**
+	 * Train the network on samples [from, to) of the data as one batch.
+	 * 
+	 * @param data Data to be inputted
+	 * @param expectedOutputs The expected results of the network per the data
+	 * @param from First sample of the batch (inclusive)
+	 * @param to Last sample of the batch (exclusive)
+	 */
+	void trainBatch(double[][] data, int[] expectedOutputs, int from, int to);
+	
+	/**
+	 * Release any threads the trainer holds. The trainer is not usable afterwards.
+	 */
+	void shutdown();
+}
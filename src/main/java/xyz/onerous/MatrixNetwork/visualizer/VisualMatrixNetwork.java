@@ -3,8 +3,10 @@ package xyz.onerous.MatrixNetwork.visualizer;
 import xyz.onerous.MatrixNetwork.MatrixNetwork;
 import xyz.onerous.MatrixNetwork.component.ActivationType;
 import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.datapackage.GradientAccumulator;
 import xyz.onerous.MatrixNetwork.component.datapackage.WeightBiasDeltaPackage;
 import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+import xyz.onerous.MatrixNetwork.pipeline.SampleSource;
 
 public class VisualMatrixNetwork extends MatrixNetwork {
 	private Visualizer networkVisualizer;
@@ -15,7 +17,7 @@ public class VisualMatrixNetwork extends MatrixNetwork {
 		this.networkVisualizer = new Visualizer(this);
 	}
 	
-	@Override public WeightBiasDeltaPackage performTrainAndGetDelta(double[] trainData, int expectedOutput) {
+	@Override protected void performTrainAndAccumulate(double[] trainData, int expectedOutput, GradientAccumulator accumulator) {
 		inputDataAndPropagate(trainData);
 	
 		double[] visualData = ArrayUtil.rangeTranslation(trainData, 0, 255);
@@ -23,7 +25,24 @@ public class VisualMatrixNetwork extends MatrixNetwork {
 		networkVisualizer.updateTrainingData(visualData, expectedOutput);
 		networkVisualizer.updateVisualizer(this.generateNetworkDataPackage());
 		
-		return gradientDescent(expectedOutput);
+		accumulateGradient(expectedOutput, accumulator);
+	}
+	
+	/**
+	 * The batched path never visits single samples, so train sample by sample to keep the visualizer fed.
+	 */
+	@Override public WeightBiasDeltaPackage performBatchAndGetDelta(double[][] batchData, int[] expectedOutputs) {
+		return performSerialBatchAndGetDelta(batchData, expectedOutputs);
+	}
+	
+	@Override protected WeightBiasDeltaPackage performBatchAndGetDelta(SampleSource source, int from, int batchSize, int[] expectedOutputs) {
+		double[][] batchData = new double[batchSize][ source.getSampleLength() ];
+		
+		for (int s = 0; s < batchSize; s++) {
+			source.prepareSample(from + s, batchData[s], 0);
+		}
+		
+		return performSerialBatchAndGetDelta(batchData, ArrayUtil.clipArray(expectedOutputs, 0, batchSize));
 	}
 	
 }
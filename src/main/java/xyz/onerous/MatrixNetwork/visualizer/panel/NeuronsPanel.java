@@ -117,8 +117,8 @@ public class NeuronsPanel extends JPanel {
 					neurons[l][n].setConnection(pn, connection);
 					
 					if (networkDataPackage != null) {
-						neurons[l][n].setConnectionValue(pn, networkDataPackage.getConnectionValues()[l][n][pn]);
-						neurons[l][n].setConnectionWeight(pn, networkDataPackage.getConnectionWeights()[l][n][pn]);
+						neurons[l][n].setConnectionValue(pn, networkDataPackage.getConnectionValue(l, n, pn));
+						neurons[l][n].setConnectionWeight(pn, networkDataPackage.getConnectionWeight(l, n, pn));
 					}
 				}
 			}
@@ -180,7 +180,7 @@ public class NeuronsPanel extends JPanel {
 				
 				if (l != 0) {
 					for (int c = 0; c < neurons[l][n].getConnections().length; c++) {
-						neurons[l][n].setConnectionWeight(c, networkDataPackage.getConnectionWeights()[l][n][c]);
+						neurons[l][n].setConnectionWeight(c, networkDataPackage.getConnectionWeight(l, n, c));
 					}
 				}
 			}
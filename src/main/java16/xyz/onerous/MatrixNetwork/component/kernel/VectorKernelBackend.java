@@ -0,0 +1,341 @@
+package xyz.onerous.MatrixNetwork.component.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+
+/**
+ * A backend on the JDK 16+ Vector API (jdk.incubator.vector), which the JIT compiles to the widest SIMD
+ * instructions the processor has. Its main gain is on the paths the auto-vectorizer cannot touch: exp and
+ * tanh are evaluated a whole vector at a time (on x86, through the JDK's SVML stubs), so Sigmoid, TanH and
+ * softmax no longer cost one Math.exp call per neuron. Dot products, the matrix-vector products, the dense
+ * forward and backward passes and the element-wise operations use explicit vectors too; the matrix-matrix
+ * products are the UnrolledKernelBackend's.
+ * 
+ * This class lives in its own source root (src/main/java16), built by the `vector-kernels` Maven profile
+ * on JDK 16 and later, and is only ever loaded by name from Kernels, so the rest of the project still
+ * builds and runs on Java 8. It needs the JVM to be started with `--add-modules jdk.incubator.vector`.
+ * Results differ from the scalar backend in the last few bits, and exp and tanh can also change in the last
+ * bit once the JIT replaces the Vector API's Java fallback with the SIMD version, so compare results from
+ * this backend to within rounding rather than exactly. Until the JIT has compiled its loops (a few
+ * thousand calls), the vectors are real objects, so a cold network allocates on every step.
+ * 
+ * @author Gabriel Wong
+ */
+public class VectorKernelBackend extends UnrolledKernelBackend {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+	
+	@Override public double dot(double[] input1, double[] input2, int length) {
+		return dotAt(input1, 0, input2, 0, length);
+	}
+	
+	@Override public void hadamardInto(double[] input1, double[] input2, double[] out, int length) {
+		int i = 0;
+		
+		for (int upper = SPECIES.loopBound(length); i < upper; i += LANES) {
+			DoubleVector.fromArray(SPECIES, input1, i).mul(DoubleVector.fromArray(SPECIES, input2, i)).intoArray(out, i);
+		}
+		
+		for (; i < length; i++) {
+			out[i] = input1[i] * input2[i];
+		}
+	}
+	
+	@Override public void addInto(double[] input1, double[] input2, double[] out, int length) {
+		int i = 0;
+		
+		for (int upper = SPECIES.loopBound(length); i < upper; i += LANES) {
+			DoubleVector.fromArray(SPECIES, input1, i).add(DoubleVector.fromArray(SPECIES, input2, i)).intoArray(out, i);
+		}
+		
+		for (; i < length; i++) {
+			out[i] = input1[i] + input2[i];
+		}
+	}
+	
+	@Override public void scalarMultiplyInto(double[] matrix, double scale, double[] out, int length) {
+		int i = 0;
+		
+		for (int upper = SPECIES.loopBound(length); i < upper; i += LANES) {
+			DoubleVector.fromArray(SPECIES, matrix, i).mul(scale).intoArray(out, i);
+		}
+		
+		for (; i < length; i++) {
+			out[i] = matrix[i] * scale;
+		}
+	}
+	
+	@Override public void scalarAddInto(double[] matrix, double addend, double[] out, int length) {
+		int i = 0;
+		
+		for (int upper = SPECIES.loopBound(length); i < upper; i += LANES) {
+			DoubleVector.fromArray(SPECIES, matrix, i).add(addend).intoArray(out, i);
+		}
+		
+		for (; i < length; i++) {
+			out[i] = matrix[i] + addend;
+		}
+	}
+	
+	@Override public void scaledAddInto(double[] input, double scale, double[] out, int length) {
+		DoubleVector scales = DoubleVector.broadcast(SPECIES, scale);
+		int i = 0;
+		
+		for (int upper = SPECIES.loopBound(length); i < upper; i += LANES) {
+			DoubleVector.fromArray(SPECIES, input, i).fma(scales, DoubleVector.fromArray(SPECIES, out, i)).intoArray(out, i);
+		}
+		
+		for (; i < length; i++) {
+			out[i] += input[i] * scale;
+		}
+	}
+	
+	@Override public void multiplyInto(double[] matrix, int rows, int cols, double[] vector, double[] out) {
+		rowsInto(matrix, (double[]) null, 0, rows, cols, vector, out);
+	}
+	
+	@Override public void multiplyWithFirstTransposeInto(double[] matrix, int rows, int cols, double[] vector, double[] out) {
+		for (int jj = 0; jj < cols; jj += COL_BLOCK) {
+			int jEnd = Math.min(jj + COL_BLOCK, cols);
+			
+			transposedRowsInto(matrix, rows, cols, vector, out, jj, jEnd);
+		}
+	}
+	
+	/**
+	 * Every weighted input of the slice first, then the activation over the whole slice in one vectorized
+	 * pass (rather than four neurons at a time, which is too short for a vector).
+	 */
+	@Override public void denseForwardRowsInto(ActivationType activationType, double[] weights, double[] biases, int fromRow, int toRow, int cols, double[] input, double[] layerZ, double[] layerA) {
+		rowsInto(weights, biases, fromRow, toRow, cols, input, layerZ);
+		activateInto(activationType, layerZ, layerA, fromRow, toRow);
+	}
+	
+	@Override public void denseBackwardInto(ActivationType activationType, double[] weights, int rows, int cols, double[] nextδ, double[] layerZ, double[] layerA, double[] layerδ) {
+		for (int jj = 0; jj < cols; jj += COL_BLOCK) {
+			int jEnd = Math.min(jj + COL_BLOCK, cols);
+			
+			transposedRowsInto(weights, rows, cols, nextδ, layerδ, jj, jEnd);
+			multiplyByActivationPrimeInto(activationType, layerZ, layerA, layerδ, jj, jEnd);
+		}
+	}
+	
+	@Override public void multiplyByActivationPrimeInto(ActivationType activationType, double[] layerZ, double[] layerA, double[] layerδ, int from, int to) {
+		if (activationType == ActivationType.Linear) { return; }
+		
+		int i = from;
+		int upper = from + SPECIES.loopBound(to - from);
+		
+		for (; i < upper; i += LANES) {
+			DoubleVector δ = DoubleVector.fromArray(SPECIES, layerδ, i);
+			
+			switch (activationType) {
+			case ReLU:
+				VectorMask<Double> negative = DoubleVector.fromArray(SPECIES, layerZ, i).compare(VectorOperators.LT, 0.0);
+				δ = δ.blend(0.0, negative);
+				break;
+			case TanH:
+				DoubleVector tanhA = DoubleVector.fromArray(SPECIES, layerA, i);
+				δ = δ.mul(tanhA.mul(tanhA).neg().add(1.0)); //sech^2(x) = 1 - tanh^2(x)
+				break;
+			case Sigmoid:
+			default:
+				DoubleVector sigmoidA = DoubleVector.fromArray(SPECIES, layerA, i);
+				δ = δ.mul(sigmoidA.mul(sigmoidA.neg().add(1.0)));
+				break;
+			}
+			
+			δ.intoArray(layerδ, i);
+		}
+		
+		super.multiplyByActivationPrimeInto(activationType, layerZ, layerA, layerδ, i, to);
+	}
+	
+	@Override public void activateInto(ActivationType activationType, double[] layerZ, double[] layerA, int from, int to) {
+		if (activationType == ActivationType.Linear) {
+			System.arraycopy(layerZ, from, layerA, from, to - from);
+			return;
+		}
+		
+		int i = from;
+		int upper = from + SPECIES.loopBound(to - from);
+		
+		for (; i < upper; i += LANES) {
+			DoubleVector z = DoubleVector.fromArray(SPECIES, layerZ, i);
+			
+			switch (activationType) {
+			case ReLU:
+				z = z.max(0.0);
+				break;
+			case TanH:
+				z = z.lanewise(VectorOperators.TANH);
+				break;
+			case Sigmoid:
+			default:
+				z = DoubleVector.broadcast(SPECIES, 1.0).div(z.neg().lanewise(VectorOperators.EXP).add(1.0));
+				break;
+			}
+			
+			z.intoArray(layerA, i);
+		}
+		
+		super.activateInto(activationType, layerZ, layerA, i, to);
+	}
+	
+	@Override public void softmaxInto(double[] layerZ, double[] layerA, int offset, int length) {
+		int end = offset + length;
+		int i = offset;
+		int upper = offset + SPECIES.loopBound(length);
+		DoubleVector sums = DoubleVector.zero(SPECIES);
+		
+		for (; i < upper; i += LANES) {
+			DoubleVector e = DoubleVector.fromArray(SPECIES, layerZ, i).lanewise(VectorOperators.EXP);
+			
+			e.intoArray(layerA, i);
+			sums = sums.add(e);
+		}
+		
+		double layerSum = sums.reduceLanes(VectorOperators.ADD);
+		
+		for (; i < end; i++) {
+			layerA[i] = Math.exp(layerZ[i]);
+			layerSum += layerA[i];
+		}
+		
+		i = offset;
+		
+		for (; i < upper; i += LANES) {
+			DoubleVector.fromArray(SPECIES, layerA, i).div(layerSum).intoArray(layerA, i);
+		}
+		
+		for (; i < end; i++) {
+			layerA[i] /= layerSum;
+		}
+	}
+	
+	/**
+	 * out[i] = matrix[i] . vector (+ biases[i], if biases is not null) for rows [fromRow, toRow), four rows
+	 * per pass so every vector load of `vector` is shared.
+	 */
+	private static void rowsInto(double[] matrix, double[] biases, int fromRow, int toRow, int cols, double[] vector, double[] out) {
+		int upper = SPECIES.loopBound(cols);
+		int i = fromRow;
+		
+		for (; i + ROW_BLOCK <= toRow; i += ROW_BLOCK) {
+			int r0 = i * cols, r1 = r0 + cols, r2 = r1 + cols, r3 = r2 + cols;
+			DoubleVector s0 = DoubleVector.zero(SPECIES), s1 = s0, s2 = s0, s3 = s0;
+			int j = 0;
+			
+			for (; j < upper; j += LANES) {
+				DoubleVector v = DoubleVector.fromArray(SPECIES, vector, j);
+				
+				s0 = DoubleVector.fromArray(SPECIES, matrix, r0 + j).fma(v, s0);
+				s1 = DoubleVector.fromArray(SPECIES, matrix, r1 + j).fma(v, s1);
+				s2 = DoubleVector.fromArray(SPECIES, matrix, r2 + j).fma(v, s2);
+				s3 = DoubleVector.fromArray(SPECIES, matrix, r3 + j).fma(v, s3);
+			}
+			
+			double t0 = s0.reduceLanes(VectorOperators.ADD);
+			double t1 = s1.reduceLanes(VectorOperators.ADD);
+			double t2 = s2.reduceLanes(VectorOperators.ADD);
+			double t3 = s3.reduceLanes(VectorOperators.ADD);
+			
+			for (; j < cols; j++) {
+				double v = vector[j];
+				t0 += matrix[r0 + j] * v;
+				t1 += matrix[r1 + j] * v;
+				t2 += matrix[r2 + j] * v;
+				t3 += matrix[r3 + j] * v;
+			}
+			
+			if (biases != null) {
+				t0 += biases[i];
+				t1 += biases[i + 1];
+				t2 += biases[i + 2];
+				t3 += biases[i + 3];
+			}
+			
+			out[i] = t0;
+			out[i + 1] = t1;
+			out[i + 2] = t2;
+			out[i + 3] = t3;
+		}
+		
+		for (; i < toRow; i++) {
+			double t = dotAt(matrix, i * cols, vector, 0, cols);
+			
+			out[i] = (biases != null) ? t + biases[i] : t;
+		}
+	}
+	
+	/**
+	 * out[j] = (transpose(matrix) * vector)[j] for j in [from, to), four rows of the matrix per pass.
+	 */
+	private static void transposedRowsInto(double[] matrix, int rows, int cols, double[] vector, double[] out, int from, int to) {
+		int upper = from + SPECIES.loopBound(to - from);
+		
+		for (int j = from; j < to; j++) {
+			out[j] = 0.0;
+		}
+		
+		int i = 0;
+		
+		for (; i + ROW_BLOCK <= rows; i += ROW_BLOCK) {
+			int r0 = i * cols, r1 = r0 + cols, r2 = r1 + cols, r3 = r2 + cols;
+			double v0 = vector[i], v1 = vector[i + 1], v2 = vector[i + 2], v3 = vector[i + 3];
+			DoubleVector w0 = DoubleVector.broadcast(SPECIES, v0), w1 = DoubleVector.broadcast(SPECIES, v1);
+			DoubleVector w2 = DoubleVector.broadcast(SPECIES, v2), w3 = DoubleVector.broadcast(SPECIES, v3);
+			int j = from;
+			
+			for (; j < upper; j += LANES) {
+				DoubleVector s = DoubleVector.fromArray(SPECIES, out, j);
+				
+				s = DoubleVector.fromArray(SPECIES, matrix, r0 + j).fma(w0, s);
+				s = DoubleVector.fromArray(SPECIES, matrix, r1 + j).fma(w1, s);
+				s = DoubleVector.fromArray(SPECIES, matrix, r2 + j).fma(w2, s);
+				s = DoubleVector.fromArray(SPECIES, matrix, r3 + j).fma(w3, s);
+				s.intoArray(out, j);
+			}
+			
+			for (; j < to; j++) {
+				out[j] += matrix[r0 + j] * v0 + matrix[r1 + j] * v1 + matrix[r2 + j] * v2 + matrix[r3 + j] * v3;
+			}
+		}
+		
+		for (; i < rows; i++) {
+			int r = i * cols;
+			double v = vector[i];
+			DoubleVector w = DoubleVector.broadcast(SPECIES, v);
+			int j = from;
+			
+			for (; j < upper; j += LANES) {
+				DoubleVector.fromArray(SPECIES, matrix, r + j).fma(w, DoubleVector.fromArray(SPECIES, out, j)).intoArray(out, j);
+			}
+			
+			for (; j < to; j++) {
+				out[j] += matrix[r + j] * v;
+			}
+		}
+	}
+	
+	private static double dotAt(double[] input1, int offset1, double[] input2, int offset2, int length) {
+		DoubleVector sums = DoubleVector.zero(SPECIES);
+		int p = 0;
+		
+		for (int upper = SPECIES.loopBound(length); p < upper; p += LANES) {
+			sums = DoubleVector.fromArray(SPECIES, input1, offset1 + p).fma(DoubleVector.fromArray(SPECIES, input2, offset2 + p), sums);
+		}
+		
+		double s = sums.reduceLanes(VectorOperators.ADD);
+		
+		for (; p < length; p++) {
+			s += input1[offset1 + p] * input2[offset2 + p];
+		}
+		
+		return s;
+	}
+}
@@ -0,0 +1,165 @@
+package Onerous.MatrixNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.FloatMatrixNetwork;
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.datapackage.FloatNetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.NetworkWeightBiasPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+import xyz.onerous.MatrixNetwork.component.util.FileUtil;
+
+public class FloatMatrixNetworkTest extends TestCase {
+	private static final double TOLERANCE = 1e-4; //Float rounding, compounded over a few batches (relative to values over 1)
+	
+	/**
+	 * Training a single-precision copy of a network must follow the double precision network to within float
+	 * rounding, for every activation and for both output layer kinds.
+	 */
+	public void testFloatTrainingFollowsDoubleTraining() {
+		Random random = new Random(4);
+		
+		for (ActivationType activationType : ActivationType.values()) {
+			for (int outputKind = 0; outputKind < 2; outputKind++) {
+				boolean usingSoftmax = (outputKind == 0);
+				LossType lossType = usingSoftmax ? LossType.CrossEntropy : LossType.MeanSquaredError;
+				MatrixNetwork network = new MatrixNetwork(37, 10, new int[] {23, 11}, 2, 0.01, usingSoftmax, activationType, lossType);
+				
+				network.applyNetworkWeightBiasPackage(randomPackage(random, network.getNPerLayer())); //Seeded, so no run diverges
+				
+				FloatMatrixNetwork floatNetwork = new FloatMatrixNetwork(network);
+				
+				double[][] data = new double[40][];
+				int[] expectedOutputs = new int[data.length];
+				
+				for (int s = 0; s < data.length; s++) {
+					data[s] = randomArray(random, 37);
+					expectedOutputs[s] = random.nextInt(10);
+				}
+				
+				for (int from = 0; from < data.length; from += 8) {
+					network.applyDeltaPackage(network.performBatchAndGetDelta(ArrayUtil.clipArray(data, from, from + 8), ArrayUtil.clipArray(expectedOutputs, from, from + 8)));
+				}
+				
+				floatNetwork.performEpoch(ArrayUtil.doubleToFloat(data), expectedOutputs, 8);
+				
+				NetworkWeightBiasPackage expected = network.generateNetworkWeightBiasPackage();
+				NetworkWeightBiasPackage actual = floatNetwork.generateNetworkWeightBiasPackage();
+				
+				for (int l = 1; l < network.getNumL(); l++) {
+					assertClose(expected.getFlatConnectionWeights()[l], actual.getFlatConnectionWeights()[l]);
+					assertClose(expected.getNeuronBiases()[l], actual.getNeuronBiases()[l]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * performTest runs on a ParallelEvaluator through predictBatch; its answers must be the ones the network
+	 * gives one sample at a time.
+	 */
+	public void testPerformTestMatchesSinglePredictions() {
+		Random random = new Random(5);
+		FloatMatrixNetwork floatNetwork = new FloatMatrixNetwork(37, 10, new int[] {23, 11}, 2, 0.05, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+		
+		float[][] data = new float[700][]; //Several shards, and more than one batch of MAX_BATCH_ROWS
+		int[] expectedOutputs = new int[data.length];
+		
+		for (int s = 0; s < data.length; s++) {
+			data[s] = ArrayUtil.doubleToFloat(randomArray(random, 37));
+			expectedOutputs[s] = random.nextInt(10);
+		}
+		
+		TestResultPackage results = floatNetwork.performTest(data, expectedOutputs);
+		int correctCount = 0;
+		
+		for (int s = 0; s < data.length; s++) {
+			int index = floatNetwork.inputDataAndPropagate(data[s]);
+			
+			assertEquals(index, results.outputNeuronIndeces[s]);
+			assertEquals(floatNetwork.getOutputNeuronValue(index), results.outputNeuronValues[s], 1e-6);
+			assertEquals(index == expectedOutputs[s], results.ifCorrect[s]);
+			
+			if (index == expectedOutputs[s]) { correctCount++; }
+		}
+		
+		assertEquals((double) correctCount / data.length, results.percentageCorrect, 0.0);
+		assertNull(floatNetwork.performTest(data, new int[data.length - 1]));
+	}
+	
+	/**
+	 * A single-precision save file gives back exactly the floats saved, and either kind of save file loads
+	 * through either loader.
+	 */
+	public void testSaveFilesRoundTrip() throws IOException {
+		FloatMatrixNetwork floatNetwork = new FloatMatrixNetwork(37, 10, new int[] {23, 11}, 2, 0.05, true, ActivationType.TanH, LossType.CrossEntropy);
+		File floatFile = File.createTempFile("floatNetwork", null);
+		File doubleFile = File.createTempFile("network", null);
+		
+		try {
+			FileUtil.writeFloatNetworkWeightBiasPackage(floatNetwork.generateFloatNetworkWeightBiasPackage(), floatFile.getPath());
+			FileUtil.writeNetworkWeightBiasPackage(floatNetwork.generateNetworkWeightBiasPackage(), doubleFile.getPath());
+			
+			FloatNetworkWeightBiasPackage saved = floatNetwork.generateFloatNetworkWeightBiasPackage();
+			FloatNetworkWeightBiasPackage fromFloatFile = FileUtil.loadFloatNetworkWeightBiasPackage(floatFile.getPath());
+			FloatNetworkWeightBiasPackage fromDoubleFile = FileUtil.loadFloatNetworkWeightBiasPackage(doubleFile.getPath());
+			NetworkWeightBiasPackage widened = FileUtil.loadNetworkWeightBiasPackage(floatFile.getPath());
+			
+			for (int l = 1; l < floatNetwork.getNumL(); l++) {
+				assertTrue(Arrays.equals(saved.getFlatConnectionWeights()[l], fromFloatFile.getFlatConnectionWeights()[l]));
+				assertTrue(Arrays.equals(saved.getNeuronBiases()[l], fromFloatFile.getNeuronBiases()[l]));
+				assertTrue(Arrays.equals(saved.getFlatConnectionWeights()[l], fromDoubleFile.getFlatConnectionWeights()[l]));
+				assertTrue(Arrays.equals(saved.getNeuronBiases()[l], fromDoubleFile.getNeuronBiases()[l]));
+				assertTrue(Arrays.equals(ArrayUtil.floatToDouble(saved.getFlatConnectionWeights()[l]), widened.getFlatConnectionWeights()[l]));
+			}
+			
+			floatFile.delete();
+			
+			assertNull(FileUtil.loadFloatNetworkWeightBiasPackage(floatFile.getPath()));
+		} finally {
+			floatFile.delete();
+			doubleFile.delete();
+		}
+	}
+	
+	private static void assertClose(double[] expected, double[] actual) {
+		assertEquals(expected.length, actual.length);
+		
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], TOLERANCE * Math.max(1.0, Math.abs(expected[i])));
+		}
+	}
+	
+	private static NetworkWeightBiasPackage randomPackage(Random random, int[] nPerLayer) {
+		double[][] b = new double[nPerLayer.length][];
+		double[][] w = new double[nPerLayer.length][];
+		
+		for (int l = 0; l < nPerLayer.length; l++) {
+			b[l] = new double[ nPerLayer[l] ];
+			w[l] = new double[ (l == 0) ? 0 : nPerLayer[l] * nPerLayer[l-1] ];
+			
+			for (int i = 0; i < w[l].length; i++) {
+				w[l][i] = random.nextGaussian() / Math.sqrt(nPerLayer[l-1]);
+			}
+		}
+		
+		return new NetworkWeightBiasPackage(b, w);
+	}
+	
+	private static double[] randomArray(Random random, int length) {
+		double[] array = new double[length];
+		
+		for (int i = 0; i < length; i++) {
+			array[i] = random.nextGaussian();
+		}
+		
+		return array;
+	}
+}
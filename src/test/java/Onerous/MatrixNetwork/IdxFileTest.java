@@ -0,0 +1,196 @@
+package Onerous.MatrixNetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.MNIST.IdxFile;
+
+public class IdxFileTest extends TestCase {
+	public void testUnsignedBytesAndLabels() throws IOException {
+		IdxFile images = new IdxFile(idx(IdxFile.DataType.UnsignedByte, new int[] {3, 2, 2}, new double[] {
+				0, 1, 127, 128,
+				200, 255, 3, 4,
+				5, 6, 7, 250 }));
+		
+		assertEquals(IdxFile.DataType.UnsignedByte, images.getDataType());
+		assertEquals(3, images.getRank());
+		assertEquals(3, images.getNumSamples());
+		assertEquals(4, images.getSampleLength());
+		assertEquals(4, images.getSampleBytes());
+		assertEquals(128.0, images.get(0, 3), 0.0);
+		assertEquals(255, images.getInt(1, 1));
+		assertEquals(250, images.getSampleBuffer(2).get(3) & 0xFF);
+		assertEquals(4, images.getSampleBuffer(2).remaining());
+		
+		byte[] raw = new byte[10];
+		images.copySamplesInto(1, 2, raw, 1);
+		assertEquals((byte) 200, raw[1]);
+		assertEquals((byte) 250, raw[8]);
+		assertEquals(0, raw[9]);
+		
+		IdxFile labels = new IdxFile(idx(IdxFile.DataType.UnsignedByte, new int[] {4}, new double[] {9, 0, 255, 3}));
+		
+		assertEquals(1, labels.getSampleLength());
+		assertTrue(Arrays.equals(new int[] {9, 0, 255, 3}, labels.readAllInts()));
+	}
+	
+	public void testMultiByteElementTypes() throws IOException {
+		double[][] values = {
+				{ -128, 127, -1, 0, 5, -7 },                   //SignedByte
+				{ -32768, 32767, -2, 300, 1, 0 },              //Short
+				{ Integer.MIN_VALUE, Integer.MAX_VALUE, -70000, 70000, 1, -1 }, //Int
+				{ 1.5, -0.25, 1048576, -0.125, 0.0, 7.75 },    //Float (all exact in single precision)
+				{ Math.PI, -Math.E, 1e300, -1e-300, 0.1, -0.0 }, //Double
+		};
+		IdxFile.DataType[] types = { IdxFile.DataType.SignedByte, IdxFile.DataType.Short, IdxFile.DataType.Int, IdxFile.DataType.Float, IdxFile.DataType.Double };
+		
+		for (int t = 0; t < types.length; t++) {
+			IdxFile file = new IdxFile(idx(types[t], new int[] {2, 3}, values[t]));
+			
+			assertEquals(types[t].size * 3, file.getSampleBytes());
+			
+			for (int s = 0; s < 2; s++) {
+				for (int i = 0; i < 3; i++) {
+					assertEquals(types[t] + " " + s + "," + i, values[t][s * 3 + i], file.get(s, i), 0.0);
+					assertEquals((int) values[t][s * 3 + i], file.getInt(s, i));
+				}
+			}
+			
+			double[] one = new double[4];
+			file.copySampleInto(1, one, 1);
+			
+			for (int i = 0; i < 3; i++) {
+				assertEquals(values[t][3 + i], one[1 + i], 0.0);
+			}
+			
+			double[] all = new double[8];
+			file.copySamplesInto(0, 2, all, 2);
+			
+			for (int i = 0; i < 6; i++) {
+				assertEquals(values[t][i], all[2 + i], 0.0);
+			}
+			
+			assertEquals(0.0, all[0], 0.0);
+			assertEquals(0.0, all[1], 0.0);
+			
+			double[] none = new double[1];
+			file.copySamplesInto(2, 0, none, 0); //An empty run at the end is fine
+		}
+	}
+	
+	public void testDataStartsAtTheBufferPosition() throws IOException {
+		ByteBuffer data = idx(IdxFile.DataType.Short, new int[] {1, 2}, new double[] {-5, 6});
+		ByteBuffer padded = ByteBuffer.allocate(data.remaining() + 3);
+		
+		padded.position(3);
+		padded.put(data);
+		padded.position(3);
+		
+		IdxFile file = new IdxFile(padded);
+		
+		assertEquals(-5.0, file.get(0, 0), 0.0);
+		assertEquals(6, file.getInt(0, 1));
+	}
+	
+	public void testRankZeroIsRejected() {
+		assertRejected(ByteBuffer.wrap(new byte[] {0, 0, 0x08, 0}));
+	}
+	
+	public void testTruncatedFilesAreRejected() {
+		ByteBuffer full = idx(IdxFile.DataType.Int, new int[] {3, 2}, new double[6]);
+		
+		for (int length : new int[] {0, 3, 4, 8, 11, full.limit() - 1}) { //No magic, part of the dimensions, part of the data
+			ByteBuffer truncated = full.duplicate();
+			
+			truncated.limit(length);
+			assertRejected(truncated);
+		}
+	}
+	
+	public void testUnknownTypesAndBadHeadersAreRejected() {
+		ByteBuffer unknownType = idx(IdxFile.DataType.UnsignedByte, new int[] {1}, new double[1]);
+		unknownType.put(2, (byte) 0x0A);
+		assertRejected(unknownType);
+		
+		ByteBuffer notIdx = idx(IdxFile.DataType.UnsignedByte, new int[] {1}, new double[1]);
+		notIdx.put(0, (byte) 1);
+		assertRejected(notIdx);
+		
+		ByteBuffer negativeDimension = idx(IdxFile.DataType.UnsignedByte, new int[] {1, 1}, new double[1]);
+		negativeDimension.putInt(8, -1);
+		assertRejected(negativeDimension);
+		
+		ByteBuffer hugeSample = idx(IdxFile.DataType.Double, new int[] {0, 65536, 65536}, new double[0]); //32 GB per sample, though there are none
+		assertRejected(hugeSample);
+	}
+	
+	public void testIndicesOutsideTheFileAreRejected() throws IOException {
+		IdxFile file = new IdxFile(idx(IdxFile.DataType.Short, new int[] {2, 3}, new double[6]));
+		
+		assertOutOfBounds(file, -1, 0, 0);
+		assertOutOfBounds(file, 2, 0, 0);
+		assertOutOfBounds(file, 0, 3, 0);
+		assertOutOfBounds(file, 1, -1, 0);
+		assertOutOfBounds(file, 0, 0, 1); //Runs of samples
+		assertOutOfBounds(file, 0, 0, 2);
+		assertOutOfBounds(file, 0, 0, 3);
+	}
+	
+	/**
+	 * @param run 0 to read element (sample, index); 1, 2 and 3 to copy runs that start or end outside the file
+	 */
+	private static void assertOutOfBounds(IdxFile file, int sample, int index, int run) {
+		try {
+			switch (run) {
+			case 0: file.get(sample, index); break;
+			case 1: file.copySamplesInto(1, 2, new double[12], 0); break;
+			case 2: file.copySamplesInto(Integer.MAX_VALUE, 2, new byte[12], 0); break;
+			default: file.getSampleBuffer(-1); break;
+			}
+		} catch (IndexOutOfBoundsException e) {
+			return;
+		}
+		
+		fail("Expected an IndexOutOfBoundsException");
+	}
+	
+	private static void assertRejected(ByteBuffer data) {
+		try {
+			new IdxFile(data);
+		} catch (IOException e) {
+			return;
+		}
+		
+		fail("Expected an IOException");
+	}
+	
+	/**
+	 * @return An IDX file of the given type and dimensions holding the values, in a buffer
+	 */
+	private static ByteBuffer idx(IdxFile.DataType dataType, int[] dimensions, double[] values) {
+		ByteBuffer data = ByteBuffer.allocate(4 + 4 * dimensions.length + values.length * dataType.size);
+		
+		data.put((byte) 0).put((byte) 0).put((byte) dataType.code).put((byte) dimensions.length);
+		
+		for (int dimension : dimensions) {
+			data.putInt(dimension);
+		}
+		
+		for (double value : values) {
+			switch (dataType) {
+			case UnsignedByte:
+			case SignedByte: data.put((byte) (int) value); break;
+			case Short:      data.putShort((short) value); break;
+			case Int:        data.putInt((int) value); break;
+			case Float:      data.putFloat((float) value); break;
+			case Double:     data.putDouble(value); break;
+			}
+		}
+		
+		data.flip();
+		
+		return data;
+	}
+}
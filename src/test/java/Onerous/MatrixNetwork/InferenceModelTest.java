@@ -0,0 +1,114 @@
+package Onerous.MatrixNetwork;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.inference.InferenceModel;
+
+public class InferenceModelTest extends TestCase {
+	private static final int NUM_INPUTS = 300;
+	private static final int NUM_THREADS = 8;
+	private static final double TOLERANCE = 1e-12;
+	
+	/**
+	 * Threads sharing one model (with fewer pooled buffers than threads, so some calls run on buffers that
+	 * are then dropped) must get what the same calls give one at a time. Only to within rounding: the vector
+	 * backend's exp changes in the last bits once the JIT compiles it.
+	 */
+	public void testConcurrentPredictionsMatchSerialPredictions() throws InterruptedException {
+		Random random = new Random(11);
+		MatrixNetwork network = new MatrixNetwork(29, 10, new int[] {40, 17}, 2, 0.01, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+		final InferenceModel model = new InferenceModel(network.generateNetworkWeightBiasPackage(), network.getActivationType(), network.isUsingSoftmax(), 2);
+		
+		final double[][] inputs = new double[NUM_INPUTS][29];
+		
+		for (double[] input : inputs) {
+			for (int i = 0; i < input.length; i++) {
+				input[i] = random.nextGaussian();
+			}
+		}
+		
+		final int[] expectedIndices = new int[NUM_INPUTS];
+		final double[][] expectedProbabilities = new double[NUM_INPUTS][10];
+		
+		for (int s = 0; s < NUM_INPUTS; s++) {
+			expectedIndices[s] = model.predict(inputs[s]);
+			model.predictProbabilities(inputs[s], expectedProbabilities[s]);
+		}
+		
+		//Larger than MAX_BATCH_ROWS, so the batch goes through in chunks
+		final int[] expectedBatchIndices = new int[NUM_INPUTS];
+		final double[] expectedBatchProbabilities = new double[NUM_INPUTS * 10];
+		model.predictBatch(inputs, 0, NUM_INPUTS, expectedBatchProbabilities, expectedBatchIndices);
+		
+		for (int s = 0; s < NUM_INPUTS; s++) {
+			assertEquals(expectedIndices[s], expectedBatchIndices[s]);
+			
+			for (int n = 0; n < 10; n++) {
+				assertEquals(expectedProbabilities[s][n], expectedBatchProbabilities[s * 10 + n], TOLERANCE);
+			}
+		}
+		
+		final AtomicInteger mismatches = new AtomicInteger();
+		Thread[] threads = new Thread[NUM_THREADS];
+		
+		for (int t = 0; t < NUM_THREADS; t++) {
+			final int threadIndex = t;
+			
+			threads[t] = new Thread() {
+				@Override public void run() {
+					double[] probabilities = new double[10];
+					
+					for (int round = 0; round < 20; round++) {
+						if ((threadIndex + round) % 2 == 0) {
+							for (int s = 0; s < NUM_INPUTS; s++) {
+								model.predictProbabilities(inputs[s], probabilities);
+								
+								if (model.predict(inputs[s]) != expectedIndices[s]) {
+									mismatches.incrementAndGet();
+								}
+								
+								for (int n = 0; n < 10; n++) {
+									if (Math.abs(probabilities[n] - expectedProbabilities[s][n]) > TOLERANCE) {
+										mismatches.incrementAndGet();
+									}
+								}
+							}
+						} else {
+							int from = (threadIndex * 37) % (NUM_INPUTS / 2);
+							int count = NUM_INPUTS / 2;
+							int[] indices = new int[count];
+							double[] batchProbabilities = new double[count * 10];
+							
+							model.predictBatch(inputs, from, count, batchProbabilities, indices);
+							
+							for (int s = 0; s < count; s++) {
+								for (int n = 0; n < 10; n++) {
+									if (Math.abs(batchProbabilities[s * 10 + n] - expectedBatchProbabilities[(from + s) * 10 + n]) > TOLERANCE) {
+										mismatches.incrementAndGet();
+									}
+								}
+								
+								if (indices[s] != expectedBatchIndices[from + s]) {
+									mismatches.incrementAndGet();
+								}
+							}
+						}
+					}
+				}
+			};
+			
+			threads[t].start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		assertEquals(0, mismatches.get());
+	}
+}
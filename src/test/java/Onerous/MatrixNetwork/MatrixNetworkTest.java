@@ -1,5 +1,318 @@
 package Onerous.MatrixNetwork;
 
-public class MatrixNetworkTest {
+import java.lang.management.ManagementFactory;
+import java.util.Random;
 
+import com.sun.management.ThreadMXBean;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.NetworkWorkspace;
+import xyz.onerous.MatrixNetwork.component.datapackage.WeightBiasDeltaPackage;
+import xyz.onerous.MatrixNetwork.component.kernel.KernelBackend;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
+import xyz.onerous.MatrixNetwork.component.kernel.ScalarKernelBackend;
+import xyz.onerous.MatrixNetwork.component.kernel.UnrolledKernelBackend;
+
+public class MatrixNetworkTest extends TestCase {
+	private static final double TOLERANCE = 1e-12;
+	
+	/**
+	 * The unrolled and vector backends add in a different order than the scalar (reference) backend, so
+	 * their results only have to agree to within rounding.
+	 */
+	public void testUnrolledKernelsMatchScalarKernels() {
+		assertBackendMatchesScalar(new UnrolledKernelBackend());
+	}
+	
+	/**
+	 * Only runs where the vector backend was built and jdk.incubator.vector is available.
+	 */
+	public void testVectorKernelsMatchScalarKernels() {
+		KernelBackend vector = Kernels.loadVectorBackend();
+		
+		if (vector == null) { return; }
+		
+		assertBackendMatchesScalar(vector);
+	}
+	
+	private static void assertBackendMatchesScalar(KernelBackend backend) {
+		KernelBackend scalar = new ScalarKernelBackend();
+		Random random = new Random(42);
+		
+		for (int trial = 0; trial < 20; trial++) {
+			int m = 1 + random.nextInt(70);
+			int k = 1 + random.nextInt(300);
+			int n = 1 + random.nextInt(300);
+			
+			double[] input1 = randomArray(random, m * k);
+			double[] input2 = randomArray(random, k * n);
+			double[] input2Transposed = randomArray(random, n * k);
+			double[] input1Transposed = randomArray(random, k * m);
+			double[] vector = randomArray(random, k);
+			double[] other = randomArray(random, k);
+			
+			assertClose(scalar.dot(input1, vector, k), backend.dot(input1, vector, k));
+			
+			double[] expected = new double[k];
+			double[] actual = new double[k];
+			scalar.hadamardInto(vector, other, expected, k);
+			backend.hadamardInto(vector, other, actual, k);
+			assertClose(expected, actual);
+			
+			scalar.addInto(vector, other, expected, k);
+			backend.addInto(vector, other, actual, k);
+			assertClose(expected, actual);
+			
+			scalar.scalarMultiplyInto(vector, 0.37, expected, k);
+			backend.scalarMultiplyInto(vector, 0.37, actual, k);
+			assertClose(expected, actual);
+			
+			scalar.scalarAddInto(vector, -1.5, expected, k);
+			backend.scalarAddInto(vector, -1.5, actual, k);
+			assertClose(expected, actual);
+			
+			System.arraycopy(other, 0, expected, 0, k);
+			System.arraycopy(other, 0, actual, 0, k);
+			scalar.scaledAddInto(vector, 0.25, expected, k);
+			backend.scaledAddInto(vector, 0.25, actual, k);
+			assertClose(expected, actual);
+			
+			expected = new double[m];
+			actual = new double[m];
+			scalar.multiplyInto(input1, m, k, vector, expected);
+			backend.multiplyInto(input1, m, k, vector, actual);
+			assertClose(expected, actual);
+			
+			double[] columnVector = randomArray(random, m);
+			expected = new double[k];
+			actual = new double[k];
+			scalar.multiplyWithFirstTransposeInto(input1, m, k, columnVector, expected);
+			backend.multiplyWithFirstTransposeInto(input1, m, k, columnVector, actual);
+			assertClose(expected, actual);
+			
+			expected = new double[m * n];
+			actual = new double[m * n];
+			scalar.multiplyInto(input1, input2, expected, m, k, n, false);
+			backend.multiplyInto(input1, input2, actual, m, k, n, false);
+			assertClose(expected, actual);
+			
+			scalar.multiplyWithFirstTransposeInto(input1Transposed, input2, expected, m, k, n, true);
+			backend.multiplyWithFirstTransposeInto(input1Transposed, input2, actual, m, k, n, true);
+			assertClose(expected, actual);
+			
+			scalar.multiplyWithSecondTransposeInto(input1, input2Transposed, expected, m, k, n, false);
+			backend.multiplyWithSecondTransposeInto(input1, input2Transposed, actual, m, k, n, false);
+			assertClose(expected, actual);
+			
+			double[] biases = randomArray(random, m);
+			
+			for (ActivationType activationType : ActivationType.values()) {
+				double[] expectedZ = new double[m];
+				double[] expectedA = new double[m];
+				double[] actualZ = new double[m];
+				double[] actualA = new double[m];
+				scalar.denseForwardInto(activationType, input1, biases, m, k, vector, expectedZ, expectedA);
+				backend.denseForwardInto(activationType, input1, biases, m, k, vector, actualZ, actualA);
+				assertClose(expectedZ, actualZ);
+				assertClose(expectedA, actualA);
+				
+				double[] expectedδ = new double[k];
+				double[] actualδ = new double[k];
+				scalar.denseBackwardInto(activationType, input1, m, k, columnVector, vector, other, expectedδ);
+				backend.denseBackwardInto(activationType, input1, m, k, columnVector, vector, other, actualδ);
+				assertClose(expectedδ, actualδ);
+			}
+		}
+		
+		//Extreme inputs as well, where exp overflows and underflows
+		double[] layerZ = randomArray(random, 1000);
+		layerZ[3] = 800;
+		layerZ[4] = -800;
+		layerZ[5] = 40;
+		layerZ[6] = -40;
+		layerZ[7] = 0;
+		
+		for (ActivationType activationType : ActivationType.values()) {
+			double[] expected = new double[layerZ.length];
+			double[] actual = new double[layerZ.length];
+			
+			scalar.activateInto(activationType, layerZ, expected, 0, layerZ.length);
+			backend.activateInto(activationType, layerZ, actual, 0, layerZ.length);
+			assertClose(expected, actual);
+			
+			double[] expectedδ = randomArray(random, layerZ.length);
+			double[] actualδ = expectedδ.clone();
+			scalar.multiplyByActivationPrimeInto(activationType, layerZ, expected, expectedδ, 1, layerZ.length - 1);
+			backend.multiplyByActivationPrimeInto(activationType, layerZ, actual, actualδ, 1, layerZ.length - 1);
+			assertClose(expectedδ, actualδ);
+		}
+		
+		double[] expected = new double[layerZ.length];
+		double[] actual = new double[layerZ.length];
+		
+		for (int length : new int[] {1, 10, 37, 990}) {
+			scalar.softmaxInto(layerZ, expected, 10, length);
+			backend.softmaxInto(layerZ, actual, 10, length);
+			assertClose(expected, actual);
+		}
+	}
+	
+	/**
+	 * The batched path (one matrix-matrix product per layer) must produce the same summed deltas as running
+	 * the batch one sample at a time, for every activation and for both output layer kinds.
+	 */
+	public void testBatchedDeltasMatchSerialDeltas() {
+		Random random = new Random(3);
+		
+		for (ActivationType activationType : ActivationType.values()) {
+			for (int outputKind = 0; outputKind < 2; outputKind++) {
+				boolean usingSoftmax = (outputKind == 0);
+				LossType lossType = usingSoftmax ? LossType.CrossEntropy : LossType.MeanSquaredError;
+				ExposedMatrixNetwork network = new ExposedMatrixNetwork(37, 10, new int[] {23, 11}, 2, 0.05, usingSoftmax, activationType, lossType);
+				
+				for (int batchSize : new int[] {1, 5, 16}) {
+					double[][] batchData = new double[batchSize][];
+					int[] expectedOutputs = new int[batchSize];
+					
+					for (int s = 0; s < batchSize; s++) {
+						batchData[s] = randomArray(random, 37);
+						expectedOutputs[s] = random.nextInt(10);
+					}
+					
+					//Both return the network's own accumulator, so the first result is copied before the second runs
+					WeightBiasDeltaPackage serial = copyOf(network.performSerialBatchAndGetDelta(batchData, expectedOutputs));
+					WeightBiasDeltaPackage batched = network.performBatchAndGetDelta(batchData, expectedOutputs);
+					
+					for (int l = 1; l < serial.deltaW.length; l++) {
+						assertClose(serial.deltaW[l], batched.deltaW[l]);
+						assertClose(serial.deltaB[l], batched.deltaB[l]);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Once the workspace buffers exist, a training step (batched or not) and an inference call must not
+	 * allocate at all.
+	 */
+	public void testSteadyStateTrainingAndInferenceDoNotAllocate() {
+		ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		
+		if (!threadBean.isThreadAllocatedMemorySupported()) { return; }
+		
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		
+		//The vector backend allocates until the JIT gets to it, which takes longer than this warm up
+		KernelBackend defaultBackend = Kernels.get();
+		Kernels.setBackend(new UnrolledKernelBackend());
+		
+		try {
+			assertSteadyStateDoesNotAllocate(threadBean);
+		} finally {
+			Kernels.setBackend(defaultBackend);
+		}
+	}
+	
+	private static void assertSteadyStateDoesNotAllocate(ThreadMXBean threadBean) {
+		Random random = new Random(7);
+		MatrixNetwork network = new MatrixNetwork(64, 10, new int[] {32, 16}, 2, 0.01, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+		NetworkWorkspace workspace = network.createWorkspace();
+		
+		double[][] batchData = new double[8][];
+		int[] expectedOutputs = new int[batchData.length];
+		
+		for (int s = 0; s < batchData.length; s++) {
+			batchData[s] = randomArray(random, 64);
+			expectedOutputs[s] = random.nextInt(10);
+		}
+		
+		for (int i = 0; i < 200; i++) { //Warm up: grow the batch buffers and load every class involved
+			trainingAndInferenceSteps(network, workspace, batchData, expectedOutputs);
+		}
+		
+		//The JVM itself can allocate on this thread now and then (around a recompilation, for example), so
+		//take the best of a few rounds. Any allocation in the steps themselves shows up in every round.
+		long threadId = Thread.currentThread().getId();
+		long fewestAllocated = Long.MAX_VALUE;
+		
+		for (int round = 0; round < 5; round++) {
+			long before = threadBean.getThreadAllocatedBytes(threadId);
+			long measurementOverhead = threadBean.getThreadAllocatedBytes(threadId) - before;
+			
+			before = threadBean.getThreadAllocatedBytes(threadId);
+			
+			for (int i = 0; i < 50; i++) {
+				trainingAndInferenceSteps(network, workspace, batchData, expectedOutputs);
+			}
+			
+			long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - measurementOverhead;
+			
+			fewestAllocated = Math.min(fewestAllocated, allocated);
+		}
+		
+		assertEquals(0L, fewestAllocated);
+	}
+	
+	private static void trainingAndInferenceSteps(MatrixNetwork network, NetworkWorkspace workspace, double[][] batchData, int[] expectedOutputs) {
+		network.applyDeltaPackage(network.performBatchAndGetDelta(batchData, expectedOutputs));
+		network.applyDeltaPackage(network.performBatchAndGetDelta(batchData, expectedOutputs, workspace));
+		
+		for (int s = 0; s < batchData.length; s++) {
+			network.inputDataAndPropagate(batchData[s]);
+			network.accumulateGradient(expectedOutputs[s], workspace.gradientAccumulator);
+			network.inputDataAndPropagate(batchData[s], workspace);
+		}
+		
+		network.applyDeltaPackage(network.performTrainAndGetDelta(batchData[0], expectedOutputs[0]));
+		network.applyDeltaPackage(network.gradientDescent(expectedOutputs[0]));
+	}
+	
+	private static WeightBiasDeltaPackage copyOf(WeightBiasDeltaPackage deltaPackage) {
+		double[][] deltaW = new double[deltaPackage.deltaW.length][];
+		double[][] deltaB = new double[deltaPackage.deltaB.length][];
+		
+		for (int l = 0; l < deltaW.length; l++) {
+			deltaW[l] = deltaPackage.deltaW[l].clone();
+			deltaB[l] = deltaPackage.deltaB[l].clone();
+		}
+		
+		return new WeightBiasDeltaPackage(deltaW, deltaB);
+	}
+	
+	/**
+	 * Makes the sample-at-a-time batch reachable from the test.
+	 */
+	private static class ExposedMatrixNetwork extends MatrixNetwork {
+		ExposedMatrixNetwork(int nInput, int nOutput, int[] nHidden, int lHidden, double learningRate, boolean usingSoftmax, ActivationType activationType, LossType lossType) {
+			super(nInput, nOutput, nHidden, lHidden, learningRate, usingSoftmax, activationType, lossType);
+		}
+		
+		@Override public WeightBiasDeltaPackage performSerialBatchAndGetDelta(double[][] batchData, int[] expectedOutputs) {
+			return super.performSerialBatchAndGetDelta(batchData, expectedOutputs);
+		}
+	}
+	
+	private static double[] randomArray(Random random, int length) {
+		double[] array = new double[length];
+		
+		for (int i = 0; i < length; i++) {
+			array[i] = random.nextGaussian() * 4.0;
+		}
+		
+		return array;
+	}
+	
+	private static void assertClose(double expected, double actual) {
+		assertEquals(expected, actual, TOLERANCE * Math.max(1.0, Math.abs(expected)));
+	}
+	
+	private static void assertClose(double[] expected, double[] actual) {
+		for (int i = 0; i < expected.length; i++) {
+			assertClose(expected[i], actual[i]);
+		}
+	}
 }
@@ -0,0 +1,138 @@
+package Onerous.MatrixNetwork;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.datapackage.RobustnessResultPackage;
+import xyz.onerous.MatrixNetwork.component.datapackage.TestResultPackage;
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+import xyz.onerous.MatrixNetwork.inference.ParallelEvaluator;
+import xyz.onerous.MatrixNetwork.inference.RobustnessEvaluator;
+import xyz.onerous.MatrixNetwork.pipeline.PackedByteDataset;
+import xyz.onerous.MatrixNetwork.pipeline.SampleRange;
+
+public class PackedByteDatasetTest extends TestCase {
+	private static final int SAMPLE_LENGTH = 784;
+	
+	public void testPreparedSamplesMatchArrayUtilStandardize() {
+		int numSamples = 6;
+		byte[] data = new byte[numSamples * SAMPLE_LENGTH];
+		Random random = new Random(25);
+		
+		random.nextBytes(data); //Samples 0 and 1: anything
+		
+		for (int j = 0; j < SAMPLE_LENGTH; j++) {
+			data[2 * SAMPLE_LENGTH + j] = (byte) j;                              //Every byte value, high ones included
+			data[3 * SAMPLE_LENGTH + j] = (byte) ((j % 7 == 0) ? 255 : 0);       //Mostly background, as an MNIST image is
+			data[4 * SAMPLE_LENGTH + j] = (byte) 255;                            //Sums past what a byte would hold
+			data[5 * SAMPLE_LENGTH + j] = (byte) 17;                             //Constant: standardizes to NaN
+		}
+		
+		PackedByteDataset dataset = new PackedByteDataset(data, new int[numSamples], SAMPLE_LENGTH);
+		double[][] arrays = dataset.toStandardizedArrays(0, numSamples);
+		double[] row = new double[SAMPLE_LENGTH + 3];
+		
+		for (int i = 0; i < numSamples; i++) {
+			int[] values = new int[SAMPLE_LENGTH];
+			
+			for (int j = 0; j < SAMPLE_LENGTH; j++) {
+				values[j] = data[i * SAMPLE_LENGTH + j] & 0xFF;
+			}
+			
+			double[] expected = ArrayUtil.standardize(values);
+			
+			dataset.prepareSample(i, row, 3);
+			
+			assertEquals(ArrayUtil.mean(values), dataset.getMean(i), 0.0);
+			assertEquals(ArrayUtil.standardDeviation(values), dataset.getStandardDeviation(i), 0.0);
+			
+			for (int j = 0; j < SAMPLE_LENGTH; j++) {
+				assertEquals(values[j], dataset.getValue(i, j));
+				assertEquals("Sample " + i + " value " + j, Double.doubleToLongBits(expected[j]), Double.doubleToLongBits(row[3 + j]));
+				assertEquals("Sample " + i + " value " + j, Double.doubleToLongBits(expected[j]), Double.doubleToLongBits(arrays[i][j]));
+			}
+		}
+		
+		assertTrue(Double.isNaN(arrays[5][0]));
+	}
+	
+	public void testSampleRangeReadsThroughToItsSource() {
+		PackedByteDataset dataset = createDataset(10, 3);
+		SampleRange range = new SampleRange(dataset, 4, 9);
+		double[] sample = new double[SAMPLE_LENGTH];
+		
+		assertEquals(5, range.size());
+		assertEquals(SAMPLE_LENGTH, range.getSampleLength());
+		
+		for (int i = 0; i < range.size(); i++) {
+			range.prepareSample(i, sample, 0);
+			
+			assertTrue(Arrays.equals(dataset.toStandardizedArrays(4 + i, 5 + i)[0], sample));
+			assertEquals(dataset.getExpectedOutput(4 + i), range.getExpectedOutput(i));
+		}
+		
+		try {
+			new SampleRange(dataset, 4, 11);
+			fail("A range past the end of its source was accepted");
+		} catch (IndexOutOfBoundsException e) {
+			//Expected
+		}
+	}
+	
+	public void testEvaluatorsGiveTheSameResultsFromTheSourceAsFromArrays() {
+		PackedByteDataset dataset = createDataset(300, 10);
+		double[][] arrays = dataset.toStandardizedArrays(0, dataset.size());
+		MatrixNetwork network = new MatrixNetwork(SAMPLE_LENGTH, 10, new int[] { 16 }, 1, 0.01, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+		
+		network.performEpoch(dataset, 20);
+		
+		ParallelEvaluator evaluator = new ParallelEvaluator(3);
+		RobustnessEvaluator robustnessEvaluator = new RobustnessEvaluator(3);
+		
+		try {
+			assertSameResults(network.performTest(arrays, dataset.getLabels()), evaluator.evaluate(network, dataset));
+			assertSameResults(evaluator.evaluate(network, arrays, dataset.getLabels()), evaluator.evaluate(network, dataset));
+			assertSameResults(network.performTest(arrays, dataset.getLabels()), network.performTest(dataset, network.createWorkspace()));
+			
+			double[] epsilons = { 0.0, 0.1, 0.5 };
+			RobustnessResultPackage fromArrays = robustnessEvaluator.evaluate(network, arrays, dataset.getLabels(), epsilons, 3);
+			RobustnessResultPackage fromSource = robustnessEvaluator.evaluate(network, dataset, epsilons, 3);
+			
+			for (int e = 0; e < epsilons.length; e++) {
+				assertSameResults(fromArrays.testResults[e], fromSource.testResults[e]);
+			}
+		} finally {
+			evaluator.shutdown();
+			robustnessEvaluator.shutdown();
+		}
+	}
+	
+	private static void assertSameResults(TestResultPackage expected, TestResultPackage actual) {
+		assertEquals(expected.numTests, actual.numTests);
+		assertEquals(expected.percentageCorrect, actual.percentageCorrect, 0.0);
+		assertTrue(Arrays.equals(expected.outputNeuronIndeces, actual.outputNeuronIndeces));
+		assertTrue(Arrays.equals(expected.ifCorrect, actual.ifCorrect));
+		
+		for (int t = 0; t < expected.numTests; t++) {
+			assertEquals(expected.outputNeuronValues[t], actual.outputNeuronValues[t], 1e-12);
+		}
+	}
+	
+	private static PackedByteDataset createDataset(int numSamples, int numClasses) {
+		byte[] data = new byte[numSamples * SAMPLE_LENGTH];
+		int[] labels = new int[numSamples];
+		Random random = new Random(numSamples);
+		
+		random.nextBytes(data);
+		
+		for (int i = 0; i < numSamples; i++) {
+			labels[i] = random.nextInt(numClasses);
+		}
+		
+		return new PackedByteDataset(data, labels, SAMPLE_LENGTH);
+	}
+}
@@ -0,0 +1,91 @@
+package Onerous.MatrixNetwork;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.kernel.Kernels;
+import xyz.onerous.MatrixNetwork.inference.ParallelGemv;
+
+public class ParallelGemvTest extends TestCase {
+	private static final int COLS = 784;
+	
+	/**
+	 * Layers just under and well over the split threshold, including row counts that are not a multiple of
+	 * the row block, must come out exactly as KernelBackend.denseForwardInto computes them on one thread.
+	 */
+	public void testSplitLayersMatchTheKernel() {
+		Random random = new Random(21);
+		ParallelGemv gemv = new ParallelGemv(4);
+		double[] input = randomArray(random, COLS);
+		int[] rowCounts = { 8, 41, 83, 84, 250, 501, 1000 }; //83 rows are the most with too few multiply-adds for two slices
+		
+		try {
+			for (int rows : rowCounts) {
+				boolean expectSplit = (long) rows * COLS / ParallelGemv.DEFAULT_MIN_MULTIPLY_ADDS_PER_THREAD >= 2;
+				
+				assertEquals(rows + " rows", expectSplit, gemv.numSlices(rows, COLS) > 1);
+				
+				for (ActivationType activationType : ActivationType.values()) {
+					double[] weights = randomArray(random, rows * COLS);
+					double[] biases = randomArray(random, rows);
+					double[] expectedZ = new double[rows], expectedA = new double[rows];
+					double[] layerZ = new double[rows], layerA = new double[rows];
+					
+					Kernels.get().denseForwardInto(activationType, weights, biases, rows, COLS, input, expectedZ, expectedA);
+					gemv.denseForwardInto(activationType, weights, biases, rows, COLS, input, layerZ, layerA);
+					
+					assertTrue(rows + " rows, " + activationType, Arrays.equals(expectedZ, layerZ));
+					assertTrue(rows + " rows, " + activationType, Arrays.equals(expectedA, layerA));
+				}
+			}
+		} finally {
+			gemv.shutdown();
+		}
+	}
+	
+	/**
+	 * A worker that throws on its slice must not leave the caller waiting on it: the call fails with the
+	 * worker's exception as its cause, and the next layer is computed as usual.
+	 */
+	public void testFailedSliceIsRethrown() {
+		Random random = new Random(20);
+		ParallelGemv gemv = new ParallelGemv(4, 1);
+		int rows = 64, cols = 16;
+		
+		double[] weights = randomArray(random, rows * cols);
+		double[] biases = randomArray(random, rows);
+		double[] input = randomArray(random, cols);
+		
+		try {
+			try {
+				gemv.denseForwardInto(ActivationType.Sigmoid, Arrays.copyOf(weights, rows * cols / 2), biases, rows, cols, input, new double[rows], new double[rows]); //The last slices run off the weights
+				fail("A failed slice was not rethrown");
+			} catch (RuntimeException e) {
+				assertNotNull(e.getCause());
+			}
+			
+			double[] expectedZ = new double[rows], expectedA = new double[rows];
+			double[] layerZ = new double[rows], layerA = new double[rows];
+			
+			Kernels.get().denseForwardInto(ActivationType.Sigmoid, weights, biases, rows, cols, input, expectedZ, expectedA);
+			gemv.denseForwardInto(ActivationType.Sigmoid, weights, biases, rows, cols, input, layerZ, layerA);
+			
+			assertTrue(Arrays.equals(expectedZ, layerZ));
+			assertTrue(Arrays.equals(expectedA, layerA));
+		} finally {
+			gemv.shutdown();
+		}
+	}
+	
+	private static double[] randomArray(Random random, int length) {
+		double[] array = new double[length];
+		
+		for (int i = 0; i < length; i++) {
+			array[i] = random.nextGaussian();
+		}
+		
+		return array;
+	}
+}
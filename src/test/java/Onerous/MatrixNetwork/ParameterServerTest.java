@@ -0,0 +1,141 @@
+package Onerous.MatrixNetwork;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.distributed.ParameterServer;
+import xyz.onerous.MatrixNetwork.distributed.ParameterServerWorker;
+
+public class ParameterServerTest extends TestCase {
+	private static final int NUM_WORKERS = 3;
+	private static final int NUM_ROUNDS = 25;
+	private static final int BATCH_SIZE = 4;
+	private static final double TOLERANCE = 1e-10;
+	
+	/**
+	 * With a staleness of 0, training through the server must end with the same weights as summing every
+	 * worker's batch c into one batch and applying it, round after round, on a single network.
+	 */
+	public void testSynchronousTrainingMatchesSummedSerialBatches() throws Exception {
+		Random random = new Random(5);
+		MatrixNetwork serverNetwork = newNetwork();
+		MatrixNetwork reference = newNetwork();
+		
+		reference.applyNetworkWeightBiasPackage(serverNetwork.generateNetworkWeightBiasPackage().copy());
+		
+		final double[][][] shards = new double[NUM_WORKERS][NUM_ROUNDS * BATCH_SIZE][12];
+		final int[][] shardOutputs = new int[NUM_WORKERS][NUM_ROUNDS * BATCH_SIZE];
+		
+		for (int i = 0; i < NUM_WORKERS; i++) {
+			for (int s = 0; s < shards[i].length; s++) {
+				for (int j = 0; j < 12; j++) {
+					shards[i][s][j] = random.nextGaussian();
+				}
+				
+				shardOutputs[i][s] = random.nextInt(4);
+			}
+		}
+		
+		final int port = freePort();
+		final ParameterServer server = new ParameterServer(serverNetwork, port, NUM_WORKERS, 0);
+		
+		server.open();
+		
+		Thread serverThread = new Thread() {
+			@Override public void run() {
+				try {
+					server.serve();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		
+		serverThread.start();
+		
+		Thread[] workerThreads = new Thread[NUM_WORKERS];
+		
+		for (int i = 0; i < NUM_WORKERS; i++) {
+			final int workerId = i;
+			
+			workerThreads[i] = new Thread() {
+				@Override public void run() {
+					try {
+						Thread.sleep(20 * workerId); //Late joiners must not be sent weights holding an early worker's first batch
+						
+						ParameterServerWorker worker = new ParameterServerWorker(newNetwork(), "localhost", port, workerId);
+						
+						for (int start = 0; start < shards[workerId].length; start += BATCH_SIZE) {
+							if (workerId == 0) { Thread.yield(); } //Uneven speeds, so workers wait on each other
+							
+							worker.trainBatch(shards[workerId], shardOutputs[workerId], start, start + BATCH_SIZE);
+						}
+						
+						worker.shutdown();
+					} catch (IOException e) {
+						e.printStackTrace();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+			
+			workerThreads[i].start();
+		}
+		
+		for (Thread workerThread : workerThreads) {
+			workerThread.join();
+		}
+		
+		serverThread.join();
+		
+		for (int c = 0; c < NUM_ROUNDS; c++) {
+			double[][] roundData = new double[NUM_WORKERS * BATCH_SIZE][];
+			int[] roundOutputs = new int[NUM_WORKERS * BATCH_SIZE];
+			
+			for (int i = 0; i < NUM_WORKERS; i++) {
+				for (int s = 0; s < BATCH_SIZE; s++) {
+					roundData[i * BATCH_SIZE + s] = shards[i][c * BATCH_SIZE + s];
+					roundOutputs[i * BATCH_SIZE + s] = shardOutputs[i][c * BATCH_SIZE + s];
+				}
+			}
+			
+			reference.applyDeltaPackage(reference.performBatchAndGetDelta(roundData, roundOutputs));
+		}
+		
+		assertEquals((long) NUM_WORKERS * NUM_ROUNDS, server.getVersion());
+		
+		double[][] expectedW = reference.generateNetworkWeightBiasPackage().getFlatConnectionWeights();
+		double[][] actualW = serverNetwork.generateNetworkWeightBiasPackage().getFlatConnectionWeights();
+		double[][] expectedB = reference.generateNetworkWeightBiasPackage().getNeuronBiases();
+		double[][] actualB = serverNetwork.generateNetworkWeightBiasPackage().getNeuronBiases();
+		
+		for (int l = 1; l < expectedW.length; l++) {
+			for (int i = 0; i < expectedW[l].length; i++) {
+				assertEquals(expectedW[l][i], actualW[l][i], TOLERANCE);
+			}
+			
+			for (int n = 0; n < expectedB[l].length; n++) {
+				assertEquals(expectedB[l][n], actualB[l][n], TOLERANCE);
+			}
+		}
+	}
+	
+	private static MatrixNetwork newNetwork() {
+		return new MatrixNetwork(12, 4, new int[] {9}, 1, 0.05, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+	}
+	
+	private static int freePort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		
+		socket.close();
+		
+		return port;
+	}
+}
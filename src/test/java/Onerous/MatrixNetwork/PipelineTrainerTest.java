@@ -0,0 +1,109 @@
+package Onerous.MatrixNetwork;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.MatrixNetwork;
+import xyz.onerous.MatrixNetwork.component.ActivationType;
+import xyz.onerous.MatrixNetwork.component.LossType;
+import xyz.onerous.MatrixNetwork.component.util.ArrayUtil;
+import xyz.onerous.MatrixNetwork.trainer.PipelineTrainer;
+
+public class PipelineTrainerTest extends TestCase {
+	private static final int NUM_SAMPLES = 47; //Four batches of 10 and a short one of 7
+	private static final int BATCH_SIZE = 10; //Micro-batches of 4, 4 and 2; the short batch gives 3, 3 and 1
+	private static final double TOLERANCE = 1e-10;
+	
+	/**
+	 * Feeding micro-batches through the stages and scaling the summed gradients once at the end of the batch
+	 * must end with the same weights as training each batch on one thread, apart from rounding.
+	 */
+	public void testPipelinedEpochMatchesSerialBatches() {
+		Random random = new Random(18);
+		
+		for (ActivationType activationType : new ActivationType[] { ActivationType.Sigmoid, ActivationType.ReLU }) {
+			boolean usingSoftmax = (activationType == ActivationType.Sigmoid);
+			LossType lossType = usingSoftmax ? LossType.CrossEntropy : LossType.MeanSquaredError;
+			MatrixNetwork network = new MatrixNetwork(12, 4, new int[] {10, 9, 7}, 3, 0.05, usingSoftmax, activationType, lossType);
+			MatrixNetwork reference = new MatrixNetwork(12, 4, new int[] {10, 9, 7}, 3, 0.05, usingSoftmax, activationType, lossType);
+			
+			reference.applyNetworkWeightBiasPackage(network.generateNetworkWeightBiasPackage().copy());
+			
+			double[][] data = new double[NUM_SAMPLES][12];
+			int[] expectedOutputs = new int[NUM_SAMPLES];
+			
+			for (int s = 0; s < NUM_SAMPLES; s++) {
+				for (int j = 0; j < 12; j++) {
+					data[s][j] = random.nextGaussian();
+				}
+				
+				expectedOutputs[s] = random.nextInt(4);
+			}
+			
+			PipelineTrainer trainer = new PipelineTrainer(network, 3, 3);
+			
+			try {
+				trainer.trainEpoch(data, expectedOutputs, BATCH_SIZE);
+			} finally {
+				trainer.shutdown();
+			}
+			
+			for (int from = 0; from < NUM_SAMPLES; from += BATCH_SIZE) {
+				int to = Math.min(from + BATCH_SIZE, NUM_SAMPLES);
+				
+				reference.applyDeltaPackage(reference.performBatchAndGetDelta(ArrayUtil.clipArray(data, from, to), ArrayUtil.clipArray(expectedOutputs, from, to)));
+			}
+			
+			assertSameWeights(reference, network);
+		}
+	}
+	
+	public void testEmptyBatchLeavesTheWeightsAlone() {
+		MatrixNetwork network = new MatrixNetwork(12, 4, new int[] {10, 9}, 2, 0.05, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+		MatrixNetwork reference = new MatrixNetwork(12, 4, new int[] {10, 9}, 2, 0.05, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+		
+		reference.applyNetworkWeightBiasPackage(network.generateNetworkWeightBiasPackage().copy());
+		
+		PipelineTrainer trainer = new PipelineTrainer(network, 2, 4);
+		
+		try {
+			trainer.trainBatch(new double[3][12], new int[3], 2, 2);
+			trainer.trainEpoch(new double[0][12], new int[0], 5);
+		} finally {
+			trainer.shutdown();
+		}
+		
+		assertSameWeights(reference, network);
+	}
+	
+	public void testBatchSizeBelowOneIsRejected() {
+		MatrixNetwork network = new MatrixNetwork(12, 4, new int[] {9}, 1, 0.05, true, ActivationType.Sigmoid, LossType.CrossEntropy);
+		PipelineTrainer trainer = new PipelineTrainer(network, 2, 2);
+		
+		try {
+			trainer.trainEpoch(new double[3][12], new int[3], 0);
+			fail("A batch size of 0 was accepted");
+		} catch (IllegalArgumentException e) {
+			//Expected
+		} finally {
+			trainer.shutdown();
+		}
+	}
+	
+	private static void assertSameWeights(MatrixNetwork expected, MatrixNetwork actual) {
+		double[][] expectedW = expected.generateNetworkWeightBiasPackage().getFlatConnectionWeights();
+		double[][] actualW = actual.generateNetworkWeightBiasPackage().getFlatConnectionWeights();
+		double[][] expectedB = expected.generateNetworkWeightBiasPackage().getNeuronBiases();
+		double[][] actualB = actual.generateNetworkWeightBiasPackage().getNeuronBiases();
+		
+		for (int l = 1; l < expectedW.length; l++) {
+			for (int i = 0; i < expectedW[l].length; i++) {
+				assertEquals(expectedW[l][i], actualW[l][i], TOLERANCE);
+			}
+			
+			for (int n = 0; n < expectedB[l].length; n++) {
+				assertEquals(expectedB[l][n], actualB[l][n], TOLERANCE);
+			}
+		}
+	}
+}
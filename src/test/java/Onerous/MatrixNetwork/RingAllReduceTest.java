@@ -0,0 +1,178 @@
+package Onerous.MatrixNetwork;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import xyz.onerous.MatrixNetwork.distributed.RingAllReduce;
+
+public class RingAllReduceTest extends TestCase {
+	private static final String HOST = "127.0.0.1";
+	
+	/**
+	 * Layer lengths of each all-reduce: { first's layers, second's layers }. The totals (8, 1, 5003 and
+	 * 20003) are not divisible by any of the ring sizes; all but the last are shorter than one chunk (8192
+	 * values), which the last spans several of. A total of 1 leaves most segments empty.
+	 */
+	private static final int[][][] LAYER_LENGTHS = {
+		{ {0, 5}, {3} },
+		{ {0, 1}, {0} },
+		{ {0, 4000}, {1003} },
+		{ {0, 20000}, {3} },
+	};
+	
+	public void testAllReduceSumsAcrossTwoRanks() throws Exception {
+		assertAllReduceSums(2);
+	}
+	
+	public void testAllReduceSumsAcrossThreeRanks() throws Exception {
+		assertAllReduceSums(3);
+	}
+	
+	public void testAllReduceSumsAcrossFourRanks() throws Exception {
+		assertAllReduceSums(4);
+	}
+	
+	/**
+	 * Run one thread per rank, each listening on its own port, and check every rank ends up with the
+	 * elementwise sum of everyone's vectors. The values are whole numbers, so the sums are exact whatever
+	 * order they are added in.
+	 */
+	private static void assertAllReduceSums(final int worldSize) throws Exception {
+		final int basePort = freePortRange(worldSize);
+		final double[][][] results = new double[worldSize][LAYER_LENGTHS.length][];
+		final Exception[] failures = new Exception[worldSize];
+		Thread[] ranks = new Thread[worldSize];
+		
+		for (int r = 0; r < worldSize; r++) {
+			final int rank = r;
+			
+			ranks[r] = new Thread() {
+				@Override public void run() {
+					RingAllReduce ring = new RingAllReduce(rank, worldSize, HOST, basePort);
+					
+					try {
+						ring.connect();
+						
+						for (int c = 0; c < LAYER_LENGTHS.length; c++) {
+							double[][] first = contribution(LAYER_LENGTHS[c][0], c, rank, 0);
+							double[][] second = contribution(LAYER_LENGTHS[c][1], c, rank, 1);
+							
+							ring.allReduce(first, second);
+							
+							results[rank][c] = concatenate(first, second);
+						}
+					} catch (IOException e) {
+						failures[rank] = e;
+					} finally {
+						try {
+							ring.close();
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+				}
+			};
+			
+			ranks[r].start();
+		}
+		
+		for (Thread rank : ranks) {
+			rank.join(60000);
+			assertFalse("A rank did not finish", rank.isAlive());
+		}
+		
+		for (int r = 0; r < worldSize; r++) {
+			if (failures[r] != null) { throw failures[r]; }
+		}
+		
+		for (int c = 0; c < LAYER_LENGTHS.length; c++) {
+			double[] expected = new double[ concatenate(contribution(LAYER_LENGTHS[c][0], c, 0, 0), contribution(LAYER_LENGTHS[c][1], c, 0, 1)).length ];
+			
+			for (int r = 0; r < worldSize; r++) {
+				double[] vector = concatenate(contribution(LAYER_LENGTHS[c][0], c, r, 0), contribution(LAYER_LENGTHS[c][1], c, r, 1));
+				
+				for (int i = 0; i < expected.length; i++) {
+					expected[i] += vector[i];
+				}
+			}
+			
+			for (int r = 0; r < worldSize; r++) {
+				assertEquals(expected.length, results[r][c].length);
+				
+				for (int i = 0; i < expected.length; i++) {
+					assertEquals("Rank " + r + ", case " + c + ", value " + i, expected[i], results[r][c][i], 0.0);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return The layers a rank contributes to one all-reduce, the same every time it is asked for
+	 */
+	private static double[][] contribution(int[] lengths, int c, int rank, int part) {
+		Random random = new Random(1000 * c + 10 * rank + part);
+		double[][] layers = new double[lengths.length][];
+		
+		for (int l = 0; l < lengths.length; l++) {
+			layers[l] = new double[ lengths[l] ];
+			
+			for (int i = 0; i < lengths[l]; i++) {
+				layers[l][i] = random.nextInt(2001) - 1000;
+			}
+		}
+		
+		return layers;
+	}
+	
+	private static double[] concatenate(double[][] first, double[][] second) {
+		int length = 0;
+		
+		for (double[] layer : first) { length += layer.length; }
+		for (double[] layer : second) { length += layer.length; }
+		
+		double[] vector = new double[length];
+		int position = 0;
+		
+		for (double[] layer : first) {
+			System.arraycopy(layer, 0, vector, position, layer.length);
+			position += layer.length;
+		}
+		
+		for (double[] layer : second) {
+			System.arraycopy(layer, 0, vector, position, layer.length);
+			position += layer.length;
+		}
+		
+		return vector;
+	}
+	
+	/**
+	 * @return A port p such that p to p + count - 1 were all free a moment ago
+	 */
+	private static int freePortRange(int count) throws IOException {
+		Random random = new Random();
+		
+		while (true) {
+			int basePort = 20000 + random.nextInt(30000);
+			boolean free = true;
+			
+			for (int p = basePort; p < basePort + count && free; p++) {
+				ServerSocket socket = new ServerSocket();
+				
+				try {
+					socket.bind(new InetSocketAddress(InetAddress.getByName(HOST), p));
+				} catch (IOException e) {
+					free = false;
+				} finally {
+					socket.close();
+				}
+			}
+			
+			if (free) { return basePort; }
+		}
+	}
+}